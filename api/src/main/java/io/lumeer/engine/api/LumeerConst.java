@@ -48,12 +48,33 @@ public final class LumeerConst {
    public static final String USER_LOCALE_PROPERTY = "locale";
 
    public static final String DEFAULT_LIMIT_PROPERTY = "result_limit";
+   public static final String CURSOR_BATCH_SIZE_PROPERTY = "cursor_batch_size";
+   public static final String QUERY_PARALLELISM_PROPERTY = "query_parallelism";
+   public static final String QUERY_TIMEOUT_PROPERTY = "query_timeout";
 
    public static final int SORT_ASCENDING_ORDER = 1;
    public static final int SORT_DESCENDING_ORDER = -1;
 
    public static final String NUMBER_OF_RECENT_DOCS_PROPERTY = "number_recently_used_documents";
 
+   public static final String ATTRIBUTE_COUNT_MAX_STALENESS_PROPERTY = "attribute_count_max_staleness";
+   public static final String ATTRIBUTE_COUNT_FLUSH_THRESHOLD_PROPERTY = "attribute_count_flush_threshold";
+
+   public static final String CACHE_MAX_ENTRIES_PROPERTY = "cache_max_entries";
+   public static final String CACHE_TTL_PROPERTY = "cache_ttl";
+   public static final String CACHE_EVICTION_POLICY_PROPERTY = "cache_eviction_policy";
+   public static final String CACHE_MAX_TENANTS_PROPERTY = "cache_max_tenants";
+
+   public static final String LINKING_INDEX_MAX_SIZE_PROPERTY = "linking_index_max_size";
+
+   public static final String VERSION_SNAPSHOT_INTERVAL_PROPERTY = "version_snapshot_interval";
+   public static final String VERSION_RETENTION_COUNT_PROPERTY = "version_retention_count";
+   public static final String VERSION_RETENTION_DAYS_PROPERTY = "version_retention_days";
+   public static final String VERSION_RETENTION_THINNING_PROPERTY = "version_retention_thinning";
+   public static final String VERSION_BACKUP_QUEUE_SIZE_PROPERTY = "version_backup_queue_size";
+
+   public static final String PERMISSION_CACHE_TTL_PROPERTY = "permission_cache_ttl";
+
    private LumeerConst() {
       // we do not want any instances to be created
       throw new UnsupportedOperationException(String.format("Creation of %s is forbidden.", this.getClass().getCanonicalName()));
@@ -95,6 +116,12 @@ public final class LumeerConst {
          public static final String ATTR_TO_ID = "to_id";
          public static final String ATTR_ATTRIBUTES = "attributes";
       }
+
+      public class CleanupQueue {
+         public static final String NAME = "_system-linking-cleanup";
+         public static final String ATTR_COLLECTION = "collection";
+         public static final String ATTR_DOCUMENT_ID = "document_id";
+      }
    }
 
    public static class Document {
@@ -105,9 +132,19 @@ public final class LumeerConst {
       public static final String CREATE_BY_USER_KEY = METADATA_PREFIX + "create-user";
       public static final String UPDATED_BY_USER_KEY = METADATA_PREFIX + "update-user";
       public static final String USER_RIGHTS = METADATA_PREFIX + "rights";
+      public static final String READERS_KEY = METADATA_PREFIX + "readers"; // users with the read right derived from the rights
+      public static final String WRITERS_KEY = METADATA_PREFIX + "writers"; // users with the write right derived from the rights
       public static final String COLLECTION_NAME = METADATA_PREFIX + "collection"; // used in cases where we need to note the source collection in the document
       public static final String METADATA_VERSION_KEY = METADATA_PREFIX + "version";
-      public static final List<String> METADATA_KEYS = Arrays.asList(METADATA_VERSION_KEY, CREATE_DATE_KEY, UPDATE_DATE_KEY, CREATE_BY_USER_KEY, UPDATED_BY_USER_KEY, USER_RIGHTS);
+      public static final String SHADOW_DELTA_SET_KEY = METADATA_PREFIX + "delta-set"; // used in shadow documents storing only the changed attributes
+      public static final String SHADOW_DELTA_UNSET_KEY = METADATA_PREFIX + "delta-unset";
+      public static final List<String> METADATA_KEYS = Arrays.asList(METADATA_VERSION_KEY, CREATE_DATE_KEY, UPDATE_DATE_KEY, CREATE_BY_USER_KEY, UPDATED_BY_USER_KEY, USER_RIGHTS, READERS_KEY, WRITERS_KEY);
+
+      public class BackupOutbox {
+         public static final String NAME = "_system-version-outbox";
+         public static final String ATTR_SHADOW_COLLECTION = "shadow_collection";
+         public static final String ATTR_BACKUP = "backup";
+      }
    }
 
    public static class View {
@@ -19,6 +19,7 @@
  */
 package io.lumeer.engine.api.cache;
 
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
@@ -80,6 +81,23 @@ public interface Cache<T> {
     */
    void set(final String key, final T t);
 
+   /**
+    * Stores a value to the cache with its own time to live. Caches that do not support expiration keep the value
+    * as if it was stored by {@link #set(String, Object)}.
+    *
+    * @param key
+    *       Entry key.
+    * @param t
+    *       Entry value.
+    * @param ttl
+    *       Time to live of the entry.
+    * @param unit
+    *       Unit of the time to live.
+    */
+   default void set(final String key, final T t, final long ttl, final TimeUnit unit) {
+      set(key, t);
+   }
+
    /**
     * Sets the default entry value.
     *
@@ -100,7 +118,8 @@ public interface Cache<T> {
    T remove(final String key);
 
    /**
-    * Waits to obtain lock on the given entry.
+    * Waits to obtain lock on the given entry. Implementations can share a single lock among multiple entries,
+    * the locks are reentrant.
     *
     * @param key
     *       Entry key.
@@ -125,7 +144,14 @@ public interface Cache<T> {
    boolean tryLock(final String key);
 
    /**
-    * Clears the cache including all locks.
+    * Clears the cache. Locks held on entries stay held.
     */
    void clear();
+
+   /**
+    * Gets the current statistics of the cache. Caches that do not record statistics report just their size.
+    *
+    * @return The current statistics.
+    */
+   CacheStatistics getStatistics();
 }
@@ -0,0 +1,135 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.api.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Limits of a cache obtained from {@link CacheFactory#getCache(CacheConfiguration)}. Zero means there is no limit.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class CacheConfiguration {
+
+   /**
+    * Evicts the least recently used entries.
+    */
+   public static final String EVICTION_LRU = "lru";
+
+   /**
+    * Evicts the least recently used entries, but admits a new entry only when it is used more frequently than the evicted one.
+    */
+   public static final String EVICTION_TINY_LFU = "tinylfu";
+
+   /**
+    * Configuration of a cache without any limits.
+    */
+   public static final CacheConfiguration UNLIMITED = new CacheConfiguration(0, 0, EVICTION_LRU);
+
+   private final long maxEntries;
+
+   private final long maxWeight;
+
+   private final ToLongFunction<Object> weigher;
+
+   private final long ttl;
+
+   private final String evictionPolicy;
+
+   /**
+    * Creates a configuration limiting the number of entries.
+    *
+    * @param maxEntries
+    *       Maximal number of entries.
+    * @param ttl
+    *       Time to live of entries in milliseconds.
+    * @param evictionPolicy
+    *       Name of the eviction policy.
+    */
+   public CacheConfiguration(final long maxEntries, final long ttl, final String evictionPolicy) {
+      this(maxEntries, 0, value -> 1, ttl, evictionPolicy);
+   }
+
+   /**
+    * Creates a configuration limiting the number of entries and their total weight.
+    *
+    * @param maxEntries
+    *       Maximal number of entries.
+    * @param maxWeight
+    *       Maximal total weight of entries.
+    * @param weigher
+    *       Computes the weight of an entry value.
+    * @param ttl
+    *       Time to live of entries in milliseconds.
+    * @param evictionPolicy
+    *       Name of the eviction policy.
+    */
+   public CacheConfiguration(final long maxEntries, final long maxWeight, final ToLongFunction<Object> weigher, final long ttl, final String evictionPolicy) {
+      this.maxEntries = maxEntries;
+      this.maxWeight = maxWeight;
+      this.weigher = weigher;
+      this.ttl = ttl;
+      this.evictionPolicy = evictionPolicy;
+   }
+
+   public long getMaxEntries() {
+      return maxEntries;
+   }
+
+   public long getMaxWeight() {
+      return maxWeight;
+   }
+
+   public ToLongFunction<Object> getWeigher() {
+      return weigher;
+   }
+
+   public long getTtl() {
+      return ttl;
+   }
+
+   public long getTtl(final TimeUnit unit) {
+      return unit.convert(ttl, TimeUnit.MILLISECONDS);
+   }
+
+   public String getEvictionPolicy() {
+      return evictionPolicy;
+   }
+
+   /**
+    * Gets whether there is any limit set.
+    *
+    * @return True if and only if the number of entries, their weight or time to live is limited.
+    */
+   public boolean isBounded() {
+      return maxEntries > 0 || maxWeight > 0 || ttl > 0;
+   }
+
+   @Override
+   public String toString() {
+      return "CacheConfiguration{"
+            + "maxEntries=" + maxEntries
+            + ", maxWeight=" + maxWeight
+            + ", ttl=" + ttl
+            + ", evictionPolicy='" + evictionPolicy + '\''
+            + '}';
+   }
+}
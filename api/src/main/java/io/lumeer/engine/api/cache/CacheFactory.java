@@ -34,4 +34,15 @@ public interface CacheFactory {
     * @return A fresh cache of given type.
     */
    <T> Cache<T> getCache();
+
+   /**
+    * Obtains a fresh cache of given type with the given limits.
+    *
+    * @param configuration
+    *       Limits of the cache.
+    * @param <T>
+    *       Type of values stored in the cache.
+    * @return A fresh cache of given type.
+    */
+   <T> Cache<T> getCache(final CacheConfiguration configuration);
 }
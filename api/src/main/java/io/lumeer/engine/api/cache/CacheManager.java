@@ -49,4 +49,18 @@ public interface CacheManager {
     */
    <T> Cache<T> getCache(final String cacheName);
 
+   /**
+    * Obtains a fresh cache of given type with its own limits. The limits are applied only when the cache is created,
+    * an existing cache of the same name is returned as it is.
+    *
+    * @param cacheName
+    *       Name of the cache to obtain.
+    * @param configuration
+    *       Limits of the cache.
+    * @param <T>
+    *       Type of values stored in the cache.
+    * @return A fresh cache of given type.
+    */
+   <T> Cache<T> getCache(final String cacheName, final CacheConfiguration configuration);
+
 }
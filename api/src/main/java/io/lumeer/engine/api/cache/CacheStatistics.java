@@ -0,0 +1,105 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.api.cache;
+
+/**
+ * Snapshot of cache statistics.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class CacheStatistics {
+
+   private final long hitCount;
+
+   private final long missCount;
+
+   private final long evictionCount;
+
+   private final long expirationCount;
+
+   private final long size;
+
+   private final long weight;
+
+   public CacheStatistics(final long hitCount, final long missCount, final long evictionCount, final long expirationCount, final long size, final long weight) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.expirationCount = expirationCount;
+      this.size = size;
+      this.weight = weight;
+   }
+
+   public long getHitCount() {
+      return hitCount;
+   }
+
+   public long getMissCount() {
+      return missCount;
+   }
+
+   /**
+    * Gets the number of entries removed to keep the cache in its limits.
+    *
+    * @return The number of evicted entries.
+    */
+   public long getEvictionCount() {
+      return evictionCount;
+   }
+
+   /**
+    * Gets the number of entries removed because their time to live elapsed.
+    *
+    * @return The number of expired entries.
+    */
+   public long getExpirationCount() {
+      return expirationCount;
+   }
+
+   public long getSize() {
+      return size;
+   }
+
+   public long getWeight() {
+      return weight;
+   }
+
+   /**
+    * Gets the ratio of successful lookups.
+    *
+    * @return The ratio of hits among all lookups, 1 when there was no lookup yet.
+    */
+   public double getHitRate() {
+      final long requests = hitCount + missCount;
+      return requests == 0 ? 1.0 : (double) hitCount / requests;
+   }
+
+   @Override
+   public String toString() {
+      return "CacheStatistics{"
+            + "hitCount=" + hitCount
+            + ", missCount=" + missCount
+            + ", evictionCount=" + evictionCount
+            + ", expirationCount=" + expirationCount
+            + ", size=" + size
+            + ", weight=" + weight
+            + '}';
+   }
+}
@@ -40,7 +40,7 @@ public class CaseConstraintType implements ConstraintType {
    private static final String FIRST_UPPER_CASE = "firstUpper";
    private static final String FIRST_LOWER_CASE = "firstLower";
 
-   private Locale locale;
+   private Locale locale = Locale.getDefault();
 
    @Override
    public Set<String> getRegisteredPrefixes() {
@@ -50,6 +50,7 @@ public class CaseConstraintType implements ConstraintType {
    @Override
    public Constraint parseConstraint(final String constraintConfiguration) throws InvalidConstraintException {
       final String[] config = constraintConfiguration.split(":", 2);
+      final Locale locale = this.locale;
 
       if (config.length == 2 && CONSTRAINT_PREFIX.equals(config[0])) {
          switch (config[1]) {
@@ -94,7 +95,7 @@ public class CaseConstraintType implements ConstraintType {
 
    @Override
    public void setLocale(final Locale locale) {
-      this.locale = locale;
+      this.locale = locale != null ? locale : Locale.getDefault();
    }
 
    @Override
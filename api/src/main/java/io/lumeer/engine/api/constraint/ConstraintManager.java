@@ -53,9 +53,10 @@ public class ConstraintManager {
    private Map<String, ConstraintType> registry = new HashMap<>();
 
    /**
-    * List of all constraint type classes.
+    * Constraint types owned by this manager, they are never shared with other managers so that setting the locale
+    * cannot affect constraints used by other users.
     */
-   private static final ConstraintType[] CONSTRAINT_CLASSES = {
+   private final ConstraintType[] constraintTypes = {
          new NumberConstraintType(), new CaseConstraintType(), new ListConstraintType(), new MatchesConstraintType(), new DateTimeConstraintType()
    };
 
@@ -68,7 +69,7 @@ public class ConstraintManager {
    public ConstraintManager() throws InvalidConstraintException {
       final List<String> collisions = new ArrayList<>();
 
-      for (final ConstraintType type : CONSTRAINT_CLASSES) {
+      for (final ConstraintType type : constraintTypes) {
          type.getRegisteredPrefixes().forEach(prefix -> {
             if (registry.containsKey(prefix)) {
                collisions.add(prefix);
@@ -96,6 +97,22 @@ public class ConstraintManager {
       constraints = parseConstraints(constraintConfigurations);
    }
 
+   /**
+    * Creates a new manager with the given locale and the constraints whose configurations are provided.
+    *
+    * @param constraintConfigurations
+    *       Configurations of constraints.
+    * @param locale
+    *       Locale used by the constraints.
+    * @throws InvalidConstraintException
+    *       When it was not possible to parse constraint configuration.
+    */
+   public ConstraintManager(final List<String> constraintConfigurations, final Locale locale) throws InvalidConstraintException {
+      this();
+      setLocale(locale);
+      constraints = parseConstraints(constraintConfigurations);
+   }
+
    /**
     * Registers another constraint.
     *
@@ -273,13 +290,14 @@ public class ConstraintManager {
    }
 
    /**
-    * Gets the currently used locale.
+    * Gets the currently used locale. Constraints capture the locale when they are parsed,
+    * already registered constraints are not affected.
     *
     * @param locale
     *       The currently used locale.
     */
    public void setLocale(final Locale locale) {
       this.locale = locale;
-      Arrays.asList(CONSTRAINT_CLASSES).forEach(ct -> ct.setLocale(locale));
+      Arrays.asList(constraintTypes).forEach(ct -> ct.setLocale(locale));
    }
 }
@@ -20,7 +20,7 @@
 package io.lumeer.engine.api.constraint;
 
 import java.text.DateFormat;
-import java.text.ParseException;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -41,7 +41,7 @@ public class DateTimeConstraintType implements ConstraintType {
          "yyMMddHHmmssZ", "yyyy-MM-dd'T'HH:mm:ss.SSSZ", "yyyy-MM-dd'T'HH:mm:ss.SSSXXX", "YYYY-'W'ww-u"));
    private static final Set<String> REGISTERED = new HashSet<>(Arrays.asList("date", "dateTime", "time"));
 
-   private Locale locale;
+   private Locale locale = Locale.getDefault();
 
    @Override
    public Set<String> getRegisteredPrefixes() {
@@ -54,15 +54,17 @@ public class DateTimeConstraintType implements ConstraintType {
 
       if (config.length == 2) {
          try {
-            final DateFormat format = new SimpleDateFormat(config[1], locale);
+            // keeps the SimpleDateFormat pattern semantics of the stored configurations, each thread parses with its own copy
+            final DateFormat prototype = new SimpleDateFormat(config[1], locale);
+            final ThreadLocal<DateFormat> format = ThreadLocal.withInitial(() -> (DateFormat) prototype.clone());
 
             return new FunctionConstraint(value -> {
-               try {
-                  format.parse(value.trim());
-                  return true;
-               } catch (ParseException pe) {
+               if (value == null) {
                   return false;
                }
+
+               final ParsePosition position = new ParsePosition(0);
+               return format.get().parse(value.trim(), position) != null;
             }, constraintConfiguration);
          } catch (IllegalArgumentException | NullPointerException e) {
             throw new InvalidConstraintException("Invalid pattern for '" + config[0] + "' constraint: " + config[1], e);
@@ -84,7 +86,7 @@ public class DateTimeConstraintType implements ConstraintType {
 
    @Override
    public void setLocale(final Locale locale) {
-      this.locale = locale;
+      this.locale = locale != null ? locale : Locale.getDefault();
    }
 
    @Override
@@ -44,6 +44,7 @@ public class ListConstraintType implements ConstraintType {
    @Override
    public Constraint parseConstraint(final String constraintConfiguration) throws InvalidConstraintException {
       final String[] config = constraintConfiguration.split(":", 2);
+      final Locale locale = this.locale;
 
       if (config.length == 2) {
          final Set<String> options = new HashSet<>();
@@ -113,7 +114,7 @@ public class ListConstraintType implements ConstraintType {
 
    @Override
    public void setLocale(final Locale locale) {
-      this.locale = locale;
+      this.locale = locale != null ? locale : Locale.getDefault();
    }
 
    @Override
@@ -0,0 +1,213 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.api.constraint;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Immutable and thread-safe locale-aware number parser. Unlike {@link java.text.NumberFormat}, it can be shared
+ * among threads and it does not allocate anything for ordinary values. The whole value must be a number,
+ * grouping separators and spaces are ignored in the integer part.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+final class LocaleNumberParser {
+
+   /**
+    * Powers of ten that are exactly representable as double.
+    */
+   private static final double[] POWERS_OF_TEN = {
+         1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+         1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+   };
+
+   /**
+    * Largest mantissa that converts to double without rounding.
+    */
+   private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+   private static final long MAX_MANTISSA = (Long.MAX_VALUE - 9) / 10;
+
+   private static final int MAX_EXPONENT = 100_000;
+
+   private final Locale locale;
+   private final char decimalSeparator;
+   private final char groupingSeparator;
+   private final char minusSign;
+   private final String exponentSeparator;
+
+   LocaleNumberParser(final Locale locale) {
+      final DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+
+      this.locale = locale;
+      this.decimalSeparator = symbols.getDecimalSeparator();
+      this.groupingSeparator = symbols.getGroupingSeparator();
+      this.minusSign = symbols.getMinusSign();
+      this.exponentSeparator = symbols.getExponentSeparator();
+   }
+
+   Locale getLocale() {
+      return locale;
+   }
+
+   /**
+    * Parses the given value.
+    *
+    * @param value
+    *       The value to parse.
+    * @param integerOnly
+    *       When true, neither decimal separator nor exponent is accepted.
+    * @return The parsed number or {@link Double#NaN} when the value is not a number.
+    */
+   double parse(final String value, final boolean integerOnly) {
+      if (value == null) {
+         return Double.NaN;
+      }
+
+      final int length = value.length();
+      int i = skipSpaces(value, 0);
+      boolean negative = false;
+
+      if (i < length && isMinus(value.charAt(i))) {
+         negative = true;
+         i++;
+      } else if (i < length && value.charAt(i) == '+') {
+         i++;
+      }
+
+      long mantissa = 0;
+      int exponent = 0;
+      boolean digits = false;
+      boolean fraction = false;
+      boolean exact = true;
+
+      for (; i < length; i++) {
+         final char c = value.charAt(i);
+         final int digit = Character.digit(c, 10);
+
+         if (digit >= 0) {
+            digits = true;
+            if (mantissa <= MAX_MANTISSA) {
+               mantissa = mantissa * 10 + digit;
+               exponent -= fraction ? 1 : 0;
+            } else {
+               exact = false;
+               exponent += fraction ? 0 : 1;
+            }
+         } else if (c == decimalSeparator && !fraction && !integerOnly) {
+            fraction = true;
+         } else if (!fraction && (c == groupingSeparator || isSpace(c))) {
+            // ignored in the integer part
+         } else {
+            break;
+         }
+      }
+
+      if (!digits) {
+         return Double.NaN;
+      }
+
+      if (i < length && !integerOnly && value.startsWith(exponentSeparator, i)) {
+         i += exponentSeparator.length();
+
+         boolean negativeExponent = false;
+         if (i < length && isMinus(value.charAt(i))) {
+            negativeExponent = true;
+            i++;
+         } else if (i < length && value.charAt(i) == '+') {
+            i++;
+         }
+
+         int explicitExponent = 0;
+         boolean exponentDigits = false;
+         for (int digit; i < length && (digit = Character.digit(value.charAt(i), 10)) >= 0; i++) {
+            exponentDigits = true;
+            explicitExponent = Math.min(explicitExponent * 10 + digit, MAX_EXPONENT);
+         }
+
+         if (!exponentDigits) {
+            return Double.NaN;
+         }
+         exponent += negativeExponent ? -explicitExponent : explicitExponent;
+      }
+
+      if (skipSpaces(value, i) != length) {
+         return Double.NaN;
+      }
+
+      if (exact && mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+         // both operands are exact, so there is just a single rounding
+         final double result = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+         return negative ? -result : result;
+      }
+
+      return Double.parseDouble(normalize(value));
+   }
+
+   /**
+    * Rewrites an already validated value to the format understood by {@link Double#parseDouble(String)}.
+    *
+    * @param value
+    *       The valid number to rewrite.
+    * @return The value in the Java number format.
+    */
+   private String normalize(final String value) {
+      final StringBuilder sb = new StringBuilder(value.length());
+      boolean fraction = false;
+
+      for (int i = 0; i < value.length(); i++) {
+         final char c = value.charAt(i);
+         final int digit = Character.digit(c, 10);
+
+         if (digit >= 0) {
+            sb.append((char) ('0' + digit));
+         } else if (value.startsWith(exponentSeparator, i) && sb.length() > 0) {
+            sb.append('E');
+            i += exponentSeparator.length() - 1;
+         } else if (isMinus(c)) {
+            sb.append('-');
+         } else if (c == '+') {
+            sb.append('+');
+         } else if (c == decimalSeparator && !fraction) {
+            sb.append('.');
+            fraction = true;
+         }
+      }
+
+      return sb.toString();
+   }
+
+   private boolean isMinus(final char c) {
+      return c == minusSign || c == '-';
+   }
+
+   private static boolean isSpace(final char c) {
+      return c == ' ' || Character.isSpaceChar(c);
+   }
+
+   private static int skipSpaces(final String value, int i) {
+      while (i < value.length() && isSpace(value.charAt(i))) {
+         i++;
+      }
+
+      return i;
+   }
+}
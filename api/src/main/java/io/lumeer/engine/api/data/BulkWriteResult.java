@@ -0,0 +1,146 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.api.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Carries the outcome of a bulk write operation. Results are reported per item, the items are identified
+ * by their position in the list passed to the bulk operation.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class BulkWriteResult {
+
+   /**
+    * Ids of the inserted documents in the order of the request, null for the items that were not inserted.
+    */
+   private final List<String> ids;
+
+   /**
+    * Error messages of the failed or skipped items by their position in the request.
+    */
+   private final Map<Integer, String> errors = new TreeMap<>();
+
+   /**
+    * Number of inserted documents.
+    */
+   private long insertedCount;
+
+   /**
+    * Number of documents matched by update filters.
+    */
+   private long matchedCount;
+
+   /**
+    * Number of documents actually modified.
+    */
+   private long modifiedCount;
+
+   /**
+    * Number of deleted documents.
+    */
+   private long deletedCount;
+
+   public BulkWriteResult(final int size) {
+      this.ids = new ArrayList<>(Collections.nCopies(size, (String) null));
+   }
+
+   public int size() {
+      return ids.size();
+   }
+
+   public boolean isSuccessful(final int index) {
+      return !errors.containsKey(index);
+   }
+
+   public boolean hasErrors() {
+      return !errors.isEmpty();
+   }
+
+   public Map<Integer, String> getErrors() {
+      return Collections.unmodifiableMap(errors);
+   }
+
+   public void setError(final int index, final String message) {
+      errors.put(index, message);
+      ids.set(index, null);
+   }
+
+   public List<String> getIds() {
+      return Collections.unmodifiableList(ids);
+   }
+
+   public String getId(final int index) {
+      return ids.get(index);
+   }
+
+   public void setId(final int index, final String id) {
+      ids.set(index, id);
+   }
+
+   public long getInsertedCount() {
+      return insertedCount;
+   }
+
+   public void setInsertedCount(final long insertedCount) {
+      this.insertedCount = insertedCount;
+   }
+
+   public long getMatchedCount() {
+      return matchedCount;
+   }
+
+   public void setMatchedCount(final long matchedCount) {
+      this.matchedCount = matchedCount;
+   }
+
+   public long getModifiedCount() {
+      return modifiedCount;
+   }
+
+   public void setModifiedCount(final long modifiedCount) {
+      this.modifiedCount = modifiedCount;
+   }
+
+   public long getDeletedCount() {
+      return deletedCount;
+   }
+
+   public void setDeletedCount(final long deletedCount) {
+      this.deletedCount = deletedCount;
+   }
+
+   @Override
+   public String toString() {
+      return "BulkWriteResult{"
+            + "size=" + ids.size()
+            + ", insertedCount=" + insertedCount
+            + ", matchedCount=" + matchedCount
+            + ", modifiedCount=" + modifiedCount
+            + ", deletedCount=" + deletedCount
+            + ", errors=" + errors
+            + '}';
+   }
+}
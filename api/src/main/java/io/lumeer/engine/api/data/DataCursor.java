@@ -0,0 +1,52 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.api.data;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily pulled sequence of documents backed by an open data storage cursor.
+ * Documents are fetched from the storage in batches as the cursor is iterated, so the whole result
+ * never needs to be held in memory. The cursor must be closed once it is no longer needed.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public interface DataCursor extends Iterator<DataDocument>, Closeable {
+
+   /**
+    * Releases the underlying storage cursor. Does not throw any checked exception.
+    */
+   @Override
+   void close();
+
+   /**
+    * Wraps the cursor in a sequential stream. Closing the stream closes the cursor.
+    *
+    * @return Stream of the remaining documents in this cursor.
+    */
+   default Stream<DataDocument> stream() {
+      return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+   }
+}
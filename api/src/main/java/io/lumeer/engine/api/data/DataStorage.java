@@ -25,6 +25,8 @@ import io.lumeer.engine.api.exception.UnsuccessfulOperationException;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.Set;
 
 /**
@@ -38,6 +40,15 @@ public interface DataStorage extends Serializable {
 
    void setCacheProvider(final CacheProvider cacheProvider);
 
+   /**
+    * Sets the executor to run background tasks of the storage. Storages without background tasks ignore it.
+    *
+    * @param executor
+    *       Executor managed by the container.
+    */
+   default void setExecutor(final Executor executor) {
+   }
+
    void connect(final List<StorageConnection> connections, final String database, final Boolean useSsl);
 
    default void connect(final StorageConnection connection, final String database, final Boolean useSsl) {
@@ -119,6 +130,20 @@ public interface DataStorage extends Serializable {
     */
    String createDocument(final String collectionName, final DataDocument document);
 
+   /**
+    * Creates and inserts new documents to specified collection in a single round trip.
+    *
+    * @param collectionName
+    *       the name of the collection where the documents will be created
+    * @param documents
+    *       the DataDocument objects representing documents to be created
+    * @param ordered
+    *       when true, the documents are inserted in the given order and the insertion stops on the first failure,
+    *       otherwise all documents are attempted regardless of failures of the others
+    * @return the per-item result carrying ids of the newly created documents
+    */
+   BulkWriteResult createDocuments(final String collectionName, final List<DataDocument> documents, final boolean ordered);
+
    /**
     * Creates and inserts an old document to specified collection.
     *
@@ -135,6 +160,21 @@ public interface DataStorage extends Serializable {
     */
    void createOldDocument(final String collectionName, final DataDocument document, String documentId, int version) throws UnsuccessfulOperationException;
 
+   /**
+    * Creates and inserts old documents to specified collection in a single round trip. Every document is identified
+    * by the id and the version it carries, an item fails when the collection already contains this version.
+    *
+    * @param collectionName
+    *       the name of the collection where the documents will be created
+    * @param documents
+    *       the DataDocument objects representing documents to be created, each with its id and version
+    * @param ordered
+    *       when true, the documents are inserted in the given order and the insertion stops on the first failure,
+    *       otherwise all documents are attempted regardless of failures of the others
+    * @return the per-item result of the insertion
+    */
+   BulkWriteResult createOldDocuments(final String collectionName, final List<DataDocument> documents, final boolean ordered);
+
    /**
     * Reads the specified document in given collection by filter.
     *
@@ -171,6 +211,23 @@ public interface DataStorage extends Serializable {
     */
    void updateDocument(final String collectionName, final DataDocument updatedDocument, final DataFilter filter);
 
+   /**
+    * Modifies existing documents in given collection in a single round trip. Each document is updated the same way as
+    * in {@link #updateDocument(String, DataDocument, DataFilter)} using the filter on the same position.
+    *
+    * @param collectionName
+    *       the name of the collection where the existing documents are located
+    * @param updatedDocuments
+    *       the DataDocument objects representing documents with changes to update
+    * @param filters
+    *       the filters to identify documents, must have the same size as updatedDocuments
+    * @param ordered
+    *       when true, the updates are applied in the given order and stop on the first failure,
+    *       otherwise all updates are attempted regardless of failures of the others
+    * @return the per-item result with the number of matched and modified documents
+    */
+   BulkWriteResult updateDocuments(final String collectionName, final List<DataDocument> updatedDocuments, final List<DataFilter> filters, final boolean ordered);
+
    /**
     * Replace an existing document in given collection by filter.
     *
@@ -183,6 +240,20 @@ public interface DataStorage extends Serializable {
     */
    void replaceDocument(final String collectionName, final DataDocument replaceDocument, final DataFilter filter);
 
+   /**
+    * Atomically replaces the first document matching the filter the same way as {@link #replaceDocument(String, DataDocument, DataFilter)}
+    * and returns the replaced document.
+    *
+    * @param collectionName
+    *       the name of the collection where the given document is located
+    * @param replaceDocument
+    *       the DataDocument object representing a document to replace the existing one
+    * @param filter
+    *       the filter to obtain a document
+    * @return the document before the replacement, null when no document matches the filter
+    */
+   DataDocument replaceAndReturnDocument(final String collectionName, final DataDocument replaceDocument, final DataFilter filter);
+
    /**
     * Drops an existing document in given collection by filter.
     *
@@ -193,6 +264,20 @@ public interface DataStorage extends Serializable {
     */
    void dropDocument(final String collectionName, final DataFilter filter);
 
+   /**
+    * Drops existing documents in given collection in a single round trip. Each filter drops at most one document.
+    *
+    * @param collectionName
+    *       the name of the collection where the documents are located
+    * @param filters
+    *       the filters to identify documents
+    * @param ordered
+    *       when true, the documents are dropped in the given order and the operation stops on the first failure,
+    *       otherwise all drops are attempted regardless of failures of the others
+    * @return the per-item result with the number of deleted documents
+    */
+   BulkWriteResult dropDocuments(final String collectionName, final List<DataFilter> filters, final boolean ordered);
+
    /**
     * Drops many documents based on filter.
     *
@@ -344,6 +429,26 @@ public interface DataStorage extends Serializable {
     */
    List<DataDocument> search(final String collectionName, final DataFilter filter, final DataSort sort, final int skip, final int limit);
 
+   /**
+    * Searches the specified collection for specified documents using filter, sort, skip and limit option.
+    * Unlike {@link #search(String, DataFilter, DataSort, int, int)}, the documents are pulled lazily from the storage.
+    *
+    * @param collectionName
+    *       the name of the collection where the run will be performed
+    * @param filter
+    *       the query predicate. If unspecified, then all documents in the collection will match the predicate.
+    * @param sort
+    *       the sort specification for the ordering of the results. If unspecified, then a sort is equivalent to setting no sort.
+    * @param skip
+    *       the number of documents to skip. A skip of 0 is equivalent to setting no skip.
+    * @param limit
+    *       the maximum number of documents to return. A limit of 0 is equivalent to setting no limit.
+    * @param batchSize
+    *       the number of documents fetched from the storage in one round trip. A batch size of 0 lets the storage decide.
+    * @return the open cursor over the found documents, it must be closed by the caller
+    */
+   DataCursor searchCursor(final String collectionName, final DataFilter filter, final DataSort sort, final int skip, final int limit, final int batchSize);
+
    /**
     * Counts the number of document in the collection optionally meeting the filter criteria.
     *
@@ -364,6 +469,18 @@ public interface DataStorage extends Serializable {
     */
    List<DataDocument> query(final Query query);
 
+   /**
+    * Executes the provided query and returns an open cursor over its results. The query needs to have real database collection names filled in.
+    * When more collections are queried, their results are read one collection after another.
+    *
+    * @param query
+    *       Query to execute.
+    * @param batchSize
+    *       The number of documents fetched from the storage in one round trip. A batch size of 0 lets the storage decide.
+    * @return The open cursor over the results of the query, it must be closed by the caller.
+    */
+   DataCursor queryCursor(final Query query, final int batchSize);
+
    /**
     * Executes series of database operations.
     *
@@ -375,6 +492,19 @@ public interface DataStorage extends Serializable {
     */
    List aggregate(final String collectionName, final DataDocument... stages);
 
+   /**
+    * Executes series of database operations and returns an open cursor over the resulting documents.
+    *
+    * @param collectionName
+    *       Collection on which to execute the operations.
+    * @param batchSize
+    *       The number of documents fetched from the storage in one round trip. A batch size of 0 lets the storage decide.
+    * @param stages
+    *       Operation stages to execute one by one.
+    * @return The open cursor over the resulting documents, it must be closed by the caller.
+    */
+   DataCursor aggregateCursor(final String collectionName, final int batchSize, final DataDocument... stages);
+
    /**
     * Increment attribute value of document by specified amount. If the field does not exist, it creates the field and sets the field to the specified value.
     *
@@ -389,6 +519,71 @@ public interface DataStorage extends Serializable {
     */
    void incrementAttributeValueBy(final String collectionName, final DataFilter filter, final String attributeName, final int incBy);
 
+   /**
+    * Increments values of more attributes of a document at once. If a field does not exist, it creates the field and sets the field to the specified value.
+    *
+    * @param collectionName
+    *       the name of the collection where the given document is located
+    * @param filter
+    *       the filter to obtain a document
+    * @param increments
+    *       the values by which attributes are incremented, keyed by attribute names
+    */
+   void incrementAttributeValuesBy(final String collectionName, final DataFilter filter, final Map<String, Long> increments);
+
+   /**
+    * Atomically modifies a document the same way as {@link #updateDocument(String, DataDocument, DataFilter)} and increments
+    * the value of the given attribute. The document is read and written by a single operation.
+    *
+    * @param collectionName
+    *       the name of the collection where the given document is located
+    * @param updatedDocument
+    *       the DataDocument object representing a document with changes to update, must not contain the incremented attribute
+    * @param filter
+    *       the filter to obtain a document
+    * @param attributeName
+    *       the name of attribute which value is increment
+    * @param incBy
+    *       the value by which attribute is increment
+    * @return the document before the update, null when no document matches the filter
+    */
+   DataDocument updateAndIncrementDocument(final String collectionName, final DataDocument updatedDocument, final DataFilter filter, final String attributeName, final int incBy);
+
+   /**
+    * Atomically applies an update built by the {@link DataStorageDialect} to the first document matching the filter.
+    * Only the affected fields are transferred, regardless of the size of the document.
+    *
+    * @param collectionName
+    *       the name of the collection where the document is located
+    * @param update
+    *       the update operations as built by the dialect
+    * @param filter
+    *       the filter to obtain a document
+    * @return true if and only if a document matched the filter
+    */
+   boolean applyDocumentUpdate(final String collectionName, final DataDocument update, final DataFilter filter);
+
+   /**
+    * Applies an update built by the {@link DataStorageDialect} to at most the given number of documents matching the filter.
+    * Each document is updated atomically, the documents together are not. Limiting the number of documents keeps
+    * a large update from holding the collection for long; the caller repeats it with a filter not matching the updated documents.
+    * The selected documents are updated with the update filter only, so that it alone identifies the array element
+    * a positional update operates on.
+    *
+    * @param collectionName
+    *       the name of the collection where the documents are located
+    * @param update
+    *       the update operations as built by the dialect
+    * @param filter
+    *       the filter to obtain the documents
+    * @param updateFilter
+    *       the filter the selected documents are updated with
+    * @param limit
+    *       the maximum number of documents to update. A limit of 0 is equivalent to setting no limit.
+    * @return the number of documents matching the filter that were updated
+    */
+   long applyDocumentsUpdate(final String collectionName, final DataDocument update, final DataFilter filter, final DataFilter updateFilter, final int limit);
+
    /**
     * Gets the next value of sequence.
     *
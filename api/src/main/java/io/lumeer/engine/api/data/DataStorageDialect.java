@@ -22,6 +22,8 @@ package io.lumeer.engine.api.data;
 import io.lumeer.engine.api.LumeerConst;
 
 import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -33,6 +35,8 @@ public interface DataStorageDialect extends Serializable {
    DataDocument renameAttributeQuery(final String metadataCollection, final String collection, final String oldName, final String newName);
 
    DataDocument addRecentlyUsedDocumentQuery(final String metadataCollection, final String collection, final String id, final int listSize);
+
+   DataDocument addDocumentsMetadataQuery(final String metadataCollection, final String collection, final Map<String, Integer> attributeCountIncrements, final DataDocument newAttributes, final List<String> recentlyUsedIds, final int listSize, final Date lastTimeUsed);
    
    // LinkingFacade
    DataFilter linkingFromTablesColNameFilter(final String collectionName, final String role);
@@ -45,6 +49,26 @@ public interface DataStorageDialect extends Serializable {
 
    DataFilter linkingFromDocumentFilter(final String fromId, final LumeerConst.Linking.LinkDirection linkDirection);
 
+   DataFilter linkingFromDocumentsFilter(final List<String> fromIds, final LumeerConst.Linking.LinkDirection linkDirection);
+
+   DataDocument linkingUpsertQuery(final String linkingCollection, final String fromId, final String toId, final DataDocument attributes);
+
+   // SecurityFacade
+   DataFilter userRightsFilter(final String documentId, final String userEmail, final boolean hasEntry);
+
+   DataFilter sharingFilter(final DataFilter filter, final String currentUserEmail, final String userEmail, final int rights, final boolean hasEntry);
+
+   DataFilter sharingUpdateFilter(final String userEmail, final int rights, final boolean hasEntry);
+
+   DataDocument grantUserRightsUpdate(final String userEmail, final int rights, final boolean newEntry);
+
+   DataDocument revokeUserRightsUpdate(final String userEmail, final int rights);
+
+   DataDocument setUserRightsUpdate(final String userEmail, final int rights, final boolean newEntry);
+
+   // VersionFacade
+   DataDocument dropAttributeUpdate(final String attributeName, final String incrementedAttribute);
+
    DataFilter fieldValueFilter(final String fieldName, final Object value);
 
    DataFilter documentFilter(final String documentFilter);
@@ -53,8 +77,20 @@ public interface DataStorageDialect extends Serializable {
 
    DataFilter documentNestedIdFilterWithVersion(final String documentId, final int version);
 
+   DataFilter documentIdFilterWithVersion(final String documentId, final int version);
+
+   DataFilter documentNestedIdFilterFromVersion(final String documentId, final int version);
+
+   DataFilter documentNestedIdFilterWithVersions(final String documentId, final List<Integer> versions);
+
+   DataFilter documentNestedIdLowerThanFilter(final String documentId);
+
    DataFilter documentIdFilter(final String documentId);
 
+   DataFilter documentIdsFilter(final List<String> documentIds);
+
+   DataFilter missingDerivedFieldFilter(final String sourceFieldName, final String derivedFieldName);
+
    DataFilter multipleFieldsValueFilter(final Map<String, Object> fields);
 
    DataSort documentSort(final String documentSort);
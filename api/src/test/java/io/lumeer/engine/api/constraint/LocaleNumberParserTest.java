@@ -0,0 +1,87 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.api.constraint;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+/**
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class LocaleNumberParserTest {
+
+   private final LocaleNumberParser english = new LocaleNumberParser(Locale.US);
+   private final LocaleNumberParser german = new LocaleNumberParser(Locale.GERMANY);
+
+   @Test
+   public void testEnglishNumbers() {
+      assertThat(english.parse("1234.5", false)).isEqualTo(1234.5);
+      assertThat(english.parse("1,234.5", false)).isEqualTo(1234.5);
+      assertThat(english.parse("0.1", false)).isEqualTo(0.1);
+      assertThat(english.parse("  -12 ", false)).isEqualTo(-12d);
+      assertThat(english.parse("+3", false)).isEqualTo(3d);
+      assertThat(english.parse("1.5E3", false)).isEqualTo(1500d);
+      assertThat(english.parse("25E-1", false)).isEqualTo(2.5);
+      assertThat(english.parse("1 000", false)).isEqualTo(1000d);
+   }
+
+   @Test
+   public void testGermanNumbers() {
+      assertThat(german.parse("1,5", false)).isEqualTo(1.5);
+      assertThat(german.parse("1.234,5", false)).isEqualTo(1234.5);
+      assertThat(german.parse("1 234,5", false)).isEqualTo(1234.5);
+      assertThat(german.parse("-0,25", false)).isEqualTo(-0.25);
+   }
+
+   @Test
+   public void testIntegers() {
+      assertThat(english.parse("1,000", true)).isEqualTo(1000d);
+      assertThat(german.parse("1.000", true)).isEqualTo(1000d);
+      assertThat(english.parse("1.5", true)).isNaN();
+      assertThat(german.parse("1,5", true)).isNaN();
+      assertThat(english.parse("1E3", true)).isNaN();
+   }
+
+   @Test
+   public void testRejectedValues() {
+      assertThat(english.parse(null, false)).isNaN();
+      assertThat(english.parse("", false)).isNaN();
+      assertThat(english.parse("   ", false)).isNaN();
+      assertThat(english.parse("-", false)).isNaN();
+      assertThat(english.parse("12abc", false)).isNaN();
+      assertThat(english.parse("1.2.3", false)).isNaN();
+      assertThat(english.parse("1E", false)).isNaN();
+      assertThat(english.parse("1.234,5", false)).isNaN();
+      assertThat(german.parse("1,234.5", false)).isNaN();
+   }
+
+   @Test
+   public void testPrecision() {
+      final String large = "123456789012345678901234567890";
+
+      assertThat(english.parse(large, false)).isEqualTo(Double.parseDouble(large));
+      assertThat(english.parse("0.000000000000000000001", false)).isEqualTo(1e-21);
+      assertThat(english.parse("1E400", false)).isEqualTo(Double.POSITIVE_INFINITY);
+      assertThat(english.parse("1E-400", false)).isEqualTo(0d);
+   }
+}
@@ -0,0 +1,64 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.benchmarks;
+
+import java.lang.reflect.Field;
+
+/**
+ * Wires beans together without a CDI container.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public final class Beans {
+
+   private Beans() {
+   }
+
+   /**
+    * Sets the value of the given field declared by the bean class or any of its superclasses.
+    *
+    * @param bean
+    *       The bean to inject the value to.
+    * @param fieldName
+    *       Name of the field.
+    * @param value
+    *       The value to inject.
+    * @param <T>
+    *       Type of the bean.
+    * @return The bean for fluent wiring.
+    */
+   public static <T> T inject(final T bean, final String fieldName, final Object value) {
+      for (Class<?> clazz = bean.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+         try {
+            final Field field = clazz.getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(bean, value);
+
+            return bean;
+         } catch (NoSuchFieldException e) {
+            // try the superclass
+         } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to inject field " + fieldName + " to " + bean.getClass().getName(), e);
+         }
+      }
+
+      throw new IllegalArgumentException("No field " + fieldName + " found in " + bean.getClass().getName());
+   }
+}
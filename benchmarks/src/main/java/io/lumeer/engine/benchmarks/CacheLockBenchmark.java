@@ -0,0 +1,106 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.benchmarks;
+
+import io.lumeer.cache.simple.StripedLocks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Measures cache entry locking by several threads. The striped locks of the caches are compared with the former
+ * lock per key, which creates a lock for every new key and never drops it.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Threads(4)
+@Fork(1)
+public class CacheLockBenchmark {
+
+   /**
+    * Number of distinct keys, a single key means all threads compete for the same lock.
+    */
+   @Param({ "1", "64", "1000000" })
+   private int keys;
+
+   @Param({ "striped", "perKey" })
+   private String locking;
+
+   private String[] keyNames;
+
+   private StripedLocks stripedLocks;
+
+   private Map<String, Lock> perKeyLocks;
+
+   @Setup
+   public void setUp() {
+      keyNames = new String[keys];
+      for (int i = 0; i < keys; i++) {
+         keyNames[i] = "key" + i;
+      }
+
+      stripedLocks = new StripedLocks();
+      perKeyLocks = new ConcurrentHashMap<>();
+   }
+
+   @Benchmark
+   public int lockAndUnlock() {
+      final String key = keyNames[ThreadLocalRandom.current().nextInt(keys)];
+
+      if ("striped".equals(locking)) {
+         stripedLocks.lock(key);
+         try {
+            return key.length();
+         } finally {
+            stripedLocks.unlock(key);
+         }
+      } else {
+         final Lock lock = perKeyLocks.computeIfAbsent(key, k -> new ReentrantLock());
+         lock.lock();
+         try {
+            return key.length();
+         } finally {
+            lock.unlock();
+         }
+      }
+   }
+}
@@ -0,0 +1,92 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.benchmarks;
+
+import io.lumeer.engine.api.constraint.Constraint;
+import io.lumeer.engine.api.constraint.ConstraintManager;
+import io.lumeer.engine.api.constraint.InvalidConstraintException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures validation and fixing of values by compiled constraints.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class ConstraintManagerBenchmark {
+
+   private ConstraintManager numberConstraints;
+
+   private ConstraintManager dateConstraints;
+
+   private ConstraintManager caseConstraints;
+
+   @Setup
+   public void setUp() throws InvalidConstraintException {
+      numberConstraints = new ConstraintManager(Arrays.asList("isNumber", "greaterThan:3", "lessThan:1000000"), Locale.US);
+      dateConstraints = new ConstraintManager(Collections.singletonList("date:yyyy/MM/dd HH:mm:ss"), Locale.US);
+      caseConstraints = new ConstraintManager(Collections.singletonList("case:lower"), Locale.US);
+   }
+
+   @Benchmark
+   public Constraint.ConstraintResult validNumber() {
+      return numberConstraints.isValid("12 345.67");
+   }
+
+   @Benchmark
+   public Constraint.ConstraintResult invalidNumber() {
+      return numberConstraints.isValid("12a");
+   }
+
+   @Benchmark
+   public Constraint.ConstraintResult validDate() {
+      return dateConstraints.isValid("2017/04/12 10:15:30");
+   }
+
+   @Benchmark
+   public Constraint.ConstraintResult invalidDate() {
+      return dateConstraints.isValid("12. 4. 2017");
+   }
+
+   @Benchmark
+   public String fixCase() {
+      return caseConstraints.fix("Alan Turing");
+   }
+}
@@ -0,0 +1,79 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.benchmarks;
+
+import io.lumeer.engine.api.data.DataDocument;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures access to document values by dotted paths.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class DataDocumentBenchmark {
+
+   private DataDocument document;
+
+   @Setup
+   public void setUp() {
+      document = new DataDocument("name", "Alan Turing")
+            .append("address", new DataDocument("city", "Wilmslow")
+                  .append("geo", new DataDocument("lat", 53.32)
+                        .append("position", new DataDocument("precision", 5))));
+   }
+
+   @Benchmark
+   public Object getTopLevel() {
+      return document.getObject("name");
+   }
+
+   @Benchmark
+   public Object getNestedLevel1() {
+      return document.getObject("address.city");
+   }
+
+   @Benchmark
+   public Object getNestedLevel3() {
+      return document.getObject("address.geo.position.precision");
+   }
+
+   @Benchmark
+   public DataDocument getNestedDocument() {
+      return document.getDataDocument("address.geo");
+   }
+}
@@ -0,0 +1,183 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.benchmarks;
+
+import io.lumeer.engine.api.constraint.Constraint;
+import io.lumeer.engine.api.constraint.ConstraintManager;
+import io.lumeer.engine.api.constraint.InvalidConstraintException;
+import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.engine.api.exception.DbException;
+import io.lumeer.engine.controller.CollectionMetadataFacade;
+import io.lumeer.engine.controller.DocumentFacade;
+import io.lumeer.engine.controller.DocumentMetadataFacade;
+import io.lumeer.engine.controller.SecurityFacade;
+import io.lumeer.engine.controller.UserFacade;
+import io.lumeer.engine.controller.VersionFacade;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures {@link DocumentFacade#createDocument(String, DataDocument)} with the collection metadata and the storage
+ * kept in memory, the score is the number of created documents per second.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class DocumentFacadeBenchmark {
+
+   private static final String COLLECTION = "benchmark";
+
+   private InMemoryDataStorage dataStorage;
+
+   private DocumentFacade documentFacade;
+
+   private DataDocument flatDocument;
+
+   private DataDocument nestedDocument;
+
+   @Setup
+   public void setUp() throws InvalidConstraintException {
+      dataStorage = new InMemoryDataStorage();
+      dataStorage.createCollection(COLLECTION);
+
+      final UserFacade userFacade = new BenchmarkUserFacade();
+      final SecurityFacade securityFacade = Beans.inject(new SecurityFacade(), "dataStorage", dataStorage);
+      final VersionFacade versionFacade = Beans.inject(new VersionFacade(), "dataStorage", dataStorage);
+      final DocumentMetadataFacade documentMetadataFacade = Beans.inject(new DocumentMetadataFacade(), "dataStorage", dataStorage);
+
+      documentFacade = new DocumentFacade();
+      Beans.inject(documentFacade, "dataStorage", dataStorage);
+      Beans.inject(documentFacade, "userFacade", userFacade);
+      Beans.inject(documentFacade, "securityFacade", securityFacade);
+      Beans.inject(documentFacade, "versionFacade", versionFacade);
+      Beans.inject(documentFacade, "documentMetadataFacade", documentMetadataFacade);
+      Beans.inject(documentFacade, "collectionMetadataFacade", new BenchmarkCollectionMetadataFacade());
+
+      flatDocument = new DataDocument("name", "Alan Turing")
+            .append("age", "41")
+            .append("email", "aturing@lumeer.io")
+            .append("city", "Wilmslow")
+            .append("score", 4.2);
+
+      nestedDocument = new DataDocument(flatDocument)
+            .append("address", new DataDocument("street", "Adlington Road").append("zip", "SK9 1").append("geo", new DataDocument("lat", 53.32).append("lon", -2.23)))
+            .append("tags", Arrays.asList("math", "crypto", "computing"));
+   }
+
+   /**
+    * Created documents are kept in memory, so they are dropped after each iteration.
+    */
+   @TearDown(Level.Iteration)
+   public void dropDocuments() {
+      dataStorage.dropCollection(COLLECTION);
+      dataStorage.createCollection(COLLECTION);
+   }
+
+   @Benchmark
+   public String createFlatDocument() throws DbException, InvalidConstraintException {
+      return documentFacade.createDocument(COLLECTION, flatDocument);
+   }
+
+   @Benchmark
+   public String createNestedDocument() throws DbException, InvalidConstraintException {
+      return documentFacade.createDocument(COLLECTION, nestedDocument);
+   }
+
+   /**
+    * Reads the document back, the conversion of nested documents is the same as in MongoDB storage.
+    */
+   @Benchmark
+   public DataDocument createAndReadNestedDocument() throws DbException, InvalidConstraintException {
+      return dataStorage.readDocument(COLLECTION, documentFacade.createDocument(COLLECTION, nestedDocument));
+   }
+
+   /**
+    * Current user without any HTTP request.
+    */
+   private static class BenchmarkUserFacade extends UserFacade {
+
+      @Override
+      public String getUserEmail() {
+         return "aturing@lumeer.io";
+      }
+   }
+
+   /**
+    * Keeps attribute counters in memory and checks the values with the compiled constraints.
+    */
+   private static class BenchmarkCollectionMetadataFacade extends CollectionMetadataFacade {
+
+      private final Map<String, LongAdder> attributeCounts = new ConcurrentHashMap<>();
+
+      private final Map<String, ConstraintManager> constraints = new ConcurrentHashMap<>();
+
+      private BenchmarkCollectionMetadataFacade() throws InvalidConstraintException {
+         constraints.put("age", new ConstraintManager(Arrays.asList("isInteger", "lessThan:150"), Locale.US));
+         constraints.put("email", new ConstraintManager(Collections.singletonList("case:lower"), Locale.US));
+      }
+
+      @Override
+      public DataDocument checkAndConvertAttributesValues(final String collectionName, final DataDocument document) {
+         constraints.forEach((attribute, constraintManager) -> {
+            final Object value = document.get(attribute);
+            if (value != null && constraintManager.isValid(value.toString()) != Constraint.ConstraintResult.VALID) {
+               document.put(attribute, constraintManager.fix(value.toString()));
+            }
+         });
+
+         return document;
+      }
+
+      @Override
+      public void addOrIncrementAttribute(final String collectionName, final String attributeName) {
+         attributeCounts.computeIfAbsent(collectionName + "." + attributeName, key -> new LongAdder()).increment();
+      }
+
+      @Override
+      public void addRecentlyUsedDocumentId(final String collectionName, final String id) {
+      }
+
+      @Override
+      public void setLastTimeUsedNow(final String collectionName) {
+      }
+   }
+}
@@ -0,0 +1,360 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.benchmarks;
+
+import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.cache.CacheProvider;
+import io.lumeer.engine.api.data.BulkWriteResult;
+import io.lumeer.engine.api.data.DataCursor;
+import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.engine.api.data.DataFilter;
+import io.lumeer.engine.api.data.DataSort;
+import io.lumeer.engine.api.data.DataStorage;
+import io.lumeer.engine.api.data.DataStorageStats;
+import io.lumeer.engine.api.data.Query;
+import io.lumeer.engine.api.data.StorageConnection;
+import io.lumeer.mongodb.MongoUtils;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process stand-in of {@link DataStorage} for benchmarks. Documents are converted the same way as in MongoDB storage
+ * and kept in memory, so the benchmarks measure the engine and not the database. Only the operations needed
+ * by the benchmarks are supported.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class InMemoryDataStorage implements DataStorage {
+
+   private final Map<String, Map<String, Document>> collections = new ConcurrentHashMap<>();
+
+   @Override
+   public void setCacheProvider(final CacheProvider cacheProvider) {
+   }
+
+   @Override
+   public void connect(final List<StorageConnection> connections, final String database, final Boolean useSsl) {
+   }
+
+   @Override
+   public void disconnect() {
+      collections.clear();
+   }
+
+   @Override
+   public List<String> getAllCollections() {
+      return new ArrayList<>(collections.keySet());
+   }
+
+   @Override
+   public void createCollection(final String collectionName) {
+      collections.putIfAbsent(collectionName, new ConcurrentHashMap<>());
+   }
+
+   @Override
+   public void dropCollection(final String collectionName) {
+      collections.remove(collectionName);
+   }
+
+   @Override
+   public void renameCollection(final String oldCollectionName, final String newCollectionName) {
+      final Map<String, Document> collection = collections.remove(oldCollectionName);
+      if (collection != null) {
+         collections.put(newCollectionName, collection);
+      }
+   }
+
+   @Override
+   public boolean hasCollection(final String collectionName) {
+      return collections.containsKey(collectionName);
+   }
+
+   @Override
+   public long documentCount(final String collectionName) {
+      final Map<String, Document> collection = collections.get(collectionName);
+      return collection == null ? 0 : collection.size();
+   }
+
+   @Override
+   public boolean collectionHasDocument(final String collectionName, final DataFilter filter) {
+      throw unsupported();
+   }
+
+   @Override
+   public String createDocument(final String collectionName, final DataDocument document) {
+      final Document doc = MongoUtils.dataDocumentToDocument(document);
+      final ObjectId id = new ObjectId();
+      doc.put(LumeerConst.Document.ID, id);
+
+      collections.computeIfAbsent(collectionName, name -> new ConcurrentHashMap<>()).put(id.toString(), doc);
+
+      return id.toString();
+   }
+
+   @Override
+   public BulkWriteResult createDocuments(final String collectionName, final List<DataDocument> documents, final boolean ordered) {
+      final BulkWriteResult result = new BulkWriteResult(documents.size());
+
+      for (int i = 0; i < documents.size(); i++) {
+         result.setId(i, createDocument(collectionName, documents.get(i)));
+      }
+      result.setInsertedCount(documents.size());
+
+      return result;
+   }
+
+   @Override
+   public void createOldDocument(final String collectionName, final DataDocument document, final String documentId, final int version) {
+      throw unsupported();
+   }
+
+   @Override
+   public BulkWriteResult createOldDocuments(final String collectionName, final List<DataDocument> documents, final boolean ordered) {
+      throw unsupported();
+   }
+
+   /**
+    * Reads the document with the given id, this replaces the filters that cannot be evaluated in memory.
+    *
+    * @param collectionName
+    *       Name of the collection.
+    * @param documentId
+    *       Id of the document.
+    * @return The document or null when there is no such document.
+    */
+   public DataDocument readDocument(final String collectionName, final String documentId) {
+      final Map<String, Document> collection = collections.get(collectionName);
+      final Document doc = collection == null ? null : collection.get(documentId);
+      if (doc == null) {
+         return null;
+      }
+
+      final DataDocument result = new DataDocument(doc);
+      result.replace(LumeerConst.Document.ID, documentId);
+      MongoUtils.convertNestedAndListDocuments(result);
+
+      return result;
+   }
+
+   @Override
+   public DataDocument readDocumentIncludeAttrs(final String collectionName, final DataFilter filter, final List<String> attributes) {
+      throw unsupported();
+   }
+
+   @Override
+   public DataDocument readDocument(final String collectionName, final DataFilter filter) {
+      throw unsupported();
+   }
+
+   @Override
+   public void updateDocument(final String collectionName, final DataDocument updatedDocument, final DataFilter filter) {
+      throw unsupported();
+   }
+
+   @Override
+   public BulkWriteResult updateDocuments(final String collectionName, final List<DataDocument> updatedDocuments, final List<DataFilter> filters, final boolean ordered) {
+      throw unsupported();
+   }
+
+   @Override
+   public void replaceDocument(final String collectionName, final DataDocument replaceDocument, final DataFilter filter) {
+      throw unsupported();
+   }
+
+   @Override
+   public DataDocument replaceAndReturnDocument(final String collectionName, final DataDocument replaceDocument, final DataFilter filter) {
+      throw unsupported();
+   }
+
+   @Override
+   public void dropDocument(final String collectionName, final DataFilter filter) {
+      throw unsupported();
+   }
+
+   @Override
+   public BulkWriteResult dropDocuments(final String collectionName, final List<DataFilter> filters, final boolean ordered) {
+      throw unsupported();
+   }
+
+   @Override
+   public void dropManyDocuments(final String collectionName, final DataFilter filter) {
+      throw unsupported();
+   }
+
+   @Override
+   public void renameAttribute(final String collectionName, final String oldName, final String newName) {
+      throw unsupported();
+   }
+
+   @Override
+   public void dropAttribute(final String collectionName, final DataFilter filter, final String attributeName) {
+      throw unsupported();
+   }
+
+   @Override
+   public <T> void addItemToArray(final String collectionName, final DataFilter filter, final String attributeName, final T item) {
+      throw unsupported();
+   }
+
+   @Override
+   public <T> void addItemsToArray(final String collectionName, final DataFilter filter, final String attributeName, final List<T> items) {
+      throw unsupported();
+   }
+
+   @Override
+   public <T> void removeItemFromArray(final String collectionName, final DataFilter filter, final String attributeName, final T item) {
+      throw unsupported();
+   }
+
+   @Override
+   public <T> void removeItemsFromArray(final String collectionName, final DataFilter filter, final String attributeName, final List<T> items) {
+      throw unsupported();
+   }
+
+   @Override
+   public Set<String> getAttributeValues(final String collectionName, final String attributeName) {
+      throw unsupported();
+   }
+
+   @Override
+   public List<DataDocument> run(final String command) {
+      throw unsupported();
+   }
+
+   @Override
+   public List<DataDocument> run(final DataDocument command) {
+      throw unsupported();
+   }
+
+   @Override
+   public List<DataDocument> searchIncludeAttrs(final String collectionName, final DataFilter filter, final List<String> attributes) {
+      throw unsupported();
+   }
+
+   @Override
+   public List<DataDocument> search(final String collectionName, final DataFilter filter, final DataSort sort, final int skip, final int limit) {
+      throw unsupported();
+   }
+
+   @Override
+   public DataCursor searchCursor(final String collectionName, final DataFilter filter, final DataSort sort, final int skip, final int limit, final int batchSize) {
+      throw unsupported();
+   }
+
+   @Override
+   public long count(final String collectionName, final DataFilter filter) {
+      throw unsupported();
+   }
+
+   @Override
+   public List<DataDocument> query(final Query query) {
+      throw unsupported();
+   }
+
+   @Override
+   public DataCursor queryCursor(final Query query, final int batchSize) {
+      throw unsupported();
+   }
+
+   @Override
+   public List aggregate(final String collectionName, final DataDocument... stages) {
+      throw unsupported();
+   }
+
+   @Override
+   public DataCursor aggregateCursor(final String collectionName, final int batchSize, final DataDocument... stages) {
+      throw unsupported();
+   }
+
+   @Override
+   public void incrementAttributeValueBy(final String collectionName, final DataFilter filter, final String attributeName, final int incBy) {
+      throw unsupported();
+   }
+
+   @Override
+   public void incrementAttributeValuesBy(final String collectionName, final DataFilter filter, final Map<String, Long> increments) {
+      throw unsupported();
+   }
+
+   @Override
+   public DataDocument updateAndIncrementDocument(final String collectionName, final DataDocument updatedDocument, final DataFilter filter, final String attributeName, final int incBy) {
+      throw unsupported();
+   }
+
+   @Override
+   public boolean applyDocumentUpdate(final String collectionName, final DataDocument update, final DataFilter filter) {
+      throw unsupported();
+   }
+
+   @Override
+   public long applyDocumentsUpdate(final String collectionName, final DataDocument update, final DataFilter filter, final DataFilter updateFilter, final int limit) {
+      throw unsupported();
+   }
+
+   @Override
+   public int getNextSequenceNo(final String collectionName, final String indexAttribute, final String index) {
+      throw unsupported();
+   }
+
+   @Override
+   public void resetSequence(final String collectionName, final String indexAttribute, final String index) {
+      throw unsupported();
+   }
+
+   @Override
+   public void createIndex(final String collectionName, final DataDocument indexAttributes, final boolean unique) {
+      throw unsupported();
+   }
+
+   @Override
+   public List<DataDocument> listIndexes(final String collectionName) {
+      throw unsupported();
+   }
+
+   @Override
+   public void dropIndex(final String collectionName, final String indexName) {
+      throw unsupported();
+   }
+
+   @Override
+   public void invalidateCaches() {
+   }
+
+   @Override
+   public DataStorageStats getDbStats() {
+      throw unsupported();
+   }
+
+   @Override
+   public DataStorageStats getCollectionStats(final String collectionName) {
+      throw unsupported();
+   }
+
+   private static UnsupportedOperationException unsupported() {
+      return new UnsupportedOperationException("Not supported by the in-memory benchmark storage.");
+   }
+}
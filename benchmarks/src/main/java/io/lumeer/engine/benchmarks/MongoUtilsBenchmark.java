@@ -0,0 +1,117 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.benchmarks;
+
+import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.mongodb.MongoUtils;
+
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures conversion of documents read from MongoDB, the conversion modifies the document, so every invocation
+ * converts a fresh copy of the read document. {@link #copyOnly()} is the baseline of the copying.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class MongoUtilsBenchmark {
+
+   /**
+    * Number of nested documents in the list attribute.
+    */
+   @Param({ "1", "10", "100" })
+   private int listSize;
+
+   private Document document;
+
+   @Setup
+   public void setUp() {
+      final List<Document> items = new ArrayList<>();
+      for (int i = 0; i < listSize; i++) {
+         items.add(new Document("index", i).append("value", "item" + i).append("detail", new Document("weight", i * 0.5)));
+      }
+
+      document = new Document("name", "Alan Turing")
+            .append("address", new Document("city", "Wilmslow").append("geo", new Document("lat", 53.32).append("lon", -2.23)))
+            .append("items", items);
+   }
+
+   @Benchmark
+   public DataDocument copyOnly() {
+      return copy(document);
+   }
+
+   @Benchmark
+   public DataDocument convertNestedAndListDocuments() {
+      final DataDocument dataDocument = copy(document);
+      MongoUtils.convertNestedAndListDocuments(dataDocument);
+
+      return dataDocument;
+   }
+
+   @Benchmark
+   public Document dataDocumentToDocument() {
+      final DataDocument dataDocument = copy(document);
+      MongoUtils.convertNestedAndListDocuments(dataDocument);
+
+      return MongoUtils.dataDocumentToDocument(dataDocument);
+   }
+
+   // the same document as the driver would return, nested documents are fresh instances
+   private static DataDocument copy(final Document document) {
+      final DataDocument copy = new DataDocument();
+      document.forEach((key, value) -> copy.put(key, copyValue(value)));
+
+      return copy;
+   }
+
+   private static Object copyValue(final Object value) {
+      if (value instanceof Document) {
+         return new Document(copy((Document) value));
+      } else if (value instanceof List) {
+         final List<Object> list = new ArrayList<>(((List<?>) value).size());
+         ((List<?>) value).forEach(o -> list.add(copyValue(o)));
+
+         return list;
+      }
+
+      return value;
+   }
+}
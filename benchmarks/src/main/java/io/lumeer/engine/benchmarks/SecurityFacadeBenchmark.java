@@ -0,0 +1,87 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.benchmarks;
+
+import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.engine.controller.SecurityFacade;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the access rights check of a document with the given number of users in its access list,
+ * the checked user is the last one in the list.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class SecurityFacadeBenchmark {
+
+   @Param({ "1", "10", "100" })
+   private int users;
+
+   private SecurityFacade securityFacade;
+
+   private DataDocument document;
+
+   private String lastUser;
+
+   @Setup
+   public void setUp() {
+      securityFacade = new SecurityFacade();
+
+      final List<DataDocument> rights = new ArrayList<>();
+      for (int i = 0; i < users; i++) {
+         lastUser = "user" + i + "@lumeer.io";
+         rights.add(new DataDocument(LumeerConst.Security.USER_ID, lastUser).append(LumeerConst.Security.RULE, LumeerConst.Security.READ));
+      }
+
+      document = new DataDocument("name", "Alan Turing").append(LumeerConst.Document.USER_RIGHTS, rights);
+   }
+
+   @Benchmark
+   public boolean checkForRead() {
+      return securityFacade.checkForRead(document, lastUser);
+   }
+
+   @Benchmark
+   public boolean checkForReadUnknownUser() {
+      return securityFacade.checkForRead(document, "nobody@lumeer.io");
+   }
+}
@@ -0,0 +1,91 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.mongodb;
+
+import io.lumeer.engine.api.data.DataCursor;
+import io.lumeer.engine.api.data.DataDocument;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import org.bson.Document;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * {@link DataCursor} on top of MongoDB driver cursors. When more sources are given, they are opened one after another
+ * and each of them is closed as soon as it is exhausted.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class MongoDbDataCursor implements DataCursor {
+
+   private final Iterator<? extends MongoIterable<Document>> sources;
+   private final Function<Document, DataDocument> converter;
+   private MongoCursor<Document> current;
+   private boolean closed = false;
+
+   MongoDbDataCursor(final MongoIterable<Document> source, final Function<Document, DataDocument> converter) {
+      this(Collections.singletonList(source), converter);
+   }
+
+   MongoDbDataCursor(final Iterable<? extends MongoIterable<Document>> sources, final Function<Document, DataDocument> converter) {
+      this.sources = sources.iterator();
+      this.converter = converter;
+   }
+
+   @Override
+   public boolean hasNext() {
+      if (closed) {
+         return false;
+      }
+
+      while ((current == null || !current.hasNext()) && sources.hasNext()) {
+         closeCurrent();
+         current = sources.next().iterator();
+      }
+
+      return current != null && current.hasNext();
+   }
+
+   @Override
+   public DataDocument next() {
+      if (!hasNext()) {
+         throw new NoSuchElementException();
+      }
+
+      return converter.apply(current.next());
+   }
+
+   @Override
+   public void close() {
+      closed = true;
+      closeCurrent();
+   }
+
+   private void closeCurrent() {
+      if (current != null) {
+         current.close();
+         current = null;
+      }
+   }
+}
@@ -20,14 +20,17 @@
 package io.lumeer.mongodb;
 
 import static com.mongodb.client.model.Aggregates.*;
+import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
 import static com.mongodb.client.model.Filters.exists;
+import static com.mongodb.client.model.Filters.in;
 import static com.mongodb.client.model.Sorts.descending;
 import static com.mongodb.client.model.Updates.*;
 
 import io.lumeer.engine.api.LumeerConst;
-import io.lumeer.engine.api.cache.Cache;
 import io.lumeer.engine.api.cache.CacheProvider;
+import io.lumeer.engine.api.data.BulkWriteResult;
+import io.lumeer.engine.api.data.DataCursor;
 import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.engine.api.data.DataFilter;
 import io.lumeer.engine.api.data.DataSort;
@@ -39,20 +42,28 @@ import io.lumeer.engine.api.exception.UnsuccessfulOperationException;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoCredential;
 import com.mongodb.MongoNamespace;
 import com.mongodb.MongoWriteException;
 import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.AggregateIterable;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.FindOneAndReplaceOptions;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.InsertManyOptions;
 import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import org.bson.BsonDocument;
 import org.bson.Document;
 import org.bson.conversions.Bson;
@@ -64,7 +75,15 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 /**
  * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
@@ -75,24 +94,112 @@ public class MongoDbStorage implements DataStorage {
 
    private static final String CURSOR_KEY = "cursor";
    private static final String FIRST_BATCH_KEY = "firstBatch";
-   private static final String COLLECTION_CACHE = "collections";
+   private static final long COLLECTIONS_REFRESH_INTERVAL = 5000L;
 
    private MongoDatabase database;
    private MongoClient mongoClient = null;
-   private long cacheLastUpdated = 0L;
-   private Cache<List<String>> collectionsCache;
+
+   /**
+    * Immutable snapshot of the collection names, replaced as a whole on every change so that readers never need a lock.
+    * It is {@code null} until the names are first listed from the database.
+    */
+   private final AtomicReference<CollectionNames> collectionNames = new AtomicReference<>();
+   private final AtomicLong collectionChanges = new AtomicLong();
+   private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+   /**
+    * Runs the background refresh of collection names, the refresh runs in the calling thread when not set.
+    */
+   private Executor executor = Runnable::run;
+
+   /**
+    * Collection names as listed from the database at a given time, possibly updated by local changes since.
+    */
+   private static final class CollectionNames {
+
+      private final Set<String> names;
+      private final long listed;
+
+      private CollectionNames(final Set<String> names, final long listed) {
+         this.names = Collections.unmodifiableSet(names);
+         this.listed = listed;
+      }
+
+      private CollectionNames with(final String name) {
+         final Set<String> newNames = new HashSet<>(names);
+         newNames.add(name);
+         return new CollectionNames(newNames, listed);
+      }
+
+      private CollectionNames without(final String name) {
+         final Set<String> newNames = new HashSet<>(names);
+         newNames.remove(name);
+         return new CollectionNames(newNames, listed);
+      }
+   }
 
    @Override
    public void setCacheProvider(final CacheProvider cacheProvider) {
-      this.collectionsCache = cacheProvider.getCache(COLLECTION_CACHE);
+      // collection names are kept in a local lock-free snapshot, see getCollectionNames()
+   }
+
+   @Override
+   public void setExecutor(final Executor executor) {
+      this.executor = executor;
+   }
+
+   private CollectionNames listCollectionNames() {
+      return new CollectionNames(database.listCollectionNames().into(new HashSet<>()), System.currentTimeMillis());
    }
 
-   private List<String> getCollectionCache() {
-      return collectionsCache.get();
+   /**
+    * Gets the current snapshot of collection names. The first call lists them from the database, a stale snapshot
+    * is returned as is and refreshed in the background.
+    *
+    * @return The current snapshot of collection names.
+    */
+   private CollectionNames getCollectionNames() {
+      final CollectionNames current = collectionNames.get();
+
+      if (current == null) {
+         CollectionNames listed;
+         long changes;
+         do { // list again when a collection was created or dropped while listing
+            changes = collectionChanges.get();
+            listed = listCollectionNames();
+         } while (changes != collectionChanges.get());
+
+         return collectionNames.compareAndSet(null, listed) ? listed : getCollectionNames();
+      }
+
+      if (current.listed + COLLECTIONS_REFRESH_INTERVAL < System.currentTimeMillis() && refreshing.compareAndSet(false, true)) {
+         try {
+            executor.execute(() -> {
+               try {
+                  // any local change made meanwhile replaces the snapshot and wins over this listing
+                  collectionNames.compareAndSet(current, listCollectionNames());
+               } finally {
+                  refreshing.set(false);
+               }
+            });
+         } catch (RejectedExecutionException e) {
+            refreshing.set(false);
+         }
+      }
+
+      return current;
    }
 
-   private void setCollectionCache(final List<String> collections) {
-      collectionsCache.set(collections);
+   private void updateCollectionNames(final UnaryOperator<CollectionNames> update) {
+      collectionChanges.incrementAndGet();
+
+      CollectionNames current;
+      do {
+         current = collectionNames.get();
+         if (current == null) {
+            return; // will be listed from the database on the next read
+         }
+      } while (!collectionNames.compareAndSet(current, update.apply(current)));
    }
 
    @Override
@@ -125,95 +232,33 @@ public class MongoDbStorage implements DataStorage {
    }
 
    @Override
-   @SuppressWarnings("unchecked")
    public List<String> getAllCollections() {
-      if (collectionsCache != null) {
-         collectionsCache.lock(COLLECTION_CACHE);
-         try {
-            if (getCollectionCache() == null || cacheLastUpdated + 5000 < System.currentTimeMillis()) {
-               setCollectionCache(database.listCollectionNames().into(new ArrayList<>()));
-               cacheLastUpdated = System.currentTimeMillis();
-            }
-         } finally {
-            collectionsCache.unlock(COLLECTION_CACHE);
-         }
-
-         return getCollectionCache();
-      } else {
-         return database.listCollectionNames().into(new ArrayList<>());
-      }
+      return new ArrayList<>(getCollectionNames().names);
    }
 
    @Override
    public void createCollection(final String collectionName) {
-      if (collectionsCache != null) {
-         collectionsCache.lock(COLLECTION_CACHE);
-         try {
-            final List<String> collections = getCollectionCache();
-
-            if (collections != null) {
-               collections.add(collectionName);
-            } else {
-               setCollectionCache(new ArrayList<>(Collections.singletonList(collectionName)));
-            }
-
-            database.createCollection(collectionName);
-         } finally {
-            collectionsCache.unlock(COLLECTION_CACHE);
-         }
-      } else {
-         database.createCollection(collectionName);
-      }
+      database.createCollection(collectionName);
+      updateCollectionNames(names -> names.with(collectionName));
    }
 
    @Override
    public void dropCollection(final String collectionName) {
-      if (collectionsCache != null) {
-         collectionsCache.lock(COLLECTION_CACHE);
-         try {
-            final List<String> collections = getCollectionCache();
-
-            if (collections != null) {
-               collections.remove(collectionName);
-            }
-
-            database.getCollection(collectionName).drop();
-         } finally {
-            collectionsCache.unlock(COLLECTION_CACHE);
-         }
-      } else {
-         database.getCollection(collectionName).drop();
-      }
+      database.getCollection(collectionName).drop();
+      updateCollectionNames(names -> names.without(collectionName));
    }
 
    @Override
    public void renameCollection(final String oldCollectionName, final String newCollectionName) {
-      if (collectionsCache != null) {
-         collectionsCache.lock(COLLECTION_CACHE);
-         try {
-            final List<String> collections = getCollectionCache();
-
-            if (collections != null) {
-               collections.remove(oldCollectionName);
-               collections.add(newCollectionName);
-            }
-
-            if (hasCollection(oldCollectionName)) {
-               database.getCollection(oldCollectionName).renameCollection(new MongoNamespace(database.getName(), newCollectionName));
-            }
-         } finally {
-            collectionsCache.unlock(COLLECTION_CACHE);
-         }
-      } else {
-         if (hasCollection(oldCollectionName)) {
-            database.getCollection(oldCollectionName).renameCollection(new MongoNamespace(database.getName(), newCollectionName));
-         }
+      if (hasCollection(oldCollectionName)) {
+         database.getCollection(oldCollectionName).renameCollection(new MongoNamespace(database.getName(), newCollectionName));
       }
+      updateCollectionNames(names -> names.without(oldCollectionName).with(newCollectionName));
    }
 
    @Override
    public boolean hasCollection(final String collectionName) {
-      return getAllCollections().contains(collectionName);
+      return getCollectionNames().names.contains(collectionName);
    }
 
    @Override
@@ -225,26 +270,52 @@ public class MongoDbStorage implements DataStorage {
    public String createDocument(final String collectionName, final DataDocument dataDocument) {
       Document doc = new Document(dataDocument);
 
-      if (collectionsCache != null) {
-         collectionsCache.lock(COLLECTION_CACHE);
-         try {
-            final List<String> collections = getCollectionCache();
+      insertIntoCollection(collectionName, () -> database.getCollection(collectionName).insertOne(doc));
+
+      return doc.containsKey(LumeerConst.Document.ID) ? doc.getObjectId(LumeerConst.Document.ID).toString() : null;
+   }
+
+   @Override
+   public BulkWriteResult createDocuments(final String collectionName, final List<DataDocument> dataDocuments, final boolean ordered) {
+      final BulkWriteResult result = new BulkWriteResult(dataDocuments.size());
+      if (dataDocuments.isEmpty()) {
+         return result;
+      }
 
-            if (collections != null) {
-               collections.add(collectionName);
-            } else {
-               setCollectionCache(new ArrayList<>(Collections.singletonList(collectionName)));
-            }
+      final List<Document> docs = new ArrayList<>(dataDocuments.size());
+      dataDocuments.forEach(d -> docs.add(new Document(d)));
 
-            database.getCollection(collectionName).insertOne(doc);
-         } finally {
-            collectionsCache.unlock(COLLECTION_CACHE);
+      try {
+         insertIntoCollection(collectionName, () -> database.getCollection(collectionName).insertMany(docs, new InsertManyOptions().ordered(ordered)));
+      } catch (MongoBulkWriteException e) {
+         if (e.getWriteResult().getInsertedCount() > 0) {
+            addCollectionName(collectionName);
          }
-      } else {
-         database.getCollection(collectionName).insertOne(doc);
+         setBulkWriteErrors(result, e, ordered);
       }
 
-      return doc.containsKey(LumeerConst.Document.ID) ? doc.getObjectId(LumeerConst.Document.ID).toString() : null;
+      for (int i = 0; i < docs.size(); i++) {
+         final Object id = docs.get(i).get(LumeerConst.Document.ID);
+         if (result.isSuccessful(i) && id instanceof ObjectId) {
+            result.setId(i, id.toString());
+         }
+      }
+      result.setInsertedCount(docs.size() - result.getErrors().size());
+
+      return result;
+   }
+
+   private void insertIntoCollection(final String collectionName, final Runnable insert) {
+      insert.run();
+      addCollectionName(collectionName);
+   }
+
+   // the insert creates the collection implicitly, the snapshot is only copied when the name is new
+   private void addCollectionName(final String collectionName) {
+      final CollectionNames current = collectionNames.get();
+      if (current != null && !current.names.contains(collectionName)) {
+         updateCollectionNames(names -> names.with(collectionName));
+      }
    }
 
    @Override
@@ -262,6 +333,33 @@ public class MongoDbStorage implements DataStorage {
       }
    }
 
+   @Override
+   public BulkWriteResult createOldDocuments(final String collectionName, final List<DataDocument> dataDocuments, final boolean ordered) {
+      final BulkWriteResult result = new BulkWriteResult(dataDocuments.size());
+      if (dataDocuments.isEmpty()) {
+         return result;
+      }
+
+      final List<Document> docs = new ArrayList<>(dataDocuments.size());
+      dataDocuments.forEach(d -> {
+         final Document doc = new Document(d);
+         doc.put(LumeerConst.Document.ID, new BasicDBObject(LumeerConst.Document.ID, new ObjectId(d.getId())).append(LumeerConst.Document.METADATA_VERSION_KEY, d.getInteger(LumeerConst.Document.METADATA_VERSION_KEY)));
+         docs.add(doc);
+      });
+
+      try {
+         insertIntoCollection(collectionName, () -> database.getCollection(collectionName).insertMany(docs, new InsertManyOptions().ordered(ordered)));
+      } catch (MongoBulkWriteException e) {
+         if (e.getWriteResult().getInsertedCount() > 0) {
+            addCollectionName(collectionName);
+         }
+         setBulkWriteErrors(result, e, ordered);
+      }
+      result.setInsertedCount(docs.size() - result.getErrors().size());
+
+      return result;
+   }
+
    @Override
    public DataDocument readDocumentIncludeAttrs(final String collectionName, final DataFilter filter, final List<String> attributes) {
       Document document = database.getCollection(collectionName).find(filter.<Bson>get()).projection(Projections.include(attributes)).limit(1).first();
@@ -285,6 +383,22 @@ public class MongoDbStorage implements DataStorage {
       database.getCollection(collectionName).updateOne(filter.<Bson>get(), updateBson);
    }
 
+   @Override
+   public BulkWriteResult updateDocuments(final String collectionName, final List<DataDocument> updatedDocuments, final List<DataFilter> filters, final boolean ordered) {
+      if (updatedDocuments.size() != filters.size()) {
+         throw new IllegalArgumentException("The number of updated documents and filters differ.");
+      }
+
+      final List<WriteModel<Document>> updates = new ArrayList<>(updatedDocuments.size());
+      for (int i = 0; i < updatedDocuments.size(); i++) {
+         DataDocument toUpdate = new DataDocument(updatedDocuments.get(i));
+         toUpdate.remove(LumeerConst.Document.ID);
+         updates.add(new UpdateOneModel<>(filters.get(i).<Bson>get(), new BasicDBObject("$set", new BasicDBObject(toUpdate))));
+      }
+
+      return bulkWrite(collectionName, updates, ordered);
+   }
+
    @Override
    public void replaceDocument(final String collectionName, final DataDocument replaceDocument, final DataFilter filter) {
       DataDocument toReplace = new DataDocument(replaceDocument);
@@ -295,11 +409,73 @@ public class MongoDbStorage implements DataStorage {
       database.getCollection(collectionName).replaceOne(filter.<Bson>get(), replaceDoc);
    }
 
+   @Override
+   public DataDocument replaceAndReturnDocument(final String collectionName, final DataDocument replaceDocument, final DataFilter filter) {
+      DataDocument toReplace = new DataDocument(replaceDocument);
+      if (toReplace.containsKey(LumeerConst.Document.ID)) {
+         toReplace.remove(LumeerConst.Document.ID);
+      }
+
+      final FindOneAndReplaceOptions options = new FindOneAndReplaceOptions();
+      options.returnDocument(ReturnDocument.BEFORE);
+      final Document document = database.getCollection(collectionName).findOneAndReplace(filter.<Bson>get(), new Document(toReplace), options);
+
+      return document != null ? convertDocument(document) : null;
+   }
+
    @Override
    public void dropDocument(final String collectionName, final DataFilter filter) {
       database.getCollection(collectionName).deleteOne(filter.<Bson>get());
    }
 
+   @Override
+   public BulkWriteResult dropDocuments(final String collectionName, final List<DataFilter> filters, final boolean ordered) {
+      final List<WriteModel<Document>> deletes = new ArrayList<>(filters.size());
+      filters.forEach(filter -> deletes.add(new DeleteOneModel<>(filter.<Bson>get())));
+
+      return bulkWrite(collectionName, deletes, ordered);
+   }
+
+   private BulkWriteResult bulkWrite(final String collectionName, final List<WriteModel<Document>> requests, final boolean ordered) {
+      final BulkWriteResult result = new BulkWriteResult(requests.size());
+      if (requests.isEmpty()) {
+         return result;
+      }
+
+      try {
+         setBulkWriteCounts(result, database.getCollection(collectionName).bulkWrite(requests, new BulkWriteOptions().ordered(ordered)));
+      } catch (MongoBulkWriteException e) {
+         setBulkWriteCounts(result, e.getWriteResult());
+         setBulkWriteErrors(result, e, ordered);
+      }
+
+      return result;
+   }
+
+   private static void setBulkWriteCounts(final BulkWriteResult result, final com.mongodb.bulk.BulkWriteResult writeResult) {
+      if (writeResult.wasAcknowledged()) {
+         result.setInsertedCount(writeResult.getInsertedCount());
+         result.setMatchedCount(writeResult.getMatchedCount());
+         result.setModifiedCount(writeResult.isModifiedCountAvailable() ? writeResult.getModifiedCount() : 0);
+         result.setDeletedCount(writeResult.getDeletedCount());
+      }
+   }
+
+   private static void setBulkWriteErrors(final BulkWriteResult result, final MongoBulkWriteException e, final boolean ordered) {
+      int firstFailed = result.size();
+      for (final BulkWriteError error : e.getWriteErrors()) {
+         result.setError(error.getIndex(), error.getMessage());
+         firstFailed = Math.min(firstFailed, error.getIndex());
+      }
+
+      // ordered operations stop on the first failure, the rest of the items was not processed
+      if (ordered) {
+         for (int i = firstFailed + 1; i < result.size(); i++) {
+            result.setError(i, "Not processed due to a previous failure.");
+         }
+      }
+   }
+
    @Override
    public long documentCount(final String collectionName) {
       return database.getCollection(collectionName).count();
@@ -426,6 +602,20 @@ public class MongoDbStorage implements DataStorage {
 
    @Override
    public List<DataDocument> search(final String collectionName, final DataFilter filter, final DataSort sort, final int skip, final int limit) {
+      return convertIterableToList(find(collectionName, filter, sort, skip, limit));
+   }
+
+   @Override
+   public DataCursor searchCursor(final String collectionName, final DataFilter filter, final DataSort sort, final int skip, final int limit, final int batchSize) {
+      FindIterable<Document> documents = find(collectionName, filter, sort, skip, limit);
+      if (batchSize > 0) {
+         documents = documents.batchSize(batchSize);
+      }
+
+      return new MongoDbDataCursor(documents, this::convertDocument);
+   }
+
+   private FindIterable<Document> find(final String collectionName, final DataFilter filter, final DataSort sort, final int skip, final int limit) {
       MongoCollection<Document> collection = database.getCollection(collectionName);
       FindIterable<Document> documents = filter != null ? collection.find(filter.<Bson>get()) : collection.find();
       if (sort != null) {
@@ -438,7 +628,7 @@ public class MongoDbStorage implements DataStorage {
          documents = documents.limit(limit);
       }
 
-      return convertIterableToList(documents);
+      return documents;
    }
 
    @Override
@@ -450,8 +640,39 @@ public class MongoDbStorage implements DataStorage {
 
    @Override
    public List<DataDocument> query(final Query query) {
-      List<DataDocument> result = new LinkedList<>();
-      List<DataDocument> stages = new LinkedList<>();
+      final List<DataDocument> result = new LinkedList<>();
+      final DataDocument[] stages = queryStages(query);
+
+      if (stages.length > 0) {
+         query.getCollections().forEach(collection -> {
+            aggregateIterable(collection, 0, stages).maxTime(maxTime(query), TimeUnit.MILLISECONDS).map(this::convertDocument).into(result);
+         });
+      }
+
+      return result;
+   }
+
+   @Override
+   public DataCursor queryCursor(final Query query, final int batchSize) {
+      final DataDocument[] stages = queryStages(query);
+      final List<AggregateIterable<Document>> sources = new ArrayList<>();
+
+      if (stages.length > 0) {
+         query.getCollections().forEach(collection -> {
+            sources.add(aggregateIterable(collection, batchSize, stages).maxTime(maxTime(query), TimeUnit.MILLISECONDS));
+         });
+      }
+
+      return new MongoDbDataCursor(sources, this::convertDocument);
+   }
+
+   // 0 is no limit for the server
+   private long maxTime(final Query query) {
+      return query.getMaxTime() != null ? query.getMaxTime() : 0L;
+   }
+
+   private DataDocument[] queryStages(final Query query) {
+      final List<DataDocument> stages = new LinkedList<>();
 
       if (query.getFilters().size() > 0) {
          final DataDocument filters = new DataDocument();
@@ -495,11 +716,7 @@ public class MongoDbStorage implements DataStorage {
          stages.add(output);
       }
 
-      query.getCollections().forEach(collection -> {
-         result.addAll(aggregate(collection, stages.toArray(new DataDocument[stages.size()])));
-      });
-
-      return result;
+      return stages.toArray(new DataDocument[stages.size()]);
    }
 
    @Override
@@ -508,18 +725,30 @@ public class MongoDbStorage implements DataStorage {
          return Collections.emptyList();
       }
 
-      final List<DataDocument> result = new LinkedList<>();
-      final List<Document> documents = new LinkedList<>();
+      return aggregateIterable(collectionName, 0, stages).map(this::convertDocument).into(new ArrayList<>());
+   }
+
+   @Override
+   public DataCursor aggregateCursor(final String collectionName, final int batchSize, final DataDocument... stages) {
+      if (stages == null || stages.length == 0) {
+         return new MongoDbDataCursor(Collections.emptyList(), this::convertDocument);
+      }
+
+      return new MongoDbDataCursor(aggregateIterable(collectionName, batchSize, stages), this::convertDocument);
+   }
+
+   private AggregateIterable<Document> aggregateIterable(final String collectionName, final int batchSize, final DataDocument... stages) {
+      final List<Document> documents = new ArrayList<>(stages.length);
       for (final DataDocument d : stages) {
          documents.add(MongoUtils.dataDocumentToDocument(d));
       }
 
-      AggregateIterable<Document> resultDocuments = database.getCollection(collectionName).aggregate(documents);
-      resultDocuments.into(new LinkedList<>()).forEach(d -> {
-         result.add(convertDocument(d));
-      });
+      final AggregateIterable<Document> resultDocuments = database.getCollection(collectionName).aggregate(documents);
+      if (batchSize > 0) {
+         resultDocuments.batchSize(batchSize);
+      }
 
-      return result;
+      return resultDocuments;
    }
 
    @Override
@@ -527,6 +756,51 @@ public class MongoDbStorage implements DataStorage {
       database.getCollection(collectionName).updateOne(filter.<Bson>get(), inc(attributeName, incBy));
    }
 
+   @Override
+   public void incrementAttributeValuesBy(final String collectionName, final DataFilter filter, final Map<String, Long> increments) {
+      if (increments.isEmpty()) {
+         return;
+      }
+
+      final List<Bson> updates = new ArrayList<>(increments.size());
+      increments.forEach((attributeName, incBy) -> updates.add(inc(attributeName, incBy)));
+      database.getCollection(collectionName).updateOne(filter.<Bson>get(), combine(updates));
+   }
+
+   @Override
+   public DataDocument updateAndIncrementDocument(final String collectionName, final DataDocument updatedDocument, final DataFilter filter, final String attributeName, final int incBy) {
+      DataDocument toUpdate = new DataDocument(updatedDocument);
+      if (toUpdate.containsKey(LumeerConst.Document.ID)) {
+         toUpdate.remove(LumeerConst.Document.ID);
+      }
+      BasicDBObject updateBson = new BasicDBObject("$inc", new BasicDBObject(attributeName, incBy));
+      if (!toUpdate.isEmpty()) {
+         updateBson.append("$set", new BasicDBObject(toUpdate));
+      }
+
+      final FindOneAndUpdateOptions options = new FindOneAndUpdateOptions();
+      options.returnDocument(ReturnDocument.BEFORE);
+      final Document document = database.getCollection(collectionName).findOneAndUpdate(filter.<Bson>get(), updateBson, options);
+
+      return document != null ? convertDocument(document) : null;
+   }
+
+   @Override
+   public boolean applyDocumentUpdate(final String collectionName, final DataDocument update, final DataFilter filter) {
+      return database.getCollection(collectionName).updateOne(filter.<Bson>get(), MongoUtils.dataDocumentToDocument(update)).getMatchedCount() > 0;
+   }
+
+   @Override
+   public long applyDocumentsUpdate(final String collectionName, final DataDocument update, final DataFilter filter, final DataFilter updateFilter, final int limit) {
+      final MongoCollection<Document> collection = database.getCollection(collectionName);
+      final List<Object> ids = collection.find(filter.<Bson>get()).projection(Projections.include(LumeerConst.Document.ID)).limit(limit)
+                                         .map(document -> document.get(LumeerConst.Document.ID)).into(new ArrayList<>());
+      if (ids.isEmpty()) {
+         return 0;
+      }
+      return collection.updateMany(and(in(LumeerConst.Document.ID, ids), updateFilter.<Bson>get()), MongoUtils.dataDocumentToDocument(update)).getMatchedCount();
+   }
+
    @Override
    public synchronized int getNextSequenceNo(final String collectionName, final String indexAttribute, final String index) {
       final FindOneAndUpdateOptions options = new FindOneAndUpdateOptions();
@@ -580,9 +854,7 @@ public class MongoDbStorage implements DataStorage {
 
    @Override
    public void invalidateCaches() {
-      if (collectionsCache != null) {
-         collectionsCache.remove(COLLECTION_CACHE);
-      }
+      collectionNames.set(null);
    }
 
    @Override
@@ -620,12 +892,7 @@ public class MongoDbStorage implements DataStorage {
    }
 
    private List<DataDocument> convertIterableToList(FindIterable<Document> documents) {
-      final List<DataDocument> result = new ArrayList<>();
-      documents.into(new ArrayList<>()).forEach(d -> {
-         result.add(convertDocument(d));
-      });
-
-      return result;
+      return documents.map(this::convertDocument).into(new ArrayList<>());
    }
 
    private DataDocument convertDocument(Document document) {
@@ -20,7 +20,15 @@
 package io.lumeer.mongodb;
 
 import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.bitsAllSet;
+import static com.mongodb.client.model.Filters.elemMatch;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.exists;
+import static com.mongodb.client.model.Filters.gte;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Filters.ne;
+import static com.mongodb.client.model.Filters.or;
 
 import io.lumeer.engine.api.LumeerConst;
 import io.lumeer.engine.api.data.DataDocument;
@@ -35,6 +43,8 @@ import org.bson.types.ObjectId;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.enterprise.context.ApplicationScoped;
@@ -69,6 +79,30 @@ public class MongoDbStorageDialect implements DataStorageDialect {
                               .append("$slice", listSize))));
    }
 
+   @Override
+   public DataDocument addDocumentsMetadataQuery(final String metadataCollection, final String collection, final Map<String, Integer> attributeCountIncrements, final DataDocument newAttributes, final List<String> recentlyUsedIds, final int listSize, final Date lastTimeUsed) {
+      final DataDocument update = new DataDocument()
+            .append("$set", new DataDocument(newAttributes)
+                  .append(LumeerConst.Collection.LAST_TIME_USED_KEY, lastTimeUsed));
+
+      if (!attributeCountIncrements.isEmpty()) {
+         update.append("$inc", new DataDocument(new HashMap<>(attributeCountIncrements)));
+      }
+
+      if (!recentlyUsedIds.isEmpty()) {
+         update.append("$push", new DataDocument()
+               .append(LumeerConst.Collection.RECENTLY_USED_DOCUMENTS_KEY, new DataDocument()
+                     .append("$each", recentlyUsedIds)
+                     .append("$position", 0)
+                     .append("$slice", listSize)));
+      }
+
+      return new DataDocument()
+            .append("findAndModify", metadataCollection)
+            .append("query", new DataDocument(LumeerConst.Collection.INTERNAL_NAME_KEY, collection))
+            .append("update", update);
+   }
+
    private DataFilter createFilter(final Bson filter) {
       return new MongoDbDataFilter(filter);
    }
@@ -131,6 +165,116 @@ public class MongoDbStorageDialect implements DataStorageDialect {
       return createFilter(filterRaw);
    }
 
+   @Override
+   public DataFilter linkingFromDocumentsFilter(final List<String> fromIds, final LumeerConst.Linking.LinkDirection linkDirection) {
+      Bson filterRaw = linkDirection == LumeerConst.Linking.LinkDirection.FROM
+            ? in(LumeerConst.Linking.LinkingTable.ATTR_FROM_ID, fromIds)
+            : in(LumeerConst.Linking.LinkingTable.ATTR_TO_ID, fromIds);
+      return createFilter(filterRaw);
+   }
+
+   @Override
+   public DataDocument linkingUpsertQuery(final String linkingCollection, final String fromId, final String toId, final DataDocument attributes) {
+      return new DataDocument()
+            .append("findAndModify", linkingCollection)
+            .append("query", new DataDocument(LumeerConst.Linking.LinkingTable.ATTR_FROM_ID, fromId)
+                  .append(LumeerConst.Linking.LinkingTable.ATTR_TO_ID, toId))
+            .append("update", new DataDocument()
+                  .append("$setOnInsert", new DataDocument(LumeerConst.Linking.LinkingTable.ATTR_ATTRIBUTES, attributes)))
+            .append("upsert", true);
+   }
+
+   // documents with rights but without the derived readers are left to the non-atomic path, which derives them all
+   @Override
+   public DataFilter userRightsFilter(final String documentId, final String userEmail, final boolean hasEntry) {
+      final String userField = MongoUtils.concatParams(LumeerConst.Document.USER_RIGHTS, LumeerConst.Security.USER_ID);
+      if (hasEntry) {
+         return createFilter(and(eq(LumeerConst.Document.ID, new ObjectId(documentId)), eq(userField, userEmail), exists(LumeerConst.Document.READERS_KEY)));
+      }
+      return createFilter(and(eq(LumeerConst.Document.ID, new ObjectId(documentId)), ne(userField, userEmail),
+            or(exists(LumeerConst.Document.READERS_KEY), exists(LumeerConst.Document.USER_RIGHTS, false))));
+   }
+
+   // the current user can add rights as the creator, with execute rights or when there are no rights
+   @Override
+   public DataFilter sharingFilter(final DataFilter filter, final String currentUserEmail, final String userEmail, final int rights, final boolean hasEntry) {
+      final Bson canAddRights = or(eq(LumeerConst.Document.CREATE_BY_USER_KEY, currentUserEmail), exists(LumeerConst.Document.USER_RIGHTS, false),
+            elemMatch(LumeerConst.Document.USER_RIGHTS, and(eq(LumeerConst.Security.USER_ID, currentUserEmail), bitsAllSet(LumeerConst.Security.RULE, LumeerConst.Security.EXECUTE))));
+      if (hasEntry) {
+         return createFilter(and(filter.<Bson>get(), canAddRights, exists(LumeerConst.Document.READERS_KEY), userEntryFilter(userEmail, rights)));
+      }
+      return createFilter(and(filter.<Bson>get(), canAddRights, noUserEntryFilter(userEmail),
+            or(exists(LumeerConst.Document.READERS_KEY), exists(LumeerConst.Document.USER_RIGHTS, false))));
+   }
+
+   // the only condition on the rights array, so the positional update operates on the entry of the user
+   @Override
+   public DataFilter sharingUpdateFilter(final String userEmail, final int rights, final boolean hasEntry) {
+      return createFilter(hasEntry ? userEntryFilter(userEmail, rights) : noUserEntryFilter(userEmail));
+   }
+
+   private Bson userEntryFilter(final String userEmail, final int rights) {
+      return elemMatch(LumeerConst.Document.USER_RIGHTS, and(eq(LumeerConst.Security.USER_ID, userEmail), ne(LumeerConst.Security.RULE, rights)));
+   }
+
+   private Bson noUserEntryFilter(final String userEmail) {
+      return ne(MongoUtils.concatParams(LumeerConst.Document.USER_RIGHTS, LumeerConst.Security.USER_ID), userEmail);
+   }
+
+   @Override
+   public DataDocument grantUserRightsUpdate(final String userEmail, final int rights, final boolean newEntry) {
+      final DataDocument update = newEntry ? pushUserRights(userEmail, rights)
+            : new DataDocument("$bit", new DataDocument(userRuleField(), new DataDocument("or", rights)));
+      appendDerivedRights(update, "$addToSet", userEmail, rights);
+      return update;
+   }
+
+   @Override
+   public DataDocument dropAttributeUpdate(final String attributeName, final String incrementedAttribute) {
+      return new DataDocument("$unset", new DataDocument(attributeName, ""))
+            .append("$inc", new DataDocument(incrementedAttribute, 1));
+   }
+
+   @Override
+   public DataDocument revokeUserRightsUpdate(final String userEmail, final int rights) {
+      final int allRights = LumeerConst.Security.READ | LumeerConst.Security.WRITE | LumeerConst.Security.EXECUTE;
+      final DataDocument update = new DataDocument("$bit", new DataDocument(userRuleField(), new DataDocument("and", allRights & ~rights)));
+      appendDerivedRights(update, "$pull", userEmail, rights);
+      return update;
+   }
+
+   @Override
+   public DataDocument setUserRightsUpdate(final String userEmail, final int rights, final boolean newEntry) {
+      final int allRights = LumeerConst.Security.READ | LumeerConst.Security.WRITE | LumeerConst.Security.EXECUTE;
+      final DataDocument update = newEntry ? pushUserRights(userEmail, rights)
+            : new DataDocument("$set", new DataDocument(userRuleField(), rights));
+      appendDerivedRights(update, "$addToSet", userEmail, rights);
+      appendDerivedRights(update, "$pull", userEmail, allRights & ~rights);
+      return update;
+   }
+
+   private String userRuleField() {
+      return MongoUtils.concatParams(LumeerConst.Document.USER_RIGHTS, "$", LumeerConst.Security.RULE);
+   }
+
+   private DataDocument pushUserRights(final String userEmail, final int rights) {
+      return new DataDocument("$push", new DataDocument(LumeerConst.Document.USER_RIGHTS, new DataDocument(LumeerConst.Security.USER_ID, userEmail)
+            .append(LumeerConst.Security.RULE, rights)));
+   }
+
+   private void appendDerivedRights(final DataDocument update, final String operator, final String userEmail, final int rights) {
+      final DataDocument derived = new DataDocument();
+      if ((rights & LumeerConst.Security.READ) != 0) {
+         derived.append(LumeerConst.Document.READERS_KEY, userEmail);
+      }
+      if ((rights & LumeerConst.Security.WRITE) != 0) {
+         derived.append(LumeerConst.Document.WRITERS_KEY, userEmail);
+      }
+      if (!derived.isEmpty()) {
+         update.append(operator, derived);
+      }
+   }
+
    @Override
    public DataFilter fieldValueFilter(final String fieldName, final Object value) {
       return createFilter(eq(fieldName, value));
@@ -151,11 +295,48 @@ public class MongoDbStorageDialect implements DataStorageDialect {
       return createFilter(eq(LumeerConst.Document.ID, and(eq(LumeerConst.Document.ID, new ObjectId(documentId)), eq(LumeerConst.Document.METADATA_VERSION_KEY, version))));
    }
 
+   @Override
+   public DataFilter documentIdFilterWithVersion(final String documentId, final int version) {
+      // a document without the version attribute is at the version zero
+      final Bson versionFilter = version == 0 ? or(eq(LumeerConst.Document.METADATA_VERSION_KEY, 0), exists(LumeerConst.Document.METADATA_VERSION_KEY, false))
+            : eq(LumeerConst.Document.METADATA_VERSION_KEY, version);
+      return createFilter(and(eq(LumeerConst.Document.ID, new ObjectId(documentId)), versionFilter));
+   }
+
+   @Override
+   public DataFilter documentNestedIdFilterFromVersion(final String documentId, final int version) {
+      return createFilter(and(eq(concatFields(LumeerConst.Document.ID, LumeerConst.Document.ID), new ObjectId(documentId)),
+            gte(concatFields(LumeerConst.Document.ID, LumeerConst.Document.METADATA_VERSION_KEY), version)));
+   }
+
+   @Override
+   public DataFilter documentNestedIdFilterWithVersions(final String documentId, final List<Integer> versions) {
+      return createFilter(and(eq(concatFields(LumeerConst.Document.ID, LumeerConst.Document.ID), new ObjectId(documentId)),
+            in(concatFields(LumeerConst.Document.ID, LumeerConst.Document.METADATA_VERSION_KEY), versions)));
+   }
+
+   @Override
+   public DataFilter documentNestedIdLowerThanFilter(final String documentId) {
+      return createFilter(lt(concatFields(LumeerConst.Document.ID, LumeerConst.Document.ID), new ObjectId(documentId)));
+   }
+
    @Override
    public DataFilter documentIdFilter(final String documentId) {
       return fieldValueFilter(LumeerConst.Document.ID, new ObjectId(documentId));
    }
 
+   @Override
+   public DataFilter documentIdsFilter(final List<String> documentIds) {
+      final List<ObjectId> ids = new ArrayList<>(documentIds.size());
+      documentIds.forEach(id -> ids.add(new ObjectId(id)));
+      return createFilter(in(LumeerConst.Document.ID, ids));
+   }
+
+   @Override
+   public DataFilter missingDerivedFieldFilter(final String sourceFieldName, final String derivedFieldName) {
+      return createFilter(and(exists(sourceFieldName), exists(derivedFieldName, false)));
+   }
+
    @Override
    public DataFilter multipleFieldsValueFilter(final Map<String, Object> fields) {
       List<Bson> bsons = new ArrayList<>();
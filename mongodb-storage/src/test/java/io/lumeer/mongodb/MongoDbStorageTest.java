@@ -22,6 +22,8 @@ package io.lumeer.mongodb;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.data.BulkWriteResult;
+import io.lumeer.engine.api.data.DataCursor;
 import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.engine.api.data.DataFilter;
 import io.lumeer.engine.api.data.DataStorageStats;
@@ -37,12 +39,14 @@ import de.flapdoodle.embed.mongo.config.Net;
 import de.flapdoodle.embed.mongo.distribution.Version;
 import de.flapdoodle.embed.process.runtime.Network;
 import org.assertj.core.api.SoftAssertions;
+import org.bson.types.ObjectId;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -75,16 +79,19 @@ public class MongoDbStorageTest {
    private final String COLLECTION_GET_ALL_COLLECTIONS_I = "collectionGetAllCollections_I";
    private final String COLLECTION_GET_ALL__COLLECTIONS_II = "collectionGetAllCollections_II";
    private final String COLLECTION_HAS_COLLECTION = "collectionHasCollection";
+   private final String COLLECTION_HAS_COLLECTION_INSERTED = "collectionHasCollectionInserted";
    private final String COLLECTION_COLLECTION_HAS_DOCUMENT = "collectionCollectionHasDocument";
    private final String COLLECTION_CREATE_AND_READ_DOCUMENT = "collectionCreateAndReadDocument";
    private final String COLLECTION_CREATE_AND_READ_OLD_DOCUMENT = "collectionCreateAndReadOldDocument";
    private final String COLLECTION_UPDATE_DOCUMENT = "collectionUpdateDocument";
+   private final String COLLECTION_BULK_WRITE = "collectionBulkWrite";
    private final String COLLECTION_REPLACE_DOCUMENT = "collectionReplaceDocument";
    private final String COLLECTION_DROP_DOCUMENT = "collectionDropDocument";
    private final String COLLECTION_DROP_MANY = "collectionDropMany";
    private final String COLLECTION_DROP_ATTRIBUTE = "collectionRemoveAttribute";
    private final String COLLECTION_SEARCH_ATTRS = "collectionSearchAttrs";
    private final String COLLECTION_SEARCH = "collectionSearch";
+   private final String COLLECTION_SEARCH_CURSOR = "collectionSearchCursor";
    private final String COLLECTION_INDEXES = "collectionIndexes";
    private final String COLLECTION_RUN = "collectionSearchRaw";
    private final String COLLECTION_RENAME_ATTRIBUTE = "collectionRenameAttribute";
@@ -141,15 +148,18 @@ public class MongoDbStorageTest {
       mongoDbStorage.dropCollection(COLLECTION_GET_ALL_COLLECTIONS_I);
       mongoDbStorage.dropCollection(COLLECTION_GET_ALL__COLLECTIONS_II);
       mongoDbStorage.dropCollection(COLLECTION_HAS_COLLECTION);
+      mongoDbStorage.dropCollection(COLLECTION_HAS_COLLECTION_INSERTED);
       mongoDbStorage.dropCollection(COLLECTION_COLLECTION_HAS_DOCUMENT);
       mongoDbStorage.dropCollection(COLLECTION_CREATE_AND_READ_DOCUMENT);
       mongoDbStorage.dropCollection(COLLECTION_CREATE_AND_READ_OLD_DOCUMENT);
       mongoDbStorage.dropCollection(COLLECTION_UPDATE_DOCUMENT);
+      mongoDbStorage.dropCollection(COLLECTION_BULK_WRITE);
       mongoDbStorage.dropCollection(COLLECTION_DROP_DOCUMENT);
       mongoDbStorage.dropCollection(COLLECTION_DROP_MANY);
       mongoDbStorage.dropCollection(COLLECTION_DROP_ATTRIBUTE);
       mongoDbStorage.dropCollection(COLLECTION_SEARCH_ATTRS);
       mongoDbStorage.dropCollection(COLLECTION_SEARCH);
+      mongoDbStorage.dropCollection(COLLECTION_SEARCH_CURSOR);
       mongoDbStorage.dropCollection(COLLECTION_INDEXES);
       mongoDbStorage.dropCollection(COLLECTION_RUN);
       mongoDbStorage.dropCollection(COLLECTION_RENAME_ATTRIBUTE);
@@ -208,6 +218,14 @@ public class MongoDbStorageTest {
 
       assertThat(mongoDbStorage.hasCollection(COLLECTION_HAS_COLLECTION)).isTrue();
       assertThat(mongoDbStorage.hasCollection("someNotExistingNameOfCollection")).isFalse();
+
+      // collection created implicitly by the first insert
+      assertThat(mongoDbStorage.hasCollection(COLLECTION_HAS_COLLECTION_INSERTED)).isFalse();
+      mongoDbStorage.createDocument(COLLECTION_HAS_COLLECTION_INSERTED, createDummyDocument());
+      assertThat(mongoDbStorage.hasCollection(COLLECTION_HAS_COLLECTION_INSERTED)).isTrue();
+
+      mongoDbStorage.dropCollection(COLLECTION_HAS_COLLECTION_INSERTED);
+      assertThat(mongoDbStorage.hasCollection(COLLECTION_HAS_COLLECTION_INSERTED)).isFalse();
    }
 
    @Test
@@ -249,6 +267,47 @@ public class MongoDbStorageTest {
       assertThat(readDocument).isNull();
    }
 
+   @Test
+   public void testBulkWrite() throws Exception {
+      mongoDbStorage.createCollection(COLLECTION_BULK_WRITE);
+
+      List<DataDocument> documents = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+         documents.add(createDummyDocument());
+      }
+      BulkWriteResult created = mongoDbStorage.createDocuments(COLLECTION_BULK_WRITE, documents, true);
+      assertThat(created.hasErrors()).isFalse();
+      assertThat(created.getInsertedCount()).isEqualTo(10);
+      assertThat(created.getIds()).doesNotContainNull().doesNotHaveDuplicates();
+      assertThat(mongoDbStorage.documentCount(COLLECTION_BULK_WRITE)).isEqualTo(10);
+
+      // the second document duplicates an existing id, unordered insert goes on with the rest
+      List<DataDocument> withDuplicate = new ArrayList<>();
+      withDuplicate.add(createDummyDocument());
+      withDuplicate.add(createDummyDocument().append(LumeerConst.Document.ID, new ObjectId(created.getId(0))));
+      withDuplicate.add(createDummyDocument());
+      BulkWriteResult unordered = mongoDbStorage.createDocuments(COLLECTION_BULK_WRITE, withDuplicate, false);
+      assertThat(unordered.getErrors()).containsOnlyKeys(1);
+      assertThat(unordered.getId(0)).isNotNull();
+      assertThat(unordered.getId(2)).isNotNull();
+      assertThat(mongoDbStorage.documentCount(COLLECTION_BULK_WRITE)).isEqualTo(12);
+
+      List<DataDocument> updates = new ArrayList<>();
+      List<DataFilter> filters = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+         updates.add(new DataDocument(DUMMY_KEY1, DUMMY_CHANGED_VALUE1));
+         filters.add(mongoDbStorageDialect.documentIdFilter(created.getId(i)));
+      }
+      BulkWriteResult updated = mongoDbStorage.updateDocuments(COLLECTION_BULK_WRITE, updates, filters, true);
+      assertThat(updated.getMatchedCount()).isEqualTo(5);
+      assertThat(mongoDbStorage.readDocument(COLLECTION_BULK_WRITE, filters.get(4)).getString(DUMMY_KEY1)).isEqualTo(DUMMY_CHANGED_VALUE1);
+      assertThat(mongoDbStorage.readDocument(COLLECTION_BULK_WRITE, mongoDbStorageDialect.documentIdFilter(created.getId(5))).getString(DUMMY_KEY1)).isEqualTo(DUMMY_VALUE1);
+
+      BulkWriteResult dropped = mongoDbStorage.dropDocuments(COLLECTION_BULK_WRITE, filters, false);
+      assertThat(dropped.getDeletedCount()).isEqualTo(5);
+      assertThat(mongoDbStorage.documentCount(COLLECTION_BULK_WRITE)).isEqualTo(7);
+   }
+
    @Test
    public void testUpdateDocument() throws Exception {
       mongoDbStorage.createCollection(COLLECTION_UPDATE_DOCUMENT);
@@ -414,6 +473,29 @@ public class MongoDbStorageTest {
       assertThat(searchDocuments).hasSize(10);
    }
 
+   @Test
+   public void testSearchCursor() throws Exception {
+      mongoDbStorage.createCollection(COLLECTION_SEARCH_CURSOR);
+
+      for (int i = 0; i < 100; i++) {
+         DataDocument insertedDocument = createDummyDocument();
+         mongoDbStorage.createDocument(COLLECTION_SEARCH_CURSOR, insertedDocument);
+      }
+
+      int read = 0;
+      try (DataCursor cursor = mongoDbStorage.searchCursor(COLLECTION_SEARCH_CURSOR, null, null, 10, 50, 7)) {
+         while (cursor.hasNext()) {
+            assertThat(cursor.next().getId()).isNotNull();
+            read++;
+         }
+      }
+      assertThat(read).isEqualTo(50);
+
+      try (DataCursor cursor = mongoDbStorage.searchCursor(COLLECTION_SEARCH_CURSOR, null, null, 0, 0, 0)) {
+         assertThat(cursor.stream().count()).isEqualTo(100);
+      }
+   }
+
    @Test
    public void testRun() throws Exception {
       mongoDbStorage.createCollection(COLLECTION_RUN);
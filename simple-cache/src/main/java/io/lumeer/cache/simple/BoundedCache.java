@@ -0,0 +1,375 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.cache.simple;
+
+import io.lumeer.engine.api.cache.Cache;
+import io.lumeer.engine.api.cache.CacheConfiguration;
+import io.lumeer.engine.api.cache.CacheStatistics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Cache limited by the number of entries, their total weight and their time to live. The entries to evict
+ * are chosen by an {@link EvictionPolicy}. Expired entries are removed when they are read and by a periodic
+ * clean up during writes. Under concurrent writes, the limits can be exceeded for a short while.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class BoundedCache<T> implements Cache<T> {
+
+   private static final long NEVER = Long.MAX_VALUE;
+
+   /**
+    * Minimal time between two clean ups of expired entries.
+    */
+   private static final long MIN_CLEAN_UP_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+   private final Map<String, Entry<T>> cache = new ConcurrentHashMap<>();
+
+   private final StripedLocks locks;
+
+   private final long maxEntries;
+
+   private final long maxWeight;
+
+   private final ToLongFunction<Object> weigher;
+
+   /**
+    * Time to live of entries in nanoseconds, zero for no expiration.
+    */
+   private final long ttl;
+
+   private final EvictionPolicy policy;
+
+   private final LongSupplier ticker;
+
+   /**
+    * Guards the eviction policy and the total weight.
+    */
+   private final ReentrantLock policyLock = new ReentrantLock();
+
+   private volatile long weight = 0;
+
+   private long lastCleanUp;
+
+   private long nextCleanUp;
+
+   private final LongAdder hits = new LongAdder();
+
+   private final LongAdder misses = new LongAdder();
+
+   private final LongAdder evictions = new LongAdder();
+
+   private final LongAdder expirations = new LongAdder();
+
+   public BoundedCache(final CacheConfiguration configuration, final EvictionPolicy policy) {
+      this(configuration, policy, new StripedLocks(), System::nanoTime);
+   }
+
+   /**
+    * Creates a cache locking its keys with the given locks.
+    *
+    * @param configuration
+    *       Limits of the cache.
+    * @param policy
+    *       Policy choosing the entries to evict.
+    * @param locks
+    *       Locks possibly shared with other caches.
+    */
+   public BoundedCache(final CacheConfiguration configuration, final EvictionPolicy policy, final StripedLocks locks) {
+      this(configuration, policy, locks, System::nanoTime);
+   }
+
+   BoundedCache(final CacheConfiguration configuration, final EvictionPolicy policy, final LongSupplier ticker) {
+      this(configuration, policy, new StripedLocks(), ticker);
+   }
+
+   BoundedCache(final CacheConfiguration configuration, final EvictionPolicy policy, final StripedLocks locks, final LongSupplier ticker) {
+      this.locks = locks;
+      this.maxEntries = configuration.getMaxEntries();
+      this.maxWeight = configuration.getMaxWeight();
+      this.weigher = configuration.getWeigher();
+      this.ttl = configuration.getTtl(TimeUnit.NANOSECONDS);
+      this.policy = policy;
+      this.ticker = ticker;
+      this.lastCleanUp = ticker.getAsLong();
+      this.nextCleanUp = nextCleanUp(lastCleanUp);
+   }
+
+   @Override
+   public T get(final String key) {
+      final Entry<T> entry = cache.get(key);
+
+      if (entry == null) {
+         misses.increment();
+         return null;
+      }
+
+      if (entry.isExpired(ticker.getAsLong())) {
+         expire(key, entry);
+         misses.increment();
+         return null;
+      }
+
+      hits.increment();
+      recordAccess(key);
+
+      return entry.value;
+   }
+
+   @Override
+   public T computeIfAbsent(final String key, final Function<String, T> fce) {
+      final T value = get(key);
+      if (value != null) {
+         return value;
+      }
+
+      final Entry<T>[] created = newHolder();
+      final Entry<T>[] expired = newHolder();
+      final Entry<T> entry = cache.compute(key, (k, old) -> {
+         if (old != null && !old.isExpired(ticker.getAsLong())) {
+            return old;
+         }
+         expired[0] = old;
+
+         final T t = fce.apply(k);
+         created[0] = t == null ? null : newEntry(t, ttl);
+
+         return created[0];
+      });
+
+      if (expired[0] != null) {
+         removed(key, expired[0], expirations);
+      }
+      if (created[0] != null) {
+         written(key, null, created[0]);
+      }
+
+      return entry == null ? null : entry.value;
+   }
+
+   @Override
+   public void set(final String key, final T t) {
+      set(key, newEntry(t, ttl));
+   }
+
+   @Override
+   public void set(final String key, final T t, final long ttl, final TimeUnit unit) {
+      set(key, newEntry(t, unit.toNanos(ttl)));
+   }
+
+   private void set(final String key, final Entry<T> entry) {
+      written(key, cache.put(key, entry), entry);
+   }
+
+   @Override
+   public T remove(final String key) {
+      final Entry<T> entry = cache.remove(key);
+
+      if (entry == null) {
+         return null;
+      }
+
+      removed(key, entry, null);
+
+      return entry.isExpired(ticker.getAsLong()) ? null : entry.value;
+   }
+
+   @Override
+   public void lock(final String key) {
+      locks.lock(key);
+   }
+
+   @Override
+   public void unlock(final String key) {
+      locks.unlock(key);
+   }
+
+   @Override
+   public boolean tryLock(final String key) {
+      return locks.tryLock(key);
+   }
+
+   @Override
+   public void clear() {
+      policyLock.lock();
+      try {
+         cache.clear();
+         policy.clear();
+         weight = 0;
+      } finally {
+         policyLock.unlock();
+      }
+   }
+
+   @Override
+   public CacheStatistics getStatistics() {
+      return new CacheStatistics(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), cache.size(), weight);
+   }
+
+   /**
+    * Removes all expired entries.
+    */
+   public void cleanUp() {
+      final long now = ticker.getAsLong();
+
+      cache.forEach((key, entry) -> {
+         if (entry.isExpired(now)) {
+            expire(key, entry);
+         }
+      });
+   }
+
+   private Entry<T> newEntry(final T t, final long ttl) {
+      return new Entry<>(t, weigher.applyAsLong(t), ttl > 0 ? ticker.getAsLong() + ttl : NEVER);
+   }
+
+   @SuppressWarnings("unchecked")
+   private Entry<T>[] newHolder() {
+      return (Entry<T>[]) new Entry[1];
+   }
+
+   // reads are recorded only when the policy is not busy, losing some of them does not hurt the eviction much
+   private void recordAccess(final String key) {
+      if (policyLock.tryLock()) {
+         try {
+            policy.recordAccess(key);
+         } finally {
+            policyLock.unlock();
+         }
+      }
+   }
+
+   private void expire(final String key, final Entry<T> entry) {
+      if (cache.remove(key, entry)) {
+         removed(key, entry, expirations);
+      }
+   }
+
+   private void removed(final String key, final Entry<T> entry, final LongAdder counter) {
+      policyLock.lock();
+      try {
+         weight -= entry.weight;
+         // the key might have been written again meanwhile
+         if (!cache.containsKey(key)) {
+            policy.remove(key);
+         }
+      } finally {
+         policyLock.unlock();
+      }
+
+      if (counter != null) {
+         counter.increment();
+      }
+   }
+
+   private void written(final String key, final Entry<T> old, final Entry<T> entry) {
+      boolean cleanUp = false;
+
+      policyLock.lock();
+      try {
+         weight += entry.weight - (old == null ? 0 : old.weight);
+         policy.recordWrite(key);
+         evict(old == null ? key : null);
+
+         final long now = ticker.getAsLong();
+         if (entry.expiresAt != NEVER) {
+            nextCleanUp = Math.min(nextCleanUp, Math.max(entry.expiresAt, lastCleanUp + MIN_CLEAN_UP_INTERVAL));
+         }
+         if (nextCleanUp != NEVER && now - nextCleanUp >= 0) {
+            lastCleanUp = now;
+            nextCleanUp = nextCleanUp(now);
+            cleanUp = true;
+         }
+      } finally {
+         policyLock.unlock();
+      }
+
+      if (cleanUp) {
+         cleanUp();
+      }
+   }
+
+   private long nextCleanUp(final long now) {
+      return ttl > 0 ? now + Math.max(ttl, MIN_CLEAN_UP_INTERVAL) : NEVER;
+   }
+
+   private boolean isOverLimit() {
+      return (maxEntries > 0 && cache.size() > maxEntries) || (maxWeight > 0 && weight > maxWeight);
+   }
+
+   /**
+    * Evicts entries until the cache fits its limits. Must be called under the policy lock.
+    *
+    * @param candidate
+    *       Key of a newly added entry that can be rejected by the policy, or null.
+    */
+   private void evict(String candidate) {
+      while (isOverLimit()) {
+         String victim = policy.victim();
+         if (victim == null) {
+            return;
+         }
+
+         if (candidate != null && !candidate.equals(victim)) {
+            if (!policy.admit(candidate, victim)) {
+               victim = candidate;
+            }
+            candidate = null;
+         }
+
+         policy.remove(victim);
+         final Entry<T> entry = cache.remove(victim);
+         if (entry != null) {
+            weight -= entry.weight;
+            evictions.increment();
+         }
+      }
+   }
+
+   /**
+    * Cached value with its weight and expiration time.
+    */
+   private static class Entry<T> {
+
+      private final T value;
+
+      private final long weight;
+
+      private final long expiresAt;
+
+      private Entry(final T value, final long weight, final long expiresAt) {
+         this.value = value;
+         this.weight = weight;
+         this.expiresAt = expiresAt;
+      }
+
+      private boolean isExpired(final long now) {
+         return now - expiresAt >= 0 && expiresAt != NEVER;
+      }
+   }
+}
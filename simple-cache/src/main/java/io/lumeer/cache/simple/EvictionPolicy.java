@@ -0,0 +1,78 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.cache.simple;
+
+/**
+ * Decides which entry of a bounded cache is evicted. Implementations do not need to be thread-safe,
+ * they are always accessed under the lock of the cache.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public interface EvictionPolicy {
+
+   /**
+    * Records a read of an existing entry.
+    *
+    * @param key
+    *       Entry key.
+    */
+   void recordAccess(final String key);
+
+   /**
+    * Records a new entry or an update of an existing one.
+    *
+    * @param key
+    *       Entry key.
+    */
+   void recordWrite(final String key);
+
+   /**
+    * Forgets the entry.
+    *
+    * @param key
+    *       Entry key.
+    */
+   void remove(final String key);
+
+   /**
+    * Gets the entry that should be evicted next without forgetting it.
+    *
+    * @return The key of the next evicted entry or null when there are no entries.
+    */
+   String victim();
+
+   /**
+    * Decides whether a new entry is worth keeping at the cost of evicting the victim.
+    *
+    * @param candidate
+    *       Key of the new entry.
+    * @param victim
+    *       Key of the entry that would be evicted.
+    * @return True to evict the victim, false to evict the candidate instead.
+    */
+   default boolean admit(final String candidate, final String victim) {
+      return true;
+   }
+
+   /**
+    * Forgets all entries.
+    */
+   void clear();
+}
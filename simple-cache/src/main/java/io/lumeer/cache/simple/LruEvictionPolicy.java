@@ -0,0 +1,62 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.cache.simple;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Evicts the least recently used entry.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class LruEvictionPolicy implements EvictionPolicy {
+
+   /**
+    * Keys in access order, the eldest first.
+    */
+   private final LinkedHashMap<String, Boolean> keys = new LinkedHashMap<>(16, 0.75f, true);
+
+   @Override
+   public void recordAccess(final String key) {
+      keys.get(key);
+   }
+
+   @Override
+   public void recordWrite(final String key) {
+      keys.put(key, Boolean.TRUE);
+   }
+
+   @Override
+   public void remove(final String key) {
+      keys.remove(key);
+   }
+
+   @Override
+   public String victim() {
+      final Iterator<String> it = keys.keySet().iterator();
+      return it.hasNext() ? it.next() : null;
+   }
+
+   @Override
+   public void clear() {
+      keys.clear();
+   }
+}
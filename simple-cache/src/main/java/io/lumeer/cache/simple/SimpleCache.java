@@ -20,11 +20,10 @@
 package io.lumeer.cache.simple;
 
 import io.lumeer.engine.api.cache.Cache;
+import io.lumeer.engine.api.cache.CacheStatistics;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
 /**
@@ -34,7 +33,21 @@ public class SimpleCache<T> implements Cache<T> {
 
    private Map<String, T> cache = new ConcurrentHashMap<>();
 
-   private Map<String, Lock> locks = new ConcurrentHashMap<>();
+   private final StripedLocks locks;
+
+   public SimpleCache() {
+      this(new StripedLocks());
+   }
+
+   /**
+    * Creates a cache locking its keys with the given locks.
+    *
+    * @param locks
+    *       Locks possibly shared with other caches.
+    */
+   public SimpleCache(final StripedLocks locks) {
+      this.locks = locks;
+   }
 
    @Override
    public T get(final String key) {
@@ -58,29 +71,26 @@ public class SimpleCache<T> implements Cache<T> {
 
    @Override
    public void lock(final String key) {
-      final Lock l = locks.computeIfAbsent(key, k -> new ReentrantLock());
-      l.lock();
+      locks.lock(key);
    }
 
    @Override
    public void unlock(final String key) {
-      final Lock l = locks.get(key);
-
-      if (l != null) {
-         l.unlock();
-      }
+      locks.unlock(key);
    }
 
    @Override
    public boolean tryLock(final String key) {
-      final Lock l = locks.computeIfAbsent(key, k -> new ReentrantLock());
-
-      return l.tryLock();
+      return locks.tryLock(key);
    }
 
    @Override
    public void clear() {
       cache.clear();
-      locks.clear();
+   }
+
+   @Override
+   public CacheStatistics getStatistics() {
+      return new CacheStatistics(0, 0, 0, 0, cache.size(), cache.size());
    }
 }
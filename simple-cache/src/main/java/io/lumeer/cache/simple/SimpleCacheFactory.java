@@ -20,6 +20,7 @@
 package io.lumeer.cache.simple;
 
 import io.lumeer.engine.api.cache.Cache;
+import io.lumeer.engine.api.cache.CacheConfiguration;
 import io.lumeer.engine.api.cache.CacheFactory;
 
 import java.io.Serializable;
@@ -31,8 +32,35 @@ import javax.enterprise.context.ApplicationScoped;
 @ApplicationScoped
 public class SimpleCacheFactory implements CacheFactory, Serializable {
 
+   /**
+    * Locks shared by all caches, so that their number does not grow with the number of caches and a lock stays valid
+    * when its cache is dropped and created again.
+    */
+   private static final StripedLocks LOCKS = new StripedLocks();
+
    @Override
    public <T> Cache<T> getCache() {
-      return new SimpleCache<>();
+      return new SimpleCache<>(LOCKS);
+   }
+
+   @Override
+   public <T> Cache<T> getCache(final CacheConfiguration configuration) {
+      if (!configuration.isBounded()) {
+         return new SimpleCache<>(LOCKS);
+      }
+
+      return new BoundedCache<>(configuration, getEvictionPolicy(configuration), LOCKS);
+   }
+
+   private EvictionPolicy getEvictionPolicy(final CacheConfiguration configuration) {
+      final String policy = configuration.getEvictionPolicy();
+
+      if (policy == null || CacheConfiguration.EVICTION_LRU.equals(policy)) {
+         return new LruEvictionPolicy();
+      } else if (CacheConfiguration.EVICTION_TINY_LFU.equals(policy)) {
+         return new TinyLfuEvictionPolicy(configuration.getMaxEntries());
+      }
+
+      throw new IllegalArgumentException("Unknown cache eviction policy: " + policy);
    }
 }
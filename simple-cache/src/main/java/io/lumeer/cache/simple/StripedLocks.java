@@ -0,0 +1,104 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.cache.simple;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed number of locks shared by all keys of one or more caches. Unlike a lock per key, it does not grow with the number of keys
+ * and the locks are never dropped, so clearing or dropping a cache cannot break mutual exclusion. Different keys can share
+ * the same lock, so a thread holding a lock on one key should not wait for a lock on another key held by another thread.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class StripedLocks {
+
+   private final ReentrantLock[] locks;
+
+   private final int mask;
+
+   /**
+    * Creates stripes for the number of available processors, there are four times more stripes than processors
+    * to keep the chance of two busy keys sharing a lock low.
+    */
+   public StripedLocks() {
+      this(4 * Runtime.getRuntime().availableProcessors());
+   }
+
+   /**
+    * Creates at least the given number of stripes.
+    *
+    * @param stripes
+    *       Minimal number of stripes, rounded up to a power of two.
+    */
+   public StripedLocks(final int stripes) {
+      final int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+
+      locks = new ReentrantLock[size];
+      for (int i = 0; i < size; i++) {
+         locks[i] = new ReentrantLock();
+      }
+      mask = size - 1;
+   }
+
+   /**
+    * Waits to obtain the lock of the given key.
+    *
+    * @param key
+    *       Entry key.
+    */
+   public void lock(final String key) {
+      getLock(key).lock();
+   }
+
+   /**
+    * Releases the lock of the given key.
+    *
+    * @param key
+    *       Entry key.
+    * @throws IllegalMonitorStateException
+    *       When the current thread does not hold the lock.
+    */
+   public void unlock(final String key) {
+      getLock(key).unlock();
+   }
+
+   /**
+    * Tries to obtain the lock of the given key.
+    *
+    * @param key
+    *       Entry key.
+    * @return True if and only if the lock was obtained.
+    */
+   public boolean tryLock(final String key) {
+      return getLock(key).tryLock();
+   }
+
+   int size() {
+      return locks.length;
+   }
+
+   private ReentrantLock getLock(final String key) {
+      int h = key.hashCode();
+      h ^= h >>> 16;
+
+      return locks[h & mask];
+   }
+}
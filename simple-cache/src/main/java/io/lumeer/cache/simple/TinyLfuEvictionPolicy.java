@@ -0,0 +1,132 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.cache.simple;
+
+import java.util.Arrays;
+
+/**
+ * LRU eviction with TinyLFU admission. The access frequency of keys is estimated by a count-min sketch
+ * and a new entry is admitted only when it is used more frequently than the entry it would evict.
+ * This keeps one-time entries (e.g. a scan over many documents) from flushing the frequently used ones.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class TinyLfuEvictionPolicy extends LruEvictionPolicy {
+
+   private static final int DEPTH = 4;
+
+   private static final int[] SEEDS = { 0x97cb3127, 0xb3c5a951, 0x7f4a7c15, 0x5bd1e995 };
+
+   private static final int MAX_FREQUENCY = 15;
+
+   private final int[] table;
+
+   private final int mask;
+
+   /**
+    * Number of recorded events after which all counters are halved, so that old popularity fades away.
+    */
+   private final int sampleSize;
+
+   private int samples = 0;
+
+   /**
+    * Creates the policy for a cache of the given size.
+    *
+    * @param expectedSize
+    *       Expected number of entries in the cache.
+    */
+   public TinyLfuEvictionPolicy(final long expectedSize) {
+      final int width = Integer.highestOneBit((int) Math.max(16, Math.min(expectedSize, 1 << 24)) - 1) << 1;
+
+      table = new int[width * DEPTH];
+      mask = width - 1;
+      sampleSize = 10 * width;
+   }
+
+   @Override
+   public void recordAccess(final String key) {
+      super.recordAccess(key);
+      increment(key);
+   }
+
+   @Override
+   public void recordWrite(final String key) {
+      super.recordWrite(key);
+      increment(key);
+   }
+
+   @Override
+   public boolean admit(final String candidate, final String victim) {
+      return frequency(candidate) > frequency(victim);
+   }
+
+   @Override
+   public void clear() {
+      super.clear();
+      Arrays.fill(table, 0);
+      samples = 0;
+   }
+
+   /**
+    * Estimates how often the key was used recently.
+    *
+    * @param key
+    *       Entry key.
+    * @return The estimated frequency.
+    */
+   int frequency(final String key) {
+      final int hash = key.hashCode();
+      int frequency = MAX_FREQUENCY;
+
+      for (int i = 0; i < DEPTH; i++) {
+         frequency = Math.min(frequency, table[index(hash, i)]);
+      }
+
+      return frequency;
+   }
+
+   private void increment(final String key) {
+      final int hash = key.hashCode();
+      boolean added = false;
+
+      for (int i = 0; i < DEPTH; i++) {
+         final int index = index(hash, i);
+         if (table[index] < MAX_FREQUENCY) {
+            table[index]++;
+            added = true;
+         }
+      }
+
+      if (added && ++samples >= sampleSize) {
+         for (int i = 0; i < table.length; i++) {
+            table[i] >>>= 1;
+         }
+         samples /= 2;
+      }
+   }
+
+   private int index(final int hash, final int row) {
+      int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+      h ^= h >>> 16;
+
+      return row * (mask + 1) + (h & mask);
+   }
+}
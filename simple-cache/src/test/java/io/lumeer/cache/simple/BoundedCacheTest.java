@@ -0,0 +1,130 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.cache.simple;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lumeer.engine.api.cache.CacheConfiguration;
+import io.lumeer.engine.api.cache.CacheStatistics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class BoundedCacheTest {
+
+   private final AtomicLong time = new AtomicLong();
+
+   @Test
+   public void testLruEviction() {
+      final BoundedCache<String> cache = new BoundedCache<>(new CacheConfiguration(3, 0, CacheConfiguration.EVICTION_LRU), new LruEvictionPolicy(), time::get);
+
+      cache.set("a", "A");
+      cache.set("b", "B");
+      cache.set("c", "C");
+      assertThat(cache.get("a")).isEqualTo("A"); // b is the least recently used now
+
+      cache.set("d", "D");
+      assertThat(cache.get("b")).isNull();
+      assertThat(cache.get("a")).isEqualTo("A");
+      assertThat(cache.get("c")).isEqualTo("C");
+      assertThat(cache.get("d")).isEqualTo("D");
+
+      final CacheStatistics statistics = cache.getStatistics();
+      assertThat(statistics.getSize()).isEqualTo(3);
+      assertThat(statistics.getEvictionCount()).isEqualTo(1);
+      assertThat(statistics.getHitCount()).isEqualTo(4);
+      assertThat(statistics.getMissCount()).isEqualTo(1);
+   }
+
+   @Test
+   public void testWeightLimit() {
+      final BoundedCache<String> cache = new BoundedCache<>(
+            new CacheConfiguration(0, 10, value -> ((String) value).length(), 0, CacheConfiguration.EVICTION_LRU), new LruEvictionPolicy(), time::get);
+
+      cache.set("a", "aaaa");
+      cache.set("b", "bbbb");
+      assertThat(cache.getStatistics().getWeight()).isEqualTo(8);
+
+      cache.set("c", "cccc");
+      assertThat(cache.get("a")).isNull();
+      assertThat(cache.getStatistics().getWeight()).isEqualTo(8);
+
+      cache.set("b", "b");
+      assertThat(cache.getStatistics().getWeight()).isEqualTo(5);
+      assertThat(cache.remove("c")).isEqualTo("cccc");
+      assertThat(cache.getStatistics().getWeight()).isEqualTo(1);
+   }
+
+   @Test
+   public void testExpiration() {
+      final BoundedCache<String> cache = new BoundedCache<>(new CacheConfiguration(0, 1000, CacheConfiguration.EVICTION_LRU), new LruEvictionPolicy(), time::get);
+
+      cache.set("a", "A");
+      cache.set("b", "B", 5, TimeUnit.SECONDS);
+      assertThat(cache.computeIfAbsent("c", key -> "C")).isEqualTo("C");
+
+      time.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+      assertThat(cache.get("a")).isEqualTo("A");
+
+      time.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+      assertThat(cache.get("a")).isNull();
+      assertThat(cache.computeIfAbsent("c", key -> "C2")).isEqualTo("C2");
+      assertThat(cache.get("b")).isEqualTo("B");
+
+      time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+      cache.cleanUp();
+      assertThat(cache.getStatistics().getSize()).isEqualTo(0);
+      assertThat(cache.getStatistics().getExpirationCount()).isEqualTo(4);
+   }
+
+   @Test
+   public void testTinyLfuAdmission() {
+      final BoundedCache<String> cache = new BoundedCache<>(new CacheConfiguration(2, 0, CacheConfiguration.EVICTION_TINY_LFU), new TinyLfuEvictionPolicy(2), time::get);
+
+      cache.set("hot1", "1");
+      cache.set("hot2", "2");
+      for (int i = 0; i < 5; i++) {
+         cache.get("hot1");
+         cache.get("hot2");
+      }
+
+      // one-time entries do not push out the frequently used ones
+      for (int i = 0; i < 10; i++) {
+         cache.set("cold" + i, "x");
+      }
+
+      assertThat(cache.get("hot1")).isEqualTo("1");
+      assertThat(cache.get("hot2")).isEqualTo("2");
+      assertThat(cache.getStatistics().getSize()).isEqualTo(2);
+   }
+
+   @Test
+   public void testFactory() {
+      final SimpleCacheFactory factory = new SimpleCacheFactory();
+
+      assertThat(factory.getCache(CacheConfiguration.UNLIMITED)).isInstanceOf(SimpleCache.class);
+      assertThat(factory.getCache(new CacheConfiguration(10, 0, CacheConfiguration.EVICTION_TINY_LFU))).isInstanceOf(BoundedCache.class);
+   }
+}
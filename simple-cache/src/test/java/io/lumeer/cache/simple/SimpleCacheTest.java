@@ -0,0 +1,87 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.cache.simple;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lumeer.engine.api.cache.Cache;
+import io.lumeer.engine.api.cache.CacheConfiguration;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class SimpleCacheTest {
+
+   @Test
+   public void testClearKeepsLocks() throws Exception {
+      final SimpleCache<String> cache = new SimpleCache<>();
+
+      cache.set("a", "A");
+      cache.lock("a");
+      try {
+         cache.clear();
+         assertThat(cache.get("a")).isNull();
+         assertThat(CompletableFuture.supplyAsync(() -> cache.tryLock("a")).get(5, TimeUnit.SECONDS)).isFalse();
+      } finally {
+         cache.unlock("a");
+      }
+
+      assertThat(CompletableFuture.supplyAsync(() -> {
+         final boolean locked = cache.tryLock("a");
+         if (locked) {
+            cache.unlock("a");
+         }
+         return locked;
+      }).get(5, TimeUnit.SECONDS)).isTrue();
+   }
+
+   @Test
+   public void testFactorySharesLocks() throws Exception {
+      final SimpleCacheFactory factory = new SimpleCacheFactory();
+      final Cache<String> cache = factory.getCache(CacheConfiguration.UNLIMITED);
+      final Cache<String> recreated = factory.getCache(new CacheConfiguration(10, 0, CacheConfiguration.EVICTION_LRU));
+
+      cache.lock("a");
+      try {
+         assertThat(CompletableFuture.supplyAsync(() -> recreated.tryLock("a")).get(5, TimeUnit.SECONDS)).isFalse();
+      } finally {
+         cache.unlock("a");
+      }
+   }
+
+   @Test
+   public void testStripes() {
+      assertThat(new StripedLocks(1).size()).isEqualTo(1);
+      assertThat(new StripedLocks(5).size()).isEqualTo(8);
+      assertThat(new StripedLocks(16).size()).isEqualTo(16);
+
+      // the lock is reentrant, also for different keys sharing a stripe
+      final StripedLocks locks = new StripedLocks(1);
+      locks.lock("a");
+      assertThat(locks.tryLock("b")).isTrue();
+      locks.unlock("b");
+      locks.unlock("a");
+   }
+}
@@ -0,0 +1,282 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.data.DataStorage;
+import io.lumeer.engine.api.data.DataStorageDialect;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Collects increments of attribute counters in collection metadata and writes them behind in a single update
+ * per collection. Deltas are kept in in-memory counters and flushed periodically, whenever the number
+ * of pending increments reaches the configured threshold, and on shutdown.
+ *
+ * @author <a href="mailto:kubedo8@gmail.com">Jakub Rodák</a>
+ */
+@ApplicationScoped
+public class AttributeCountAggregator {
+
+   @Inject
+   private ManagedScheduledExecutorService scheduler;
+
+   @Inject
+   private DataStorageDialect dialect;
+
+   @Inject
+   private Logger log;
+
+   private final Map<CounterKey, LongAdder> counters = new ConcurrentHashMap<>();
+
+   private final LongAdder pending = new LongAdder();
+
+   private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+   private volatile long maxStaleness = 0;
+
+   private volatile int flushThreshold = 0;
+
+   private ScheduledFuture<?> periodicFlush;
+
+   /**
+    * Sets the maximal time the counters can stay unwritten and the number of pending increments that triggers a flush.
+    * The periodic flush is started by the first call with a positive staleness, later calls can change only the threshold.
+    *
+    * @param maxStaleness
+    *       maximal staleness of the counters in milliseconds, zero or less writes every increment immediately
+    * @param flushThreshold
+    *       number of pending increments which triggers a flush, zero or less for no threshold
+    */
+   public synchronized void configure(final long maxStaleness, final int flushThreshold) {
+      this.flushThreshold = flushThreshold;
+
+      if (periodicFlush == null && maxStaleness > 0) {
+         periodicFlush = scheduler.scheduleWithFixedDelay(this::flush, maxStaleness, maxStaleness, TimeUnit.MILLISECONDS);
+         this.maxStaleness = maxStaleness;
+      }
+   }
+
+   /**
+    * Adds a delta to the attribute counter in the metadata of the given collection.
+    *
+    * @param dataStorage
+    *       data storage where the collection metadata are located, must not be a contextual proxy
+    * @param collectionName
+    *       internal collection name
+    * @param countAttribute
+    *       full name of the counter attribute in the metadata document
+    * @param delta
+    *       value to add to the counter
+    */
+   public void increment(final DataStorage dataStorage, final String collectionName, final String countAttribute, final long delta) {
+      if (maxStaleness <= 0) {
+         dataStorage.incrementAttributeValueBy(LumeerConst.Collection.METADATA_COLLECTION, dialect.fieldValueFilter(LumeerConst.Collection.INTERNAL_NAME_KEY, collectionName), countAttribute, (int) delta);
+         return;
+      }
+
+      add(new CounterKey(dataStorage, collectionName, countAttribute), delta);
+      pending.increment();
+
+      if (flushThreshold > 0 && pending.sum() >= flushThreshold && flushScheduled.compareAndSet(false, true)) {
+         scheduler.execute(() -> {
+            flushScheduled.set(false);
+            flush();
+         });
+      }
+   }
+
+   /**
+    * Gets the sum of increments of the counter which were not written to the data storage yet.
+    *
+    * @param dataStorage
+    *       data storage where the collection metadata are located
+    * @param collectionName
+    *       internal collection name
+    * @param countAttribute
+    *       full name of the counter attribute in the metadata document
+    * @return the pending delta of the counter
+    */
+   public long getPendingDelta(final DataStorage dataStorage, final String collectionName, final String countAttribute) {
+      final LongAdder counter = counters.get(new CounterKey(dataStorage, collectionName, countAttribute));
+      return counter != null ? counter.sum() : 0;
+   }
+
+   /**
+    * Forgets all pending increments of counters under the given attribute. Used when the attribute is removed from the metadata.
+    *
+    * @param dataStorage
+    *       data storage where the collection metadata are located
+    * @param collectionName
+    *       internal collection name
+    * @param attributePath
+    *       full name of the attribute in the metadata document
+    */
+   public void discard(final DataStorage dataStorage, final String collectionName, final String attributePath) {
+      final String prefix = attributePath + ".";
+      counters.forEach((key, counter) -> {
+         if (key.dataStorage == dataStorage && key.collectionName.equals(collectionName) && key.countAttribute.startsWith(prefix)) {
+            drain(counter);
+            remove(key, counter);
+         }
+      });
+   }
+
+   /**
+    * Writes all pending increments of the given collection.
+    *
+    * @param dataStorage
+    *       data storage where the collection metadata are located
+    * @param collectionName
+    *       internal collection name
+    */
+   public void flush(final DataStorage dataStorage, final String collectionName) {
+      flush(key -> key.dataStorage == dataStorage && key.collectionName.equals(collectionName));
+   }
+
+   /**
+    * Writes all pending increments, one update per collection.
+    */
+   public void flush() {
+      pending.reset();
+      flush(key -> true);
+   }
+
+   @PreDestroy
+   public synchronized void shutdown() {
+      if (periodicFlush != null) {
+         periodicFlush.cancel(false);
+         periodicFlush = null;
+      }
+      flush();
+   }
+
+   private void flush(final Predicate<CounterKey> selector) {
+      final Map<CounterKey, Map<String, Long>> updates = new HashMap<>();
+
+      // counters without increments since the last flush are removed, so that counters of dropped collections and attributes do not stay behind
+      counters.forEach((key, counter) -> {
+         if (selector.test(key)) {
+            final long delta = drain(counter);
+            if (delta != 0) {
+               updates.computeIfAbsent(new CounterKey(key.dataStorage, key.collectionName, null), k -> new HashMap<>()).put(key.countAttribute, delta);
+            } else {
+               remove(key, counter);
+            }
+         }
+      });
+
+      updates.forEach((collection, increments) -> {
+         try {
+            collection.dataStorage.incrementAttributeValuesBy(LumeerConst.Collection.METADATA_COLLECTION, dialect.fieldValueFilter(LumeerConst.Collection.INTERNAL_NAME_KEY, collection.collectionName), increments);
+         } catch (RuntimeException e) {
+            // put the deltas back so that they are written by the next flush
+            increments.forEach((countAttribute, delta) -> add(new CounterKey(collection.dataStorage, collection.collectionName, countAttribute), delta));
+            log.log(Level.WARNING, "Unable to write attribute counters of collection " + collection.collectionName + ": ", e);
+         }
+      });
+   }
+
+   // an increment of a counter removed in the meantime is moved to the counter currently in the map
+   private void add(final CounterKey key, final long delta) {
+      final LongAdder counter = counters.computeIfAbsent(key, k -> new LongAdder());
+      counter.add(delta);
+
+      if (counters.get(key) != counter) {
+         moveLateIncrements(key, counter);
+      }
+   }
+
+   private void remove(final CounterKey key, final LongAdder counter) {
+      if (counters.remove(key, counter)) {
+         moveLateIncrements(key, counter);
+      }
+   }
+
+   private void moveLateIncrements(final CounterKey key, final LongAdder counter) {
+      final long delta = drain(counter);
+      if (delta != 0) {
+         add(key, delta);
+      }
+   }
+
+   // unlike LongAdder.sumThenReset(), subtracting the sum keeps the increments that come after it,
+   // the drains of one counter must not overlap so that the sum is subtracted just once
+   private static long drain(final LongAdder counter) {
+      synchronized (counter) {
+         final long delta = counter.sum();
+         counter.add(-delta);
+
+         return delta;
+      }
+   }
+
+   /**
+    * Identifies a counter, or all counters of a collection when countAttribute is null.
+    */
+   private static final class CounterKey {
+
+      private final DataStorage dataStorage;
+      private final String collectionName;
+      private final String countAttribute;
+
+      private CounterKey(final DataStorage dataStorage, final String collectionName, final String countAttribute) {
+         this.dataStorage = dataStorage;
+         this.collectionName = collectionName;
+         this.countAttribute = countAttribute;
+      }
+
+      @Override
+      public boolean equals(final Object o) {
+         if (this == o) {
+            return true;
+         }
+         if (o == null || getClass() != o.getClass()) {
+            return false;
+         }
+
+         final CounterKey that = (CounterKey) o;
+
+         return dataStorage == that.dataStorage && collectionName.equals(that.collectionName) && Objects.equals(countAttribute, that.countAttribute);
+      }
+
+      @Override
+      public int hashCode() {
+         int result = System.identityHashCode(dataStorage);
+         result = 31 * result + collectionName.hashCode();
+         result = 31 * result + (countAttribute != null ? countAttribute.hashCode() : 0);
+         return result;
+      }
+   }
+}
@@ -84,6 +84,9 @@ public class CollectionFacade implements Serializable {
    @Inject
    private VersionFacade versionFacade;
 
+   @Inject
+   private SecurityFacade securityFacade;
+
    @Inject
    private Event<CreateCollection> createCollectionEvent;
 
@@ -152,6 +155,7 @@ public class CollectionFacade implements Serializable {
       String internalCollectionName = collectionMetadataFacade.createInternalName(collectionOriginalName);
 
       dataStorage.createCollection(internalCollectionName);
+      securityFacade.createRightsIndexes(internalCollectionName);
       collectionMetadataFacade.createInitialMetadata(internalCollectionName, collectionOriginalName);
 
       createCollectionEvent.fire(new CreateCollection(collectionOriginalName, internalCollectionName));
@@ -21,6 +21,9 @@ package io.lumeer.engine.controller;
 
 import io.lumeer.engine.annotation.UserDataStorage;
 import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.cache.Cache;
+import io.lumeer.engine.api.cache.CacheManager;
+import io.lumeer.engine.api.cache.CacheProvider;
 import io.lumeer.engine.api.constraint.Constraint;
 import io.lumeer.engine.api.constraint.ConstraintManager;
 import io.lumeer.engine.api.constraint.InvalidConstraintException;
@@ -32,6 +35,7 @@ import io.lumeer.engine.api.exception.AttributeAlreadyExistsException;
 import io.lumeer.engine.api.exception.CollectionMetadataDocumentNotFoundException;
 import io.lumeer.engine.api.exception.UserCollectionAlreadyExistsException;
 import io.lumeer.engine.api.exception.UserCollectionNotFoundException;
+import io.lumeer.engine.provider.DataStorageProvider;
 import io.lumeer.engine.rest.dao.AccessRightsDao;
 import io.lumeer.engine.rest.dao.Attribute;
 import io.lumeer.engine.rest.dao.CollectionMetadata;
@@ -85,14 +89,35 @@ public class CollectionMetadataFacade implements Serializable {
    @Inject
    private Event<ChangeCollectionName> changeCollectionNameEvent;
 
+   @Inject
+   private AttributeCountAggregator attributeCountAggregator;
+
+   @Inject
+   private DataStorageProvider dataStorageProvider;
+
+   @Inject
+   private CacheManager cacheManager;
+
    private ConstraintManager constraintManager;
 
    private static final String METADATA_COLLECTION = LumeerConst.Collection.METADATA_COLLECTION;
 
+   private static final String CONSTRAINTS_CACHE = "constraints";
+
+   private CacheProvider cacheProvider;
+
+   @PostConstruct
+   public void init() {
+      initConstraintManager();
+      cacheProvider = cacheManager.getCacheProvider("collectionMetadata");
+      attributeCountAggregator.configure(
+            configurationFacade.getConfigurationInteger(LumeerConst.ATTRIBUTE_COUNT_MAX_STALENESS_PROPERTY).orElse(0),
+            configurationFacade.getConfigurationInteger(LumeerConst.ATTRIBUTE_COUNT_FLUSH_THRESHOLD_PROPERTY).orElse(0));
+   }
+
    /**
     * Initializes constraint manager.
     */
-   @PostConstruct
    public void initConstraintManager() {
       try {
          constraintManager = new ConstraintManager();
@@ -268,6 +293,9 @@ public class CollectionMetadataFacade implements Serializable {
          throw new AttributeAlreadyExistsException(ErrorMessageBuilder.attributeAlreadyExistsString(newName, collectionName));
       }
 
+      // pending counts must be written under the old name
+      attributeCountAggregator.flush(dataStorageProvider.getUserStorage(), collectionName);
+
       String oldNamePath = attributePath(oldName);
       String newNamePath = attributePath(newName);
 
@@ -286,6 +314,7 @@ public class CollectionMetadataFacade implements Serializable {
     *       attribute to be dropped
     */
    public void dropAttribute(String collectionName, String attributeName) throws CollectionMetadataDocumentNotFoundException {
+      attributeCountAggregator.discard(dataStorageProvider.getUserStorage(), collectionName, nestedAttributeName(LumeerConst.Collection.ATTRIBUTES_KEY, attributePath(attributeName)));
       dataStorage.dropAttribute(
             METADATA_COLLECTION,
             dialect.documentIdFilter(getCollectionMetadataDocument(collectionName).getId()),
@@ -306,19 +335,11 @@ public class CollectionMetadataFacade implements Serializable {
     */
    public void addOrIncrementAttribute(String collectionName, String attributeName) throws CollectionMetadataDocumentNotFoundException {
       Attribute attribute = getAttributeInfo(collectionName, attributeName);
-      String documentId = getCollectionMetadataDocument(collectionName).getId();
 
       if (attribute != null) {
-         dataStorage.incrementAttributeValueBy(
-               METADATA_COLLECTION,
-               dialect.documentIdFilter(documentId),
-               nestedAttributeName(
-                     nestedAttributeName(
-                           LumeerConst.Collection.ATTRIBUTES_KEY,
-                           attributePath(attributeName)),
-                     LumeerConst.Collection.ATTRIBUTE_COUNT_KEY),
-               1);
+         attributeCountAggregator.increment(dataStorageProvider.getUserStorage(), collectionName, attributeCountName(attributeName), 1);
       } else {
+         String documentId = getCollectionMetadataDocument(collectionName).getId();
          List<String> dividedName = divideAttributeName(attributeName);
          dataStorage.updateDocument(
                METADATA_COLLECTION,
@@ -360,21 +381,13 @@ public class CollectionMetadataFacade implements Serializable {
          return;
       }
 
-      if (attribute.getCount() <= 1L) {
+      String countName = attributeCountName(attributeName);
+      if (attribute.getCount() + attributeCountAggregator.getPendingDelta(dataStorageProvider.getUserStorage(), collectionName, countName) <= 1L) {
          dropAttribute(collectionName, attributeName);
          return;
       }
 
-      String documentId = getCollectionMetadataDocument(collectionName).getId();
-      dataStorage.incrementAttributeValueBy(
-            METADATA_COLLECTION,
-            dialect.documentIdFilter(documentId),
-            nestedAttributeName(
-                  nestedAttributeName(
-                        LumeerConst.Collection.ATTRIBUTES_KEY,
-                        attributePath(attributeName)),
-                  LumeerConst.Collection.ATTRIBUTE_COUNT_KEY),
-            -1);
+      attributeCountAggregator.increment(dataStorageProvider.getUserStorage(), collectionName, countName, -1);
    }
 
    /**
@@ -391,7 +404,7 @@ public class CollectionMetadataFacade implements Serializable {
       if (attribute == null) {
          return 0;
       }
-      return attribute.getCount();
+      return attribute.getCount() + (int) attributeCountAggregator.getPendingDelta(dataStorageProvider.getUserStorage(), collectionName, attributeCountName(attributeName));
    }
 
    /**
@@ -554,13 +567,17 @@ public class CollectionMetadataFacade implements Serializable {
    /**
     * Checks whether value satisfies all constraints (and tries to fix it when possible).
     *
+    * @param collectionName
+    *       internal collection name
+    * @param attributeName
+    *       full attribute name
     * @param attribute
-    *       attribute name
+    *       attribute metadata
     * @param valueObject
     *       attribute value
     * @return null when the value is not valid, fixed value when the value is fixable, original value when the value is valid
     */
-   private Object checkAndConvertAttributeValue(Attribute attribute, Object valueObject) {
+   private Object checkAndConvertAttributeValue(String collectionName, String attributeName, Attribute attribute, Object valueObject) {
       // if the value is DataDocument, we check it recursively
       if (valueObject instanceof DataDocument) {
 
@@ -573,7 +590,7 @@ public class CollectionMetadataFacade implements Serializable {
             if (!attributes.keySet().contains(key)) { // attribute does not exist - no need to check anything
                afterCheck.put(key, beforeCheck.get(key));
             } else {
-               Object newValue = checkAndConvertAttributeValue(attributes.get(key), beforeCheck.get(key));
+               Object newValue = checkAndConvertAttributeValue(collectionName, nestedAttributeName(attributeName, key), attributes.get(key), beforeCheck.get(key));
                afterCheck.put(key, newValue);
             }
          }
@@ -586,13 +603,7 @@ public class CollectionMetadataFacade implements Serializable {
          return valueObject;
       }
 
-      ConstraintManager constraintManager = null;
-      try {
-         constraintManager = new ConstraintManager(constraintConfigurations);
-         initConstraintManager(constraintManager);
-      } catch (InvalidConstraintException e) {
-         throw new IllegalStateException("Illegal constraint prefix collision: ", e);
-      }
+      ConstraintManager constraintManager = getCompiledConstraints(collectionName, attributeName, constraintConfigurations);
 
       String valueString = valueObject.toString();
       Constraint.ConstraintResult result = constraintManager.isValid(valueString);
@@ -618,16 +629,39 @@ public class CollectionMetadataFacade implements Serializable {
     * @return map of results, key is attribute name and value is result of checkAndConvertAttributeValue on that attribute
     */
    public DataDocument checkAndConvertAttributesValues(String collectionName, DataDocument document) throws CollectionMetadataDocumentNotFoundException {
+      return checkAndConvertAttributesValues(collectionName, getCollectionMetadata(collectionName).getAttributes(), document);
+   }
+
+   /**
+    * Checks value of every attribute of all given documents. Collection metadata are read only once for all the documents.
+    *
+    * @param collectionName
+    *       internal collection name
+    * @param documents
+    *       documents with attributes and their values to check
+    * @return list of results in the order of documents, each as returned by {@link #checkAndConvertAttributesValues(String, DataDocument)}
+    */
+   public List<DataDocument> checkAndConvertAttributesValues(String collectionName, List<DataDocument> documents) throws CollectionMetadataDocumentNotFoundException {
+      Map<String, Attribute> attributesMetadata = getCollectionMetadata(collectionName).getAttributes();
+
+      List<DataDocument> results = new ArrayList<>(documents.size());
+      for (DataDocument document : documents) {
+         results.add(checkAndConvertAttributesValues(collectionName, attributesMetadata, document));
+      }
+
+      return results;
+   }
+
+   private DataDocument checkAndConvertAttributesValues(String collectionName, Map<String, Attribute> attributesMetadata, DataDocument document) {
       DataDocument results = new DataDocument();
 
       Set<String> attributes = document.keySet();
-      Map<String, Attribute> attributesMetadata = getCollectionMetadata(collectionName).getAttributes();
       for (String a : attributes) {
          Object value = document.get(a);
          if (!attributesMetadata.keySet().contains(a)) { // attribute does not exist - no need to check anything
             results.append(a, value);
          } else {
-            results.append(a, checkAndConvertAttributeValue(attributesMetadata.get(a), value));
+            results.append(a, checkAndConvertAttributeValue(collectionName, a, attributesMetadata.get(a), value));
          }
       }
 
@@ -678,6 +712,7 @@ public class CollectionMetadataFacade implements Serializable {
       }
 
       constraintManager.registerConstraint(constraintConfiguration); // if this doesn't throw an exception, the constraint is valid
+      getConstraintsCache().remove(constraintsCacheKey(collectionName, attributeName, existingConstraints));
 
       dataStorage.addItemToArray(
             METADATA_COLLECTION,
@@ -702,6 +737,7 @@ public class CollectionMetadataFacade implements Serializable {
     *       constraint configuration to be removed
     */
    public void dropAttributeConstraint(String collectionName, String attributeName, String constraintConfiguration) throws CollectionMetadataDocumentNotFoundException {
+      getConstraintsCache().remove(constraintsCacheKey(collectionName, attributeName, getAttributeConstraintsConfigurations(collectionName, attributeName)));
       dataStorage.removeItemFromArray(
             METADATA_COLLECTION,
             dialect.documentIdFilter(getCollectionMetadataDocument(collectionName).getId()),
@@ -752,6 +788,53 @@ public class CollectionMetadataFacade implements Serializable {
       dataStorage.run(query);
    }
 
+   /**
+    * Updates collection metadata after new documents were added to the collection. Attribute counts of all documents,
+    * the list of recently used documents and the time of last usage are changed in a single update.
+    *
+    * @param collectionName
+    *       internal collection name
+    * @param documents
+    *       newly created documents
+    * @param ids
+    *       ids of the newly created documents in the order of their creation
+    * @throws CollectionMetadataDocumentNotFoundException
+    *       when metadata for collection was not found
+    */
+   public void addDocumentsMetadata(String collectionName, List<DataDocument> documents, List<String> ids) throws CollectionMetadataDocumentNotFoundException {
+      Map<String, Attribute> attributesMetadata = getCollectionMetadata(collectionName).getAttributes();
+
+      Map<String, Integer> counts = new HashMap<>();
+      documents.forEach(document -> document.keySet().stream()
+                                            .filter(attribute -> !LumeerConst.Document.METADATA_KEYS.contains(attribute))
+                                            .forEach(attribute -> counts.merge(attribute, 1, Integer::sum)));
+
+      Map<String, Integer> increments = new HashMap<>();
+      DataDocument newAttributes = new DataDocument();
+      counts.forEach((attributeName, count) -> {
+         String path = nestedAttributeName(LumeerConst.Collection.ATTRIBUTES_KEY, attributePath(attributeName));
+         if (attributesMetadata.containsKey(attributeName)) {
+            increments.put(nestedAttributeName(path, LumeerConst.Collection.ATTRIBUTE_COUNT_KEY), count);
+         } else {
+            List<String> dividedName = divideAttributeName(attributeName);
+            newAttributes.append(path, new DataDocument()
+                  .append(LumeerConst.Collection.ATTRIBUTE_NAME_KEY, dividedName.get(dividedName.size() - 1))
+                  .append(LumeerConst.Collection.ATTRIBUTE_CONSTRAINTS_KEY, new ArrayList<String>())
+                  .append(LumeerConst.Collection.ATTRIBUTE_COUNT_KEY, count)
+                  .append(LumeerConst.Collection.ATTRIBUTE_CHILDREN_KEY, new HashMap<String, Attribute>()));
+         }
+      });
+
+      int listSize = configurationFacade.getConfigurationInteger(LumeerConst.NUMBER_OF_RECENT_DOCS_PROPERTY)
+                                        .orElse(LumeerConst.Collection.DEFAULT_NUMBER_OF_RECENT_DOCUMENTS);
+
+      // the most recently created document goes first
+      List<String> recentIds = new ArrayList<>(ids.subList(Math.max(0, ids.size() - listSize), ids.size()));
+      Collections.reverse(recentIds);
+
+      dataStorage.run(dialect.addDocumentsMetadataQuery(METADATA_COLLECTION, collectionName, increments, newAttributes, recentIds, listSize, new Date()));
+   }
+
    public void removeRecentlyUsedDocumentId(String collectionName, String id) throws CollectionMetadataDocumentNotFoundException {
       String docId = getCollectionMetadataDocument(collectionName).getId();
       dataStorage.removeItemFromArray(METADATA_COLLECTION, dialect.documentIdFilter(docId), LumeerConst.Collection.RECENTLY_USED_DOCUMENTS_KEY, id);
@@ -911,6 +994,37 @@ public class CollectionMetadataFacade implements Serializable {
       return result != null;
    }
 
+   /**
+    * Gets constraints of the attribute compiled from their configurations. The compiled constraints are shared
+    * in the project until the configurations change.
+    *
+    * @param collectionName
+    *       internal collection name
+    * @param attributeName
+    *       full attribute name
+    * @param constraintConfigurations
+    *       configurations of the attribute constraints
+    * @return constraint manager holding the compiled constraints
+    */
+   private ConstraintManager getCompiledConstraints(String collectionName, String attributeName, List<String> constraintConfigurations) {
+      return getConstraintsCache().computeIfAbsent(constraintsCacheKey(collectionName, attributeName, constraintConfigurations), key -> {
+         try {
+            return new ConstraintManager(constraintConfigurations, constraintManager.getLocale());
+         } catch (InvalidConstraintException e) {
+            throw new IllegalStateException("Illegal constraint prefix collision: ", e);
+         }
+      });
+   }
+
+   private Cache<ConstraintManager> getConstraintsCache() {
+      return cacheProvider.getCache(CONSTRAINTS_CACHE);
+   }
+
+   // configurations are part of the key, so a changed configuration never hits a stale entry
+   private String constraintsCacheKey(String collectionName, String attributeName, List<String> constraintConfigurations) {
+      return collectionName + "/" + attributeName + "/" + constraintManager.getLocale().toLanguageTag() + "/" + String.join("\n", constraintConfigurations);
+   }
+
    // initializes constraint manager
    private void initConstraintManager(ConstraintManager constraintManager) {
       constraintManager.setLocale(Locale.forLanguageTag(configurationFacade.getConfigurationString(LumeerConst.USER_LOCALE_PROPERTY).orElse("en-US")));
@@ -921,6 +1035,15 @@ public class CollectionMetadataFacade implements Serializable {
       return userFacade.getUserEmail();
    }
 
+   // returns string "attributes.<attribute path>.attribute-count"
+   private String attributeCountName(String attributeName) {
+      return nestedAttributeName(
+            nestedAttributeName(
+                  LumeerConst.Collection.ATTRIBUTES_KEY,
+                  attributePath(attributeName)),
+            LumeerConst.Collection.ATTRIBUTE_COUNT_KEY);
+   }
+
    // returns string "parent.child"
    private static String nestedAttributeName(String parent, String child) {
       return parent + "." + child;
@@ -0,0 +1,105 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.data.DataDocument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Differences between two consecutive versions of a document. A delta describes how to get the older version
+ * from the newer one, so that old versions can be stored as deltas against the next version in the shadow collection.
+ * Only top level attributes are compared, changed nested documents are stored whole.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public final class DocumentDelta {
+
+   private DocumentDelta() {
+      // utility class
+   }
+
+   /**
+    * Gets whether the shadow document stores just a delta.
+    *
+    * @param shadowDocument
+    *       document from the shadow collection
+    * @return true if and only if the document is a delta
+    */
+   public static boolean isDelta(final DataDocument shadowDocument) {
+      return shadowDocument.containsKey(LumeerConst.Document.SHADOW_DELTA_SET_KEY);
+   }
+
+   /**
+    * Computes delta to get the previous version of a document from the next one.
+    *
+    * @param previous
+    *       previous version of the document
+    * @param next
+    *       next version of the document
+    * @return delta document carrying the version of the previous document
+    */
+   public static DataDocument diff(final DataDocument previous, final DataDocument next) {
+      final DataDocument set = new DataDocument();
+      previous.forEach((key, value) -> {
+         if (isDeltaKey(key) && (!next.containsKey(key) || !Objects.equals(value, next.get(key)))) {
+            set.put(key, value);
+         }
+      });
+
+      final List<String> unset = new ArrayList<>();
+      next.keySet().stream().filter(key -> isDeltaKey(key) && !previous.containsKey(key)).forEach(unset::add);
+
+      return new DataDocument(LumeerConst.Document.METADATA_VERSION_KEY, previous.getInteger(LumeerConst.Document.METADATA_VERSION_KEY, 0))
+            .append(LumeerConst.Document.SHADOW_DELTA_SET_KEY, set)
+            .append(LumeerConst.Document.SHADOW_DELTA_UNSET_KEY, unset);
+   }
+
+   /**
+    * Reconstructs the previous version of a document.
+    *
+    * @param next
+    *       next version of the document
+    * @param delta
+    *       delta of the previous version
+    * @return previous version of the document with the id and version of the delta
+    */
+   public static DataDocument apply(final DataDocument next, final DataDocument delta) {
+      final DataDocument previous = new DataDocument(next);
+      final List<String> unset = delta.getArrayList(LumeerConst.Document.SHADOW_DELTA_UNSET_KEY, String.class);
+      if (unset != null) {
+         unset.forEach(previous::remove);
+      }
+      previous.putAll(delta.getDataDocument(LumeerConst.Document.SHADOW_DELTA_SET_KEY));
+      if (delta.containsKey(LumeerConst.Document.ID)) {
+         previous.put(LumeerConst.Document.ID, delta.get(LumeerConst.Document.ID));
+      }
+      previous.put(LumeerConst.Document.METADATA_VERSION_KEY, delta.get(LumeerConst.Document.METADATA_VERSION_KEY));
+
+      return previous;
+   }
+
+   private static boolean isDeltaKey(final String key) {
+      return !LumeerConst.Document.ID.equals(key) && !LumeerConst.Document.METADATA_VERSION_KEY.equals(key);
+   }
+}
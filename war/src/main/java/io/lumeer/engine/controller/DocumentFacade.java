@@ -22,6 +22,7 @@ package io.lumeer.engine.controller;
 import io.lumeer.engine.annotation.UserDataStorage;
 import io.lumeer.engine.api.LumeerConst;
 import io.lumeer.engine.api.constraint.InvalidConstraintException;
+import io.lumeer.engine.api.data.BulkWriteResult;
 import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.engine.api.data.DataFilter;
 import io.lumeer.engine.api.data.DataStorage;
@@ -31,6 +32,7 @@ import io.lumeer.engine.api.exception.CollectionMetadataDocumentNotFoundExceptio
 import io.lumeer.engine.api.exception.DbException;
 import io.lumeer.engine.api.exception.InvalidDocumentKeyException;
 import io.lumeer.engine.api.exception.UnsuccessfulOperationException;
+import io.lumeer.engine.api.exception.VersionUpdateConflictException;
 import io.lumeer.engine.util.ErrorMessageBuilder;
 import io.lumeer.engine.util.Utils;
 
@@ -120,6 +122,61 @@ public class DocumentFacade implements Serializable {
       return documentId;
    }
 
+   /**
+    * Creates and inserts new documents to specified collection in a single bulk write. Collection metadata
+    * are updated once for the whole batch.
+    *
+    * @param collectionName
+    *       the name of the collection where the documents will be created
+    * @param documents
+    *       the DataDocument objects representing documents to be created
+    * @return the ids of the newly created documents in the order of the given documents, null for a document that could not be created.
+    *       The documents are inserted in order, so the documents after the first failed one are not created either.
+    * @throws DbException
+    *       When there is an error working with the database.
+    * @throws InvalidConstraintException
+    *       if one of documents' values doesn't satisfy constraint or type
+    */
+   public List<String> createDocuments(final String collectionName, final List<DataDocument> documents) throws DbException, InvalidConstraintException {
+      final String user = userFacade.getUserEmail();
+      final List<DataDocument> validDocs = new ArrayList<>(documents.size());
+      for (final DataDocument document : documents) {
+         validDocs.add(checkDocumentKeysValidity(document));
+      }
+      // check constraints
+      final List<DataDocument> docs = checkConstraintsAndConvert(collectionName, validDocs);
+      // add metadata attributes
+      for (final DataDocument doc : docs) {
+         documentMetadataFacade.putInitDocumentMetadataInternally(doc, user);
+         versionFacade.putInitDocumentVersionInternally(doc);
+         securityFacade.putFullRightsInternally(doc, user);
+      }
+
+      final BulkWriteResult result = dataStorage.createDocuments(collectionName, docs, true);
+
+      final List<DataDocument> created = new ArrayList<>();
+      final List<String> createdIds = new ArrayList<>();
+      final List<String> ids = new ArrayList<>(docs.size());
+      for (int i = 0; i < docs.size(); i++) {
+         if (result.isSuccessful(i)) {
+            created.add(docs.get(i));
+            createdIds.add(result.getId(i));
+         }
+         ids.add(result.isSuccessful(i) ? result.getId(i) : null);
+      }
+
+      // attribute counts, recently used documents and last usage in one metadata update
+      if (!created.isEmpty()) {
+         try {
+            collectionMetadataFacade.addDocumentsMetadata(collectionName, created, createdIds);
+         } catch (CollectionMetadataDocumentNotFoundException e) {
+            // nothing happens - if we don't find metadata, we just don't update it
+         }
+      }
+
+      return ids;
+   }
+
    /**
     * Reads the specified document in given collection by its id.
     *
@@ -148,12 +205,31 @@ public class DocumentFacade implements Serializable {
     *       if one of document's value doesn't satisfy constraint or type
     */
    public void updateDocument(final String collectionName, final DataDocument updatedDocument) throws DbException, InvalidConstraintException {
-      DataDocument existingDocument = dataStorage.readDocument(collectionName, dataStorageDialect.documentIdFilter(updatedDocument.getId()));
+      updateDocument(collectionName, updatedDocument, null);
+   }
 
+   /**
+    * Modifies an existing document in given collection by its id if it still has the expected version. The document
+    * is not read before the update, its previous version is returned by the update itself.
+    *
+    * @param collectionName
+    *       the name of the collection where the existing document is located
+    * @param updatedDocument
+    *       the DataDocument object representing a document with changes to update
+    * @param expectedVersion
+    *       the version of the document the changes are based on, null to update any version
+    * @throws DbException
+    *       When there is an error working with the data storage.
+    * @throws VersionUpdateConflictException
+    *       When the document has a different version than expected.
+    * @throws InvalidConstraintException
+    *       if one of document's value doesn't satisfy constraint or type
+    */
+   public void updateDocument(final String collectionName, final DataDocument updatedDocument, final Integer expectedVersion) throws DbException, InvalidConstraintException {
       final DataDocument upd = cleanInvalidAttributes(updatedDocument);
       checkConstraintsAndConvert(collectionName, updatedDocument);
       documentMetadataFacade.putUpdateDocumentMetadataInternally(upd, userFacade.getUserEmail());
-      versionFacade.newDocumentVersion(collectionName, existingDocument, upd, false);
+      final DataDocument existingDocument = versionFacade.updateDocumentVersion(collectionName, updatedDocument.getId(), upd, expectedVersion);
 
       // we add new attributes of updated document to collection metadata
       upd.keySet().stream().filter(attribute -> !existingDocument.containsKey(attribute) && !LumeerConst.Document.METADATA_KEYS.contains(attribute)).forEach(attribute -> {
@@ -228,6 +304,7 @@ public class DocumentFacade implements Serializable {
 
       versionFacade.backUpDocument(collectionName, dataDocument);
       dataStorage.dropDocument(collectionName, documentIdFilter);
+      securityFacade.invalidateDecisions(collectionName, documentId);
 
       if (dataStorage.collectionHasDocument(collectionName, documentIdFilter)) {
          throw new UnsuccessfulOperationException(ErrorMessageBuilder.dropDocumentUnsuccesfulString());
@@ -264,9 +341,12 @@ public class DocumentFacade implements Serializable {
       DataDocument meta = filterAndRemoveMeta(revertDocument);
       checkConstraintsAndConvert(collectionName, revertDocument);
       revertDocument.putAll(meta);
+      // versions backed up before the readers and writers were introduced
+      securityFacade.indexRights(revertDocument);
       documentMetadataFacade.putUpdateDocumentMetadataInternally(revertDocument, userFacade.getUserEmail());
 
       versionFacade.revertDocumentVersion(collectionName, existingDocument, revertDocument);
+      securityFacade.invalidateDecisions(collectionName, documentId);
 
       // add new attributes of updated document to collection metadata
       revertDocument.keySet().stream().filter(attribute -> !existingDocument.containsKey(attribute) && !LumeerConst.Document.METADATA_KEYS.contains(attribute)).forEach(attribute -> {
@@ -343,6 +423,23 @@ public class DocumentFacade implements Serializable {
       }
    }
 
+   private List<DataDocument> checkConstraintsAndConvert(final String collectionName, final List<DataDocument> docs) throws InvalidConstraintException {
+      List<DataDocument> converted = docs;
+      try {
+         converted = collectionMetadataFacade.checkAndConvertAttributesValues(collectionName, docs);
+      } catch (CollectionMetadataDocumentNotFoundException e) {
+         // nothing happens - if we don't find metadata, all values are valid
+      }
+      for (DataDocument doc : converted) {
+         for (String attribute : doc.keySet()) {
+            if (doc.get(attribute) == null) {
+               throw new InvalidConstraintException(ErrorMessageBuilder.invalidConstraintKeyString(attribute));
+            }
+         }
+      }
+      return converted;
+   }
+
    private DataDocument checkDocumentKeysValidity(DataDocument dataDocument) throws InvalidDocumentKeyException {
       DataDocument ndd = new DataDocument();
       for (Map.Entry<String, Object> entry : dataDocument.entrySet()) {
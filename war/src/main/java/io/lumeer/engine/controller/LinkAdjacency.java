@@ -0,0 +1,248 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import io.lumeer.engine.api.LumeerConst;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Neighbours of documents in a single linking collection in both directions. Document ids are kept packed in byte arrays,
+ * 12 bytes per id, so only linking collections with hexadecimal object ids can be indexed. The arrays are never
+ * modified, a change replaces them, so lookups need no locking.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public final class LinkAdjacency {
+
+   /**
+    * Placeholder of a linking collection that cannot be indexed.
+    */
+   public static final LinkAdjacency NOT_INDEXED = new LinkAdjacency(false);
+
+   private static final int ID_LENGTH = 12;
+
+   /**
+    * Approximate memory taken by a map entry with a document id key and an empty array.
+    */
+   private static final long ENTRY_WEIGHT = 136;
+
+   private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+   private final boolean indexed;
+
+   private final Map<String, byte[]> from = new ConcurrentHashMap<>();
+
+   private final Map<String, byte[]> to = new ConcurrentHashMap<>();
+
+   private volatile long weight = 0;
+
+   public LinkAdjacency() {
+      this(true);
+   }
+
+   private LinkAdjacency(final boolean indexed) {
+      this.indexed = indexed;
+   }
+
+   public boolean isIndexed() {
+      return indexed;
+   }
+
+   /**
+    * Gets approximate memory taken by the adjacency in bytes.
+    *
+    * @return Approximate memory taken by the adjacency.
+    */
+   public long getWeight() {
+      return weight;
+   }
+
+   /**
+    * Gets the ids of documents linked to the given document.
+    *
+    * @param documentId
+    *       id of the document
+    * @param linkDirection
+    *       FROM for documents the given document links to, TO for documents linking to it
+    * @return ids of the linked documents in the order the links were added
+    */
+   public List<String> getNeighbours(final String documentId, final LumeerConst.Linking.LinkDirection linkDirection) {
+      final byte[] ids = index(linkDirection).get(documentId);
+      if (ids == null) {
+         return Collections.emptyList();
+      }
+
+      final List<String> neighbours = new ArrayList<>(ids.length / ID_LENGTH);
+      for (int i = 0; i < ids.length; i += ID_LENGTH) {
+         neighbours.add(unpack(ids, i));
+      }
+      return neighbours;
+   }
+
+   /**
+    * Adds a link. A link already present is not added twice.
+    *
+    * @param fromId
+    *       id of the source document
+    * @param toId
+    *       id of the target document
+    * @return false if and only if the ids cannot be indexed
+    */
+   public synchronized boolean add(final String fromId, final String toId) {
+      if (!isPackable(fromId) || !isPackable(toId)) {
+         return false;
+      }
+
+      add(from, fromId, toId);
+      add(to, toId, fromId);
+      return true;
+   }
+
+   /**
+    * Removes a link.
+    *
+    * @param fromId
+    *       id of the source document
+    * @param toId
+    *       id of the target document
+    * @return always true
+    */
+   public synchronized boolean remove(final String fromId, final String toId) {
+      remove(from, fromId, toId);
+      remove(to, toId, fromId);
+      return true;
+   }
+
+   /**
+    * Removes all links of the given document.
+    *
+    * @param documentId
+    *       id of the document
+    * @param linkDirection
+    *       FROM for links from the given document, TO for links to it
+    * @return always true
+    */
+   public synchronized boolean removeDocument(final String documentId, final LumeerConst.Linking.LinkDirection linkDirection) {
+      final List<String> neighbours = getNeighbours(documentId, linkDirection);
+      final Map<String, byte[]> reverse = linkDirection == LumeerConst.Linking.LinkDirection.FROM ? to : from;
+
+      neighbours.forEach(neighbour -> remove(reverse, neighbour, documentId));
+      final byte[] removed = index(linkDirection).remove(documentId);
+      if (removed != null) {
+         weight -= ENTRY_WEIGHT + removed.length;
+      }
+      return true;
+   }
+
+   private Map<String, byte[]> index(final LumeerConst.Linking.LinkDirection linkDirection) {
+      return linkDirection == LumeerConst.Linking.LinkDirection.FROM ? from : to;
+   }
+
+   private void add(final Map<String, byte[]> index, final String key, final String id) {
+      final byte[] ids = index.get(key);
+      if (ids == null) {
+         final byte[] newIds = new byte[ID_LENGTH];
+         pack(id, newIds, 0);
+         index.put(key, newIds);
+         weight += ENTRY_WEIGHT + ID_LENGTH;
+      } else if (indexOf(ids, id) < 0) {
+         final byte[] newIds = new byte[ids.length + ID_LENGTH];
+         System.arraycopy(ids, 0, newIds, 0, ids.length);
+         pack(id, newIds, ids.length);
+         index.put(key, newIds);
+         weight += ID_LENGTH;
+      }
+   }
+
+   private void remove(final Map<String, byte[]> index, final String key, final String id) {
+      final byte[] ids = index.get(key);
+      final int position = ids == null || !isPackable(id) ? -1 : indexOf(ids, id);
+      if (position < 0) {
+         return;
+      }
+
+      if (ids.length == ID_LENGTH) {
+         index.remove(key);
+         weight -= ENTRY_WEIGHT + ID_LENGTH;
+      } else {
+         final byte[] newIds = new byte[ids.length - ID_LENGTH];
+         System.arraycopy(ids, 0, newIds, 0, position);
+         System.arraycopy(ids, position + ID_LENGTH, newIds, position, ids.length - position - ID_LENGTH);
+         index.put(key, newIds);
+         weight -= ID_LENGTH;
+      }
+   }
+
+   private static int indexOf(final byte[] ids, final String id) {
+      final byte[] packed = new byte[ID_LENGTH];
+      pack(id, packed, 0);
+
+      for (int i = 0; i < ids.length; i += ID_LENGTH) {
+         int j = 0;
+         while (j < ID_LENGTH && ids[i + j] == packed[j]) {
+            j++;
+         }
+         if (j == ID_LENGTH) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Gets whether the id is a lower case hexadecimal object id that can be packed.
+    *
+    * @param id
+    *       document id
+    * @return true if and only if the id can be packed
+    */
+   public static boolean isPackable(final String id) {
+      if (id == null || id.length() != 2 * ID_LENGTH) {
+         return false;
+      }
+      for (int i = 0; i < id.length(); i++) {
+         final char c = id.charAt(i);
+         if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private static void pack(final String id, final byte[] target, final int offset) {
+      for (int i = 0; i < ID_LENGTH; i++) {
+         target[offset + i] = (byte) ((Character.digit(id.charAt(2 * i), 16) << 4) | Character.digit(id.charAt(2 * i + 1), 16));
+      }
+   }
+
+   private static String unpack(final byte[] source, final int offset) {
+      final char[] id = new char[2 * ID_LENGTH];
+      for (int i = 0; i < ID_LENGTH; i++) {
+         id[2 * i] = HEX_DIGITS[(source[offset + i] >> 4) & 0xf];
+         id[2 * i + 1] = HEX_DIGITS[source[offset + i] & 0xf];
+      }
+      return new String(id);
+   }
+}
@@ -0,0 +1,283 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.engine.api.data.DataStorage;
+import io.lumeer.engine.api.data.DataStorageDialect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Removes links of dropped documents in the background. Dropped documents are recorded as tombstones in a queue
+ * collection of the data storage, so the cleanup survives a restart, and processed in batches with a single
+ * delete per linking collection. Until then, the tombstoned documents are remembered in memory so that their links
+ * can be left out of read results.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+@ApplicationScoped
+public class LinkCleanupQueue {
+
+   /**
+    * Maximal number of tombstones processed together.
+    */
+   private static final int CLEANUP_BATCH_SIZE = 1000;
+
+   /**
+    * Time to wait for more dropped documents before the cleanup starts, in milliseconds.
+    */
+   private static final long CLEANUP_DELAY = 1000L;
+
+   /**
+    * Maximal time to wait before the cleanup is retried after repeated failures, in milliseconds.
+    */
+   private static final long MAX_CLEANUP_DELAY = 60000L;
+
+   @Inject
+   private ManagedScheduledExecutorService scheduler;
+
+   @Inject
+   private DataStorageDialect dialect;
+
+   @Inject
+   private Logger log;
+
+   private final Map<DataStorage, Set<String>> tombstones = new ConcurrentHashMap<>();
+
+   private final Set<DataStorage> scheduled = ConcurrentHashMap.newKeySet();
+
+   private final Set<DataStorage> migrated = ConcurrentHashMap.newKeySet();
+
+   private final Map<DataStorage, Long> retryDelays = new ConcurrentHashMap<>();
+
+   private final Map<DataStorage, AtomicLong> droppedLinkingTables = new ConcurrentHashMap<>();
+
+   private final Map<DataStorage, Map<String, Object>> linkTypeLocks = new ConcurrentHashMap<>();
+
+   /**
+    * Records a dropped document whose links are to be removed.
+    *
+    * @param dataStorage
+    *       data storage where the links are located, must not be a contextual proxy
+    * @param collectionName
+    *       internal name of the collection of the dropped document
+    * @param documentId
+    *       id of the dropped document
+    */
+   public void enqueue(final DataStorage dataStorage, final String collectionName, final String documentId) {
+      dataStorage.createDocument(LumeerConst.Linking.CleanupQueue.NAME, new DataDocument(LumeerConst.Linking.CleanupQueue.ATTR_COLLECTION, collectionName)
+            .append(LumeerConst.Linking.CleanupQueue.ATTR_DOCUMENT_ID, documentId));
+      getTombstones(dataStorage).add(tombstoneKey(collectionName, documentId));
+      schedule(dataStorage);
+   }
+
+   /**
+    * Runs the migration of linking collections of the data storage. Only the first successful call for a data storage
+    * has any effect.
+    *
+    * @param dataStorage
+    *       data storage where the links are located, must not be a contextual proxy
+    * @param migration
+    *       migration of the linking collections
+    */
+   public void migrate(final DataStorage dataStorage, final Runnable migration) {
+      if (!migrated.add(dataStorage)) {
+         return;
+      }
+
+      try {
+         migration.run();
+      } catch (RuntimeException e) {
+         migrated.remove(dataStorage);
+         throw e;
+      }
+   }
+
+   /**
+    * Loads the tombstones left by a previous run and schedules their cleanup. Only the first call for a data storage has any effect.
+    *
+    * @param dataStorage
+    *       data storage where the links are located, must not be a contextual proxy
+    */
+   public void resume(final DataStorage dataStorage) {
+      if (tombstones.containsKey(dataStorage)) {
+         return;
+      }
+
+      final Set<String> keys = getTombstones(dataStorage);
+      dataStorage.search(LumeerConst.Linking.CleanupQueue.NAME, null, null, 0, 0)
+                 .forEach(tombstone -> keys.add(tombstoneKey(tombstone.getString(LumeerConst.Linking.CleanupQueue.ATTR_COLLECTION), tombstone.getString(LumeerConst.Linking.CleanupQueue.ATTR_DOCUMENT_ID))));
+      if (!keys.isEmpty()) {
+         schedule(dataStorage);
+      }
+   }
+
+   /**
+    * Gets whether the document was dropped and its links were not removed yet.
+    *
+    * @param dataStorage
+    *       data storage where the links are located
+    * @param collectionName
+    *       internal name of the collection of the document
+    * @param documentId
+    *       id of the document
+    * @return true if and only if the links of the document are waiting for removal
+    */
+   public boolean isDropped(final DataStorage dataStorage, final String collectionName, final String documentId) {
+      final Set<String> keys = tombstones.get(dataStorage);
+      return keys != null && !keys.isEmpty() && keys.contains(tombstoneKey(collectionName, documentId));
+   }
+
+   /**
+    * Gets the number of linking tables dropped by the cleanup because they became empty. The link types cached
+    * by projects must be read again when it changes.
+    *
+    * @param dataStorage
+    *       data storage where the links are located, must not be a contextual proxy
+    * @return the number of dropped linking tables
+    */
+   public long getDroppedLinkingTables(final DataStorage dataStorage) {
+      final AtomicLong dropped = droppedLinkingTables.get(dataStorage);
+      return dropped == null ? 0 : dropped.get();
+   }
+
+   /**
+    * Runs the action while the cleanup cannot drop the linking table of the given link type. Links must be created
+    * this way, so that a link is not lost with a table found empty just before it and the table is not dropped
+    * just before the link is added to it.
+    *
+    * @param dataStorage
+    *       data storage where the links are located, must not be a contextual proxy
+    * @param fromCollection
+    *       internal name of the collection the links go from
+    * @param toCollection
+    *       internal name of the collection the links go to
+    * @param role
+    *       role of the links
+    * @param action
+    *       the action to run
+    */
+   public void runWithLinkType(final DataStorage dataStorage, final String fromCollection, final String toCollection, final String role, final Runnable action) {
+      synchronized (getLinkTypeLock(dataStorage, fromCollection, toCollection, role)) {
+         action.run();
+      }
+   }
+
+   /**
+    * Removes links of all recorded dropped documents.
+    *
+    * @param dataStorage
+    *       data storage where the links are located, must not be a contextual proxy
+    */
+   public void cleanUp(final DataStorage dataStorage) {
+      List<DataDocument> batch;
+      while (!(batch = dataStorage.search(LumeerConst.Linking.CleanupQueue.NAME, null, null, 0, CLEANUP_BATCH_SIZE)).isEmpty()) {
+         final Map<String, List<String>> dropped = new LinkedHashMap<>();
+         final List<String> tombstoneIds = new ArrayList<>(batch.size());
+         batch.forEach(tombstone -> {
+            dropped.computeIfAbsent(tombstone.getString(LumeerConst.Linking.CleanupQueue.ATTR_COLLECTION), k -> new ArrayList<>())
+                   .add(tombstone.getString(LumeerConst.Linking.CleanupQueue.ATTR_DOCUMENT_ID));
+            tombstoneIds.add(tombstone.getId());
+         });
+
+         dropped.forEach((collectionName, documentIds) -> dropLinks(dataStorage, collectionName, documentIds));
+         dataStorage.dropManyDocuments(LumeerConst.Linking.CleanupQueue.NAME, dialect.documentIdsFilter(tombstoneIds));
+
+         final Set<String> keys = getTombstones(dataStorage);
+         dropped.forEach((collectionName, documentIds) -> documentIds.forEach(documentId -> keys.remove(tombstoneKey(collectionName, documentId))));
+      }
+   }
+
+   // linking tables left empty are dropped together with their link types, as when the links are dropped directly
+   private void dropLinks(final DataStorage dataStorage, final String collectionName, final List<String> documentIds) {
+      final Map<String, DataDocument> linkingCollections = new LinkedHashMap<>();
+      for (LumeerConst.Linking.LinkDirection linkDirection : Arrays.asList(LumeerConst.Linking.LinkDirection.FROM, LumeerConst.Linking.LinkDirection.TO)) {
+         final List<DataDocument> linkingTables = dataStorage.search(LumeerConst.Linking.MainTable.NAME, dialect.linkingFromTablesFilter(collectionName, null, linkDirection), null, 0, 0);
+         for (DataDocument lt : linkingTables) {
+            final String linkingCollection = lt.getString(LumeerConst.Linking.MainTable.ATTR_COL_NAME);
+            dataStorage.dropManyDocuments(linkingCollection, dialect.linkingFromDocumentsFilter(documentIds, linkDirection));
+            linkingCollections.put(linkingCollection, lt);
+         }
+      }
+
+      // the table is checked and dropped under the lock of its link type, links created meanwhile keep it
+      linkingCollections.forEach((linkingCollection, lt) -> {
+         final String role = lt.getString(LumeerConst.Linking.MainTable.ATTR_ROLE);
+         runWithLinkType(dataStorage, lt.getString(LumeerConst.Linking.MainTable.ATTR_FROM_COLLECTION), lt.getString(LumeerConst.Linking.MainTable.ATTR_TO_COLLECTION), role, () -> {
+            if (dataStorage.documentCount(linkingCollection) == 0) {
+               dataStorage.dropCollection(linkingCollection);
+               dataStorage.dropManyDocuments(LumeerConst.Linking.MainTable.NAME, dialect.linkingFromTablesColNameFilter(linkingCollection, role));
+               droppedLinkingTables.computeIfAbsent(dataStorage, k -> new AtomicLong()).incrementAndGet();
+            }
+         });
+      });
+   }
+
+   private Object getLinkTypeLock(final DataStorage dataStorage, final String fromCollection, final String toCollection, final String role) {
+      return linkTypeLocks.computeIfAbsent(dataStorage, k -> new ConcurrentHashMap<>())
+                          .computeIfAbsent(fromCollection + "/" + toCollection + "/" + role, k -> new Object());
+   }
+
+   private void schedule(final DataStorage dataStorage) {
+      if (scheduled.add(dataStorage)) {
+         scheduler.schedule(() -> run(dataStorage), retryDelays.getOrDefault(dataStorage, CLEANUP_DELAY), TimeUnit.MILLISECONDS);
+      }
+   }
+
+   // the delay doubles with every failure in a row so that a persistent failure does not keep the scheduler busy
+   private void run(final DataStorage dataStorage) {
+      try {
+         cleanUp(dataStorage);
+         retryDelays.remove(dataStorage);
+      } catch (RuntimeException e) {
+         log.log(Level.WARNING, "Unable to remove links of dropped documents: ", e);
+         retryDelays.merge(dataStorage, 2 * CLEANUP_DELAY, (delay, initial) -> Math.min(2 * delay, MAX_CLEANUP_DELAY));
+      } finally {
+         scheduled.remove(dataStorage);
+         // documents dropped during the cleanup or left by a failure
+         if (!getTombstones(dataStorage).isEmpty()) {
+            schedule(dataStorage);
+         }
+      }
+   }
+
+   private Set<String> getTombstones(final DataStorage dataStorage) {
+      return tombstones.computeIfAbsent(dataStorage, k -> ConcurrentHashMap.newKeySet());
+   }
+
+   private String tombstoneKey(final String collectionName, final String documentId) {
+      return collectionName + "/" + documentId;
+   }
+}
@@ -21,17 +21,38 @@ package io.lumeer.engine.controller;
 
 import io.lumeer.engine.annotation.UserDataStorage;
 import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.cache.Cache;
+import io.lumeer.engine.api.cache.CacheConfiguration;
+import io.lumeer.engine.api.cache.CacheManager;
+import io.lumeer.engine.api.cache.CacheProvider;
+import io.lumeer.engine.api.data.DataCursor;
 import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.engine.api.data.DataFilter;
 import io.lumeer.engine.api.data.DataStorage;
 import io.lumeer.engine.api.data.DataStorageDialect;
 import io.lumeer.engine.api.event.DropDocument;
 import io.lumeer.engine.api.exception.DbException;
+import io.lumeer.engine.provider.DataStorageProvider;
 import io.lumeer.engine.rest.dao.LinkDao;
+import io.lumeer.engine.rest.dao.LinkStepDao;
+import io.lumeer.engine.rest.dao.LinkTraversalDao;
 import io.lumeer.engine.rest.dao.LinkTypeDao;
+import io.lumeer.engine.util.ErrorMessageBuilder;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.SessionScoped;
 import javax.enterprise.event.Observes;
@@ -44,6 +65,17 @@ import javax.inject.Inject;
 @SessionScoped
 public class LinkingFacade implements Serializable {
 
+   /**
+    * Maximal number of linked documents read by a single query.
+    */
+   private static final int LINKED_DOCUMENTS_BATCH_SIZE = 1000;
+
+   private static final String LINKING_TABLES_CACHE = "linkingTables";
+
+   private static final String INDEX_KEY = "key";
+
+   private static final String LINK_ADJACENCY_CACHE = "linkAdjacency";
+
    /*
       Main linking table name is "_system_linking"
       attributes - "fromCollection" name of first collection
@@ -71,19 +103,55 @@ public class LinkingFacade implements Serializable {
    @Inject
    private UserFacade userFacade;
 
+   @Inject
+   private CacheManager cacheManager;
+
+   @Inject
+   private ConfigurationFacade configurationFacade;
+
+   @Inject
+   private DataStorageProvider dataStorageProvider;
+
+   @Inject
+   private LinkCleanupQueue linkCleanupQueue;
+
+   private CacheProvider cacheProvider;
+
+   /**
+    * Memory limit of the link adjacency index of the project in bytes, zero when the index is disabled.
+    */
+   private int linkAdjacencyMaxSize;
+
    /**
     * Creates main linking table if not exists
     */
    @PostConstruct
    public void init() {
+      cacheProvider = cacheManager.getCacheProvider("linking");
+      linkAdjacencyMaxSize = configurationFacade.getConfigurationInteger(LumeerConst.LINKING_INDEX_MAX_SIZE_PROPERTY).orElse(0);
+
       if (!dataStorage.hasCollection(LumeerConst.Linking.MainTable.NAME)) {
          dataStorage.createCollection(LumeerConst.Linking.MainTable.NAME);
       }
+      linkCleanupQueue.resume(dataStorageProvider.getUserStorage());
    }
 
-   public void onDropDocument(@Observes(notifyObserver = Reception.IF_EXISTS) final DropDocument dropDocument) throws DbException {
-      dropAllDocumentLinks(dropDocument.getCollectionName(), dropDocument.getDocument().getId(), null, LumeerConst.Linking.LinkDirection.FROM);
-      dropAllDocumentLinks(dropDocument.getCollectionName(), dropDocument.getDocument().getId(), null, LumeerConst.Linking.LinkDirection.TO);
+   /**
+    * Schedules removal of links of the dropped document. Until the links are removed, they are left out of the read links.
+    *
+    * @param dropDocument
+    *       event describing the dropped document
+    */
+   public void onDropDocument(@Observes(notifyObserver = Reception.IF_EXISTS) final DropDocument dropDocument) {
+      final String collectionName = dropDocument.getCollectionName();
+      final String documentId = dropDocument.getDocument().getId();
+      linkCleanupQueue.enqueue(dataStorageProvider.getUserStorage(), collectionName, documentId);
+
+      for (LumeerConst.Linking.LinkDirection linkDirection : Arrays.asList(LumeerConst.Linking.LinkDirection.FROM, LumeerConst.Linking.LinkDirection.TO)) {
+         for (DataDocument lt : readLinkingTablesFrom(collectionName, null, linkDirection)) {
+            updateLinkAdjacency(lt.getString(LumeerConst.Linking.MainTable.ATTR_COL_NAME), adjacency -> adjacency.removeDocument(documentId, linkDirection));
+         }
+      }
    }
 
    /**
@@ -255,6 +323,104 @@ public class LinkingFacade implements Serializable {
       return links;
    }
 
+   /**
+    * Traverse links from specified document level by level. The i-th level follows the i-th step, the last step
+    * is repeated until the maximal depth is reached. Every document is visited at most once.
+    *
+    * @param collectionName
+    *       the name of the start document's collection
+    * @param documentId
+    *       the id of the start document
+    * @param steps
+    *       roles and directions of links to follow
+    * @param minDepth
+    *       documents closer to the start document are traversed but not returned
+    * @param maxDepth
+    *       maximal number of links between the start document and a returned document
+    * @param limit
+    *       maximal number of returned documents
+    * @param collectionFilter
+    *       which collections can be entered by the traversal
+    * @return reached documents with the names of their collections and the links leading to them
+    * @throws DbException
+    *       When there is an error working with the database.
+    */
+   public LinkTraversalDao traverseLinks(final String collectionName, final String documentId, final List<LinkStepDao> steps, final int minDepth, final int maxDepth, final int limit, final Predicate<String> collectionFilter) throws DbException {
+      if (steps == null || steps.isEmpty()) {
+         throw new IllegalArgumentException(ErrorMessageBuilder.paramCanNotBeNullString("steps"));
+      }
+      if (minDepth < 0 || maxDepth < 1 || maxDepth < minDepth) {
+         throw new IllegalArgumentException(ErrorMessageBuilder.invalidTraversalDepthString(minDepth, maxDepth));
+      }
+
+      LinkTraversalDao traversal = new LinkTraversalDao();
+      Set<String> visited = new HashSet<>();
+      visited.add(traversalKey(collectionName, documentId));
+      Set<String> reached = new HashSet<>(visited);
+
+      Map<String, Set<String>> frontier = new LinkedHashMap<>();
+      frontier.put(collectionName, Collections.singleton(documentId));
+
+      for (int depth = 1; depth <= maxDepth && !frontier.isEmpty() && traversal.getDocuments().size() < limit; depth++) {
+         LinkStepDao step = steps.get(Math.min(depth - 1, steps.size() - 1));
+         Map<String, Set<String>> targets = new LinkedHashMap<>();
+         List<LinkDao> links = new ArrayList<>();
+         List<String> linkTargets = new ArrayList<>();
+
+         // one query per linking collection and batch of frontier documents
+         for (Map.Entry<String, Set<String>> level : frontier.entrySet()) {
+            for (LumeerConst.Linking.LinkDirection linkDirection : traversalDirections(step.getDirection())) {
+               for (DataDocument lt : readLinkingTablesFrom(level.getKey(), step.getRole(), linkDirection)) {
+                  String targetCollectionName = linkDirection == LumeerConst.Linking.LinkDirection.FROM ? lt.getString(LumeerConst.Linking.MainTable.ATTR_TO_COLLECTION) : lt.getString(LumeerConst.Linking.MainTable.ATTR_FROM_COLLECTION);
+                  if (!collectionFilter.test(targetCollectionName)) {
+                     continue;
+                  }
+
+                  for (DataDocument ld : readLinkingDocumentsFrom(lt.getString(LumeerConst.Linking.MainTable.ATTR_COL_NAME), level.getValue(), linkDirection)) {
+                     String fromId = ld.getString(LumeerConst.Linking.LinkingTable.ATTR_FROM_ID);
+                     String toId = ld.getString(LumeerConst.Linking.LinkingTable.ATTR_TO_ID);
+                     String targetId = linkDirection == LumeerConst.Linking.LinkDirection.FROM ? toId : fromId;
+
+                     links.add(new LinkDao(lt.getString(LumeerConst.Linking.MainTable.ATTR_FROM_COLLECTION), lt.getString(LumeerConst.Linking.MainTable.ATTR_TO_COLLECTION),
+                           lt.getString(LumeerConst.Linking.MainTable.ATTR_ROLE), fromId, toId, ld.getDataDocument(LumeerConst.Linking.LinkingTable.ATTR_ATTRIBUTES)));
+                     String targetKey = traversalKey(targetCollectionName, targetId);
+                     linkTargets.add(targetKey);
+                     if (visited.add(targetKey)) {
+                        targets.computeIfAbsent(targetCollectionName, k -> new LinkedHashSet<>()).add(targetId);
+                     }
+                  }
+               }
+            }
+         }
+
+         frontier = new LinkedHashMap<>();
+         for (Map.Entry<String, Set<String>> target : targets.entrySet()) {
+            Map<String, DataDocument> documents = readDocumentsByIds(target.getKey(), new ArrayList<>(target.getValue()));
+            for (String targetId : target.getValue()) {
+               DataDocument document = documents.get(targetId);
+               if (document == null || (depth >= minDepth && traversal.getDocuments().size() >= limit)) {
+                  continue;
+               }
+               if (depth >= minDepth) {
+                  document.put(LumeerConst.Document.COLLECTION_NAME, target.getKey());
+                  traversal.getDocuments().add(document);
+               }
+               frontier.computeIfAbsent(target.getKey(), k -> new LinkedHashSet<>()).add(targetId);
+               reached.add(traversalKey(target.getKey(), targetId));
+            }
+         }
+
+         // links to missing documents and documents over the limit are left out
+         for (int i = 0; i < links.size(); i++) {
+            if (reached.contains(linkTargets.get(i))) {
+               traversal.getLinks().add(links.get(i));
+            }
+         }
+      }
+
+      return traversal;
+   }
+
    /**
     * Drop all links for specified document
     *
@@ -297,8 +463,20 @@ public class LinkingFacade implements Serializable {
       for (DataDocument lt : linkingTables) {
          String colName = lt.getString(LumeerConst.Linking.MainTable.ATTR_COL_NAME);
          dataStorage.dropCollection(colName);
+         dropLinkAdjacency(colName);
       }
       dataStorage.dropManyDocuments(LumeerConst.Linking.MainTable.NAME, dataStorageDialect.linkingFromTablesFilter(collectionName, role, linkDirection));
+      updateLinkingTables(registry -> registry.withoutLinkingTablesFrom(collectionName, role, linkDirection));
+   }
+
+   /**
+    * Drops the cached link types and links of the current project, they are read again from the database on the next use.
+    */
+   public void invalidateLinkingTables() {
+      getLinkingTablesCache().remove(Cache.DEFAULT_ENTRY_KEY);
+      if (linkAdjacencyMaxSize > 0) {
+         getLinkAdjacencyCache().clear();
+      }
    }
 
    /**
@@ -375,27 +553,33 @@ public class LinkingFacade implements Serializable {
     *       When there is an error working with the database.
     */
    public void createDocWithDocLink(final String firstCollectionName, final String firstDocumentId, final String secondCollectionName, final String secondDocumentId, final DataDocument attributes, final String role, final LumeerConst.Linking.LinkDirection linkDirection) throws DbException {
-      String collectionName = checkOrCreateLinkInSystemCollection(firstCollectionName, secondCollectionName, role, linkDirection);
-      createLinkIfNotExists(collectionName, firstDocumentId, secondDocumentId, attributes, linkDirection);
+      final boolean from = linkDirection == LumeerConst.Linking.LinkDirection.FROM;
+      linkCleanupQueue.runWithLinkType(dataStorageProvider.getUserStorage(), from ? firstCollectionName : secondCollectionName, from ? secondCollectionName : firstCollectionName, role, () -> {
+         String collectionName = checkOrCreateLinkInSystemCollection(firstCollectionName, secondCollectionName, role, linkDirection);
+         createLinkIfNotExists(collectionName, firstDocumentId, secondDocumentId, attributes, linkDirection);
+      });
    }
 
    private void createLinkIfNotExists(final String collectionName, final String firstDocumentId, final String secondDocumentId, final DataDocument attributes, final LumeerConst.Linking.LinkDirection linkDirection) {
-      List<DataDocument> linkingDocuments = dataStorage.search(collectionName, dataStorageDialect.linkingFromToDocumentFilter(firstDocumentId, secondDocumentId, linkDirection), null, 0, 0);
-      if (linkingDocuments.isEmpty()) {
-         String fromId;
-         String toId;
-         if (linkDirection == LumeerConst.Linking.LinkDirection.FROM) {
-            fromId = firstDocumentId;
-            toId = secondDocumentId;
-         } else {
-            fromId = secondDocumentId;
-            toId = firstDocumentId;
+      String fromId;
+      String toId;
+      if (linkDirection == LumeerConst.Linking.LinkDirection.FROM) {
+         fromId = firstDocumentId;
+         toId = secondDocumentId;
+      } else {
+         fromId = secondDocumentId;
+         toId = firstDocumentId;
+      }
+      // an existing link is kept as it is, the unique index guards against concurrent duplicates
+      try {
+         dataStorage.run(dataStorageDialect.linkingUpsertQuery(collectionName, fromId, toId, attributes));
+      } catch (RuntimeException e) {
+         // a concurrent upsert of the same link fails on the unique index, the link exists then
+         if (readLinkingDocumentsFromTo(collectionName, fromId, toId, LumeerConst.Linking.LinkDirection.FROM).isEmpty()) {
+            throw e;
          }
-         DataDocument dataDocument = new DataDocument(LumeerConst.Linking.LinkingTable.ATTR_FROM_ID, fromId)
-               .append(LumeerConst.Linking.LinkingTable.ATTR_TO_ID, toId)
-               .append(LumeerConst.Linking.LinkingTable.ATTR_ATTRIBUTES, attributes);
-         dataStorage.createDocument(collectionName, dataDocument);
       }
+      updateLinkAdjacency(collectionName, adjacency -> adjacency.add(fromId, toId));
    }
 
    private String checkOrCreateLinkInSystemCollection(final String firstCollectionName, final String secondCollectionName, final String role, final LumeerConst.Linking.LinkDirection linkDirection) {
@@ -413,8 +597,14 @@ public class LinkingFacade implements Serializable {
 
    private List<DataDocument> getDataDocumentsFromLinks(final String fromDocumentId, final LumeerConst.Linking.LinkDirection linkDirection, final DataDocument lt) {
       String colName = lt.getString(LumeerConst.Linking.MainTable.ATTR_COL_NAME);
-      List<DataDocument> linkingDocuments = readLinkingDocumentsFrom(colName, fromDocumentId, linkDirection);
       String readCollectionName = linkDirection == LumeerConst.Linking.LinkDirection.FROM ? lt.getString(LumeerConst.Linking.MainTable.ATTR_TO_COLLECTION) : lt.getString(LumeerConst.Linking.MainTable.ATTR_FROM_COLLECTION);
+
+      LinkAdjacency adjacency = getLinkAdjacency(colName);
+      if (adjacency != null) {
+         return readLinkedDocuments(adjacency.getNeighbours(fromDocumentId, linkDirection), readCollectionName);
+      }
+
+      List<DataDocument> linkingDocuments = readLinkingDocumentsFrom(colName, fromDocumentId, linkDirection);
       return readDocumentsFromLinkingDocumentsFrom(linkingDocuments, readCollectionName, linkDirection);
    }
 
@@ -423,34 +613,94 @@ public class LinkingFacade implements Serializable {
       for (DataDocument l : ls) {
          String fromId = l.getString(LumeerConst.Linking.LinkingTable.ATTR_FROM_ID);
          String toId = l.getString(LumeerConst.Linking.LinkingTable.ATTR_TO_ID);
+         if (isDropped(fromCollection, fromId) || isDropped(toCollection, toId)) {
+            continue;
+         }
          DataDocument attrs = l.getDataDocument(LumeerConst.Linking.LinkingTable.ATTR_ATTRIBUTES);
          links.add(new LinkDao(fromCollection, toCollection, role, fromId, toId, attrs));
       }
       return links;
    }
 
+   private boolean isDropped(final String collectionName, final String documentId) {
+      return linkCleanupQueue.isDropped(dataStorageProvider.getUserStorage(), collectionName, documentId);
+   }
+
    private void dropAllDocs(final String collectionName, final String documentId, final LumeerConst.Linking.LinkDirection linkDirection) {
       dataStorage.dropManyDocuments(collectionName, dataStorageDialect.linkingFromDocumentFilter(documentId, linkDirection));
+      updateLinkAdjacency(collectionName, adjacency -> adjacency.removeDocument(documentId, linkDirection));
    }
 
    private void dropAllDocs(final String collectionName, final String fromId, final String toId, final LumeerConst.Linking.LinkDirection linkDirection) {
       dataStorage.dropManyDocuments(collectionName, dataStorageDialect.linkingFromToDocumentFilter(fromId, toId, linkDirection));
+      if (linkDirection == LumeerConst.Linking.LinkDirection.FROM) {
+         updateLinkAdjacency(collectionName, adjacency -> adjacency.remove(fromId, toId));
+      } else {
+         updateLinkAdjacency(collectionName, adjacency -> adjacency.remove(toId, fromId));
+      }
    }
 
    private void checkEmptinessAndRemoveEventually(final String collectionName, String role) {
       if (dataStorage.documentCount(collectionName) == 0) {
          dataStorage.dropCollection(collectionName);
+         dropLinkAdjacency(collectionName);
 
          dataStorage.dropManyDocuments(LumeerConst.Linking.MainTable.NAME, dataStorageDialect.linkingFromTablesColNameFilter(collectionName, role));
+         updateLinkingTables(registry -> registry.withoutLinkingTables(collectionName, role));
       }
    }
 
    private List<DataDocument> readLinkingTablesFromTo(final String firstCollectionName, final String secondCollectionName, final String role, final LumeerConst.Linking.LinkDirection linkDirection) {
-      return dataStorage.search(LumeerConst.Linking.MainTable.NAME, dataStorageDialect.linkingFromToTablesFilter(firstCollectionName, secondCollectionName, role, linkDirection), null, 0, 0);
+      return getLinkingTables().getLinkingTablesFromTo(firstCollectionName, secondCollectionName, role, linkDirection);
    }
 
    private List<DataDocument> readLinkingTablesFrom(final String fromCollectionName, final String role, final LumeerConst.Linking.LinkDirection linkDirection) {
-      return dataStorage.search(LumeerConst.Linking.MainTable.NAME, dataStorageDialect.linkingFromTablesFilter(fromCollectionName, role, linkDirection), null, 0, 0);
+      return getLinkingTables().getLinkingTablesFrom(fromCollectionName, role, linkDirection);
+   }
+
+   private Cache<LinkingTableRegistry> getLinkingTablesCache() {
+      return cacheProvider.getCache(LINKING_TABLES_CACHE);
+   }
+
+   // the registry is immutable, so it is read without locking and only loaded and replaced under the entry lock,
+   // it is loaded again when the link cleanup dropped a linking table meanwhile
+   private LinkingTableRegistry getLinkingTables() {
+      final Cache<LinkingTableRegistry> cache = getLinkingTablesCache();
+      final LinkingTableRegistry registry = cache.get();
+      if (registry != null && registry.getGeneration() == linkCleanupQueue.getDroppedLinkingTables(dataStorageProvider.getUserStorage())) {
+         return registry;
+      }
+
+      cache.lock(Cache.DEFAULT_ENTRY_KEY);
+      try {
+         final long generation = linkCleanupQueue.getDroppedLinkingTables(dataStorageProvider.getUserStorage());
+         final LinkingTableRegistry current = cache.get();
+         if (current != null && current.getGeneration() == generation) {
+            return current;
+         }
+
+         linkCleanupQueue.migrate(dataStorageProvider.getUserStorage(), this::migrateLinkingCollections);
+         final LinkingTableRegistry loaded = new LinkingTableRegistry(dataStorage.search(LumeerConst.Linking.MainTable.NAME, null, null, 0, 0), generation);
+         cache.set(loaded);
+
+         return loaded;
+      } finally {
+         cache.unlock(Cache.DEFAULT_ENTRY_KEY);
+      }
+   }
+
+   // must be called after the main linking table was changed, a registry that is not loaded yet will read the change
+   private void updateLinkingTables(final UnaryOperator<LinkingTableRegistry> update) {
+      final Cache<LinkingTableRegistry> cache = getLinkingTablesCache();
+      cache.lock(Cache.DEFAULT_ENTRY_KEY);
+      try {
+         final LinkingTableRegistry registry = cache.get();
+         if (registry != null) {
+            cache.set(update.apply(registry));
+         }
+      } finally {
+         cache.unlock(Cache.DEFAULT_ENTRY_KEY);
+      }
    }
 
    private List<DataDocument> readLinkingDocumentsFrom(final String collectionName, final String fromId, final LumeerConst.Linking.LinkDirection linkDirection) {
@@ -462,13 +712,23 @@ public class LinkingFacade implements Serializable {
    }
 
    private List<DataDocument> readDocumentsFromLinkingDocumentsFrom(final List<DataDocument> linkingDocuments, final String collectionName, final LumeerConst.Linking.LinkDirection linkDirection) {
-      List<DataDocument> docs = new ArrayList<>();
       String keyParam = linkDirection == LumeerConst.Linking.LinkDirection.TO ? LumeerConst.Linking.LinkingTable.ATTR_FROM_ID : LumeerConst.Linking.LinkingTable.ATTR_TO_ID;
+      List<String> linkedIds = new ArrayList<>(linkingDocuments.size());
       for (DataDocument ld : linkingDocuments) {
          // check for right id of linking document
-         String linkingDocumentId = ld.getString(keyParam);
+         linkedIds.add(ld.getString(keyParam));
+      }
 
-         DataDocument doc = dataStorage.readDocument(collectionName, dataStorageDialect.documentIdFilter(linkingDocumentId));
+      return readLinkedDocuments(linkedIds, collectionName);
+   }
+
+   private List<DataDocument> readLinkedDocuments(final List<String> linkedIds, final String collectionName) {
+      Map<String, DataDocument> linkedDocuments = readDocumentsByIds(collectionName, linkedIds);
+
+      // keep the order of links, links to missing documents are skipped
+      List<DataDocument> docs = new ArrayList<>(linkedIds.size());
+      for (String linkedId : linkedIds) {
+         DataDocument doc = linkedDocuments.get(linkedId);
          if (doc != null) {
             docs.add(doc);
          }
@@ -476,6 +736,166 @@ public class LinkingFacade implements Serializable {
       return docs;
    }
 
+   private List<DataDocument> readLinkingDocumentsFrom(final String collectionName, final Collection<String> fromIds, final LumeerConst.Linking.LinkDirection linkDirection) {
+      List<DataDocument> linkingDocuments = new ArrayList<>();
+      List<String> ids = new ArrayList<>(fromIds);
+
+      for (int from = 0; from < ids.size(); from += LINKED_DOCUMENTS_BATCH_SIZE) {
+         List<String> batch = ids.subList(from, Math.min(from + LINKED_DOCUMENTS_BATCH_SIZE, ids.size()));
+         linkingDocuments.addAll(dataStorage.search(collectionName, dataStorageDialect.linkingFromDocumentsFilter(batch, linkDirection), null, 0, 0));
+      }
+      return linkingDocuments;
+   }
+
+   private List<LumeerConst.Linking.LinkDirection> traversalDirections(final LumeerConst.Linking.LinkDirection linkDirection) {
+      if (linkDirection == LumeerConst.Linking.LinkDirection.BOTH) {
+         return Arrays.asList(LumeerConst.Linking.LinkDirection.FROM, LumeerConst.Linking.LinkDirection.TO);
+      }
+      return Collections.singletonList(linkDirection == null ? LumeerConst.Linking.LinkDirection.FROM : linkDirection);
+   }
+
+   private String traversalKey(final String collectionName, final String documentId) {
+      return collectionName + "/" + documentId;
+   }
+
+   private Map<String, DataDocument> readDocumentsByIds(final String collectionName, final List<String> documentIds) {
+      Map<String, DataDocument> documents = new HashMap<>();
+      List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(documentIds));
+
+      for (int from = 0; from < distinctIds.size(); from += LINKED_DOCUMENTS_BATCH_SIZE) {
+         List<String> batch = distinctIds.subList(from, Math.min(from + LINKED_DOCUMENTS_BATCH_SIZE, distinctIds.size()));
+         for (DataDocument doc : dataStorage.search(collectionName, dataStorageDialect.documentIdsFilter(batch), null, 0, 0)) {
+            documents.put(doc.getId(), doc);
+         }
+      }
+      return documents;
+   }
+
+   private Cache<LinkAdjacency> getLinkAdjacencyCache() {
+      return cacheProvider.getCache(LINK_ADJACENCY_CACHE, new CacheConfiguration(0, linkAdjacencyMaxSize, adjacency -> ((LinkAdjacency) adjacency).getWeight(), 0, CacheConfiguration.EVICTION_LRU));
+   }
+
+   /**
+    * Gets the links of the given linking collection from the adjacency index, the least recently used linking
+    * collections are evicted when the index grows over its memory limit.
+    *
+    * @param collectionName
+    *       the name of the linking collection
+    * @return links of the linking collection or null when they must be read from the database
+    */
+   private LinkAdjacency getLinkAdjacency(final String collectionName) {
+      if (linkAdjacencyMaxSize <= 0) {
+         return null;
+      }
+
+      final Cache<LinkAdjacency> cache = getLinkAdjacencyCache();
+      LinkAdjacency adjacency = cache.get(collectionName);
+      if (adjacency == null) {
+         cache.lock(collectionName);
+         try {
+            adjacency = cache.computeIfAbsent(collectionName, this::loadLinkAdjacency);
+         } finally {
+            cache.unlock(collectionName);
+         }
+      }
+
+      return adjacency.isIndexed() ? adjacency : null;
+   }
+
+   // links that do not fit the memory limit would be evicted right away, so the collection is marked as not indexed instead
+   private LinkAdjacency loadLinkAdjacency(final String collectionName) {
+      final LinkAdjacency adjacency = new LinkAdjacency();
+      try (DataCursor cursor = dataStorage.searchCursor(collectionName, null, null, 0, 0, LINKED_DOCUMENTS_BATCH_SIZE)) {
+         while (cursor.hasNext()) {
+            DataDocument link = cursor.next();
+            if (!adjacency.add(link.getString(LumeerConst.Linking.LinkingTable.ATTR_FROM_ID), link.getString(LumeerConst.Linking.LinkingTable.ATTR_TO_ID))
+                  || adjacency.getWeight() > linkAdjacencyMaxSize) {
+               return LinkAdjacency.NOT_INDEXED;
+            }
+         }
+      }
+      return adjacency;
+   }
+
+   // must be called after the linking collection was changed, links that are not loaded yet will read the change
+   private void updateLinkAdjacency(final String collectionName, final Predicate<LinkAdjacency> update) {
+      if (linkAdjacencyMaxSize <= 0) {
+         return;
+      }
+
+      final Cache<LinkAdjacency> cache = getLinkAdjacencyCache();
+      cache.lock(collectionName);
+      try {
+         final LinkAdjacency adjacency = cache.get(collectionName);
+         if (adjacency != null && adjacency.isIndexed()) {
+            if (!update.test(adjacency) || adjacency.getWeight() > linkAdjacencyMaxSize) {
+               cache.set(collectionName, LinkAdjacency.NOT_INDEXED);
+            } else {
+               cache.set(collectionName, adjacency); // weighs the changed links again
+            }
+         }
+      } finally {
+         cache.unlock(collectionName);
+      }
+   }
+
+   private void dropLinkAdjacency(final String collectionName) {
+      if (linkAdjacencyMaxSize > 0) {
+         getLinkAdjacencyCache().remove(collectionName);
+      }
+   }
+
+   private DataDocument fromToIndex() {
+      return new DataDocument(LumeerConst.Linking.LinkingTable.ATTR_FROM_ID, LumeerConst.Index.ASCENDING)
+            .append(LumeerConst.Linking.LinkingTable.ATTR_TO_ID, LumeerConst.Index.ASCENDING);
+   }
+
+   private DataDocument toIndex() {
+      return new DataDocument(LumeerConst.Linking.LinkingTable.ATTR_TO_ID, LumeerConst.Index.ASCENDING);
+   }
+
+   private void createLinkingIndexes(final String collectionName) {
+      dataStorage.createIndex(collectionName, fromToIndex(), true);
+      dataStorage.createIndex(collectionName, toIndex(), false);
+   }
+
+   /**
+    * Indexes linking collections created before the linking indexes were introduced. Duplicate links that would
+    * prevent the unique index from being created are dropped first.
+    */
+   private void migrateLinkingCollections() {
+      for (String collectionName : dataStorage.getAllCollections()) {
+         if (collectionName.startsWith(LumeerConst.Linking.PREFIX + "_") && !hasIndex(collectionName, fromToIndex())) {
+            dropDuplicateLinks(collectionName);
+            createLinkingIndexes(collectionName);
+         }
+      }
+   }
+
+   private boolean hasIndex(final String collectionName, final DataDocument indexAttributes) {
+      List<String> attributes = new ArrayList<>(indexAttributes.keySet());
+      return dataStorage.listIndexes(collectionName).stream()
+                        .map(index -> index.get(INDEX_KEY))
+                        .anyMatch(key -> key instanceof Map && new ArrayList<>(((Map<?, ?>) key).keySet()).equals(attributes));
+   }
+
+   private void dropDuplicateLinks(final String collectionName) {
+      Set<String> links = new HashSet<>();
+      List<DataFilter> duplicates = new ArrayList<>();
+      try (DataCursor cursor = dataStorage.searchCursor(collectionName, null, null, 0, 0, LINKED_DOCUMENTS_BATCH_SIZE)) {
+         while (cursor.hasNext()) {
+            DataDocument link = cursor.next();
+            if (!links.add(link.getString(LumeerConst.Linking.LinkingTable.ATTR_FROM_ID) + "/" + link.getString(LumeerConst.Linking.LinkingTable.ATTR_TO_ID))) {
+               duplicates.add(dataStorageDialect.documentIdFilter(link.getId()));
+            }
+         }
+      }
+
+      if (!duplicates.isEmpty()) {
+         dataStorage.dropDocuments(collectionName, duplicates, false);
+      }
+   }
+
    private void createLinkingTable(final String firstCollectionName, final String secondCollectionName, final String role, final String collectionName, final LumeerConst.Linking.LinkDirection linkDirection) {
       String fromCollectionName;
       String toCollectionName;
@@ -492,8 +912,14 @@ public class LinkingFacade implements Serializable {
       doc.put(LumeerConst.Linking.MainTable.ATTR_COL_NAME, collectionName);
       doc.put(LumeerConst.Linking.MainTable.ATTR_ROLE, role);
 
-      dataStorage.createDocument(LumeerConst.Linking.MainTable.NAME, doc);
+      if (!dataStorage.hasCollection(collectionName)) {
+         dataStorage.createCollection(collectionName);
+      }
+      createLinkingIndexes(collectionName);
+      dropLinkAdjacency(collectionName); // links of a linking table of the same name dropped by the link cleanup
 
+      dataStorage.createDocument(LumeerConst.Linking.MainTable.NAME, doc);
+      updateLinkingTables(registry -> registry.withLinkingTable(doc));
    }
 
    private String buildCollectionName(final String firstCollectionName, final String secondCollectionName, final String role, final LumeerConst.Linking.LinkDirection linkDirection) {
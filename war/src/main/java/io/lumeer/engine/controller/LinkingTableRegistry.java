@@ -0,0 +1,160 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.data.DataDocument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable snapshot of the main linking table, i.e. of all link types in a project. Lookups mirror the linking
+ * filters of {@link io.lumeer.engine.api.data.DataStorageDialect}, changes return an updated copy.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public final class LinkingTableRegistry {
+
+   private final List<DataDocument> linkingTables;
+
+   /**
+    * Number of linking tables dropped in the background before the registry was loaded.
+    */
+   private final long generation;
+
+   public LinkingTableRegistry(final List<DataDocument> linkingTables, final long generation) {
+      this.linkingTables = Collections.unmodifiableList(new ArrayList<>(linkingTables));
+      this.generation = generation;
+   }
+
+   public long getGeneration() {
+      return generation;
+   }
+
+   /**
+    * Gets the linking tables of the given collection.
+    *
+    * @param collectionName
+    *       the name of the collection
+    * @param role
+    *       role name, all roles when null or empty
+    * @param linkDirection
+    *       direction of link
+    * @return the matching linking tables
+    */
+   public List<DataDocument> getLinkingTablesFrom(final String collectionName, final String role, final LumeerConst.Linking.LinkDirection linkDirection) {
+      return filter(fromPredicate(collectionName, role, linkDirection));
+   }
+
+   /**
+    * Gets the linking tables between two collections.
+    *
+    * @param firstCollectionName
+    *       the name of the first collection
+    * @param secondCollectionName
+    *       the name of the second collection
+    * @param role
+    *       role name, all roles when null
+    * @param linkDirection
+    *       direction of link
+    * @return the matching linking tables
+    */
+   public List<DataDocument> getLinkingTablesFromTo(final String firstCollectionName, final String secondCollectionName, final String role, final LumeerConst.Linking.LinkDirection linkDirection) {
+      final String fromCollectionName = linkDirection == LumeerConst.Linking.LinkDirection.FROM ? firstCollectionName : secondCollectionName;
+      final String toCollectionName = linkDirection == LumeerConst.Linking.LinkDirection.FROM ? secondCollectionName : firstCollectionName;
+
+      return filter(lt -> fromCollectionName.equals(lt.getString(LumeerConst.Linking.MainTable.ATTR_FROM_COLLECTION))
+            && toCollectionName.equals(lt.getString(LumeerConst.Linking.MainTable.ATTR_TO_COLLECTION))
+            && (role == null || role.equals(lt.getString(LumeerConst.Linking.MainTable.ATTR_ROLE))));
+   }
+
+   /**
+    * Gets a copy of the registry with a new linking table. A linking table already present is not added twice.
+    *
+    * @param linkingTable
+    *       the main linking table document describing the linking table
+    * @return the updated registry
+    */
+   public LinkingTableRegistry withLinkingTable(final DataDocument linkingTable) {
+      final String collectionName = linkingTable.getString(LumeerConst.Linking.MainTable.ATTR_COL_NAME);
+      final String role = linkingTable.getString(LumeerConst.Linking.MainTable.ATTR_ROLE);
+      if (linkingTables.stream().anyMatch(colNamePredicate(collectionName, role))) {
+         return this;
+      }
+
+      final List<DataDocument> newLinkingTables = new ArrayList<>(linkingTables);
+      newLinkingTables.add(linkingTable);
+      return new LinkingTableRegistry(newLinkingTables, generation);
+   }
+
+   /**
+    * Gets a copy of the registry without the given linking tables.
+    *
+    * @param collectionName
+    *       the name of the linking collection
+    * @param role
+    *       role name, all roles when null or empty
+    * @return the updated registry
+    */
+   public LinkingTableRegistry withoutLinkingTables(final String collectionName, final String role) {
+      return without(colNamePredicate(collectionName, role));
+   }
+
+   /**
+    * Gets a copy of the registry without the linking tables of the given collection.
+    *
+    * @param collectionName
+    *       the name of the collection
+    * @param role
+    *       role name, all roles when null or empty
+    * @param linkDirection
+    *       direction of link
+    * @return the updated registry
+    */
+   public LinkingTableRegistry withoutLinkingTablesFrom(final String collectionName, final String role, final LumeerConst.Linking.LinkDirection linkDirection) {
+      return without(fromPredicate(collectionName, role, linkDirection));
+   }
+
+   private List<DataDocument> filter(final Predicate<DataDocument> predicate) {
+      return linkingTables.stream().filter(predicate).collect(Collectors.toList());
+   }
+
+   private LinkingTableRegistry without(final Predicate<DataDocument> predicate) {
+      return new LinkingTableRegistry(filter(predicate.negate()), generation);
+   }
+
+   private static Predicate<DataDocument> fromPredicate(final String collectionName, final String role, final LumeerConst.Linking.LinkDirection linkDirection) {
+      final String collParam = linkDirection == LumeerConst.Linking.LinkDirection.FROM ? LumeerConst.Linking.MainTable.ATTR_FROM_COLLECTION : LumeerConst.Linking.MainTable.ATTR_TO_COLLECTION;
+      return lt -> collectionName.equals(lt.getString(collParam)) && roleMatches(lt, role);
+   }
+
+   private static Predicate<DataDocument> colNamePredicate(final String collectionName, final String role) {
+      return lt -> collectionName.equals(lt.getString(LumeerConst.Linking.MainTable.ATTR_COL_NAME)) && roleMatches(lt, role);
+   }
+
+   private static boolean roleMatches(final DataDocument linkingTable, final String role) {
+      return role == null || role.isEmpty() || Objects.equals(role, linkingTable.getString(LumeerConst.Linking.MainTable.ATTR_ROLE));
+   }
+}
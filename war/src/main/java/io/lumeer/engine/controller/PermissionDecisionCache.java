@@ -0,0 +1,56 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.enterprise.context.RequestScoped;
+
+/**
+ * Remembers access right decisions made during a single request, so that a document is read only once
+ * no matter how many checks of the same document are performed.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+@RequestScoped
+public class PermissionDecisionCache {
+
+   /**
+    * Decisions of users by document keys.
+    */
+   private final Map<String, Map<String, Integer>> decisions = new HashMap<>();
+
+   public Integer get(final String documentKey, final String userName) {
+      final Map<String, Integer> userDecisions = decisions.get(documentKey);
+      return userDecisions != null ? userDecisions.get(userName) : null;
+   }
+
+   public void put(final String documentKey, final String userName, final int decision) {
+      decisions.computeIfAbsent(documentKey, k -> new HashMap<>()).put(userName, decision);
+   }
+
+   public void invalidate(final String documentKey) {
+      decisions.remove(documentKey);
+   }
+
+   public void clear() {
+      decisions.clear();
+   }
+}
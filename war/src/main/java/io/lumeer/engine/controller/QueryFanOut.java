@@ -0,0 +1,156 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.engine.api.data.DataStorage;
+import io.lumeer.engine.api.data.Query;
+import io.lumeer.engine.api.exception.InvalidQueryException;
+import io.lumeer.engine.util.ErrorMessageBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Executes a query in several collections concurrently. At most the given number of collections is queried
+ * at the same time, each worker takes the next collection once it is done with the previous one, so a slow
+ * collection does not hold back the others.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+@ApplicationScoped
+public class QueryFanOut {
+
+   @Inject
+   private ManagedExecutorService executorService;
+
+   public QueryFanOut() {
+   }
+
+   QueryFanOut(final ManagedExecutorService executorService) {
+      this.executorService = executorService;
+   }
+
+   /**
+    * Executes the query in each of the collections.
+    *
+    * @param dataStorage
+    *       data storage where the collections are located, must not be a contextual proxy
+    * @param query
+    *       the query, its collections are ignored
+    * @param collections
+    *       internal names of the collections to query
+    * @param parallelism
+    *       the maximum number of collections queried at the same time, the collections are queried by the calling thread when 1 or less
+    * @param timeout
+    *       the maximum time to wait for all results in milliseconds, 0 means no limit. Each collection is queried
+    *       with the time remaining, so the storage stops the queries that would not finish in time.
+    * @return results of the collections in the order of the collections
+    * @throws InvalidQueryException
+    *       when a collection could not be queried or the results did not come in time
+    */
+   public List<List<DataDocument>> query(final DataStorage dataStorage, final Query query, final List<String> collections, final int parallelism, final long timeout) throws InvalidQueryException {
+      final List<List<DataDocument>> results = new ArrayList<>(Collections.nCopies(collections.size(), null));
+      final int workers = Math.min(parallelism, collections.size());
+      final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+      if (workers <= 1) {
+         try {
+            for (int i = 0; i < collections.size(); i++) {
+               results.set(i, queryCollection(dataStorage, query, collections.get(i), timeout, deadline));
+            }
+         } catch (RuntimeException e) {
+            throw queryException(e, timeout, deadline);
+         }
+         return results;
+      }
+
+      final AtomicInteger next = new AtomicInteger();
+      final List<Future<?>> futures = new ArrayList<>(workers);
+      for (int w = 0; w < workers; w++) {
+         futures.add(executorService.submit(() -> {
+            int i;
+            while ((i = next.getAndIncrement()) < collections.size()) {
+               results.set(i, queryCollection(dataStorage, query, collections.get(i), timeout, deadline));
+            }
+         }));
+      }
+
+      try {
+         for (final Future<?> future : futures) {
+            if (timeout > 0) {
+               future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } else {
+               future.get();
+            }
+         }
+      } catch (TimeoutException e) {
+         cancel(futures);
+         throw new InvalidQueryException(ErrorMessageBuilder.queryTimeoutString(timeout));
+      } catch (ExecutionException e) {
+         cancel(futures);
+         throw queryException(e.getCause(), timeout, deadline);
+      } catch (InterruptedException e) {
+         cancel(futures);
+         Thread.currentThread().interrupt();
+         throw new InvalidQueryException(e);
+      }
+
+      return results;
+   }
+
+   private List<DataDocument> queryCollection(final DataStorage dataStorage, final Query query, final String collection, final long timeout, final long deadline) {
+      final Query collectionQuery = new Query(Collections.singleton(collection), query.getFilters(), query.getProjections(), query.getSorting(), query.getLimit(), query.getSkip());
+      if (timeout > 0) {
+         final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+         if (remaining <= 0) {
+            throw new QueryTimeoutException();
+         }
+         collectionQuery.setMaxTime(remaining);
+      }
+      return dataStorage.query(collectionQuery);
+   }
+
+   // a query stopped by the storage after its maximum time is reported as a timeout
+   private InvalidQueryException queryException(final Throwable cause, final long timeout, final long deadline) {
+      if (cause instanceof QueryTimeoutException || (timeout > 0 && System.nanoTime() - deadline >= 0)) {
+         return new InvalidQueryException(ErrorMessageBuilder.queryTimeoutString(timeout));
+      }
+      return new InvalidQueryException("Unable to query a collection: ", cause);
+   }
+
+   private void cancel(final List<Future<?>> futures) {
+      futures.forEach(future -> future.cancel(true));
+   }
+
+   private static class QueryTimeoutException extends RuntimeException {
+
+      private static final long serialVersionUID = 2730413570863466581L;
+   }
+}
@@ -0,0 +1,186 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import io.lumeer.engine.api.data.DataDocument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Merges results of a query executed in several collections. The results of the collections are sorted by
+ * the query sorting each, so they are merged by repeatedly taking the first of their heads, and skip and limit
+ * are applied to the merged result. Values are ordered like in the data storage: missing values first,
+ * then numbers, strings, documents, lists, other values, booleans and dates.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public final class QueryResultMerger {
+
+   private final Comparator<DataDocument> comparator;
+
+   /**
+    * Creates a merger of results sorted by the given query sorting.
+    *
+    * @param sorting
+    *       the query sorting, attribute names mapped to 1 for ascending and -1 for descending order;
+    *       results without sorting are concatenated in the order of the collections
+    */
+   public QueryResultMerger(final DataDocument sorting) {
+      Comparator<DataDocument> comparator = null;
+      for (final Map.Entry<String, Object> sort : sorting == null ? Collections.<String, Object>emptyMap().entrySet() : sorting.entrySet()) {
+         final String key = sort.getKey();
+         final Comparator<DataDocument> keyComparator = (d1, d2) -> compareValues(getValue(d1, key), getValue(d2, key));
+         final Comparator<DataDocument> directed = sort.getValue() instanceof Number && ((Number) sort.getValue()).intValue() < 0 ? keyComparator.reversed() : keyComparator;
+         comparator = comparator == null ? directed : comparator.thenComparing(directed);
+      }
+      this.comparator = comparator;
+   }
+
+   /**
+    * Merges the results.
+    *
+    * @param results
+    *       results of the collections, each sorted by the query sorting and containing at least skip + limit documents when there are so many
+    * @param skip
+    *       the number of documents to skip in the merged result
+    * @param limit
+    *       the maximum number of documents to return, 0 means unlimited
+    * @return the merged result
+    */
+   public List<DataDocument> merge(final List<List<DataDocument>> results, final int skip, final int limit) {
+      final List<DataDocument> merged = new ArrayList<>();
+      int skipped = 0;
+
+      if (comparator == null) {
+         for (final List<DataDocument> result : results) {
+            for (final DataDocument document : result) {
+               if (skipped++ < skip) {
+                  continue;
+               }
+               if (limit > 0 && merged.size() >= limit) {
+                  return merged;
+               }
+               merged.add(document);
+            }
+         }
+         return merged;
+      }
+
+      // equal documents keep the order of the collections
+      final PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, results.size()),
+            Comparator.<Head, DataDocument>comparing(head -> head.document, comparator).thenComparingInt(head -> head.source));
+      for (int i = 0; i < results.size(); i++) {
+         final Iterator<DataDocument> iterator = results.get(i).iterator();
+         if (iterator.hasNext()) {
+            heads.add(new Head(i, iterator));
+         }
+      }
+
+      while (!heads.isEmpty() && (limit <= 0 || merged.size() < limit)) {
+         final Head head = heads.poll();
+         if (skipped++ >= skip) {
+            merged.add(head.document);
+         }
+         if (head.iterator.hasNext()) {
+            heads.add(new Head(head.source, head.iterator));
+         }
+      }
+
+      return merged;
+   }
+
+   private static Object getValue(final DataDocument document, final String key) {
+      Object value = document;
+      for (final String part : key.split("\\.")) {
+         if (!(value instanceof Map)) {
+            return null;
+         }
+         value = ((Map<?, ?>) value).get(part);
+      }
+      return value;
+   }
+
+   @SuppressWarnings("unchecked")
+   private static int compareValues(final Object v1, final Object v2) {
+      final int rank1 = rank(v1);
+      final int rank2 = rank(v2);
+      if (rank1 != rank2) {
+         return Integer.compare(rank1, rank2);
+      }
+      if (v1 == null) {
+         return 0;
+      }
+      if (v1 instanceof Number) {
+         return Double.compare(((Number) v1).doubleValue(), ((Number) v2).doubleValue());
+      }
+      if (v1 instanceof Comparable && v1.getClass().equals(v2.getClass())) {
+         return ((Comparable<Object>) v1).compareTo(v2);
+      }
+      return v1.toString().compareTo(v2.toString());
+   }
+
+   private static int rank(final Object value) {
+      if (value == null) {
+         return 0;
+      }
+      if (value instanceof Number) {
+         return 1;
+      }
+      if (value instanceof String) {
+         return 2;
+      }
+      if (value instanceof Map) {
+         return 3;
+      }
+      if (value instanceof List) {
+         return 4;
+      }
+      if (value instanceof Boolean) {
+         return 6;
+      }
+      if (value instanceof Date) {
+         return 7;
+      }
+      return 5;
+   }
+
+   /**
+    * The next document of a result.
+    */
+   private static final class Head {
+
+      private final int source;
+      private final Iterator<DataDocument> iterator;
+      private final DataDocument document;
+
+      private Head(final int source, final Iterator<DataDocument> iterator) {
+         this.source = source;
+         this.iterator = iterator;
+         this.document = iterator.next();
+      }
+   }
+}
@@ -0,0 +1,65 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import io.lumeer.engine.api.data.DataStorage;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * Remembers the collections whose documents have their readers and writers derived from the access rights,
+ * so that sharing documents does not search a collection for documents created before they were introduced again.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+@ApplicationScoped
+public class RightsMigrations {
+
+   private final Map<DataStorage, Set<String>> migrated = new ConcurrentHashMap<>();
+
+   /**
+    * Checks whether the rights of the collection were migrated since the application started.
+    *
+    * @param dataStorage
+    *       data storage where the collection is located, must not be a contextual proxy
+    * @param collectionName
+    *       internal collection name
+    * @return true if and only if the collection was migrated
+    */
+   public boolean isMigrated(final DataStorage dataStorage, final String collectionName) {
+      final Set<String> collections = migrated.get(dataStorage);
+      return collections != null && collections.contains(collectionName);
+   }
+
+   /**
+    * Records that the rights of all documents in the collection are migrated.
+    *
+    * @param dataStorage
+    *       data storage where the collection is located, must not be a contextual proxy
+    * @param collectionName
+    *       internal collection name
+    */
+   public void setMigrated(final DataStorage dataStorage, final String collectionName) {
+      migrated.computeIfAbsent(dataStorage, k -> ConcurrentHashMap.newKeySet()).add(collectionName);
+   }
+}
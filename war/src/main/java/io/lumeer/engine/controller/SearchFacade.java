@@ -21,6 +21,7 @@ package io.lumeer.engine.controller;
 
 import io.lumeer.engine.annotation.UserDataStorage;
 import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.data.DataCursor;
 import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.engine.api.data.DataFilter;
 import io.lumeer.engine.api.data.DataSort;
@@ -28,10 +29,11 @@ import io.lumeer.engine.api.data.DataStorage;
 import io.lumeer.engine.api.data.Query;
 import io.lumeer.engine.api.exception.CollectionNotFoundException;
 import io.lumeer.engine.api.exception.InvalidQueryException;
+import io.lumeer.engine.provider.DataStorageProvider;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import javax.enterprise.context.SessionScoped;
 import javax.inject.Inject;
@@ -58,6 +60,12 @@ public class SearchFacade implements Serializable {
    @Inject
    private SecurityFacade securityFacade;
 
+   @Inject
+   private DataStorageProvider dataStorageProvider;
+
+   @Inject
+   private QueryFanOut queryFanOut;
+
    /**
     * Searches the specified collection for specified documents using filter, sort, skip and limit option.
     *
@@ -79,6 +87,26 @@ public class SearchFacade implements Serializable {
       return dataStorage.search(collectionName, filter, sort, skip, limit);
    }
 
+   /**
+    * Searches the specified collection for specified documents using filter, sort, skip and limit option.
+    * The documents are read lazily from the data storage in batches of the configured size.
+    *
+    * @param collectionName
+    *       the name of the collection where the run will be performed
+    * @param filter
+    *       the query predicate. If unspecified, then all documents in the collection will match the predicate.
+    * @param sort
+    *       the sort specification for the ordering of the results
+    * @param skip
+    *       the number of documents to skip
+    * @param limit
+    *       the maximum number of documents to return
+    * @return the open cursor over the found documents, it must be closed by the caller
+    */
+   public DataCursor searchCursor(final String collectionName, final DataFilter filter, final DataSort sort, int skip, int limit) {
+      return dataStorage.searchCursor(collectionName, filter, sort, skip, limit, configurationFacade.getConfigurationInteger(LumeerConst.CURSOR_BATCH_SIZE_PROPERTY).orElse(0));
+   }
+
    /**
     * Executes a query to find and return documents.
     *
@@ -103,7 +131,6 @@ public class SearchFacade implements Serializable {
     */
    public List<DataDocument> query(final Query query) throws InvalidQueryException {
       final List<String> collections = new ArrayList<>();
-      final List<DataDocument> result = new ArrayList<>();
       final Query internalQuery = new Query();
 
       try {
@@ -118,33 +145,27 @@ public class SearchFacade implements Serializable {
          throw new InvalidQueryException("Search asks for collections that are not available: ", e);
       }
 
-      final DataDocument readRightsFilter = securityFacade.getReadRightsQueryFilter();
-      readRightsFilter.putAll(query.getFilters());
-      internalQuery.setFilters(readRightsFilter);
+      // the query filters cannot replace any part of the read rights filter
+      internalQuery.setFilters(new DataDocument("$and", Arrays.asList(securityFacade.getReadRightsQueryFilter(), query.getFilters())));
       internalQuery.setProjections(query.getProjections());
       internalQuery.setSorting(query.getSorting());
 
-      if (query.getLimit() == null) {
-         internalQuery.setLimit(configurationFacade.getConfigurationInteger(LumeerConst.DEFAULT_LIMIT_PROPERTY).orElse(100));
-      } else {
-         internalQuery.setLimit(query.getLimit());
-      }
+      final int limit = query.getLimit() == null ? configurationFacade.getConfigurationInteger(LumeerConst.DEFAULT_LIMIT_PROPERTY).orElse(100) : query.getLimit();
+      final int skip = query.getSkip() == null ? 0 : query.getSkip();
 
-      if (query.getSkip() == null) {
-         internalQuery.setSkip(0);
-      } else {
-         internalQuery.setSkip(query.getSkip());
-      }
+      // skip and limit apply to the merged result, each collection contributes its first skip + limit documents
+      internalQuery.setSkip(0);
+      internalQuery.setLimit(limit > 0 ? skip + limit : 0);
 
-      for (final String collection : collections) {
-         internalQuery.setCollections(Collections.singleton(collection));
-         dataStorage.query(internalQuery).stream().forEach(d -> {
-            d.put(LumeerConst.Document.COLLECTION_NAME, collection);
-            result.add(d);
-         });
+      final List<List<DataDocument>> results = queryFanOut.query(dataStorageProvider.getUserStorage(), internalQuery, collections,
+            configurationFacade.getConfigurationInteger(LumeerConst.QUERY_PARALLELISM_PROPERTY).orElse(8),
+            configurationFacade.getConfigurationInteger(LumeerConst.QUERY_TIMEOUT_PROPERTY).orElse(60000));
+      for (int i = 0; i < collections.size(); i++) {
+         final String collection = collections.get(i);
+         results.get(i).forEach(d -> d.put(LumeerConst.Document.COLLECTION_NAME, collection));
       }
 
-      return result;
+      return new QueryResultMerger(internalQuery.getSorting()).merge(results, skip, limit);
    }
 
 }
@@ -21,12 +21,18 @@ package io.lumeer.engine.controller;
 
 import io.lumeer.engine.annotation.UserDataStorage;
 import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.cache.Cache;
+import io.lumeer.engine.api.cache.CacheConfiguration;
+import io.lumeer.engine.api.cache.CacheManager;
+import io.lumeer.engine.api.cache.CacheProvider;
+import io.lumeer.engine.api.data.DataCursor;
 import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.engine.api.data.DataFilter;
 import io.lumeer.engine.api.data.DataStorage;
 import io.lumeer.engine.api.data.DataStorageDialect;
 import io.lumeer.engine.api.exception.CollectionNotFoundException;
 import io.lumeer.engine.api.exception.DocumentNotFoundException;
+import io.lumeer.engine.provider.DataStorageProvider;
 import io.lumeer.engine.rest.dao.AccessRightsDao;
 import io.lumeer.engine.util.ErrorMessageBuilder;
 
@@ -37,7 +43,15 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ContextNotActiveException;
+import javax.enterprise.context.RequestScoped;
 import javax.enterprise.context.SessionScoped;
+import javax.enterprise.inject.spi.BeanManager;
 import javax.inject.Inject;
 
 /**
@@ -53,24 +67,75 @@ public class SecurityFacade implements Serializable {
    @Inject
    private DataStorageDialect dataStorageDialect;
 
+   @Inject
+   private DataStorageProvider dataStorageProvider;
+
+   @Inject
+   private RightsMigrations rightsMigrations;
+
    @Inject
    private UserFacade user;
 
    @Inject
    private DocumentMetadataFacade dmf;
 
+   @Inject
+   private ConfigurationFacade configurationFacade;
+
+   @Inject
+   private CacheManager cacheManager;
+
+   @Inject
+   private PermissionDecisionCache requestDecisions;
+
+   @Inject
+   private BeanManager beanManager;
+
+   private static final String DECISIONS_CACHE = "decisions";
+
+   /**
+    * Decision bit of the right to add rights, other bits are the access rights.
+    */
+   private static final int ADD_RIGHTS_DECISION = 8;
+
+   /**
+    * Time in milliseconds for which decisions are shared by requests, zero means that they are remembered just during a request.
+    */
+   private long decisionTtl;
+
+   private CacheProvider cacheProvider;
+
+   private CacheConfiguration decisionsCacheConfiguration;
+
    private final int READ_BP = 2;
    private final int WRITE_BP = 1;
    private final int EXECUTE_BP = 0;
    private final int NO_RIGHTS = -1;
    private final int NOT_FOUND = 0;
 
+   /**
+    * Number of documents updated together by {@link #migrateRights(String)}.
+    */
+   private static final int MIGRATION_BATCH_SIZE = 1000;
+
+   /**
+    * Maximal number of documents shared by a single update.
+    */
+   private static final int SHARING_CHUNK_SIZE = 1000;
+
    /* change EMPTY_LIST to 0 to specify no rights if no user is presented in array of rights but list exists
       change EMPTY_LIST to -1 to specify all rights for all user if no user is presented in array of rights but list exists
     */
    private final int EMPTY_LIST = 0;
    private final int NULL_LIST = -1;
 
+   @PostConstruct
+   public void init() {
+      decisionTtl = Math.max(0, configurationFacade.getConfigurationInteger(LumeerConst.PERMISSION_CACHE_TTL_PROPERTY).orElse(0));
+      cacheProvider = cacheManager.getCacheProvider("security");
+      decisionsCacheConfiguration = new CacheConfiguration(configurationFacade.getConfigurationInteger(LumeerConst.CACHE_MAX_ENTRIES_PROPERTY).orElse(0), decisionTtl, CacheConfiguration.EVICTION_LRU);
+   }
+
    // TODO add users group ...
    private DataDocument readGroupRights(DataDocument dataDocument) {
       return null;
@@ -166,11 +231,7 @@ public class SecurityFacade implements Serializable {
     *       if document not found
     */
    public boolean checkForRead(String collectionName, String documentId, String userName) throws DocumentNotFoundException {
-      DataDocument dataDoc = dataStorage.readDocumentIncludeAttrs(collectionName, dataStorageDialect.documentIdFilter(documentId), buildMetaList());
-      if (dataDoc == null) {
-         throw new DocumentNotFoundException(ErrorMessageBuilder.documentNotFoundString());
-      }
-      return checkForRead(dataDoc, userName);
+      return (readDecision(collectionName, documentId, userName) & LumeerConst.Security.READ) != 0;
    }
 
    /**
@@ -188,11 +249,7 @@ public class SecurityFacade implements Serializable {
     *       if document not found
     */
    public boolean checkForWrite(String collectionName, String documentId, String userName) throws DocumentNotFoundException {
-      DataDocument dataDoc = dataStorage.readDocumentIncludeAttrs(collectionName, dataStorageDialect.documentIdFilter(documentId), buildMetaList());
-      if (dataDoc == null) {
-         throw new DocumentNotFoundException(ErrorMessageBuilder.documentNotFoundString());
-      }
-      return checkForWrite(dataDoc, userName);
+      return (readDecision(collectionName, documentId, userName) & LumeerConst.Security.WRITE) != 0;
    }
 
    /**
@@ -210,11 +267,7 @@ public class SecurityFacade implements Serializable {
     *       if document not found
     */
    public boolean checkForExecute(String collectionName, String documentId, String userName) throws DocumentNotFoundException {
-      DataDocument dataDoc = dataStorage.readDocumentIncludeAttrs(collectionName, dataStorageDialect.documentIdFilter(documentId), buildMetaList());
-      if (dataDoc == null) {
-         throw new DocumentNotFoundException(ErrorMessageBuilder.documentNotFoundString());
-      }
-      return checkForExecute(dataStorage.readDocument(collectionName, dataStorageDialect.documentIdFilter(documentId)), userName);
+      return (readDecision(collectionName, documentId, userName) & LumeerConst.Security.EXECUTE) != 0;
    }
 
    /**
@@ -232,16 +285,140 @@ public class SecurityFacade implements Serializable {
     *       if document not found
     */
    public boolean checkForAddRights(String collectionName, String documentId, String userName) throws DocumentNotFoundException {
-      DataDocument dataDoc = dataStorage.readDocumentIncludeAttrs(collectionName, dataStorageDialect.documentIdFilter(documentId), buildMetaList());
-      if (dataDoc == null) {
-         throw new DocumentNotFoundException(ErrorMessageBuilder.documentNotFoundString());
+      return (readDecision(collectionName, documentId, userName) & ADD_RIGHTS_DECISION) != 0;
+   }
+
+   /**
+    * Filters documents which the user can read. All documents are checked by a single query.
+    *
+    * @param collectionName
+    *       collection name where documents are stored
+    * @param documentIds
+    *       ids of documents to check
+    * @param userName
+    *       user name for checking
+    * @return ids of existing documents the user can read, in the given order
+    */
+   public List<String> filterReadable(String collectionName, List<String> documentIds, String userName) {
+      if (documentIds.isEmpty()) {
+         return Collections.emptyList();
       }
-      if (dataDoc.containsKey(LumeerConst.Document.CREATE_BY_USER_KEY)) {
-         if (dataDoc.getString(LumeerConst.Document.CREATE_BY_USER_KEY).equals(userName)) {
-            return true;
+
+      Map<String, Integer> decisions = new HashMap<>();
+      for (DataDocument dataDoc : dataStorage.searchIncludeAttrs(collectionName, dataStorageDialect.documentIdsFilter(documentIds), buildMetaList())) {
+         int decision = decide(dataDoc, userName);
+         decisions.put(dataDoc.getId(), decision);
+         cacheDecision(collectionName, dataDoc.getId(), userName, decision);
+      }
+
+      List<String> readable = new ArrayList<>();
+      for (String documentId : documentIds) {
+         Integer decision = decisions.get(documentId);
+         if (decision != null && (decision & LumeerConst.Security.READ) != 0) {
+            readable.add(documentId);
          }
       }
-      return checkForExecute(collectionName, documentId, userName);
+      return readable;
+   }
+
+   /**
+    * Forgets access right decisions about the document. Must be called whenever the access rights
+    * of the document are changed.
+    *
+    * @param collectionName
+    *       collection name where document is stored
+    * @param documentId
+    *       document id
+    */
+   public void invalidateDecisions(String collectionName, String documentId) {
+      String documentKey = decisionKey(collectionName, documentId);
+      if (isRequestActive()) {
+         requestDecisions.invalidate(documentKey);
+      }
+      if (decisionTtl > 0) {
+         getDecisionsCache().remove(documentKey);
+      }
+   }
+
+   private void invalidateAllDecisions() {
+      if (isRequestActive()) {
+         requestDecisions.clear();
+      }
+      if (decisionTtl > 0) {
+         getDecisionsCache().clear();
+      }
+   }
+
+   /**
+    * Gets decision of the user about the document, the document is read only when the decision
+    * is not known in this request or in the shared cache.
+    *
+    * @return bits of the user's rights, with {@link #ADD_RIGHTS_DECISION} when the user can add rights
+    */
+   private int readDecision(String collectionName, String documentId, String userName) throws DocumentNotFoundException {
+      String documentKey = decisionKey(collectionName, documentId);
+      boolean requestActive = isRequestActive();
+      Integer decision = requestActive ? requestDecisions.get(documentKey, userName) : null;
+      if (decision == null && decisionTtl > 0) {
+         Map<String, Integer> sharedDecisions = getDecisionsCache().get(documentKey);
+         decision = sharedDecisions != null ? sharedDecisions.get(userName) : null;
+         if (decision != null && requestActive) {
+            requestDecisions.put(documentKey, userName, decision);
+         }
+      }
+      if (decision == null) {
+         DataDocument dataDoc = dataStorage.readDocumentIncludeAttrs(collectionName, dataStorageDialect.documentIdFilter(documentId), buildMetaList());
+         if (dataDoc == null) {
+            throw new DocumentNotFoundException(ErrorMessageBuilder.documentNotFoundString());
+         }
+         decision = decide(dataDoc, userName);
+         cacheDecision(collectionName, documentId, userName, decision);
+      }
+      return decision;
+   }
+
+   private int decide(DataDocument dataDocument, String userName) {
+      int decision = 0;
+      if (checkForRead(dataDocument, userName)) {
+         decision |= LumeerConst.Security.READ;
+      }
+      if (checkForWrite(dataDocument, userName)) {
+         decision |= LumeerConst.Security.WRITE;
+      }
+      if (checkForExecute(dataDocument, userName)) {
+         decision |= LumeerConst.Security.EXECUTE;
+      }
+      if (checkForAddRights(dataDocument, userName)) {
+         decision |= ADD_RIGHTS_DECISION;
+      }
+      return decision;
+   }
+
+   private void cacheDecision(String collectionName, String documentId, String userName, int decision) {
+      String documentKey = decisionKey(collectionName, documentId);
+      if (isRequestActive()) {
+         requestDecisions.put(documentKey, userName, decision);
+      }
+      if (decisionTtl > 0) {
+         getDecisionsCache().computeIfAbsent(documentKey, k -> new ConcurrentHashMap<>()).put(userName, decision);
+      }
+   }
+
+   private Cache<Map<String, Integer>> getDecisionsCache() {
+      return cacheProvider.getCache(DECISIONS_CACHE, decisionsCacheConfiguration);
+   }
+
+   private String decisionKey(String collectionName, String documentId) {
+      return collectionName + "/" + documentId;
+   }
+
+   // checks made outside of a request, e.g. by background tasks, are not remembered per request
+   private boolean isRequestActive() {
+      try {
+         return beanManager.getContext(RequestScoped.class).isActive();
+      } catch (ContextNotActiveException e) {
+         return false;
+      }
    }
 
    /**
@@ -277,11 +454,8 @@ public class SecurityFacade implements Serializable {
     *       throws if document not found in database
     */
    public boolean setRightsRead(String collectionName, String documentId, String userName) throws DocumentNotFoundException {
-      final DataFilter documentIdFilter = dataStorageDialect.documentIdFilter(documentId);
-      DataDocument dataDocument = dataStorage.readDocument(collectionName, documentIdFilter);
-      setRightsRead(dataDocument, userName);
-      dataStorage.updateDocument(collectionName, dataDocument, documentIdFilter);
-      return checkForRead(collectionName, documentId, userName);
+      return grantRights(collectionName, documentId, userName, LumeerConst.Security.READ, dataDocument -> setRightsRead(dataDocument, userName))
+            || checkForRead(collectionName, documentId, userName);
    }
 
    /**
@@ -317,11 +491,8 @@ public class SecurityFacade implements Serializable {
     *       throws if document not found in database
     */
    public boolean setRightsWrite(String collectionName, String documentId, String userName) throws DocumentNotFoundException {
-      final DataFilter documentIdFilter = dataStorageDialect.documentIdFilter(documentId);
-      DataDocument dataDocument = dataStorage.readDocument(collectionName, documentIdFilter);
-      setRightsWrite(dataDocument, userName);
-      dataStorage.updateDocument(collectionName, dataDocument, documentIdFilter);
-      return checkForWrite(collectionName, documentId, userName);
+      return grantRights(collectionName, documentId, userName, LumeerConst.Security.WRITE, dataDocument -> setRightsWrite(dataDocument, userName))
+            || checkForWrite(collectionName, documentId, userName);
    }
 
    /**
@@ -357,11 +528,8 @@ public class SecurityFacade implements Serializable {
     *       throws if document not found in database
     */
    public boolean setRightsExecute(String collectionName, String documentId, String userName) throws DocumentNotFoundException {
-      final DataFilter documentIdFilter = dataStorageDialect.documentIdFilter(documentId);
-      DataDocument dataDocument = dataStorage.readDocument(collectionName, documentIdFilter);
-      setRightsExecute(dataDocument, userName);
-      dataStorage.updateDocument(collectionName, dataDocument, documentIdFilter);
-      return checkForExecute(collectionName, documentId, userName);
+      return grantRights(collectionName, documentId, userName, LumeerConst.Security.EXECUTE, dataDocument -> setRightsExecute(dataDocument, userName))
+            || checkForExecute(collectionName, documentId, userName);
    }
 
    /**
@@ -397,10 +565,8 @@ public class SecurityFacade implements Serializable {
     *       throws if document not found in database
     */
    public boolean removeRightsExecute(String collectionName, String documentId, String userName) throws DocumentNotFoundException {
-      DataDocument dataDocument = dataStorage.readDocument(collectionName, dataStorageDialect.documentIdFilter(documentId));
-      removeRightsExecute(dataDocument, userName);
-      dataStorage.updateDocument(collectionName, dataDocument, dataStorageDialect.documentIdFilter(documentId));
-      return !checkForExecute(collectionName, documentId, userName);
+      return revokeRights(collectionName, documentId, userName, LumeerConst.Security.EXECUTE, dataDocument -> removeRightsExecute(dataDocument, userName))
+            || !checkForExecute(collectionName, documentId, userName);
    }
 
    /**
@@ -436,10 +602,8 @@ public class SecurityFacade implements Serializable {
     *       throws if document not found in database
     */
    public boolean removeRightsWrite(String collectionName, String documentId, String userName) throws DocumentNotFoundException {
-      DataDocument dataDocument = dataStorage.readDocument(collectionName, dataStorageDialect.documentIdFilter(documentId));
-      removeRightsWrite(dataDocument, userName);
-      dataStorage.updateDocument(collectionName, dataDocument, dataStorageDialect.documentIdFilter(documentId));
-      return !checkForWrite(collectionName, documentId, userName);
+      return revokeRights(collectionName, documentId, userName, LumeerConst.Security.WRITE, dataDocument -> removeRightsWrite(dataDocument, userName))
+            || !checkForWrite(collectionName, documentId, userName);
    }
 
    /**
@@ -475,10 +639,66 @@ public class SecurityFacade implements Serializable {
     *       throws if document not found in database
     */
    public boolean removeRightsRead(String collectionName, String documentId, String userName) throws DocumentNotFoundException {
-      DataDocument dataDocument = dataStorage.readDocument(collectionName, dataStorageDialect.documentIdFilter(documentId));
-      removeRightsRead(dataDocument, userName);
-      dataStorage.updateDocument(collectionName, dataDocument, dataStorageDialect.documentIdFilter(documentId));
-      return !checkForRead(collectionName, documentId, userName);
+      return revokeRights(collectionName, documentId, userName, LumeerConst.Security.READ, dataDocument -> removeRightsRead(dataDocument, userName))
+            || !checkForRead(collectionName, documentId, userName);
+   }
+
+   private boolean grantRights(String collectionName, String documentId, String userName, int rights, Consumer<DataDocument> change) throws DocumentNotFoundException {
+      return updateUserRights(collectionName, documentId, userName, newEntry -> dataStorageDialect.grantUserRightsUpdate(userName, rights, newEntry), true, change);
+   }
+
+   private boolean revokeRights(String collectionName, String documentId, String userName, int rights, Consumer<DataDocument> change) throws DocumentNotFoundException {
+      return updateUserRights(collectionName, documentId, userName, newEntry -> dataStorageDialect.revokeUserRightsUpdate(userName, rights), false, change);
+   }
+
+   /**
+    * Changes rights of the user by a single atomic update of the document, so only the rights are transferred regardless
+    * of the document size. Rights stored before the readers and writers were derived from them are read and changed
+    * in memory instead, and get derived by the way.
+    *
+    * @param collectionName
+    *       collection where document is stored
+    * @param documentId
+    *       id of document
+    * @param userName
+    *       user whose rights are changed
+    * @param update
+    *       builds the update of the existing entry of the user, or of a new entry when called with true
+    * @param addEntry
+    *       whether the entry is added when the user has none
+    * @param change
+    *       the same change made in memory
+    * @return true if and only if the rights were changed by the atomic update
+    * @throws DocumentNotFoundException
+    *       throws if document not found in database
+    */
+   private boolean updateUserRights(String collectionName, String documentId, String userName, Function<Boolean, DataDocument> update, boolean addEntry, Consumer<DataDocument> change) throws DocumentNotFoundException {
+      if (!checkForAddRights(collectionName, documentId, user.getUserEmail())) {
+         return false;
+      }
+      boolean updated = dataStorage.applyDocumentUpdate(collectionName, update.apply(false), dataStorageDialect.userRightsFilter(documentId, userName, true));
+      if (!updated && addEntry) {
+         // the entry may be added concurrently, it is updated then
+         updated = dataStorage.applyDocumentUpdate(collectionName, update.apply(true), dataStorageDialect.userRightsFilter(documentId, userName, false))
+               || dataStorage.applyDocumentUpdate(collectionName, update.apply(false), dataStorageDialect.userRightsFilter(documentId, userName, true));
+      }
+      if (!updated) {
+         final DataFilter documentIdFilter = dataStorageDialect.documentIdFilter(documentId);
+         List<String> attributes = new ArrayList<>(buildMetaList());
+         attributes.add(LumeerConst.Document.READERS_KEY);
+         DataDocument dataDocument = dataStorage.readDocumentIncludeAttrs(collectionName, documentIdFilter, attributes);
+         if (dataDocument == null) {
+            throw new DocumentNotFoundException(ErrorMessageBuilder.documentNotFoundString());
+         }
+         // otherwise there is no entry of the user to change
+         if (checkMetadata(dataDocument) && !dataDocument.containsKey(LumeerConst.Document.READERS_KEY)) {
+            change.accept(dataDocument);
+            indexRights(dataDocument);
+            dataStorage.updateDocument(collectionName, dataDocument, documentIdFilter);
+         }
+      }
+      invalidateDecisions(collectionName, documentId);
+      return updated;
    }
 
    private boolean checkMetadata(DataDocument dataDocument) {
@@ -505,7 +725,7 @@ public class SecurityFacade implements Serializable {
          return EMPTY_LIST;
       }
       for (DataDocument dataDoc : arrayList) {
-         if (dataDoc.containsValue(email)) {
+         if (email.equals(dataDoc.getString(LumeerConst.Security.USER_ID))) {
             return dataDoc.getInteger(LumeerConst.Security.RULE);
          }
       }
@@ -551,6 +771,82 @@ public class SecurityFacade implements Serializable {
          putToList(dataDocument, userName, addRights);
          //dataDocument.getDataDocument(LumeerConst.Document.USER_RIGHTS).put(userName, addRights);
       }
+      indexRights(dataDocument);
+   }
+
+   /**
+    * Derives the lists of readers and writers from the access rights of the document. The lists
+    * are indexed by the data storage, so that documents readable by a user are found without a scan.
+    * Must be called whenever the access rights are changed.
+    *
+    * @param dataDocument
+    *       document with access rights
+    */
+   public void indexRights(DataDocument dataDocument) {
+      List<DataDocument> arrayList = readList(dataDocument);
+      if (arrayList == null) {
+         return;
+      }
+      List<String> readers = new ArrayList<>();
+      List<String> writers = new ArrayList<>();
+      for (DataDocument dataDoc : arrayList) {
+         int rule = dataDoc.getInteger(LumeerConst.Security.RULE);
+         if (checkBit(rule, READ_BP)) {
+            readers.add(dataDoc.getString(LumeerConst.Security.USER_ID));
+         }
+         if (checkBit(rule, WRITE_BP)) {
+            writers.add(dataDoc.getString(LumeerConst.Security.USER_ID));
+         }
+      }
+      dataDocument.put(LumeerConst.Document.READERS_KEY, readers);
+      dataDocument.put(LumeerConst.Document.WRITERS_KEY, writers);
+   }
+
+   /**
+    * Creates indexes of readers and writers in the collection.
+    *
+    * @param collectionName
+    *       collection name
+    */
+   public void createRightsIndexes(String collectionName) {
+      dataStorage.createIndex(collectionName, new DataDocument(LumeerConst.Document.READERS_KEY, LumeerConst.Index.ASCENDING), false);
+      dataStorage.createIndex(collectionName, new DataDocument(LumeerConst.Document.WRITERS_KEY, LumeerConst.Index.ASCENDING), false);
+   }
+
+   /**
+    * Creates indexes of readers and writers in the collection and derives them in documents
+    * created before they were introduced.
+    *
+    * @param collectionName
+    *       collection name
+    * @return number of updated documents
+    */
+   public int migrateRights(String collectionName) {
+      createRightsIndexes(collectionName);
+
+      int migrated = 0;
+      List<DataDocument> updates = new ArrayList<>();
+      List<DataFilter> filters = new ArrayList<>();
+      try (DataCursor cursor = dataStorage.searchCursor(collectionName, dataStorageDialect.missingDerivedFieldFilter(LumeerConst.Document.USER_RIGHTS, LumeerConst.Document.READERS_KEY), null, 0, 0, 0)) {
+         while (cursor.hasNext()) {
+            DataDocument dataDocument = cursor.next();
+            indexRights(dataDocument);
+            updates.add(new DataDocument(LumeerConst.Document.READERS_KEY, dataDocument.get(LumeerConst.Document.READERS_KEY))
+                  .append(LumeerConst.Document.WRITERS_KEY, dataDocument.get(LumeerConst.Document.WRITERS_KEY)));
+            filters.add(dataStorageDialect.documentIdFilter(dataDocument.getId()));
+            if (updates.size() == MIGRATION_BATCH_SIZE) {
+               migrated += dataStorage.updateDocuments(collectionName, updates, filters, false).getMatchedCount();
+               updates.clear();
+               filters.clear();
+            }
+         }
+      }
+      if (!updates.isEmpty()) {
+         migrated += dataStorage.updateDocuments(collectionName, updates, filters, false).getMatchedCount();
+      }
+      rightsMigrations.setMigrated(dataStorageProvider.getUserStorage(), collectionName);
+
+      return migrated;
    }
 
    /**
@@ -563,6 +859,8 @@ public class SecurityFacade implements Serializable {
     */
    public void putFullRightsInternally(DataDocument dataDocument, String userEmail) {
       dataDocument.put(LumeerConst.Document.USER_RIGHTS, Collections.singletonList(new DataDocument(LumeerConst.Security.USER_ID, userEmail).append(LumeerConst.Security.RULE, LumeerConst.Security.WRITE + LumeerConst.Security.EXECUTE + LumeerConst.Security.READ)));
+      dataDocument.put(LumeerConst.Document.READERS_KEY, Collections.singletonList(userEmail));
+      dataDocument.put(LumeerConst.Document.WRITERS_KEY, Collections.singletonList(userEmail));
    }
 
    /**
@@ -642,9 +940,9 @@ public class SecurityFacade implements Serializable {
       Map<String, Integer> hashMap = readRightsMap(dataDocument);
       List<AccessRightsDao> list = new ArrayList<>();
       for (Map.Entry<String, Integer> entry : hashMap.entrySet()) {
-         boolean read = checkForRead(dataDocument, entry.getKey());
-         boolean write = checkForWrite(dataDocument, entry.getKey());
-         boolean execute = checkForExecute(dataDocument, entry.getKey());
+         boolean read = checkBit(entry.getValue(), READ_BP);
+         boolean write = checkBit(entry.getValue(), WRITE_BP);
+         boolean execute = checkBit(entry.getValue(), EXECUTE_BP);
          AccessRightsDao ard = new AccessRightsDao(read, write, execute, entry.getKey());
          list.add(ard);
       }
@@ -715,7 +1013,7 @@ public class SecurityFacade implements Serializable {
 
    /**
     * Set rights to be same as data access object.
-    * This is not atomic!
+    * The rights are set by a single atomic update.
     *
     * @param collectionName
     *       collection name where data document is
@@ -723,15 +1021,20 @@ public class SecurityFacade implements Serializable {
     *       data document id
     * @param accessRightsDao
     *       data access object
+    * @throws DocumentNotFoundException
+    *       throws if document not found in database
     */
-   public void setDao(String collectionName, String documentId, AccessRightsDao accessRightsDao) {
-      final DataFilter documentIdFilter = dataStorageDialect.documentIdFilter(documentId);
-      dataStorage.updateDocument(collectionName, setDao(dataStorage.readDocument(collectionName, documentIdFilter), accessRightsDao), documentIdFilter);
+   public void setDao(String collectionName, String documentId, AccessRightsDao accessRightsDao) throws DocumentNotFoundException {
+      final String userName = accessRightsDao.getUserName();
+      final int rights = daoRights(accessRightsDao);
+      updateUserRights(collectionName, documentId, userName, newEntry -> dataStorageDialect.setUserRightsUpdate(userName, rights, newEntry), rights != 0,
+            dataDocument -> setDao(dataDocument, accessRightsDao));
    }
 
    /**
     * Set rights to be same as data access object with
-    * check. Can be slow. This is not atomic!
+    * check. The rights are set by a single atomic update
+    * and checked by reading them once.
     *
     * @param collectionName
     *       collection name where data document is
@@ -740,28 +1043,82 @@ public class SecurityFacade implements Serializable {
     * @param accessRightsDao
     *       data access object
     * @return true if all data was updated successful
+    * @throws DocumentNotFoundException
+    *       throws if document not found in database
+    */
+   public boolean setDaoCheck(String collectionName, String documentId, AccessRightsDao accessRightsDao) throws DocumentNotFoundException {
+      setDao(collectionName, documentId, accessRightsDao);
+      int allRights = LumeerConst.Security.READ | LumeerConst.Security.WRITE | LumeerConst.Security.EXECUTE;
+      return (readDecision(collectionName, documentId, accessRightsDao.getUserName()) & allRights) == daoRights(accessRightsDao);
+   }
+
+   /**
+    * Set rights of the user to be same as data access object in all documents
+    * matching the filter where the current user can add rights. Documents are
+    * updated in chunks, so that a large collection is not held for long, and
+    * the number of documents updated so far is reported after each chunk.
+    *
+    * @param collectionName
+    *       collection name where data documents are
+    * @param filter
+    *       filter of the shared documents
+    * @param accessRightsDao
+    *       data access object
+    * @param progress
+    *       receives the number of updated documents after each chunk
+    * @return number of updated documents
     */
-   public boolean setDaoCheck(String collectionName, String documentId, AccessRightsDao accessRightsDao) {
-      final DataFilter documentIdFilter = dataStorageDialect.documentIdFilter(documentId);
-      dataStorage.updateDocument(collectionName, setDao(dataStorage.readDocument(collectionName, documentIdFilter), accessRightsDao), documentIdFilter);
-      DataDocument dataDoc = dataStorage.readDocument(collectionName, documentIdFilter);
-      return (accessRightsDao.isWrite() == checkForWrite(dataDoc, accessRightsDao.getUserName()))
-            & (accessRightsDao.isRead() == checkForRead(dataDoc, accessRightsDao.getUserName()))
-            & (accessRightsDao.isExecute() == checkForExecute(dataDoc, accessRightsDao.getUserName()));
+   public long shareDocuments(String collectionName, DataFilter filter, AccessRightsDao accessRightsDao, LongConsumer progress) {
+      // rights without derived readers and writers are not updated by the dialect updates
+      if (!rightsMigrations.isMigrated(dataStorageProvider.getUserStorage(), collectionName)) {
+         migrateRights(collectionName);
+      }
+
+      final String userName = accessRightsDao.getUserName();
+      final int rights = daoRights(accessRightsDao);
+      try {
+         long updated = updateInChunks(collectionName, dataStorageDialect.setUserRightsUpdate(userName, rights, false),
+               dataStorageDialect.sharingFilter(filter, user.getUserEmail(), userName, rights, true),
+               dataStorageDialect.sharingUpdateFilter(userName, rights, true), 0, progress);
+         if (rights != 0) {
+            updated = updateInChunks(collectionName, dataStorageDialect.setUserRightsUpdate(userName, rights, true),
+                  dataStorageDialect.sharingFilter(filter, user.getUserEmail(), userName, rights, false),
+                  dataStorageDialect.sharingUpdateFilter(userName, rights, false), updated, progress);
+         }
+         return updated;
+      } finally {
+         invalidateAllDecisions();
+      }
+   }
+
+   // updated documents no longer match the filter
+   private long updateInChunks(String collectionName, DataDocument update, DataFilter filter, DataFilter updateFilter, long updated, LongConsumer progress) {
+      long chunk;
+      while ((chunk = dataStorage.applyDocumentsUpdate(collectionName, update, filter, updateFilter, SHARING_CHUNK_SIZE)) > 0) {
+         updated += chunk;
+         progress.accept(updated);
+      }
+      return updated;
+   }
+
+   private int daoRights(AccessRightsDao accessRightsDao) {
+      return (accessRightsDao.isRead() ? LumeerConst.Security.READ : 0)
+            | (accessRightsDao.isWrite() ? LumeerConst.Security.WRITE : 0)
+            | (accessRightsDao.isExecute() ? LumeerConst.Security.EXECUTE : 0);
    }
 
    /**
     * Return query string for search and limit user
     * without rights.
-    * Example: {"_meta-rights" : { $elemMatch: { "user_email" : "test@gmail.com", "rule" : {$gte : 4}} } }.
+    * Example: {"_meta-readers" : "test@gmail.com"}.
     *
     * @param email
     *       email of username
     * @return return string as in example
     */
    public String readQueryString(String email) {
-      // GENERATE: ....find(  {"_meta-rights" : { $elemMatch: { "user_email" : "test@gmail.com", "rule" : {$gte : 4}} } })
-      return "{\"" + LumeerConst.Document.USER_RIGHTS + "\" : { $elemMatch: { \"" + LumeerConst.Document.CREATE_BY_USER_KEY + "\" : \"" + email + "\", \"rule\" : {$gte : 4}}} }";
+      // GENERATE: ....find(  {"_meta-readers" : "test@gmail.com"})
+      return "{\"" + LumeerConst.Document.READERS_KEY + "\" : \"" + email + "\"}";
    }
 
    /**
@@ -771,11 +1128,16 @@ public class SecurityFacade implements Serializable {
     * @return The query filter to limit returned documents only to those where the current user has read rights.
     */
    public DataDocument getReadRightsQueryFilter() {
-      return new DataDocument("_meta-rights", new DataDocument("$elemMatch", new DataDocument("user_email", user.getUserEmail()).append("rule", new DataDocument("$gte", 4))));
+      // documents created before the readers were introduced are matched by their rights until they are migrated
+      final DataDocument legacyReadRights = new DataDocument(LumeerConst.Document.READERS_KEY, new DataDocument("$exists", false))
+            .append(LumeerConst.Document.USER_RIGHTS, new DataDocument("$elemMatch", new DataDocument(LumeerConst.Security.USER_ID, user.getUserEmail())
+                  .append(LumeerConst.Security.RULE, new DataDocument("$bitsAllSet", LumeerConst.Security.READ))));
+
+      return new DataDocument("$or", Arrays.asList(new DataDocument(LumeerConst.Document.READERS_KEY, user.getUserEmail()), legacyReadRights));
    }
 
    public String writeQueryString(String email) {
-      // GENERATE: ....find(  {"_meta-rights" : { $elemMatch: { "user_email" : "test@gmail.com", "rule" : {$in : [2,3,6,7]}} } })
-      return "{\"" + LumeerConst.Document.USER_RIGHTS + "\" : { $elemMatch: { \"" + LumeerConst.Document.CREATE_BY_USER_KEY + "\" : \"" + email + "\", \"rule\" : {$in : [6,7]}}} }";
+      // GENERATE: ....find(  {"_meta-writers" : "test@gmail.com"})
+      return "{\"" + LumeerConst.Document.WRITERS_KEY + "\" : \"" + email + "\"}";
    }
 }
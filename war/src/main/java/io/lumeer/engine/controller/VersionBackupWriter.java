@@ -0,0 +1,332 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.data.BulkWriteResult;
+import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.engine.api.data.DataStorage;
+import io.lumeer.engine.api.data.DataStorageDialect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Writes backups of old document versions to shadow collections in the background. Backups are collected in a bounded
+ * queue and written in batches with a single insert per shadow collection. When the queue is full, the caller is expected
+ * to write the backup itself, which slows down the writers instead of losing history. Backups that cannot be written to
+ * their shadow collection are moved to an outbox collection of the data storage and written again later, also after a restart.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+@ApplicationScoped
+public class VersionBackupWriter {
+
+   /**
+    * Maximal number of backups written together.
+    */
+   private static final int BATCH_SIZE = 500;
+
+   /**
+    * Time to collect more backups before they are written, in milliseconds.
+    */
+   private static final long WRITE_DELAY = 100L;
+
+   /**
+    * Time to wait before backups are written again after a failure, in milliseconds.
+    */
+   private static final long RETRY_DELAY = 5000L;
+
+   /**
+    * Maximal number of backups kept in memory when they cannot be written anywhere. New backups are not queued
+    * while it is reached, so that the writers back them up themselves.
+    */
+   private static final int MAX_FAILED = 10 * BATCH_SIZE;
+
+   @Inject
+   private ManagedScheduledExecutorService scheduler;
+
+   @Inject
+   private DataStorageDialect dialect;
+
+   @Inject
+   private Logger log;
+
+   private final Map<DataStorage, BackupQueue> queues = new ConcurrentHashMap<>();
+
+   private final Set<DataStorage> scheduled = ConcurrentHashMap.newKeySet();
+
+   private volatile boolean shutdown = false;
+
+   /**
+    * Adds a backup to the queue of the data storage.
+    *
+    * @param dataStorage
+    *       data storage where the shadow collection is located, must not be a contextual proxy
+    * @param shadowCollectionName
+    *       name of the shadow collection
+    * @param backup
+    *       backup carrying the id and the version of the document
+    * @param capacity
+    *       capacity of the queue when it is created by this call
+    * @return true if the backup was queued, false when the queue is full and the backup must be written by the caller
+    */
+   public boolean enqueue(final DataStorage dataStorage, final String shadowCollectionName, final DataDocument backup, final int capacity) {
+      final BackupQueue queue = getQueue(dataStorage, capacity);
+      if (shutdown || queue.failed.remainingCapacity() == 0 || !queue.backups.offer(new Backup(shadowCollectionName, backup))) {
+         return false;
+      }
+      schedule(dataStorage, WRITE_DELAY);
+      return true;
+   }
+
+   /**
+    * Stores a backup that could not be written to its shadow collection in the outbox, so that it is written again later.
+    *
+    * @param dataStorage
+    *       data storage where the shadow collection is located, must not be a contextual proxy
+    * @param shadowCollectionName
+    *       name of the shadow collection
+    * @param backup
+    *       backup carrying the id and the version of the document
+    * @param capacity
+    *       capacity of the queue when it is created by this call
+    * @param cause
+    *       failure of the backup
+    */
+   public void retry(final DataStorage dataStorage, final String shadowCollectionName, final DataDocument backup, final int capacity, final Exception cause) {
+      log.log(Level.WARNING, "Unable to write document backup to collection " + shadowCollectionName + ", moving it to outbox: ", cause);
+      final BackupQueue queue = getQueue(dataStorage, capacity);
+      synchronized (queue) {
+         moveToOutbox(dataStorage, queue, shadowCollectionName, Collections.singletonList(backup));
+      }
+      schedule(dataStorage, RETRY_DELAY);
+   }
+
+   /**
+    * Schedules writing of the backups left in the outbox by a previous run. Only the first call for a data storage has any effect.
+    *
+    * @param dataStorage
+    *       data storage where the shadow collections are located, must not be a contextual proxy
+    * @param capacity
+    *       capacity of the queue of the data storage
+    */
+   public void resume(final DataStorage dataStorage, final int capacity) {
+      if (queues.containsKey(dataStorage)) {
+         return;
+      }
+
+      final BackupQueue queue = new BackupQueue(capacity);
+      if (queues.putIfAbsent(dataStorage, queue) == null && !dataStorage.search(LumeerConst.Document.BackupOutbox.NAME, null, null, 0, 1).isEmpty()) {
+         queue.outboxPending = true;
+         schedule(dataStorage, WRITE_DELAY);
+      }
+   }
+
+   /**
+    * Writes all queued backups of the data storage before returning, so that the shadow collections can be read.
+    *
+    * @param dataStorage
+    *       data storage where the shadow collections are located
+    */
+   public void flush(final DataStorage dataStorage) {
+      final BackupQueue queue = queues.get(dataStorage);
+      // the queue is written even when empty, backups taken by a background write must be stored before returning
+      if (queue != null) {
+         write(dataStorage, queue);
+      }
+   }
+
+   /**
+    * Writes all queued backups before the data storages are closed. Backups are not queued any more afterwards.
+    */
+   @PreDestroy
+   public synchronized void shutdown() {
+      if (shutdown) {
+         return;
+      }
+
+      shutdown = true;
+      queues.forEach((dataStorage, queue) -> {
+         try {
+            write(dataStorage, queue);
+         } catch (RuntimeException e) {
+            log.log(Level.SEVERE, "Unable to write " + queue.failed.size() + " document backups before shutdown: ", e);
+         }
+      });
+   }
+
+   private void write(final DataStorage dataStorage, final BackupQueue queue) {
+      synchronized (queue) {
+         // backups failed by a previous run are attempted once in every run
+         final List<Backup> failed = new ArrayList<>();
+         queue.failed.drainTo(failed);
+         if (!failed.isEmpty()) {
+            writeBatch(dataStorage, queue, failed);
+         }
+
+         final List<Backup> batch = new ArrayList<>(BATCH_SIZE);
+         while (queue.backups.drainTo(batch, BATCH_SIZE) > 0) {
+            writeBatch(dataStorage, queue, batch);
+            batch.clear();
+         }
+
+         if (queue.outboxPending && queue.failed.isEmpty()) {
+            writeOutbox(dataStorage, queue);
+         }
+      }
+   }
+
+   private void writeBatch(final DataStorage dataStorage, final BackupQueue queue, final List<Backup> batch) {
+      final Map<String, List<DataDocument>> backups = new LinkedHashMap<>();
+      batch.forEach(backup -> backups.computeIfAbsent(backup.shadowCollectionName, k -> new ArrayList<>()).add(backup.document));
+
+      backups.forEach((shadowCollectionName, documents) -> {
+         try {
+            insertBackups(dataStorage, queue, shadowCollectionName, documents);
+         } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Unable to write document backups to collection " + shadowCollectionName + ", moving them to outbox: ", e);
+            moveToOutbox(dataStorage, queue, shadowCollectionName, documents);
+         }
+      });
+   }
+
+   private void insertBackups(final DataStorage dataStorage, final BackupQueue queue, final String shadowCollectionName, final List<DataDocument> documents) {
+      if (!queue.indexedShadowCollections.contains(shadowCollectionName)) {
+         dataStorage.createIndex(shadowCollectionName, VersionFacade.shadowIndexAttributes(), false);
+         queue.indexedShadowCollections.add(shadowCollectionName);
+      }
+
+      final BulkWriteResult result = dataStorage.createOldDocuments(shadowCollectionName, documents, false);
+      // an item fails when the version is already backed up, there is nothing to retry
+      if (result.hasErrors()) {
+         log.log(Level.WARNING, "Document backups rejected by collection " + shadowCollectionName + ": " + result.getErrors());
+      }
+   }
+
+   private void moveToOutbox(final DataStorage dataStorage, final BackupQueue queue, final String shadowCollectionName, final List<DataDocument> documents) {
+      final List<DataDocument> entries = new ArrayList<>(documents.size());
+      documents.forEach(document -> entries.add(new DataDocument(LumeerConst.Document.BackupOutbox.ATTR_SHADOW_COLLECTION, shadowCollectionName)
+            .append(LumeerConst.Document.BackupOutbox.ATTR_BACKUP, document)));
+      try {
+         dataStorage.createDocuments(LumeerConst.Document.BackupOutbox.NAME, entries, false);
+         queue.outboxPending = true;
+      } catch (RuntimeException e) {
+         log.log(Level.WARNING, "Unable to move document backups to outbox: ", e);
+         final long dropped = documents.stream().filter(document -> !queue.failed.offer(new Backup(shadowCollectionName, document))).count();
+         if (dropped > 0) {
+            log.log(Level.SEVERE, "Unable to keep " + dropped + " document backups for collection " + shadowCollectionName + ", they are lost.");
+         }
+      }
+   }
+
+   private void writeOutbox(final DataStorage dataStorage, final BackupQueue queue) {
+      List<DataDocument> entries;
+      while (!(entries = dataStorage.search(LumeerConst.Document.BackupOutbox.NAME, null, null, 0, BATCH_SIZE)).isEmpty()) {
+         final Map<String, List<DataDocument>> backups = new LinkedHashMap<>();
+         final List<String> entryIds = new ArrayList<>(entries.size());
+         entries.forEach(entry -> {
+            backups.computeIfAbsent(entry.getString(LumeerConst.Document.BackupOutbox.ATTR_SHADOW_COLLECTION), k -> new ArrayList<>())
+                   .add(entry.getDataDocument(LumeerConst.Document.BackupOutbox.ATTR_BACKUP));
+            entryIds.add(entry.getId());
+         });
+
+         backups.forEach((shadowCollectionName, documents) -> insertBackups(dataStorage, queue, shadowCollectionName, documents));
+         dataStorage.dropManyDocuments(LumeerConst.Document.BackupOutbox.NAME, dialect.documentIdsFilter(entryIds));
+      }
+      queue.outboxPending = false;
+   }
+
+   private void schedule(final DataStorage dataStorage, final long delay) {
+      if (!shutdown && scheduled.add(dataStorage)) {
+         scheduler.schedule(() -> run(dataStorage), delay, TimeUnit.MILLISECONDS);
+      }
+   }
+
+   private void run(final DataStorage dataStorage) {
+      scheduled.remove(dataStorage);
+      final BackupQueue queue = queues.get(dataStorage);
+      try {
+         write(dataStorage, queue);
+      } catch (RuntimeException e) {
+         log.log(Level.WARNING, "Unable to write document backups: ", e);
+      } finally {
+         // backups queued during the write or left by a failure
+         if (queue.hasPending()) {
+            schedule(dataStorage, queue.failed.isEmpty() && !queue.outboxPending ? WRITE_DELAY : RETRY_DELAY);
+         }
+      }
+   }
+
+   private BackupQueue getQueue(final DataStorage dataStorage, final int capacity) {
+      return queues.computeIfAbsent(dataStorage, k -> new BackupQueue(capacity));
+   }
+
+   /**
+    * Backups waiting for a single data storage.
+    */
+   private static class BackupQueue {
+
+      private final BlockingQueue<Backup> backups;
+
+      /**
+       * Backups which could not be written anywhere.
+       */
+      private final BlockingQueue<Backup> failed = new ArrayBlockingQueue<>(MAX_FAILED);
+
+      private final Set<String> indexedShadowCollections = ConcurrentHashMap.newKeySet();
+
+      private volatile boolean outboxPending;
+
+      private BackupQueue(final int capacity) {
+         backups = new ArrayBlockingQueue<>(Math.max(1, capacity));
+      }
+
+      private boolean hasPending() {
+         return !backups.isEmpty() || !failed.isEmpty() || outboxPending;
+      }
+   }
+
+   private static class Backup {
+
+      private final String shadowCollectionName;
+
+      private final DataDocument document;
+
+      private Backup(final String shadowCollectionName, final DataDocument document) {
+         this.shadowCollectionName = shadowCollectionName;
+         this.document = document;
+      }
+   }
+}
@@ -0,0 +1,251 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.data.DataCursor;
+import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.engine.api.data.DataStorage;
+import io.lumeer.engine.api.data.DataStorageDialect;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Removes old versions of documents from shadow collections according to the retention policy. Collections
+ * with new versions are compacted in the background, a chunk of documents at a time. No lock is held, every
+ * document history is rewritten by a few independent operations, so writes are never blocked.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+@ApplicationScoped
+public class VersionCompactor {
+
+   /**
+    * Time to collect new versions before the compaction starts, in milliseconds.
+    */
+   private static final long COMPACTION_DELAY = 60000L;
+
+   /**
+    * Number of documents whose versions are compacted by a single query.
+    */
+   private static final int COMPACTION_CHUNK_SIZE = 100;
+
+   @Inject
+   private ManagedScheduledExecutorService scheduler;
+
+   @Inject
+   private DataStorageDialect dialect;
+
+   @Inject
+   private Logger log;
+
+   @Inject
+   private VersionBackupWriter backupWriter;
+
+   private final Map<DataStorage, Map<String, CompactionTask>> pending = new ConcurrentHashMap<>();
+
+   private final Set<DataStorage> scheduled = ConcurrentHashMap.newKeySet();
+
+   /**
+    * Schedules compaction of the shadow collection.
+    *
+    * @param dataStorage
+    *       data storage where the collections are located, must not be a contextual proxy
+    * @param collectionName
+    *       name of the collection with actual versions of documents
+    * @param shadowCollectionName
+    *       name of the shadow collection
+    * @param retention
+    *       versions to keep
+    */
+   public void schedule(final DataStorage dataStorage, final String collectionName, final String shadowCollectionName, final VersionRetention retention) {
+      pending.computeIfAbsent(dataStorage, k -> new ConcurrentHashMap<>()).put(shadowCollectionName, new CompactionTask(collectionName, shadowCollectionName, retention));
+      if (scheduled.add(dataStorage)) {
+         scheduler.schedule(() -> run(dataStorage), COMPACTION_DELAY, TimeUnit.MILLISECONDS);
+      }
+   }
+
+   /**
+    * Removes versions which are not kept by the retention policy from the shadow collection.
+    *
+    * @param dataStorage
+    *       data storage where the collections are located
+    * @param collectionName
+    *       name of the collection with actual versions of documents
+    * @param shadowCollectionName
+    *       name of the shadow collection
+    * @param retention
+    *       versions to keep
+    * @return number of removed versions
+    */
+   public int compact(final DataStorage dataStorage, final String collectionName, final String shadowCollectionName, final VersionRetention retention) {
+      if (!retention.isEnabled() || !dataStorage.hasCollection(shadowCollectionName)) {
+         return 0;
+      }
+
+      final CompactionTask task = new CompactionTask(collectionName, shadowCollectionName, retention);
+      final LocalDateTime now = LocalDateTime.now();
+      int removed = 0;
+      String lastDocumentId = null;
+      do {
+         final List<List<DataDocument>> histories = readHistories(dataStorage, shadowCollectionName, lastDocumentId);
+         for (List<DataDocument> history : histories) {
+            removed += compactHistory(dataStorage, task, history, now);
+         }
+         lastDocumentId = histories.size() < COMPACTION_CHUNK_SIZE ? null : getDocumentId(histories.get(histories.size() - 1).get(0));
+      } while (lastDocumentId != null);
+
+      return removed;
+   }
+
+   private void run(final DataStorage dataStorage) {
+      scheduled.remove(dataStorage);
+      final Map<String, CompactionTask> tasks = pending.get(dataStorage);
+      if (tasks == null) {
+         return;
+      }
+      // versions still waiting in the backup queue would break the rewritten histories
+      try {
+         backupWriter.flush(dataStorage);
+      } catch (RuntimeException e) {
+         log.log(Level.WARNING, "Unable to write document backups before compaction: ", e);
+         return;
+      }
+
+      for (String shadowCollectionName : new ArrayList<>(tasks.keySet())) {
+         final CompactionTask task = tasks.remove(shadowCollectionName);
+         if (task != null) {
+            try {
+               compact(dataStorage, task.collectionName, task.shadowCollectionName, task.retention);
+            } catch (RuntimeException e) {
+               log.log(Level.WARNING, "Unable to compact versions in collection " + shadowCollectionName + ": ", e);
+            }
+         }
+      }
+   }
+
+   /**
+    * Reads versions of a chunk of documents.
+    *
+    * @param dataStorage
+    *       data storage where the shadow collection is located
+    * @param shadowCollectionName
+    *       name of the shadow collection
+    * @param lastDocumentId
+    *       id of the last document of the previous chunk, null for the first chunk
+    * @return versions of each document ordered from the newest one
+    */
+   private List<List<DataDocument>> readHistories(final DataStorage dataStorage, final String shadowCollectionName, final String lastDocumentId) {
+      final List<List<DataDocument>> histories = new ArrayList<>();
+      // the nested id starts with the document id, so the versions of a document follow each other from the newest one
+      try (DataCursor cursor = dataStorage.searchCursor(shadowCollectionName, lastDocumentId != null ? dialect.documentNestedIdLowerThanFilter(lastDocumentId) : null,
+            dialect.documentFieldSort(LumeerConst.Document.ID, LumeerConst.SORT_DESCENDING_ORDER), 0, 0, 0)) {
+         List<DataDocument> history = null;
+         while (cursor.hasNext()) {
+            final DataDocument shadowDocument = cursor.next();
+            if (history == null || !getDocumentId(history.get(0)).equals(getDocumentId(shadowDocument))) {
+               if (histories.size() == COMPACTION_CHUNK_SIZE) {
+                  break;
+               }
+               history = new ArrayList<>();
+               histories.add(history);
+            }
+            history.add(shadowDocument);
+         }
+      }
+
+      return histories;
+   }
+
+   private int compactHistory(final DataStorage dataStorage, final CompactionTask task, final List<DataDocument> history, final LocalDateTime now) {
+      final String documentId = getDocumentId(history.get(0));
+
+      // reconstruct the versions stored as deltas, versions which cannot be reconstructed are kept untouched
+      final List<DataDocument> documents = new ArrayList<>(history.size());
+      DataDocument nextDocument = dataStorage.readDocument(task.collectionName, dialect.documentIdFilter(documentId));
+      int nextVersion = nextDocument != null ? nextDocument.getInteger(LumeerConst.Document.METADATA_VERSION_KEY, 0) : -1;
+      for (DataDocument shadowDocument : history) {
+         final int version = getVersion(shadowDocument);
+         if (!DocumentDelta.isDelta(shadowDocument)) {
+            nextDocument = shadowDocument;
+         } else if (nextDocument != null && version == nextVersion - 1) {
+            nextDocument = DocumentDelta.apply(nextDocument, shadowDocument);
+         } else {
+            nextDocument = null;
+         }
+         nextVersion = version;
+         documents.add(nextDocument);
+      }
+
+      final List<LocalDateTime> dates = new ArrayList<>(documents.size());
+      documents.forEach(document -> dates.add(document != null ? VersionRetention.versionDate(document) : null));
+      final boolean[] kept = task.retention.retain(dates, now);
+
+      final List<Integer> removed = new ArrayList<>();
+      for (int i = 0; i < kept.length; i++) {
+         if (!kept[i]) {
+            removed.add(getVersion(history.get(i)));
+         } else if (i > 0 && !kept[i - 1] && DocumentDelta.isDelta(history.get(i)) && documents.get(i) != null) {
+            // the delta would lose its base, it is replaced before the next version is removed
+            dataStorage.replaceDocument(task.shadowCollectionName, documents.get(i), dialect.documentNestedIdFilterWithVersion(documentId, getVersion(history.get(i))));
+         }
+      }
+
+      if (!removed.isEmpty()) {
+         dataStorage.dropManyDocuments(task.shadowCollectionName, dialect.documentNestedIdFilterWithVersions(documentId, removed));
+      }
+      return removed.size();
+   }
+
+   private String getDocumentId(final DataDocument shadowDocument) {
+      return shadowDocument.getDataDocument(LumeerConst.Document.ID).getString(LumeerConst.Document.ID);
+   }
+
+   private int getVersion(final DataDocument shadowDocument) {
+      return shadowDocument.getDataDocument(LumeerConst.Document.ID).getInteger(LumeerConst.Document.METADATA_VERSION_KEY);
+   }
+
+   /**
+    * Shadow collection waiting for compaction.
+    */
+   private static final class CompactionTask {
+
+      private final String collectionName;
+      private final String shadowCollectionName;
+      private final VersionRetention retention;
+
+      private CompactionTask(final String collectionName, final String shadowCollectionName, final VersionRetention retention) {
+         this.collectionName = collectionName;
+         this.shadowCollectionName = shadowCollectionName;
+         this.retention = retention;
+      }
+   }
+}
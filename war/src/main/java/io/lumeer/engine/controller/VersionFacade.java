@@ -21,6 +21,7 @@ package io.lumeer.engine.controller;
 
 import io.lumeer.engine.annotation.UserDataStorage;
 import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.data.DataCursor;
 import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.engine.api.data.DataFilter;
 import io.lumeer.engine.api.data.DataStorage;
@@ -29,10 +30,16 @@ import io.lumeer.engine.api.exception.AttributeNotFoundException;
 import io.lumeer.engine.api.exception.CollectionNotFoundException;
 import io.lumeer.engine.api.exception.DocumentNotFoundException;
 import io.lumeer.engine.api.exception.VersionUpdateConflictException;
+import io.lumeer.engine.provider.DataStorageProvider;
 import io.lumeer.engine.util.ErrorMessageBuilder;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.SessionScoped;
 import javax.inject.Inject;
 
@@ -42,6 +49,13 @@ import javax.inject.Inject;
 @SessionScoped
 public class VersionFacade implements Serializable {
 
+   /**
+    * Maximal number of the newest old versions returned by {@link #getDocumentVersions(String, String)}.
+    */
+   private static final int DOCUMENT_VERSIONS_LIMIT = 100;
+
+   private static final String SHADOW_VERSION_KEY = LumeerConst.Document.ID + "." + LumeerConst.Document.METADATA_VERSION_KEY;
+
    @Inject
    @UserDataStorage
    private DataStorage dataStorage;
@@ -49,6 +63,46 @@ public class VersionFacade implements Serializable {
    @Inject
    private DataStorageDialect dataStorageDialect;
 
+   @Inject
+   private ConfigurationFacade configurationFacade;
+
+   @Inject
+   private DataStorageProvider dataStorageProvider;
+
+   @Inject
+   private VersionCompactor versionCompactor;
+
+   @Inject
+   private VersionBackupWriter backupWriter;
+
+   /**
+    * Every version divisible by this number is backed up as a full copy, other versions are backed up
+    * as deltas against the next version. One means that all versions are full copies.
+    */
+   private int snapshotInterval;
+
+   private VersionRetention retention;
+
+   /**
+    * Capacity of the queue of backups written in the background, zero means that backups are written before the document is changed.
+    */
+   private int backupQueueSize;
+
+   /**
+    * Shadow collections whose index was checked in this session.
+    */
+   private final Set<String> indexedShadowCollections = ConcurrentHashMap.newKeySet();
+
+   @PostConstruct
+   public void init() {
+      snapshotInterval = Math.max(1, configurationFacade.getConfigurationInteger(LumeerConst.VERSION_SNAPSHOT_INTERVAL_PROPERTY).orElse(1));
+      retention = new VersionRetention(configurationFacade.getConfigurationInteger(LumeerConst.VERSION_RETENTION_COUNT_PROPERTY).orElse(0),
+            configurationFacade.getConfigurationInteger(LumeerConst.VERSION_RETENTION_DAYS_PROPERTY).orElse(0),
+            VersionRetention.parseThinning(configurationFacade.getConfigurationString(LumeerConst.VERSION_RETENTION_THINNING_PROPERTY).orElse(null)));
+      backupQueueSize = Math.max(0, configurationFacade.getConfigurationInteger(LumeerConst.VERSION_BACKUP_QUEUE_SIZE_PROPERTY).orElse(0));
+      backupWriter.resume(dataStorageProvider.getUserStorage(), backupQueueSize);
+   }
+
    /**
     * Return document version.
     *
@@ -93,6 +147,7 @@ public class VersionFacade implements Serializable {
     *       name of the collection to move
     */
    public void trashShadowCollection(final String collectionName) {
+      flushBackups();
       String shadowCollectionName = buildShadowCollectionName(collectionName);
       String trashShadowCollectionName = buildTrashShadowCollectionName(shadowCollectionName);
       dataStorage.renameCollection(shadowCollectionName, trashShadowCollectionName);
@@ -111,16 +166,15 @@ public class VersionFacade implements Serializable {
    }
 
    /**
-    * Create shadow collection if not created. Backup document with
-    * same id as document in collection. Then replace document in
-    * collection with document from input. This method is atomic.
-    * As lock there is document in shadow collection.
+    * Replace or update document in collection with document from input
+    * and back up its previous version in shadow collection. The document
+    * is changed only if it still has the version of the actual document,
+    * so the previous version is never overwritten without a backup.
     *
     * @param collectionName
     *       collection name, where document is stored
     * @param newDocument
-    *       document, which will be stored in SHADOW collection
-    *       and then updated in new collection to new version.
+    *       document, which will be stored in collection as the new version.
     *       After that it is possible to change data and save it
     * @param actualDocument
     *       existing document
@@ -128,8 +182,7 @@ public class VersionFacade implements Serializable {
     *       whether perform replace or update
     * @return integer, new version of document
     * @throws VersionUpdateConflictException
-    *       if there are two updatest at same time, means if in
-    *       shadow collection already exists document with same version
+    *       if the document was changed or removed since the actual document was read
     * @throws AttributeNotFoundException
     *       if document doesnt containst id
     */
@@ -140,25 +193,95 @@ public class VersionFacade implements Serializable {
       }
       createMetadata(newDocument);
 
-      int oldVersion = backUpDocument(collectionName, actualDocument);
-      int newVersion = oldVersion + 1;
+      if (replace) {
+         return replaceDocumentVersion(collectionName, actualDocument, newDocument);
+      }
 
-      newDocument.replace(LumeerConst.Document.METADATA_VERSION_KEY, newVersion);
+      int oldVersion = getDocumentVersion(actualDocument);
+      DataDocument update = new DataDocument(newDocument);
+      update.remove(LumeerConst.Document.ID);
+      update.remove(LumeerConst.Document.METADATA_VERSION_KEY);
 
-      if (replace) {
-         dataStorage.replaceDocument(collectionName, newDocument, dataStorageDialect.documentIdFilter(id));
-      } else {
-         dataStorage.updateDocument(collectionName, newDocument, dataStorageDialect.documentIdFilter(id));
+      DataDocument previousDocument = dataStorage.updateAndIncrementDocument(collectionName, update, dataStorageDialect.documentIdFilterWithVersion(id, oldVersion), LumeerConst.Document.METADATA_VERSION_KEY, 1);
+      if (previousDocument == null) {
+         throw new VersionUpdateConflictException(ErrorMessageBuilder.versionConflictString(oldVersion));
+      }
+
+      backUpChangedDocument(collectionName, previousDocument, updatedDocument(previousDocument, update));
+      newDocument.replace(LumeerConst.Document.METADATA_VERSION_KEY, oldVersion + 1);
+
+      return oldVersion + 1;
+   }
+
+   /**
+    * Replaces the document if it still has the version of the actual document and backs up the replaced version.
+    *
+    * @param collectionName
+    *       collection name, where document is stored
+    * @param actualDocument
+    *       existing document
+    * @param newDocument
+    *       document to replace the existing one, its version is set to the new version
+    * @return new version of the document
+    * @throws VersionUpdateConflictException
+    *       if the document was changed or removed since the actual document was read
+    */
+   private int replaceDocumentVersion(String collectionName, DataDocument actualDocument, DataDocument newDocument) throws VersionUpdateConflictException {
+      int oldVersion = getDocumentVersion(actualDocument);
+      newDocument.put(LumeerConst.Document.METADATA_VERSION_KEY, oldVersion + 1);
+
+      DataDocument previousDocument = dataStorage.replaceAndReturnDocument(collectionName, newDocument, dataStorageDialect.documentIdFilterWithVersion(actualDocument.getId(), oldVersion));
+      if (previousDocument == null) {
+         throw new VersionUpdateConflictException(ErrorMessageBuilder.versionConflictString(oldVersion));
       }
 
-      return newVersion;
+      backUpChangedDocument(collectionName, previousDocument, newDocument);
+      return oldVersion + 1;
    }
 
    /**
-    * Create shadow collection if not created. Backup document with
-    * same id as document in collection. Then replace document in
-    * collection with document from input. This method is atomic.
-    * As lock there is document in shadow collection.
+    * Update document and back up its previous version. The document is read and updated
+    * by a single atomic operation, so the previous version is never overwritten without
+    * a backup. When the expected version is given, the document is updated only if it
+    * still has this version.
+    *
+    * @param collectionName
+    *       collection name, where document is stored
+    * @param documentId
+    *       id of the updated document
+    * @param updateDocument
+    *       attributes to update
+    * @param expectedVersion
+    *       version the update is based on, null to update any version
+    * @return previous version of the document
+    * @throws VersionUpdateConflictException
+    *       if the document has a different version than expected
+    * @throws DocumentNotFoundException
+    *       if the document does not exist
+    */
+   public DataDocument updateDocumentVersion(String collectionName, String documentId, DataDocument updateDocument, Integer expectedVersion) throws VersionUpdateConflictException, DocumentNotFoundException {
+      DataDocument update = new DataDocument(updateDocument);
+      update.remove(LumeerConst.Document.ID);
+      update.remove(LumeerConst.Document.METADATA_VERSION_KEY);
+
+      DataFilter filter = expectedVersion != null ? dataStorageDialect.documentIdFilterWithVersion(documentId, expectedVersion) : dataStorageDialect.documentIdFilter(documentId);
+      DataDocument previousDocument = dataStorage.updateAndIncrementDocument(collectionName, update, filter, LumeerConst.Document.METADATA_VERSION_KEY, 1);
+      if (previousDocument == null) {
+         // distinguish the conflict only on the failure path
+         if (expectedVersion != null && dataStorage.collectionHasDocument(collectionName, dataStorageDialect.documentIdFilter(documentId))) {
+            throw new VersionUpdateConflictException(ErrorMessageBuilder.versionConflictString(expectedVersion));
+         }
+         throw new DocumentNotFoundException(ErrorMessageBuilder.documentNotFoundString());
+      }
+
+      backUpChangedDocument(collectionName, previousDocument, updatedDocument(previousDocument, update));
+      return previousDocument;
+   }
+
+   /**
+    * Drop attribute of document in collection and back up its previous
+    * version in shadow collection. The attribute is dropped only if the
+    * document still has the version of the actual document.
     *
     * @param collectionName
     *       collection name, where document is stored
@@ -168,8 +291,7 @@ public class VersionFacade implements Serializable {
     *       name of attribute to drop
     * @return integer, new version of document
     * @throws VersionUpdateConflictException
-    *       if there are two updatest at same time, means if in
-    *       shadow collection already exists document with same version
+    *       if the document was changed or removed since the actual document was read
     * @throws AttributeNotFoundException
     *       if document doesnt containst id
     */
@@ -179,14 +301,21 @@ public class VersionFacade implements Serializable {
          throw new AttributeNotFoundException(ErrorMessageBuilder.idNotFoundString());
       }
 
-      int oldVersion = backUpDocument(collectionName, actualDocument);
-      int newVersion = oldVersion + 1;
+      DataDocument nextDocument = null;
+      if (!attributeName.contains(".")) {
+         nextDocument = new DataDocument(actualDocument);
+         nextDocument.remove(attributeName);
+      }
 
-      final DataFilter documentIdFilter = dataStorageDialect.documentIdFilter(id);
-      dataStorage.dropAttribute(collectionName, documentIdFilter, attributeName);
-      dataStorage.incrementAttributeValueBy(collectionName, documentIdFilter, LumeerConst.Document.METADATA_VERSION_KEY, 1);
+      int oldVersion = getDocumentVersion(actualDocument);
+      if (!dataStorage.applyDocumentUpdate(collectionName, dataStorageDialect.dropAttributeUpdate(attributeName, LumeerConst.Document.METADATA_VERSION_KEY),
+            dataStorageDialect.documentIdFilterWithVersion(id, oldVersion))) {
+         throw new VersionUpdateConflictException(ErrorMessageBuilder.versionConflictString(oldVersion));
+      }
 
-      return newVersion;
+      // the document had the version of the actual document, so it is the dropped version
+      backUpChangedDocument(collectionName, actualDocument, nextDocument);
+      return oldVersion + 1;
    }
 
    /**
@@ -208,9 +337,30 @@ public class VersionFacade implements Serializable {
    private void createShadowCollection(String collectionName) {
       if (!dataStorage.hasCollection(buildShadowCollectionName(collectionName))) {
          dataStorage.createCollection(buildShadowCollectionName(collectionName));
+         createShadowIndex(buildShadowCollectionName(collectionName));
       }
    }
 
+   /**
+    * Creates index to read a range of versions of a document.
+    *
+    * @param shadowCollectionName
+    *       name of the shadow collection
+    */
+   private void createShadowIndex(String shadowCollectionName) {
+      dataStorage.createIndex(shadowCollectionName, shadowIndexAttributes(), false);
+   }
+
+   /**
+    * Gets attributes of the index to read a range of versions of a document.
+    *
+    * @return index attributes
+    */
+   static DataDocument shadowIndexAttributes() {
+      return new DataDocument(LumeerConst.Document.ID + "." + LumeerConst.Document.ID, LumeerConst.Index.ASCENDING)
+            .append(SHADOW_VERSION_KEY, LumeerConst.Index.ASCENDING);
+   }
+
    /**
     * Create in shadow collection backup of document from input
     *
@@ -223,16 +373,208 @@ public class VersionFacade implements Serializable {
     *       throws if document is already in shadow collection
     */
    public int backUpDocument(String collectionName, DataDocument document) throws VersionUpdateConflictException {
+      return backUpDocument(collectionName, document, null);
+   }
+
+   /**
+    * Create in shadow collection backup of document from input. The backup is a delta
+    * against the next version of the document unless the version is due for a full copy.
+    * When the backup queue is enabled and not full, the backup is written in the background.
+    *
+    * @param collectionName
+    *       collection where document is stored
+    * @param document
+    *       document to back up
+    * @param nextDocument
+    *       next version of the document, null when it is not known
+    * @return return version of document stored in shadow
+    * @throws VersionUpdateConflictException
+    *       throws if document is already in shadow collection
+    */
+   private int backUpDocument(String collectionName, DataDocument document, DataDocument nextDocument) throws VersionUpdateConflictException {
       createMetadata(document);
-      createShadowCollection(collectionName);
 
+      int version = getDocumentVersion(document);
+      DataDocument backup = getBackup(document, nextDocument);
+      if (!enqueueBackup(collectionName, backup, document.getId(), version)) {
+         createShadowCollection(collectionName);
+         try {
+            dataStorage.createOldDocument(buildShadowCollectionName(collectionName), backup, document.getId(), version);
+         } catch (Exception e) {
+            throw new VersionUpdateConflictException(e.getMessage(), e.getCause());
+         }
+      }
+
+      if (retention.isEnabled()) {
+         scheduleCompaction(collectionName);
+      }
+
+      return version;
+   }
+
+   /**
+    * Backs up the previous version of an already changed document. A backup that cannot be written is not reported
+    * as a conflict, the change is stored already, it is handed over to be written again in the background.
+    *
+    * @param collectionName
+    *       collection where document is stored
+    * @param document
+    *       previous version of the document
+    * @param nextDocument
+    *       next version of the document, null when it is not known
+    */
+   private void backUpChangedDocument(String collectionName, DataDocument document, DataDocument nextDocument) {
       try {
-         dataStorage.createOldDocument(buildShadowCollectionName(collectionName), document, document.getId(), getDocumentVersion(document));
-      } catch (Exception e) {
-         throw new VersionUpdateConflictException(e.getMessage(), e.getCause());
+         backUpDocument(collectionName, document, nextDocument);
+      } catch (VersionUpdateConflictException e) {
+         backupWriter.retry(dataStorageProvider.getUserStorage(), buildShadowCollectionName(collectionName),
+               queuedBackup(getBackup(document, nextDocument), document.getId(), getDocumentVersion(document)), backupQueueSize, e);
       }
+   }
 
-      return getDocumentVersion(document);
+   /**
+    * Gets the backup of the document, a delta against the next version unless the version is due for a full copy.
+    *
+    * @param document
+    *       document to back up
+    * @param nextDocument
+    *       next version of the document, null when it is not known
+    * @return document or delta to back up
+    */
+   private DataDocument getBackup(DataDocument document, DataDocument nextDocument) {
+      return nextDocument != null && !isSnapshotVersion(getDocumentVersion(document)) ? DocumentDelta.diff(document, nextDocument) : document;
+   }
+
+   private DataDocument queuedBackup(DataDocument backup, String documentId, int version) {
+      DataDocument queuedBackup = new DataDocument(backup);
+      queuedBackup.put(LumeerConst.Document.ID, documentId);
+      queuedBackup.put(LumeerConst.Document.METADATA_VERSION_KEY, version);
+      return queuedBackup;
+   }
+
+   /**
+    * Queues the backup to be written in the background. A version conflict is not detected for queued backups,
+    * the first backup of a version is kept.
+    *
+    * @param collectionName
+    *       collection where document is stored
+    * @param backup
+    *       document or delta to back up
+    * @param documentId
+    *       id of the document
+    * @param version
+    *       backed up version
+    * @return true if the backup was queued, false if it must be written right away
+    */
+   private boolean enqueueBackup(String collectionName, DataDocument backup, String documentId, int version) {
+      if (backupQueueSize == 0) {
+         return false;
+      }
+
+      return backupWriter.enqueue(dataStorageProvider.getUserStorage(), buildShadowCollectionName(collectionName), queuedBackup(backup, documentId, version), backupQueueSize);
+   }
+
+   /**
+    * Writes backups queued in the background, so that shadow collections contain all versions.
+    */
+   private void flushBackups() {
+      if (backupQueueSize > 0) {
+         backupWriter.flush(dataStorageProvider.getUserStorage());
+      }
+   }
+
+   /**
+    * Removes old versions of documents which are not kept by the configured retention policy.
+    *
+    * @param collectionName
+    *       collection whose shadow collection is compacted
+    * @return number of removed versions
+    */
+   public int compactShadowCollection(String collectionName) {
+      flushBackups();
+      return versionCompactor.compact(dataStorage, collectionName, buildShadowCollectionName(collectionName), retention);
+   }
+
+   /**
+    * Schedules background compaction of the shadow collection. Shadow collections
+    * created before the version index are indexed first.
+    *
+    * @param collectionName
+    *       collection whose shadow collection is compacted
+    */
+   private void scheduleCompaction(String collectionName) {
+      String shadowCollectionName = buildShadowCollectionName(collectionName);
+      if (indexedShadowCollections.add(shadowCollectionName)) {
+         createShadowIndex(shadowCollectionName);
+      }
+      versionCompactor.schedule(dataStorageProvider.getUserStorage(), collectionName, shadowCollectionName, retention);
+   }
+
+   /**
+    * Converts backups in the shadow collection to deltas or full copies according to
+    * the current snapshot interval.
+    *
+    * @param collectionName
+    *       collection whose shadow collection is converted
+    * @return number of converted backups
+    */
+   public int migrateShadowCollection(String collectionName) {
+      flushBackups();
+      String shadowCollectionName = buildShadowCollectionName(collectionName);
+      if (!dataStorage.hasCollection(shadowCollectionName)) {
+         return 0;
+      }
+      createShadowIndex(shadowCollectionName);
+
+      int converted = 0;
+      String documentId = null;
+      DataDocument nextDocument = null;
+      int nextVersion = 0;
+      // the nested id starts with the document id, so the backups of a document follow each other from the newest one
+      try (DataCursor cursor = dataStorage.searchCursor(shadowCollectionName, null, dataStorageDialect.documentFieldSort(LumeerConst.Document.ID, LumeerConst.SORT_DESCENDING_ORDER), 0, 0, 0)) {
+         while (cursor.hasNext()) {
+            DataDocument shadowDocument = cursor.next();
+            DataDocument shadowId = shadowDocument.getDataDocument(LumeerConst.Document.ID);
+            int version = shadowId.getInteger(LumeerConst.Document.METADATA_VERSION_KEY);
+
+            if (!shadowId.getString(LumeerConst.Document.ID).equals(documentId)) {
+               documentId = shadowId.getString(LumeerConst.Document.ID);
+               nextDocument = dataStorage.readDocument(collectionName, dataStorageDialect.documentIdFilter(documentId));
+               nextVersion = nextDocument != null ? getDocumentVersion(nextDocument) : -1;
+            }
+            if (version != nextVersion - 1) {
+               nextDocument = null;
+            }
+
+            DataDocument document = shadowDocument;
+            if (DocumentDelta.isDelta(shadowDocument)) {
+               if (nextDocument == null) {
+                  // broken chain of deltas, the version cannot be reconstructed
+                  nextVersion = version;
+                  continue;
+               }
+               document = DocumentDelta.apply(nextDocument, shadowDocument);
+            }
+
+            DataDocument backup = null;
+            if (nextDocument != null && !isSnapshotVersion(version)) {
+               if (!DocumentDelta.isDelta(shadowDocument)) {
+                  backup = DocumentDelta.diff(document, nextDocument);
+               }
+            } else if (DocumentDelta.isDelta(shadowDocument)) {
+               backup = document;
+            }
+            if (backup != null) {
+               dataStorage.replaceDocument(shadowCollectionName, backup, dataStorageDialect.documentNestedIdFilterWithVersion(documentId, version));
+               converted++;
+            }
+
+            nextDocument = document;
+            nextVersion = version;
+         }
+      }
+
+      return converted;
    }
 
    /**
@@ -247,8 +589,7 @@ public class VersionFacade implements Serializable {
     * @param newDocument
     *       document to be reverted to
     * @throws VersionUpdateConflictException
-    *       if there already exist document in shadows collection
-    *       with same id
+    *       if the document was changed or removed since the actual document was read
     * @throws AttributeNotFoundException
     *       if document does not contains id
     */
@@ -258,11 +599,7 @@ public class VersionFacade implements Serializable {
          throw new AttributeNotFoundException(ErrorMessageBuilder.idNotFoundString());
       }
 
-      int oldVersion = backUpDocument(collectionName, actualDocument);
-      int newVersion = oldVersion + 1;
-
-      newDocument.replace(LumeerConst.Document.METADATA_VERSION_KEY, newVersion);
-      dataStorage.replaceDocument(collectionName, newDocument, dataStorageDialect.documentIdFilter(id));
+      replaceDocumentVersion(collectionName, actualDocument, newDocument);
    }
 
    /**
@@ -303,11 +640,44 @@ public class VersionFacade implements Serializable {
     *       if document cannot be found
     */
    public DataDocument readOldDocumentVersion(String collectionName, String documentId, int version) throws DocumentNotFoundException {
+      flushBackups();
       final DataDocument data = dataStorage.readDocument(buildShadowCollectionName(collectionName), dataStorageDialect.documentNestedIdFilterWithVersion(documentId, version));
       if (data == null) {
          throw new DocumentNotFoundException(ErrorMessageBuilder.documentNotFoundString());
       }
-      return data;
+      if (!DocumentDelta.isDelta(data)) {
+         return data;
+      }
+
+      // deltas up to the nearest full copy, which is either a snapshot or the document itself
+      final List<DataDocument> deltas = new ArrayList<>();
+      deltas.add(data);
+      DataDocument document = null;
+      try (DataCursor cursor = dataStorage.searchCursor(buildShadowCollectionName(collectionName), dataStorageDialect.documentNestedIdFilterFromVersion(documentId, version + 1),
+            dataStorageDialect.documentFieldSort(SHADOW_VERSION_KEY, LumeerConst.SORT_ASCENDING_ORDER), 0, 0, snapshotInterval)) {
+         while (cursor.hasNext() && document == null) {
+            DataDocument shadowDocument = cursor.next();
+            if (getShadowVersion(shadowDocument) != version + deltas.size()) {
+               throw new DocumentNotFoundException(ErrorMessageBuilder.documentNotFoundString());
+            }
+            if (DocumentDelta.isDelta(shadowDocument)) {
+               deltas.add(shadowDocument);
+            } else {
+               document = shadowDocument;
+            }
+         }
+      }
+      if (document == null) {
+         document = dataStorage.readDocument(collectionName, dataStorageDialect.documentIdFilter(documentId));
+         if (document == null || getDocumentVersion(document) != version + deltas.size()) {
+            throw new DocumentNotFoundException(ErrorMessageBuilder.documentNotFoundString());
+         }
+      }
+
+      for (int i = deltas.size() - 1; i >= 0; i--) {
+         document = DocumentDelta.apply(document, deltas.get(i));
+      }
+      return document;
    }
 
    /**
@@ -323,15 +693,73 @@ public class VersionFacade implements Serializable {
     *       if collection does not exists
     */
    public List<DataDocument> getDocumentVersions(String collectionName, String documentId) throws CollectionNotFoundException {
+      flushBackups();
       final DataFilter filter = dataStorageDialect.documentNestedIdFilter(documentId);
-      List<DataDocument> dataDocuments = dataStorage.search(buildShadowCollectionName(collectionName), filter, null, 0, 100);
-
       DataDocument main = dataStorage.readDocument(collectionName, dataStorageDialect.documentIdFilter(documentId));
+
+      // deltas are applied from the newest version, versions that cannot be reconstructed are left out
+      final List<DataDocument> dataDocuments = new ArrayList<>();
+      DataDocument nextDocument = main;
+      int nextVersion = main != null ? getDocumentVersion(main) : -1;
+      try (DataCursor cursor = dataStorage.searchCursor(buildShadowCollectionName(collectionName), filter, dataStorageDialect.documentFieldSort(SHADOW_VERSION_KEY, LumeerConst.SORT_DESCENDING_ORDER), 0, 0, DOCUMENT_VERSIONS_LIMIT)) {
+         while (dataDocuments.size() < DOCUMENT_VERSIONS_LIMIT && cursor.hasNext()) {
+            DataDocument shadowDocument = cursor.next();
+            int version = getShadowVersion(shadowDocument);
+            if (!DocumentDelta.isDelta(shadowDocument)) {
+               nextDocument = shadowDocument;
+            } else if (nextDocument != null && version == nextVersion - 1) {
+               nextDocument = DocumentDelta.apply(nextDocument, shadowDocument);
+            } else {
+               nextDocument = null;
+            }
+            nextVersion = version;
+
+            if (nextDocument != null) {
+               dataDocuments.add(nextDocument);
+            }
+         }
+      }
+
+      Collections.reverse(dataDocuments);
       dataDocuments.add(main);
 
       return dataDocuments;
    }
 
+   /**
+    * Gets whether the version is always backed up as a full copy.
+    *
+    * @param version
+    *       version of the document
+    * @return true if and only if the version is backed up as a full copy
+    */
+   private boolean isSnapshotVersion(int version) {
+      return snapshotInterval <= 1 || version % snapshotInterval == 0;
+   }
+
+   /**
+    * Computes the document after an update of its top level attributes.
+    *
+    * @param actualDocument
+    *       document to update
+    * @param updateDocument
+    *       updated attributes
+    * @return updated document or null when the update changes nested attributes
+    */
+   private DataDocument updatedDocument(DataDocument actualDocument, DataDocument updateDocument) {
+      if (updateDocument.keySet().stream().anyMatch(key -> key.contains("."))) {
+         return null;
+      }
+      DataDocument document = new DataDocument(actualDocument);
+      document.putAll(updateDocument);
+      document.put(LumeerConst.Document.ID, actualDocument.getId());
+      return document;
+   }
+
+   private int getShadowVersion(DataDocument shadowDocument) {
+      return shadowDocument.getDataDocument(LumeerConst.Document.ID).getInteger(LumeerConst.Document.METADATA_VERSION_KEY);
+   }
+
    public void putInitDocumentVersionInternally(DataDocument dataDocument) {
       dataDocument.put(LumeerConst.Document.METADATA_VERSION_KEY, 0);
    }
@@ -0,0 +1,152 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.data.DataDocument;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.IsoFields;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides which old versions of a document are kept in the shadow collection. A version is kept when it is
+ * one of the last versions, when it is newer than the given number of days, or when it is the newest version
+ * of its day or week while thinning is enabled. Versions are kept forever when neither the count nor the age is limited.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public final class VersionRetention implements Serializable {
+
+   private static final long serialVersionUID = 1L;
+
+   /**
+    * Format of document dates, the same as in {@link io.lumeer.engine.util.Utils}. Unlike the shared format there, this one is thread safe.
+    */
+   private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM.dd HH.mm.ss.SSS");
+
+   /**
+    * How older versions are thinned.
+    */
+   public enum Thinning {
+      NONE, DAILY, WEEKLY
+   }
+
+   private final int keepCount;
+   private final int keepDays;
+   private final Thinning thinning;
+
+   /**
+    * @param keepCount
+    *       number of the newest versions to keep, zero for no limit
+    * @param keepDays
+    *       age of versions to keep in days, zero for no limit
+    * @param thinning
+    *       how to thin versions which are not kept otherwise
+    */
+   public VersionRetention(final int keepCount, final int keepDays, final Thinning thinning) {
+      this.keepCount = Math.max(0, keepCount);
+      this.keepDays = Math.max(0, keepDays);
+      this.thinning = thinning;
+   }
+
+   /**
+    * Parses the thinning name, unknown names disable thinning.
+    *
+    * @param name
+    *       name of the thinning
+    * @return the thinning
+    */
+   public static Thinning parseThinning(final String name) {
+      try {
+         return name != null ? Thinning.valueOf(name.trim().toUpperCase()) : Thinning.NONE;
+      } catch (IllegalArgumentException e) {
+         return Thinning.NONE;
+      }
+   }
+
+   /**
+    * Gets whether any version can be removed.
+    *
+    * @return true if and only if the number or the age of versions is limited
+    */
+   public boolean isEnabled() {
+      return keepCount > 0 || keepDays > 0;
+   }
+
+   /**
+    * Selects the versions to keep.
+    *
+    * @param versionDates
+    *       dates of the versions ordered from the newest one, null when the date is not known
+    * @param now
+    *       current time
+    * @return flags of the kept versions in the same order, versions with unknown date are always kept
+    */
+   public boolean[] retain(final List<LocalDateTime> versionDates, final LocalDateTime now) {
+      final LocalDateTime keepAfter = keepDays > 0 ? now.minusDays(keepDays) : null;
+      final Set<Integer> periods = new HashSet<>();
+      final boolean[] kept = new boolean[versionDates.size()];
+
+      for (int i = 0; i < kept.length; i++) {
+         final LocalDateTime date = versionDates.get(i);
+         kept[i] = !isEnabled() || date == null || i < keepCount || (keepAfter != null && date.isAfter(keepAfter));
+
+         if (date != null && thinning != Thinning.NONE) {
+            // the newest version of each period stays
+            kept[i] = periods.add(period(date)) || kept[i];
+         }
+      }
+
+      return kept;
+   }
+
+   /**
+    * Gets the date when the version was created.
+    *
+    * @param document
+    *       the version of document
+    * @return the date of the last update or of the creation, null when the document has neither
+    */
+   public static LocalDateTime versionDate(final DataDocument document) {
+      String date = document.getString(LumeerConst.Document.UPDATE_DATE_KEY);
+      if (date == null) {
+         date = document.getString(LumeerConst.Document.CREATE_DATE_KEY);
+      }
+
+      try {
+         return date != null ? LocalDateTime.parse(date, DATE_FORMAT) : null;
+      } catch (DateTimeParseException e) {
+         return null;
+      }
+   }
+
+   private int period(final LocalDateTime date) {
+      if (thinning == Thinning.WEEKLY) {
+         return date.get(IsoFields.WEEK_BASED_YEAR) * 100 + date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+      }
+      return date.getYear() * 1000 + date.getDayOfYear();
+   }
+}
@@ -19,15 +19,20 @@
  */
 package io.lumeer.engine.provider;
 
+import io.lumeer.engine.api.LumeerConst;
 import io.lumeer.engine.api.cache.Cache;
+import io.lumeer.engine.api.cache.CacheConfiguration;
 import io.lumeer.engine.api.cache.CacheFactory;
 import io.lumeer.engine.api.cache.CacheManager;
 import io.lumeer.engine.api.cache.CacheProvider;
 import io.lumeer.engine.controller.OrganisationFacade;
 import io.lumeer.engine.controller.ProjectFacade;
+import io.lumeer.engine.controller.configuration.DefaultConfigurationProducer;
 
 import java.io.Serializable;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -41,7 +46,25 @@ public class CdiCacheManager implements CacheManager, Serializable {
    @Inject
    private CacheFactory cacheFactory;
 
-   private Map<String, Map<String, Cache>> caches = new ConcurrentHashMap<>();
+   @Inject
+   private DefaultConfigurationProducer defaultConfigurationProducer;
+
+   /**
+    * Caches of individual organisations and projects. The caches share their locks, so the locks obtained
+    * on a cache stay valid when it is dropped.
+    */
+   private final Map<String, Map<String, Cache<?>>> caches = new ConcurrentHashMap<>();
+
+   /**
+    * Organisations and projects in the order of their last use, the caches of the least recently used ones are dropped
+    * when there are too many of them.
+    */
+   private volatile Map<String, Boolean> tenants;
+
+   /**
+    * Limits of the individual caches.
+    */
+   private CacheConfiguration configuration;
 
    @Inject
    private OrganisationFacade organisationFacade;
@@ -58,11 +81,76 @@ public class CdiCacheManager implements CacheManager, Serializable {
    }
 
    public <T> Cache<T> getCache(final String name) {
-      final String key = organisationFacade.getOrganisationId() + "/" + projectFacade.getCurrentProjectId();
-      final Map<String, Cache> localCaches = caches.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
-      final Cache<T> cache = localCaches.computeIfAbsent(name, k -> cacheFactory.getCache());
+      @SuppressWarnings("unchecked")
+      final Cache<T> cache = (Cache<T>) getLocalCaches().computeIfAbsent(name, k -> cacheFactory.getCache(configuration));
 
       return cache;
    }
 
+   @Override
+   public <T> Cache<T> getCache(final String name, final CacheConfiguration configuration) {
+      @SuppressWarnings("unchecked")
+      final Cache<T> cache = (Cache<T>) getLocalCaches().computeIfAbsent(name, k -> cacheFactory.getCache(configuration));
+
+      return cache;
+   }
+
+   private Map<String, Cache<?>> getLocalCaches() {
+      final String key = organisationFacade.getOrganisationId() + "/" + projectFacade.getCurrentProjectId();
+      final Map<String, Boolean> usedTenants = getTenants();
+
+      synchronized (usedTenants) {
+         usedTenants.put(key, Boolean.TRUE);
+      }
+
+      return caches.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+   }
+
+   // the limits are deployment wide, so they are read just from the default configuration
+   private Map<String, Boolean> getTenants() {
+      if (tenants == null) {
+         synchronized (this) {
+            if (tenants == null) {
+               configuration = new CacheConfiguration(
+                     getDefaultLong(LumeerConst.CACHE_MAX_ENTRIES_PROPERTY),
+                     getDefaultLong(LumeerConst.CACHE_TTL_PROPERTY),
+                     Optional.ofNullable(defaultConfigurationProducer.get(LumeerConst.CACHE_EVICTION_POLICY_PROPERTY)).orElse(CacheConfiguration.EVICTION_LRU));
+               tenants = new TenantsMap(getDefaultLong(LumeerConst.CACHE_MAX_TENANTS_PROPERTY));
+            }
+         }
+      }
+
+      return tenants;
+   }
+
+   private long getDefaultLong(final String key) {
+      try {
+         return Long.parseLong(Optional.ofNullable(defaultConfigurationProducer.get(key)).orElse("0"));
+      } catch (NumberFormatException nfe) {
+         return 0;
+      }
+   }
+
+   /**
+    * Access ordered set of organisations and projects that drops the caches of the eldest one when it grows over the limit.
+    */
+   private class TenantsMap extends LinkedHashMap<String, Boolean> {
+
+      private final long maxTenants;
+
+      private TenantsMap(final long maxTenants) {
+         super(16, 0.75f, true);
+         this.maxTenants = maxTenants;
+      }
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+         if (maxTenants > 0 && size() > maxTenants) {
+            caches.remove(eldest.getKey());
+            return true;
+         }
+
+         return false;
+      }
+   }
 }
@@ -23,12 +23,15 @@ import io.lumeer.engine.api.cache.CacheManager;
 import io.lumeer.engine.api.cache.CacheProvider;
 import io.lumeer.engine.api.data.DataStorage;
 import io.lumeer.engine.api.data.DataStorageFactory;
+import io.lumeer.engine.controller.AttributeCountAggregator;
 import io.lumeer.engine.controller.ConfigurationFacade;
 import io.lumeer.engine.controller.OrganisationFacade;
+import io.lumeer.engine.controller.VersionBackupWriter;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.PreDestroy;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
@@ -54,18 +57,36 @@ public class DataStorageProvider {
    @Inject
    private CacheManager cacheManager;
 
+   @Inject
+   private AttributeCountAggregator attributeCountAggregator;
+
+   @Inject
+   private VersionBackupWriter versionBackupWriter;
+
+   @Inject
+   private ManagedExecutorService executorService;
+
    public DataStorage getUserStorage() {
       return connections.computeIfAbsent(organisationFacade.getOrganisationId(),
-            k -> dataStorageFactory.getStorage(cacheManager.getCacheProvider("userDataStorage"), configurationFacade.getDataStorage(), configurationFacade.getDataStorageDatabase(), configurationFacade.getDataStorageUseSsl()));
+            k -> withExecutor(dataStorageFactory.getStorage(cacheManager.getCacheProvider("userDataStorage"), configurationFacade.getDataStorage(), configurationFacade.getDataStorageDatabase(), configurationFacade.getDataStorageUseSsl())));
    }
 
    public DataStorage getSystemStorage() {
       return connections.computeIfAbsent(SYSTEM_CONNECTION,
-            k -> dataStorageFactory.getStorage(cacheManager.getCacheProvider("systemDataStorage"), configurationFacade.getSystemDataStorage(), configurationFacade.getSystemDataStorageDatabase(), configurationFacade.getSystemDataStorageUseSsl()));
+            k -> withExecutor(dataStorageFactory.getStorage(cacheManager.getCacheProvider("systemDataStorage"), configurationFacade.getSystemDataStorage(), configurationFacade.getSystemDataStorageDatabase(), configurationFacade.getSystemDataStorageUseSsl())));
+   }
+
+   private DataStorage withExecutor(final DataStorage storage) {
+      storage.setExecutor(executorService);
+
+      return storage;
    }
 
    @PreDestroy
    public void closeConnections() {
+      // write pending attribute counters and document backups while the connections are still open
+      attributeCountAggregator.shutdown();
+      versionBackupWriter.shutdown();
       connections.forEach((k, v) -> v.disconnect());
    }
 }
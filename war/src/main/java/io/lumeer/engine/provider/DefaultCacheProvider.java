@@ -20,6 +20,7 @@
 package io.lumeer.engine.provider;
 
 import io.lumeer.engine.api.cache.Cache;
+import io.lumeer.engine.api.cache.CacheConfiguration;
 import io.lumeer.engine.api.cache.CacheManager;
 import io.lumeer.engine.api.cache.CacheProvider;
 
@@ -43,4 +44,9 @@ public class DefaultCacheProvider implements CacheProvider, Serializable {
    public <T> Cache<T> getCache(final String cacheName) {
       return cacheManager.getCache(namespace + "/" + cacheName);
    }
+
+   @Override
+   public <T> Cache<T> getCache(final String cacheName, final CacheConfiguration configuration) {
+      return cacheManager.getCache(namespace + "/" + cacheName, configuration);
+   }
 }
@@ -38,8 +38,10 @@ import io.lumeer.engine.controller.ProjectFacade;
 import io.lumeer.engine.controller.SearchFacade;
 import io.lumeer.engine.controller.SecurityFacade;
 import io.lumeer.engine.controller.UserFacade;
+import io.lumeer.engine.controller.VersionFacade;
 import io.lumeer.engine.rest.dao.AccessRightsDao;
 import io.lumeer.engine.rest.dao.CollectionMetadata;
+import io.lumeer.engine.util.DataCursorStreamingOutput;
 import io.lumeer.engine.util.ErrorMessageBuilder;
 
 import java.io.Serializable;
@@ -59,6 +61,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 
 /**
  * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
@@ -85,6 +88,9 @@ public class CollectionService implements Serializable {
    @Inject
    private UserFacade userFacade;
 
+   @Inject
+   private VersionFacade versionFacade;
+
    @Inject
    @UserDataStorage
    private DataStorage dataStorage;
@@ -234,14 +240,14 @@ public class CollectionService implements Serializable {
     *       number of documents to skip
     * @param limit
     *       maximum number of documents to return
-    * @return list of the found documents
+    * @return list of the found documents, streamed to the client as they are read from the data storage
     * @throws CollectionNotFoundException
     *       When the collection in which we want to search does not exist.
     */
    @POST
    @Path("/{collectionName}/search/")
    @Produces(MediaType.APPLICATION_JSON)
-   public List<DataDocument> search(final @PathParam("collectionName") String collectionName, final @QueryParam("filter") String filter, final @QueryParam("sort") String sort, final @QueryParam("skip") int skip, final @QueryParam("limit") int limit) throws CollectionNotFoundException {
+   public StreamingOutput search(final @PathParam("collectionName") String collectionName, final @QueryParam("filter") String filter, final @QueryParam("sort") String sort, final @QueryParam("skip") int skip, final @QueryParam("limit") int limit) throws CollectionNotFoundException {
       if (collectionName == null) {
          throw new IllegalArgumentException();
       }
@@ -250,7 +256,7 @@ public class CollectionService implements Serializable {
       if (!dataStorage.hasCollection(internalCollectionName)) {
          throw new CollectionNotFoundException(ErrorMessageBuilder.collectionNotFoundString(collectionName));
       }
-      return searchFacade.search(internalCollectionName, dialect.documentFilter(filter == null ? "{}" : filter), dialect.documentSort(sort == null ? "{}" : sort), skip, limit);
+      return new DataCursorStreamingOutput(searchFacade.searchCursor(internalCollectionName, dialect.documentFilter(filter == null ? "{}" : filter), dialect.documentSort(sort == null ? "{}" : sort), skip, limit));
    }
 
    /**
@@ -541,6 +547,78 @@ public class CollectionService implements Serializable {
       collectionMetadataFacade.dropAttributeConstraint(getInternalName(collectionName), attributeName, constraintConfiguration);
    }
 
+   /**
+    * Converts old versions of documents in the collection to deltas or full copies according to the current configuration.
+    *
+    * @param collectionName
+    *       collection name
+    * @return number of converted versions
+    * @throws UnauthorizedAccessException
+    *       When current user is not allowed to write to the collection.
+    * @throws UserCollectionNotFoundException
+    *       When the given collection does not exist.
+    */
+   @POST
+   @Path("/{collectionName}/versions/migration")
+   @Produces(MediaType.APPLICATION_JSON)
+   public int migrateDocumentVersions(final @PathParam("collectionName") String collectionName) throws UnauthorizedAccessException, UserCollectionNotFoundException {
+      if (collectionName == null) {
+         throw new IllegalArgumentException();
+      }
+      if (!checkCollectionForWrite(getInternalName(collectionName))) {
+         throw new UnauthorizedAccessException();
+      }
+      return versionFacade.migrateShadowCollection(getInternalName(collectionName));
+   }
+
+   /**
+    * Removes old versions of documents in the collection which are not kept by the configured retention policy.
+    *
+    * @param collectionName
+    *       collection name
+    * @return number of removed versions
+    * @throws UnauthorizedAccessException
+    *       When current user is not allowed to write to the collection.
+    * @throws UserCollectionNotFoundException
+    *       When the given collection does not exist.
+    */
+   @POST
+   @Path("/{collectionName}/versions/compaction")
+   @Produces(MediaType.APPLICATION_JSON)
+   public int compactDocumentVersions(final @PathParam("collectionName") String collectionName) throws UnauthorizedAccessException, UserCollectionNotFoundException {
+      if (collectionName == null) {
+         throw new IllegalArgumentException();
+      }
+      if (!checkCollectionForWrite(getInternalName(collectionName))) {
+         throw new UnauthorizedAccessException();
+      }
+      return versionFacade.compactShadowCollection(getInternalName(collectionName));
+   }
+
+   /**
+    * Creates indexes of readers and writers in the collection and derives them in documents created before they were introduced.
+    *
+    * @param collectionName
+    *       collection name
+    * @return number of updated documents
+    * @throws UnauthorizedAccessException
+    *       When current user is not allowed to write to the collection.
+    * @throws UserCollectionNotFoundException
+    *       When the given collection does not exist.
+    */
+   @POST
+   @Path("/{collectionName}/rights/migration")
+   @Produces(MediaType.APPLICATION_JSON)
+   public int migrateAccessRights(final @PathParam("collectionName") String collectionName) throws UnauthorizedAccessException, UserCollectionNotFoundException {
+      if (collectionName == null) {
+         throw new IllegalArgumentException();
+      }
+      if (!checkCollectionForWrite(getInternalName(collectionName))) {
+         throw new UnauthorizedAccessException();
+      }
+      return securityFacade.migrateRights(getInternalName(collectionName));
+   }
+
    /**
     * Returns internal name of the given collection stored in the database.
     *
@@ -23,6 +23,7 @@ import io.lumeer.engine.annotation.UserDataStorage;
 import io.lumeer.engine.api.constraint.InvalidConstraintException;
 import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.engine.api.data.DataStorage;
+import io.lumeer.engine.api.data.DataStorageDialect;
 import io.lumeer.engine.api.exception.CollectionNotFoundException;
 import io.lumeer.engine.api.exception.DbException;
 import io.lumeer.engine.api.exception.DocumentNotFoundException;
@@ -43,6 +44,7 @@ import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Logger;
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
@@ -54,6 +56,7 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 
 /**
@@ -88,6 +91,12 @@ public class DocumentService implements Serializable {
    @UserDataStorage
    private DataStorage dataStorage;
 
+   @Inject
+   private DataStorageDialect dialect;
+
+   @Inject
+   private Logger log;
+
    @PathParam("organisation")
    private String organisationId;
 
@@ -132,6 +141,34 @@ public class DocumentService implements Serializable {
       return documentFacade.createDocument(internalCollectionName, document);
    }
 
+   /**
+    * Creates and inserts new documents to specified collection in a single bulk write.
+    *
+    * @param collectionName
+    *       the name of the collection where the documents will be created
+    * @param documents
+    *       the DataDocument objects representing documents to be created
+    * @return the ids of the newly created documents in the order of the given documents, null for a document that could not be created.
+    *       The documents are inserted in order, so the documents after the first failed one are not created either
+    *       and only those starting with the first null should be sent again.
+    * @throws DbException
+    *       When there is an error working with the database.
+    * @throws InvalidConstraintException
+    *       If one of documents' values does not satisfy constraint or type.
+    */
+   @POST
+   @Path("/bulk")
+   @Produces(MediaType.APPLICATION_JSON)
+   @Consumes(MediaType.APPLICATION_JSON)
+   public List<String> createDocuments(final @PathParam("collectionName") String collectionName, final List<DataDocument> documents) throws DbException, InvalidConstraintException {
+      if (collectionName == null || documents == null) {
+         throw new IllegalArgumentException();
+      }
+      String internalCollectionName = getInternalName(collectionName);
+      checkCollectionExistency(internalCollectionName);
+      return documentFacade.createDocuments(internalCollectionName, documents);
+   }
+
    /**
     * Drops an existing document in given collection by its id.
     *
@@ -187,6 +224,9 @@ public class DocumentService implements Serializable {
     *       the name of the collection where the existing document is located
     * @param updatedDocument
     *       the DataDocument object representing a document with changes to update
+    * @param version
+    *       the version of the document the changes are based on, the update fails when the document has a different version,
+    *       any version is updated when not specified
     * @throws DbException
     *       When there is an error working with the data storage.
     * @throws InvalidConstraintException
@@ -195,7 +235,7 @@ public class DocumentService implements Serializable {
    @PUT
    @Path("/update/")
    @Consumes(MediaType.APPLICATION_JSON)
-   public void updateDocument(final @PathParam("collectionName") String collectionName, final DataDocument updatedDocument) throws DbException, InvalidConstraintException {
+   public void updateDocument(final @PathParam("collectionName") String collectionName, final DataDocument updatedDocument, final @QueryParam("version") Integer version) throws DbException, InvalidConstraintException {
       if (collectionName == null || updatedDocument == null || updatedDocument.getId() == null) {
          throw new IllegalArgumentException();
       }
@@ -203,7 +243,7 @@ public class DocumentService implements Serializable {
       checkCollectionExistency(internalCollectionName);
       checkDocumentForWrite(internalCollectionName, updatedDocument.getId());
 
-      documentFacade.updateDocument(internalCollectionName, updatedDocument);
+      documentFacade.updateDocument(internalCollectionName, updatedDocument, version);
    }
 
    /**
@@ -481,6 +521,36 @@ public class DocumentService implements Serializable {
       securityFacade.setDao(internalCollectionName, documentId, accessRights);
    }
 
+   /**
+    * Updates access rights of the given user in all documents matching the filter in which the currently logged user can add rights.
+    * The documents are updated in chunks and the progress is logged at the fine level.
+    *
+    * @param collectionName
+    *       name of the collection
+    * @param filter
+    *       query predicate. If unspecified, then all documents in the collection will match the predicate.
+    * @param accessRights
+    *       new access rights of the user
+    * @return number of updated documents
+    * @throws DbException
+    *       When there is an error working with the database.
+    */
+   @PUT
+   @Path("/rights")
+   @Consumes(MediaType.APPLICATION_JSON)
+   @Produces(MediaType.APPLICATION_JSON)
+   public long shareDocuments(final @PathParam("collectionName") String collectionName, final @QueryParam("filter") String filter, final AccessRightsDao accessRights) throws DbException {
+      if (collectionName == null || accessRights == null) {
+         throw new IllegalArgumentException();
+      }
+
+      String internalCollectionName = getInternalName(collectionName);
+      checkCollectionExistency(internalCollectionName);
+
+      return securityFacade.shareDocuments(internalCollectionName, dialect.documentFilter(filter == null ? "{}" : filter), accessRights,
+            updated -> log.fine("Access rights of " + accessRights.getUserName() + " updated in " + updated + " documents of " + collectionName));
+   }
+
    /**
     * Returns internal name of the given collection stored in the database.
     *
@@ -34,11 +34,15 @@ import io.lumeer.engine.controller.OrganisationFacade;
 import io.lumeer.engine.controller.ProjectFacade;
 import io.lumeer.engine.controller.UserFacade;
 import io.lumeer.engine.rest.dao.LinkDao;
+import io.lumeer.engine.rest.dao.LinkStepDao;
+import io.lumeer.engine.rest.dao.LinkTraversalDao;
 import io.lumeer.engine.rest.dao.LinkTypeDao;
 import io.lumeer.engine.util.ErrorMessageBuilder;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
@@ -203,6 +207,55 @@ public class LinkingService {
       return links;
    }
 
+   /**
+    * Traverses links from the given document along the given path in a single request.
+    *
+    * @param collectionName
+    *       The collection of the start document.
+    * @param documentId
+    *       The start document id.
+    * @param steps
+    *       Roles and directions of links to follow at the individual levels, the last step repeats until maxDepth.
+    * @param minDepth
+    *       Minimal number of links between the start document and a returned document.
+    * @param maxDepth
+    *       Maximal number of links between the start document and a returned document, the number of steps when not set.
+    * @param limit
+    *       Maximal number of returned documents.
+    * @return Reached documents and the links leading to them.
+    * @throws DbException
+    *       When there is an issue when communicating with the data storage.
+    */
+   @POST
+   @Path("/traversal/documents/{id}")
+   @Consumes(MediaType.APPLICATION_JSON)
+   @Produces(MediaType.APPLICATION_JSON)
+   public LinkTraversalDao traverseLinks(final @PathParam("collectionName") String collectionName, final @PathParam("id") String documentId, final List<LinkStepDao> steps,
+         final @QueryParam("minDepth") @DefaultValue("1") int minDepth, final @QueryParam("maxDepth") @DefaultValue("0") int maxDepth, final @QueryParam("limit") @DefaultValue("1000") int limit) throws DbException {
+      String internalCollectionName = getInternalName(collectionName);
+      checkCollectionForRead(internalCollectionName);
+      if (!dataStorage.collectionHasDocument(internalCollectionName, dataStorageDialect.documentIdFilter(documentId))) {
+         throw new DocumentNotFoundException(ErrorMessageBuilder.documentNotFoundString());
+      }
+
+      final String user = userFacade.getUserEmail();
+      final int depth = maxDepth > 0 || steps == null ? maxDepth : steps.size();
+      final LinkTraversalDao traversal = linkingFacade.traverseLinks(internalCollectionName, documentId, steps, minDepth, depth, limit,
+            name -> collectionMetadataFacade.checkCollectionForRead(name, user));
+
+      // translate internal collection names
+      final Map<String, String> originalNames = new HashMap<>();
+      for (DataDocument document : traversal.getDocuments()) {
+         document.put(LumeerConst.Document.COLLECTION_NAME, getOriginalName(originalNames, document.getString(LumeerConst.Document.COLLECTION_NAME)));
+      }
+      for (LinkDao linkDao : traversal.getLinks()) {
+         linkDao.setFromCollection(getOriginalName(originalNames, linkDao.getFromCollection()));
+         linkDao.setToCollection(getOriginalName(originalNames, linkDao.getToCollection()));
+      }
+
+      return traversal;
+   }
+
    /**
     * Get links between source and target documents of the given role.
     *
@@ -387,4 +440,13 @@ public class LinkingService {
    private String getOriginalName(final String fromCollection) throws DbException {
       return collectionMetadataFacade.getOriginalCollectionName(fromCollection);
    }
+
+   private String getOriginalName(final Map<String, String> originalNames, final String collection) throws DbException {
+      String originalName = originalNames.get(collection);
+      if (originalName == null) {
+         originalName = getOriginalName(collection);
+         originalNames.put(collection, originalName);
+      }
+      return originalName;
+   }
 }
@@ -0,0 +1,72 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.rest.dao;
+
+import io.lumeer.engine.api.LumeerConst;
+
+/**
+ * One step of a link traversal path.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class LinkStepDao {
+
+   /**
+    * Role of the links to follow, all roles when null.
+    */
+   private String role;
+
+   /**
+    * Which direction of links to follow.
+    */
+   private LumeerConst.Linking.LinkDirection direction = LumeerConst.Linking.LinkDirection.FROM;
+
+   public LinkStepDao() {
+   }
+
+   public LinkStepDao(final String role, final LumeerConst.Linking.LinkDirection direction) {
+      this.role = role;
+      this.direction = direction;
+   }
+
+   public String getRole() {
+      return role;
+   }
+
+   public void setRole(final String role) {
+      this.role = role;
+   }
+
+   public LumeerConst.Linking.LinkDirection getDirection() {
+      return direction;
+   }
+
+   public void setDirection(final LumeerConst.Linking.LinkDirection direction) {
+      this.direction = direction;
+   }
+
+   @Override
+   public String toString() {
+      return "LinkStepDao{"
+            + "role='" + role + '\''
+            + ", direction=" + direction
+            + '}';
+   }
+}
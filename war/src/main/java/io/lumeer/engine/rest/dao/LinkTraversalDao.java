@@ -0,0 +1,67 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.rest.dao;
+
+import io.lumeer.engine.api.data.DataDocument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a link traversal.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class LinkTraversalDao {
+
+   /**
+    * Reached documents in the order of traversal, each carrying the name of its collection.
+    */
+   private List<DataDocument> documents = new ArrayList<>();
+
+   /**
+    * Followed links leading to the reached documents.
+    */
+   private List<LinkDao> links = new ArrayList<>();
+
+   public List<DataDocument> getDocuments() {
+      return documents;
+   }
+
+   public void setDocuments(final List<DataDocument> documents) {
+      this.documents = documents;
+   }
+
+   public List<LinkDao> getLinks() {
+      return links;
+   }
+
+   public void setLinks(final List<LinkDao> links) {
+      this.links = links;
+   }
+
+   @Override
+   public String toString() {
+      return "LinkTraversalDao{"
+            + "documents=" + documents
+            + ", links=" + links
+            + '}';
+   }
+}
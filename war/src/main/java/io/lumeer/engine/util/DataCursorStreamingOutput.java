@@ -0,0 +1,59 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.util;
+
+import io.lumeer.engine.api.data.DataCursor;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Writes documents from a {@link DataCursor} to the response as a JSON array while they are being read from the data storage.
+ * The cursor is closed once the response is written.
+ *
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class DataCursorStreamingOutput implements StreamingOutput {
+
+   private static final ObjectMapper MAPPER = new ObjectMapper();
+
+   private final DataCursor cursor;
+
+   public DataCursorStreamingOutput(final DataCursor cursor) {
+      this.cursor = cursor;
+   }
+
+   @Override
+   public void write(final OutputStream output) throws IOException, WebApplicationException {
+      try (final DataCursor documents = cursor;
+           final JsonGenerator generator = MAPPER.getFactory().createGenerator(output)) {
+         generator.writeStartArray();
+         while (documents.hasNext()) {
+            MAPPER.writeValue(generator, documents.next());
+         }
+         generator.writeEndArray();
+      }
+   }
+}
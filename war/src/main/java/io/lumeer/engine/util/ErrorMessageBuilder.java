@@ -40,13 +40,16 @@ public class ErrorMessageBuilder {
    private static final String ERROR_CREATE_UNSUCCESFUL = "The document could not be created.";
    private static final String ERROR_DROP_UNSUCCESFUL = "The document could not be deleted.";
    private static final String ERROR_UPDATE_UNSUCCESFUL = "The document was not successfully updated.";
+   private static final String ERROR_VERSION_CONFLICT = "The document was changed meanwhile, its version is no longer \"{0}\".";
    private static final String ERROR_INVALID_METADATA_KEY = "The key  \"{0}\" is not metadata attribute";
    private static final String ERROR_INVALID_DOCUMENT_KEY = "The key  \"{0}\" is not valid";
    private static final String ERROR_INVALID_CONSTRAINT_KEY = "Invalid value for attribute: \"{0}\"";
    private static final String ERROR_NULL_KEY = "The key can not be set to 'null'";
    private static final String ERROR_LINK_ALREADY_EXISTS = "Link between documents already exists";
    private static final String ERROR_PARAM_CANNOT_BE_NULL = "The param  \"{0}\" can not be null.";
+   private static final String ERROR_INVALID_TRAVERSAL_DEPTH = "The traversal depth from \"{0}\" to \"{1}\" is invalid.";
    private static final String ERROR_INVALID_COLLECTION_ATTRIBUTE_TYPE = "The type \"{0}\" is invalid. Valid types are: \"{1}\".";
+   private static final String ERROR_QUERY_TIMEOUT = "The query did not finish in \"{0}\" ms.";
 
    private static final String ERROR_USER_COLLECTION_NOT_FOUND = "The user collection \"{0}\" does not exist.";
    private static final String ERROR_USER_COLLECTION_ALREADY_EXISTS = "The user collection \"{0}\" already exists.";
@@ -162,6 +165,18 @@ public class ErrorMessageBuilder {
       return MessageFormat.format(ERROR_INVALID_COLLECTION_ATTRIBUTE_TYPE, newType, types);
    }
 
+   public static String versionConflictString(int version) {
+      return MessageFormat.format(ERROR_VERSION_CONFLICT, version);
+   }
+
+   public static String invalidTraversalDepthString(int minDepth, int maxDepth) {
+      return MessageFormat.format(ERROR_INVALID_TRAVERSAL_DEPTH, minDepth, maxDepth);
+   }
+
+   public static String queryTimeoutString(long timeout) {
+      return MessageFormat.format(ERROR_QUERY_TIMEOUT, timeout);
+   }
+
    public static String idNotFoundString() {
       return ERROR_ID_NOT_FOUND;
    }
@@ -73,6 +73,9 @@ public class CollectionMetadataFacadeIntegrationTest extends IntegrationTestBase
    @Inject
    private ConfigurationFacade configurationFacade;
 
+   @Inject
+   private AttributeCountAggregator attributeCountAggregator;
+
    // do not change collection names, because it can mess up internal name creation in method internalName()
    private final String CREATE_INTERNAL_NAME_ORIGINAL_NAME1 = "CollectionMetadataFacadeCollečťion&-./ 1";
    private final String CREATE_INTERNAL_NAME_ORIGINAL_NAME2 = "CollectionMetadataFacadeCollečtion&-./ 1";
@@ -86,6 +89,7 @@ public class CollectionMetadataFacadeIntegrationTest extends IntegrationTestBase
    private final String COLLECTION_GET_INTERNAL_NAME = "CollectionMetadataFacadeCollectionGetInternalName";
    private final String COLLECTION_CREATE_INITIAL_METADATA = "CollectionMetadataFacadeCollectionCreateInitialMetadata";
    private final String COLLECTION_ADD_OR_INCREMENT_ATTRIBUTE = "CollectionMetadataFacadeCollectionAddOrIncrementAttribute";
+   private final String COLLECTION_ATTRIBUTE_COUNT_WRITE_BEHIND = "CollectionMetadataFacadeCollectionAttributeCountWriteBehind";
    private final String COLLECTION_DROP_OR_DECREMENT_ATTRIBUTE = "CollectionMetadataFacadeCollectionDropOrDecrementAttribute";
    private final String COLLECTION_CHECK_ATTRIBUTES_VALUES = "CollectionMetadataFacadeCollectionCheckAttributesValues";
    private final String COLLECTION_LAST_TIME_USED = "CollectionMetadataFacadeCollectionLastTimeUsed";
@@ -306,6 +310,26 @@ public class CollectionMetadataFacadeIntegrationTest extends IntegrationTestBase
       assertThat(count).isEqualTo(1);
    }
 
+   @Test
+   public void testAttributeCountWriteBehind() throws Exception {
+      setUpCollection(COLLECTION_ATTRIBUTE_COUNT_WRITE_BEHIND);
+
+      String collection = collectionFacade.createCollection(COLLECTION_ATTRIBUTE_COUNT_WRITE_BEHIND);
+
+      String name = "attribute";
+      for (int i = 0; i < 10; i++) {
+         collectionMetadataFacade.addOrIncrementAttribute(collection, name);
+      }
+      collectionMetadataFacade.dropOrDecrementAttribute(collection, name);
+
+      // pending increments are always counted in
+      assertThat(collectionMetadataFacade.getAttributeCount(collection, name)).isEqualTo(9);
+
+      attributeCountAggregator.flush();
+      assertThat(collectionMetadataFacade.getAttributesInfo(collection).get(name).getCount()).isEqualTo(9);
+      assertThat(collectionMetadataFacade.getAttributeCount(collection, name)).isEqualTo(9);
+   }
+
    @Test
    public void testDropOrDecrementAttribute() throws Exception {
       setUpCollection(COLLECTION_DROP_OR_DECREMENT_ATTRIBUTE);
@@ -0,0 +1,70 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.data.DataDocument;
+
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class DocumentDeltaTest {
+
+   private static final String ID = "59306de5f2e2d91b7c9bd2d1";
+
+   @Test
+   public void testDiffAndApply() {
+      final DataDocument previous = new DataDocument(LumeerConst.Document.ID, ID)
+            .append(LumeerConst.Document.METADATA_VERSION_KEY, 3)
+            .append("kept", "same")
+            .append("changed", "old")
+            .append("removed", new DataDocument("nested", 1));
+      final DataDocument next = new DataDocument(LumeerConst.Document.ID, ID)
+            .append(LumeerConst.Document.METADATA_VERSION_KEY, 4)
+            .append("kept", "same")
+            .append("changed", "new")
+            .append("added", 42);
+
+      final DataDocument delta = DocumentDelta.diff(previous, next);
+      assertThat(DocumentDelta.isDelta(delta)).isTrue();
+      assertThat(DocumentDelta.isDelta(previous)).isFalse();
+      assertThat(delta.getInteger(LumeerConst.Document.METADATA_VERSION_KEY)).isEqualTo(3);
+      assertThat(delta.getDataDocument(LumeerConst.Document.SHADOW_DELTA_SET_KEY)).containsOnlyKeys("changed", "removed");
+      assertThat(delta.getArrayList(LumeerConst.Document.SHADOW_DELTA_UNSET_KEY, String.class)).containsExactly("added");
+
+      delta.put(LumeerConst.Document.ID, ID);
+      assertThat(DocumentDelta.apply(next, delta)).isEqualTo(previous);
+      assertThat(next.getString("changed")).isEqualTo("new");
+   }
+
+   @Test
+   public void testEmptyDiff() {
+      final DataDocument document = new DataDocument("a", 1).append(LumeerConst.Document.METADATA_VERSION_KEY, 1);
+      final DataDocument delta = DocumentDelta.diff(document, new DataDocument(document).append(LumeerConst.Document.METADATA_VERSION_KEY, 2));
+
+      assertThat(delta.getDataDocument(LumeerConst.Document.SHADOW_DELTA_SET_KEY)).isEmpty();
+      assertThat(delta.getArrayList(LumeerConst.Document.SHADOW_DELTA_UNSET_KEY, String.class)).isEmpty();
+      assertThat(DocumentDelta.apply(new DataDocument(document).append(LumeerConst.Document.METADATA_VERSION_KEY, 2), delta)).isEqualTo(document);
+   }
+}
@@ -20,14 +20,17 @@
 package io.lumeer.engine.controller;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import io.lumeer.engine.IntegrationTestBase;
 import io.lumeer.engine.annotation.UserDataStorage;
 import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.constraint.InvalidConstraintException;
 import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.engine.api.data.DataStorage;
 import io.lumeer.engine.api.data.DataStorageDialect;
 import io.lumeer.engine.api.exception.DbException;
+import io.lumeer.engine.api.exception.VersionUpdateConflictException;
 import io.lumeer.engine.provider.DataStorageProvider;
 
 import org.jboss.arquillian.junit.Arquillian;
@@ -35,7 +38,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.inject.Inject;
@@ -47,10 +52,12 @@ import javax.inject.Inject;
 public class DocumentFacadeIntegrationTest extends IntegrationTestBase {
 
    private final String COLLECTION_CREATE_AND_DROP = "collectionCreateAndDrop";
+   private final String COLLECTION_CREATE_MANY = "collectionCreateMany";
    private final String COLLECTION_REPLACE = "collectionReplace";
    private final String COLLECTION_REVERT = "collectionRevert";
    private final String COLLECTION_READ_AND_UPDATE = "collectionReadAndUpdate";
    private final String COLLECTION_GETATTRS_AND_DROPATTR = "collectionGetAttrsAndDropAttr";
+   private final String COLLECTION_UPDATE_VERSION = "collectionUpdateVersion";
 
    private final String DUMMY_KEY1 = "key1";
    private final String DUMMY_VALUE1 = "param1";
@@ -87,6 +94,33 @@ public class DocumentFacadeIntegrationTest extends IntegrationTestBase {
       assertThat(dataStorage.readDocument(coll, dataStorageDialect.documentIdFilter(documentId))).isNull();
    }
 
+   @Test
+   public void testCreateDocuments() throws Exception {
+      String coll = setUpCollection(COLLECTION_CREATE_MANY);
+      collectionMetadataFacade.addOrIncrementAttribute(coll, "a");
+
+      List<DataDocument> documents = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+         documents.add(new DataDocument("a", i).append("b", "value" + i));
+      }
+      List<String> ids = documentFacade.createDocuments(coll, documents);
+
+      assertThat(ids).hasSize(20).doesNotContainNull();
+      assertThat(dataStorage.documentCount(coll)).isEqualTo(20);
+      assertThat(documentFacade.readDocument(coll, ids.get(7)).getInteger("a")).isEqualTo(7);
+      assertThat(collectionMetadataFacade.getAttributeCount(coll, "a")).isEqualTo(21);
+      assertThat(collectionMetadataFacade.getAttributeCount(coll, "b")).isEqualTo(20);
+      assertThat(collectionMetadataFacade.getRecentlyUsedDocumentsIds(coll)).startsWith(ids.get(19), ids.get(18));
+
+      // constraints are checked on the converted values
+      collectionMetadataFacade.addAttributeConstraint(coll, "a", "lessThan:100");
+      List<DataDocument> invalid = new ArrayList<>();
+      invalid.add(new DataDocument("a", 1));
+      invalid.add(new DataDocument("a", 200));
+      assertThatThrownBy(() -> documentFacade.createDocuments(coll, invalid)).isInstanceOf(InvalidConstraintException.class);
+      assertThat(dataStorage.documentCount(coll)).isEqualTo(20);
+   }
+
    @Test
    public void testRevertDocument() throws Exception {
       String coll = setUpCollection(COLLECTION_REVERT);
@@ -191,6 +225,26 @@ public class DocumentFacadeIntegrationTest extends IntegrationTestBase {
       assertThat(updated.getString(DUMMY_KEY1)).isEqualTo(changed);
    }
 
+   @Test
+   public void testUpdateDocumentWithVersion() throws Exception {
+      String coll = setUpCollection(COLLECTION_UPDATE_VERSION);
+
+      String documentId = documentFacade.createDocument(coll, new DataDocument(DUMMY_KEY1, DUMMY_VALUE1));
+      documentFacade.updateDocument(coll, new DataDocument(ID_KEY, documentId).append(DUMMY_KEY1, "v1"), 0);
+
+      DataDocument updated = dataStorage.readDocument(coll, dataStorageDialect.documentIdFilter(documentId));
+      assertThat(updated.getString(DUMMY_KEY1)).isEqualTo("v1");
+      assertThat(updated.getInteger(LumeerConst.Document.METADATA_VERSION_KEY)).isEqualTo(1);
+      assertThat(dataStorage.readDocument(LumeerConst.Collection.COLLECTION_SHADOW_PREFFIX + "_" + coll, dataStorageDialect.documentNestedIdFilterWithVersion(documentId, 0)).getString(DUMMY_KEY1)).isEqualTo(DUMMY_VALUE1);
+
+      // the update is based on a stale version
+      assertThatThrownBy(() -> documentFacade.updateDocument(coll, new DataDocument(ID_KEY, documentId).append(DUMMY_KEY1, "v2"), 0)).isInstanceOf(VersionUpdateConflictException.class);
+      assertThat(dataStorage.readDocument(coll, dataStorageDialect.documentIdFilter(documentId)).getString(DUMMY_KEY1)).isEqualTo("v1");
+
+      documentFacade.updateDocument(coll, new DataDocument(ID_KEY, documentId).append(DUMMY_KEY1, "v2"));
+      assertThat(dataStorage.readDocument(coll, dataStorageDialect.documentIdFilter(documentId)).getInteger(LumeerConst.Document.METADATA_VERSION_KEY)).isEqualTo(2);
+   }
+
    @Test
    public void testGetAttributes() throws Exception {
       String coll = setUpCollection(COLLECTION_GETATTRS_AND_DROPATTR);
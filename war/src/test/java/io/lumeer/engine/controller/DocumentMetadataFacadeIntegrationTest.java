@@ -82,7 +82,7 @@ public class DocumentMetadataFacadeIntegrationTest extends IntegrationTestBase {
 
       assertThat(documentMetadata).containsKey(LumeerConst.Document.CREATE_BY_USER_KEY);
       assertThat(documentMetadata).containsKey(LumeerConst.Document.CREATE_DATE_KEY);
-      assertThat(documentMetadata).hasSize(5);
+      assertThat(documentMetadata).hasSize(7);
    }
 
    @Test
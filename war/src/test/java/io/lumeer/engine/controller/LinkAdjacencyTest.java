@@ -0,0 +1,74 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lumeer.engine.api.LumeerConst;
+
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class LinkAdjacencyTest {
+
+   private static final String ID_1 = "59306de5f2e2d91b7c9bd2d1";
+   private static final String ID_2 = "59306de5f2e2d91b7c9bd2d2";
+   private static final String ID_3 = "59306de5f2e2d91b7c9bd2d3";
+
+   @Test
+   public void testAddAndRemove() {
+      final LinkAdjacency adjacency = new LinkAdjacency();
+
+      assertThat(adjacency.add(ID_1, ID_2)).isTrue();
+      assertThat(adjacency.add(ID_1, ID_3)).isTrue();
+      assertThat(adjacency.add(ID_1, ID_2)).isTrue();
+      assertThat(adjacency.add(ID_3, ID_2)).isTrue();
+
+      assertThat(adjacency.getNeighbours(ID_1, LumeerConst.Linking.LinkDirection.FROM)).containsExactly(ID_2, ID_3);
+      assertThat(adjacency.getNeighbours(ID_2, LumeerConst.Linking.LinkDirection.TO)).containsExactly(ID_1, ID_3);
+      assertThat(adjacency.getNeighbours(ID_2, LumeerConst.Linking.LinkDirection.FROM)).isEmpty();
+
+      final long weight = adjacency.getWeight();
+      adjacency.remove(ID_1, ID_2);
+      assertThat(adjacency.getNeighbours(ID_1, LumeerConst.Linking.LinkDirection.FROM)).containsExactly(ID_3);
+      assertThat(adjacency.getNeighbours(ID_2, LumeerConst.Linking.LinkDirection.TO)).containsExactly(ID_3);
+      assertThat(adjacency.getWeight()).isLessThan(weight);
+
+      adjacency.removeDocument(ID_3, LumeerConst.Linking.LinkDirection.FROM);
+      assertThat(adjacency.getNeighbours(ID_2, LumeerConst.Linking.LinkDirection.TO)).isEmpty();
+      assertThat(adjacency.getNeighbours(ID_3, LumeerConst.Linking.LinkDirection.TO)).containsExactly(ID_1);
+
+      adjacency.removeDocument(ID_3, LumeerConst.Linking.LinkDirection.TO);
+      assertThat(adjacency.getNeighbours(ID_1, LumeerConst.Linking.LinkDirection.FROM)).isEmpty();
+      assertThat(adjacency.getWeight()).isZero();
+   }
+
+   @Test
+   public void testNotPackableIds() {
+      final LinkAdjacency adjacency = new LinkAdjacency();
+
+      assertThat(adjacency.add(ID_1, "someId")).isFalse();
+      assertThat(adjacency.add(ID_1, ID_2.toUpperCase())).isFalse();
+      assertThat(adjacency.getNeighbours(ID_1, LumeerConst.Linking.LinkDirection.FROM)).isEmpty();
+      assertThat(LinkAdjacency.NOT_INDEXED.isIndexed()).isFalse();
+   }
+}
@@ -26,7 +26,12 @@ import io.lumeer.engine.annotation.UserDataStorage;
 import io.lumeer.engine.api.LumeerConst;
 import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.engine.api.data.DataStorage;
+import io.lumeer.engine.api.data.DataStorageDialect;
+import io.lumeer.engine.api.event.DropDocument;
+import io.lumeer.engine.provider.DataStorageProvider;
 import io.lumeer.engine.rest.dao.LinkDao;
+import io.lumeer.engine.rest.dao.LinkStepDao;
+import io.lumeer.engine.rest.dao.LinkTraversalDao;
 import io.lumeer.engine.rest.dao.LinkTypeDao;
 
 import org.jboss.arquillian.junit.Arquillian;
@@ -64,6 +69,13 @@ public class LinkingFacadeIntegrationTest extends IntegrationTestBase {
    private final String COLLECTION_READ_DROP_ALL_I = "collectionCreateDropAllI";
    private final String COLLECTION_READ_DROP_ALL_II = "collectionCreateDropAllII";
    private final String COLLECTION_READ_DROP_ALL_III = "collectionCreateDropAllIII";
+   private final String COLLECTION_READ_LINKED_DOCS_I = "collectionReadLinkedDocsI";
+   private final String COLLECTION_READ_LINKED_DOCS_II = "collectionReadLinkedDocsII";
+   private final String COLLECTION_TRAVERSE_I = "collectionTraverseI";
+   private final String COLLECTION_TRAVERSE_II = "collectionTraverseII";
+   private final String COLLECTION_TRAVERSE_III = "collectionTraverseIII";
+   private final String COLLECTION_CLEANUP_I = "collectionCleanupI";
+   private final String COLLECTION_CLEANUP_II = "collectionCleanupII";
 
    private final int NUM_DOCUMENTS = 3;
 
@@ -74,6 +86,15 @@ public class LinkingFacadeIntegrationTest extends IntegrationTestBase {
    @UserDataStorage
    private DataStorage dataStorage;
 
+   @Inject
+   private DataStorageDialect dataStorageDialect;
+
+   @Inject
+   private DataStorageProvider dataStorageProvider;
+
+   @Inject
+   private LinkCleanupQueue linkCleanupQueue;
+
    @Test
    public void testGetLinkTypes() throws Exception {
       List<String> collections = Arrays.asList(COLLECTION_GETLINKTYPES_I, COLLECTION_GETLINKTYPES_II, COLLECTION_GETLINKTYPES_III);
@@ -97,6 +118,11 @@ public class LinkingFacadeIntegrationTest extends IntegrationTestBase {
 
       List<LinkTypeDao> linkTypes = linkingFacade.readLinkTypes(COLLECTION_GETLINKTYPES_I, LumeerConst.Linking.LinkDirection.FROM);
       assertThat(linkTypes).hasSize(2);
+
+      // link types are read again from the main linking table
+      linkingFacade.invalidateLinkingTables();
+      linkTypes = linkingFacade.readLinkTypes(COLLECTION_GETLINKTYPES_I, LumeerConst.Linking.LinkDirection.FROM);
+      assertThat(linkTypes).hasSize(2);
    }
 
    @Test
@@ -337,6 +363,119 @@ public class LinkingFacadeIntegrationTest extends IntegrationTestBase {
       assertThat(links).isEmpty();
    }
 
+   @Test
+   public void testReadLinkedDocuments() throws Exception {
+      List<String> collections = Arrays.asList(COLLECTION_READ_LINKED_DOCS_I, COLLECTION_READ_LINKED_DOCS_II);
+      Map<String, List<String>> ids = createTestData(collections);
+
+      String col1Id1 = ids.get(COLLECTION_READ_LINKED_DOCS_I).get(0);
+      List<String> col2Ids = ids.get(COLLECTION_READ_LINKED_DOCS_II);
+
+      String role1 = "role1";
+
+      dropLinkingCollections(Collections.singletonList(role1), collections);
+
+      for (String col2Id : col2Ids) {
+         linkingFacade.createDocWithDocLink(COLLECTION_READ_LINKED_DOCS_I, col1Id1, COLLECTION_READ_LINKED_DOCS_II, col2Id, new DataDocument(), role1, LumeerConst.Linking.LinkDirection.FROM);
+      }
+
+      // creating an existing link again keeps a single link
+      linkingFacade.createDocWithDocLink(COLLECTION_READ_LINKED_DOCS_I, col1Id1, COLLECTION_READ_LINKED_DOCS_II, col2Ids.get(0), new DataDocument(), role1, LumeerConst.Linking.LinkDirection.FROM);
+      List<LinkDao> daos = linkingFacade.readDocByDocLinks(COLLECTION_READ_LINKED_DOCS_I, col1Id1, COLLECTION_READ_LINKED_DOCS_II, col2Ids.get(0), role1, LumeerConst.Linking.LinkDirection.FROM);
+      assertThat(daos).hasSize(1);
+
+      // linking collection is indexed for both directions
+      List<DataDocument> indexes = dataStorage.listIndexes(buildCollectionName(COLLECTION_READ_LINKED_DOCS_I, COLLECTION_READ_LINKED_DOCS_II, role1));
+      assertThat(indexes).hasSize(3);
+
+      List<DataDocument> links = linkingFacade.readDocWithCollectionLinks(COLLECTION_READ_LINKED_DOCS_I, col1Id1, COLLECTION_READ_LINKED_DOCS_II, role1, LumeerConst.Linking.LinkDirection.FROM);
+      assertThat(links).extracting(DataDocument::getId).containsExactlyElementsOf(col2Ids);
+
+      // the link stays when the document is dropped directly in the storage
+      dataStorage.dropDocument(COLLECTION_READ_LINKED_DOCS_II, dataStorageDialect.documentIdFilter(col2Ids.get(1)));
+      links = linkingFacade.readDocumentLinksDocs(COLLECTION_READ_LINKED_DOCS_I, col1Id1, role1, LumeerConst.Linking.LinkDirection.FROM);
+      assertThat(links).extracting(DataDocument::getId).containsExactly(col2Ids.get(0), col2Ids.get(2));
+   }
+
+   @Test
+   public void testTraverseLinks() throws Exception {
+      List<String> collections = Arrays.asList(COLLECTION_TRAVERSE_I, COLLECTION_TRAVERSE_II, COLLECTION_TRAVERSE_III);
+      Map<String, List<String>> ids = createTestData(collections);
+
+      String col1Id1 = ids.get(COLLECTION_TRAVERSE_I).get(0);
+      List<String> col2Ids = ids.get(COLLECTION_TRAVERSE_II);
+      List<String> col3Ids = ids.get(COLLECTION_TRAVERSE_III);
+
+      String role1 = "role1";
+
+      dropLinkingCollections(Collections.singletonList(role1), collections);
+
+      // I -> II[0], II[1] -> III[0], III[1], III[2]
+      linkingFacade.createDocWithDocLink(COLLECTION_TRAVERSE_I, col1Id1, COLLECTION_TRAVERSE_II, col2Ids.get(0), new DataDocument(), role1, LumeerConst.Linking.LinkDirection.FROM);
+      linkingFacade.createDocWithDocLink(COLLECTION_TRAVERSE_I, col1Id1, COLLECTION_TRAVERSE_II, col2Ids.get(1), new DataDocument(), role1, LumeerConst.Linking.LinkDirection.FROM);
+      linkingFacade.createDocWithDocLink(COLLECTION_TRAVERSE_II, col2Ids.get(0), COLLECTION_TRAVERSE_III, col3Ids.get(0), new DataDocument(), role1, LumeerConst.Linking.LinkDirection.FROM);
+      linkingFacade.createDocWithDocLink(COLLECTION_TRAVERSE_II, col2Ids.get(0), COLLECTION_TRAVERSE_III, col3Ids.get(1), new DataDocument(), role1, LumeerConst.Linking.LinkDirection.FROM);
+      linkingFacade.createDocWithDocLink(COLLECTION_TRAVERSE_II, col2Ids.get(1), COLLECTION_TRAVERSE_III, col3Ids.get(2), new DataDocument(), role1, LumeerConst.Linking.LinkDirection.FROM);
+
+      List<LinkStepDao> steps = Collections.singletonList(new LinkStepDao(role1, LumeerConst.Linking.LinkDirection.FROM));
+      LinkTraversalDao traversal = linkingFacade.traverseLinks(COLLECTION_TRAVERSE_I, col1Id1, steps, 1, 3, 100, name -> true);
+      assertThat(traversal.getDocuments()).extracting(DataDocument::getId).containsExactly(col2Ids.get(0), col2Ids.get(1), col3Ids.get(0), col3Ids.get(1), col3Ids.get(2));
+      assertThat(traversal.getDocuments().get(2).getString(LumeerConst.Document.COLLECTION_NAME)).isEqualTo(COLLECTION_TRAVERSE_III);
+      assertThat(traversal.getLinks()).hasSize(5);
+
+      // only the last level, limited
+      traversal = linkingFacade.traverseLinks(COLLECTION_TRAVERSE_I, col1Id1, steps, 2, 2, 2, name -> true);
+      assertThat(traversal.getDocuments()).extracting(DataDocument::getId).containsExactly(col3Ids.get(0), col3Ids.get(1));
+      assertThat(traversal.getLinks()).hasSize(4);
+
+      // back from the leaf to the root
+      traversal = linkingFacade.traverseLinks(COLLECTION_TRAVERSE_III, col3Ids.get(2), Collections.singletonList(new LinkStepDao(role1, LumeerConst.Linking.LinkDirection.TO)), 1, 5, 100, name -> true);
+      assertThat(traversal.getDocuments()).extracting(DataDocument::getId).containsExactly(col2Ids.get(1), col1Id1);
+
+      // collections that cannot be entered
+      traversal = linkingFacade.traverseLinks(COLLECTION_TRAVERSE_I, col1Id1, steps, 1, 3, 100, name -> !COLLECTION_TRAVERSE_III.equals(name));
+      assertThat(traversal.getDocuments()).hasSize(2);
+   }
+
+   @Test
+   public void testDropDocumentCleanup() throws Exception {
+      List<String> collections = Arrays.asList(COLLECTION_CLEANUP_I, COLLECTION_CLEANUP_II);
+      Map<String, List<String>> ids = createTestData(collections);
+
+      String col1Id1 = ids.get(COLLECTION_CLEANUP_I).get(0);
+      String col1Id2 = ids.get(COLLECTION_CLEANUP_I).get(1);
+      List<String> col2Ids = ids.get(COLLECTION_CLEANUP_II);
+
+      String role1 = "role1";
+
+      dropLinkingCollections(Collections.singletonList(role1), collections);
+
+      for (String col2Id : col2Ids) {
+         linkingFacade.createDocWithDocLink(COLLECTION_CLEANUP_I, col1Id1, COLLECTION_CLEANUP_II, col2Id, new DataDocument(), role1, LumeerConst.Linking.LinkDirection.FROM);
+      }
+      linkingFacade.createDocWithDocLink(COLLECTION_CLEANUP_I, col1Id2, COLLECTION_CLEANUP_II, col2Ids.get(0), new DataDocument(), role1, LumeerConst.Linking.LinkDirection.FROM);
+      String linkingCollection = buildCollectionName(COLLECTION_CLEANUP_I, COLLECTION_CLEANUP_II, role1);
+
+      DataDocument dropped = dataStorage.readDocument(COLLECTION_CLEANUP_II, dataStorageDialect.documentIdFilter(col2Ids.get(0)));
+      dataStorage.dropDocument(COLLECTION_CLEANUP_II, dataStorageDialect.documentIdFilter(col2Ids.get(0)));
+      linkingFacade.onDropDocument(new DropDocument(COLLECTION_CLEANUP_II, dropped));
+
+      // the links are hidden before they are removed
+      assertThat(linkingFacade.readLinks(COLLECTION_CLEANUP_I, role1, LumeerConst.Linking.LinkDirection.FROM)).extracting(LinkDao::getToId).containsOnly(col2Ids.get(1), col2Ids.get(2));
+      assertThat(linkingFacade.readDocByDocLinks(COLLECTION_CLEANUP_I, col1Id2, COLLECTION_CLEANUP_II, col2Ids.get(0), role1, LumeerConst.Linking.LinkDirection.FROM)).isEmpty();
+
+      linkCleanupQueue.cleanUp(dataStorageProvider.getUserStorage());
+      assertThat(dataStorage.documentCount(linkingCollection)).isEqualTo(2);
+      assertThat(dataStorage.documentCount(LumeerConst.Linking.CleanupQueue.NAME)).isEqualTo(0);
+      assertThat(linkingFacade.readLinks(COLLECTION_CLEANUP_I, role1, LumeerConst.Linking.LinkDirection.FROM)).hasSize(2);
+
+      // the linking table left empty is dropped together with its link type
+      linkingFacade.onDropDocument(new DropDocument(COLLECTION_CLEANUP_I, dataStorage.readDocument(COLLECTION_CLEANUP_I, dataStorageDialect.documentIdFilter(col1Id1))));
+      linkCleanupQueue.cleanUp(dataStorageProvider.getUserStorage());
+      assertThat(dataStorage.hasCollection(linkingCollection)).isFalse();
+      assertThat(linkingFacade.readLinkTypes(COLLECTION_CLEANUP_I, LumeerConst.Linking.LinkDirection.FROM)).isEmpty();
+   }
+
    private Map<String, List<String>> createTestData(List<String> collections) {
       Map<String, List<String>> ids = new HashMap<>();
       for (String col : collections) {
@@ -0,0 +1,123 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.lumeer.engine.api.data.DataDocument;
+import io.lumeer.engine.api.data.DataStorage;
+import io.lumeer.engine.api.data.Query;
+import io.lumeer.engine.api.exception.InvalidQueryException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.concurrent.ManagedExecutorService;
+
+/**
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class QueryFanOutTest {
+
+   private final TestExecutorService executorService = new TestExecutorService();
+
+   private final QueryFanOut queryFanOut = new QueryFanOut(executorService);
+
+   private final Map<String, Long> maxTimes = new ConcurrentHashMap<>();
+
+   @After
+   public void shutdown() {
+      executorService.shutdownNow();
+   }
+
+   @Test
+   public void testResultOrder() throws Exception {
+      final List<String> collections = Arrays.asList("slow", "fast", "medium");
+
+      for (final int parallelism : Arrays.asList(1, 3)) {
+         final List<List<DataDocument>> results = queryFanOut.query(dataStorage(Collections.singletonMap("slow", 200L)), new Query(), collections, parallelism, 0);
+
+         assertThat(results).hasSize(3);
+         for (int i = 0; i < collections.size(); i++) {
+            assertThat(results.get(i)).extracting(document -> document.getString("collection")).containsExactly(collections.get(i));
+         }
+      }
+      assertThat(maxTimes).isEmpty();
+   }
+
+   @Test
+   public void testTimeout() throws Exception {
+      final DataStorage dataStorage = dataStorage(Collections.singletonMap("slow", 5000L));
+
+      final long start = System.nanoTime();
+      assertThatThrownBy(() -> queryFanOut.query(dataStorage, new Query(), Arrays.asList("fast", "slow"), 2, 300))
+            .isInstanceOf(InvalidQueryException.class).hasMessageContaining("300");
+      assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000L);
+
+      // the storage is told how much time is left
+      assertThat(maxTimes.get("fast")).isBetween(1L, 300L);
+      assertThat(maxTimes.get("slow")).isBetween(1L, 300L);
+   }
+
+   @Test
+   public void testSequentialTimeout() throws Exception {
+      final DataStorage dataStorage = dataStorage(Collections.singletonMap("slow", 400L));
+
+      // the sequential query is stopped before the next collection once the time is over
+      assertThatThrownBy(() -> queryFanOut.query(dataStorage, new Query(), Arrays.asList("slow", "fast"), 1, 300))
+            .isInstanceOf(InvalidQueryException.class).hasMessageContaining("300");
+      assertThat(maxTimes).containsOnlyKeys("slow");
+   }
+
+   // returns a single document with the collection name after the delay of the collection
+   private DataStorage dataStorage(final Map<String, Long> delays) {
+      return (DataStorage) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { DataStorage.class }, (proxy, method, args) -> {
+         if (!"query".equals(method.getName())) {
+            throw new UnsupportedOperationException(method.getName());
+         }
+
+         final Query query = (Query) args[0];
+         final String collection = query.getCollections().iterator().next();
+         if (query.getMaxTime() != null) {
+            maxTimes.put(collection, query.getMaxTime());
+         }
+         Thread.sleep(delays.getOrDefault(collection, 0L));
+
+         return Collections.singletonList(new DataDocument("collection", collection));
+      });
+   }
+
+   private static class TestExecutorService extends ThreadPoolExecutor implements ManagedExecutorService {
+
+      private TestExecutorService() {
+         super(4, 4, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+      }
+   }
+}
@@ -0,0 +1,84 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lumeer.engine.api.data.DataDocument;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class QueryResultMergerTest {
+
+   @Test
+   public void testMergeSorted() {
+      final QueryResultMerger merger = new QueryResultMerger(new DataDocument("a", 1).append("b", -1));
+      final List<List<DataDocument>> results = Arrays.asList(
+            Arrays.asList(document(1, "x", "c1"), document(3, "y", "c1"), document(5, "z", "c1")),
+            Collections.emptyList(),
+            Arrays.asList(document(1, "y", "c3"), document(2, "x", "c3"), document(5, "z", "c3")));
+
+      assertThat(names(merger.merge(results, 0, 0))).containsExactly("1y", "1x", "2x", "3y", "5z", "5z");
+      assertThat(sources(merger.merge(results, 4, 0))).containsExactly("c1", "c3");
+      assertThat(names(merger.merge(results, 1, 3))).containsExactly("1x", "2x", "3y");
+      assertThat(merger.merge(results, 10, 3)).isEmpty();
+   }
+
+   @Test
+   public void testMergeMixedValues() {
+      final QueryResultMerger merger = new QueryResultMerger(new DataDocument("n.v", 1));
+      final List<List<DataDocument>> results = Arrays.asList(
+            Arrays.asList(new DataDocument("id", 1), new DataDocument("id", 3).append("n", new DataDocument("v", 2.5))),
+            Arrays.asList(new DataDocument("id", 2).append("n", new DataDocument("v", 2L)), new DataDocument("id", 4).append("n", new DataDocument("v", "text"))));
+
+      assertThat(merger.merge(results, 0, 0).stream().map(d -> d.getInteger("id")).collect(Collectors.toList())).containsExactly(1, 2, 3, 4);
+   }
+
+   @Test
+   public void testConcatenateUnsorted() {
+      final QueryResultMerger merger = new QueryResultMerger(new DataDocument());
+      final List<List<DataDocument>> results = Arrays.asList(
+            Arrays.asList(document(3, "x", "c1"), document(1, "x", "c1")),
+            Arrays.asList(document(2, "x", "c2")));
+
+      assertThat(names(merger.merge(results, 1, 2))).containsExactly("1x", "2x");
+      assertThat(names(new QueryResultMerger(null).merge(results, 0, 0))).containsExactly("3x", "1x", "2x");
+   }
+
+   private DataDocument document(final int a, final String b, final String source) {
+      return new DataDocument("a", a).append("b", b).append("source", source);
+   }
+
+   private List<String> names(final List<DataDocument> documents) {
+      return documents.stream().map(d -> d.getInteger("a") + d.getString("b")).collect(Collectors.toList());
+   }
+
+   private List<String> sources(final List<DataDocument> documents) {
+      return documents.stream().map(d -> d.getString("source")).collect(Collectors.toList());
+   }
+}
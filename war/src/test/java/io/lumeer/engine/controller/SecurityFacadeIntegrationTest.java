@@ -28,11 +28,16 @@ import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.engine.api.data.DataFilter;
 import io.lumeer.engine.api.data.DataStorage;
 import io.lumeer.engine.api.data.DataStorageDialect;
+import io.lumeer.engine.api.data.Query;
+import io.lumeer.engine.rest.dao.AccessRightsDao;
 
 import org.jboss.arquillian.junit.Arquillian;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import javax.inject.Inject;
 
@@ -66,6 +71,10 @@ public class SecurityFacadeIntegrationTest extends IntegrationTestBase {
    private final String SECURITY_TEST_COLLECTION_WRITE = "securityTestCollectionWrite";
    private final String SECURITY_TEST_COLLECTION_EXECUTE = "securityTestCollectionExecute";
    private final String SECURITY_TEST_COLLECTION_ADD_RIGHTS = "securityTestCollectionAddRights";
+   private final String SECURITY_TEST_COLLECTION_MIGRATE = "securityTestCollectionMigrate";
+   private final String SECURITY_TEST_COLLECTION_DECISIONS = "securityTestCollectionDecisions";
+   private final String SECURITY_TEST_COLLECTION_ATOMIC = "securityTestCollectionAtomic";
+   private final String SECURITY_TEST_COLLECTION_SHARING = "securityTestCollectionSharing";
 
    @Inject
    @UserDataStorage
@@ -250,6 +259,8 @@ public class SecurityFacadeIntegrationTest extends IntegrationTestBase {
       assertThat(securityFacade.checkForAddRights(SECURITY_TEST_COLLECTION_ADD_RIGHTS, id, TEST_USER)).isFalse();
       dataDocument.put(LumeerConst.Document.CREATE_BY_USER_KEY, TEST_USER);
       dataStorage.updateDocument(SECURITY_TEST_COLLECTION_ADD_RIGHTS, dataDocument, documentIdFilter);
+      // the document was changed directly in the data storage
+      securityFacade.invalidateDecisions(SECURITY_TEST_COLLECTION_ADD_RIGHTS, id);
       assertThat(securityFacade.checkForAddRights(SECURITY_TEST_COLLECTION_ADD_RIGHTS, id, TEST_USER)).isTrue();
    }
 
@@ -418,6 +429,163 @@ public class SecurityFacadeIntegrationTest extends IntegrationTestBase {
       securityFacade.setRightsWrite(dataDocument, "test3@gmail.com");
    }
 
+   @Test
+   public void testReadersAndWriters() throws Exception {
+      DataDocument dataDocument = new DataDocument();
+      dataDocument.put(LumeerConst.Document.CREATE_BY_USER_KEY, userFacade.getUserEmail());
+      securityFacade.setRightsRead(dataDocument, TEST_USER1);
+      securityFacade.setRightsWrite(dataDocument, TEST_USER2);
+      securityFacade.setRightsRead(dataDocument, TEST_USER3);
+      securityFacade.setRightsWrite(dataDocument, TEST_USER3);
+      assertThat(dataDocument.getArrayList(LumeerConst.Document.READERS_KEY, String.class)).containsOnly(TEST_USER1, TEST_USER3);
+      assertThat(dataDocument.getArrayList(LumeerConst.Document.WRITERS_KEY, String.class)).containsOnly(TEST_USER2, TEST_USER3);
+
+      securityFacade.removeRightsRead(dataDocument, TEST_USER3);
+      assertThat(dataDocument.getArrayList(LumeerConst.Document.READERS_KEY, String.class)).containsOnly(TEST_USER1);
+      assertThat(dataDocument.getArrayList(LumeerConst.Document.WRITERS_KEY, String.class)).containsOnly(TEST_USER2, TEST_USER3);
+   }
+
+   @Test
+   public void testMigrateRights() throws Exception {
+      if (dataStorage.hasCollection(SECURITY_TEST_COLLECTION_MIGRATE)) {
+         dataStorage.dropCollection(SECURITY_TEST_COLLECTION_MIGRATE);
+      }
+      dataStorage.createCollection(SECURITY_TEST_COLLECTION_MIGRATE);
+
+      // rights stored without readers and writers
+      DataDocument dataDocument = new DataDocument();
+      securityFacade.addMetaData(dataDocument);
+      addRights(dataDocument, TEST_USER4, 4);
+      addRights(dataDocument, TEST_USER6, 6);
+      String id = dataStorage.createDocument(SECURITY_TEST_COLLECTION_MIGRATE, dataDocument);
+      dataStorage.createDocument(SECURITY_TEST_COLLECTION_MIGRATE, new DataDocument("a", 1));
+      DataDocument ownDocument = new DataDocument();
+      securityFacade.addMetaData(ownDocument);
+      addRights(ownDocument, userFacade.getUserEmail(), 4);
+      String ownId = dataStorage.createDocument(SECURITY_TEST_COLLECTION_MIGRATE, ownDocument);
+
+      // not migrated documents are still readable through their rights
+      Query query = new Query(Collections.singleton(SECURITY_TEST_COLLECTION_MIGRATE), securityFacade.getReadRightsQueryFilter());
+      assertThat(dataStorage.query(query)).extracting(DataDocument::getId).containsOnly(ownId);
+
+      assertThat(securityFacade.migrateRights(SECURITY_TEST_COLLECTION_MIGRATE)).isEqualTo(2);
+      assertThat(securityFacade.migrateRights(SECURITY_TEST_COLLECTION_MIGRATE)).isEqualTo(0);
+
+      DataDocument migrated = dataStorage.readDocument(SECURITY_TEST_COLLECTION_MIGRATE, dataStorageDialect.documentIdFilter(id));
+      assertThat(migrated.getArrayList(LumeerConst.Document.READERS_KEY, String.class)).containsOnly(TEST_USER4, TEST_USER6);
+      assertThat(migrated.getArrayList(LumeerConst.Document.WRITERS_KEY, String.class)).containsOnly(TEST_USER6);
+      assertThat(dataStorage.search(SECURITY_TEST_COLLECTION_MIGRATE, dataStorageDialect.fieldValueFilter(LumeerConst.Document.READERS_KEY, TEST_USER6), null, 0, 0)).hasSize(1);
+   }
+
+   @Test
+   public void testDecisionsAndFilterReadable() throws Exception {
+      if (dataStorage.hasCollection(SECURITY_TEST_COLLECTION_DECISIONS)) {
+         dataStorage.dropCollection(SECURITY_TEST_COLLECTION_DECISIONS);
+      }
+      DataDocument dataDocument = new DataDocument(LumeerConst.Document.CREATE_BY_USER_KEY, userFacade.getUserEmail());
+      securityFacade.addMetaData(dataDocument);
+      addRights(dataDocument, TEST_USER1, 4);
+      String readable = dataStorage.createDocument(SECURITY_TEST_COLLECTION_DECISIONS, dataDocument);
+      dataDocument = new DataDocument(LumeerConst.Document.CREATE_BY_USER_KEY, userFacade.getUserEmail());
+      securityFacade.addMetaData(dataDocument);
+      addRights(dataDocument, TEST_USER1, 2);
+      String writable = dataStorage.createDocument(SECURITY_TEST_COLLECTION_DECISIONS, dataDocument);
+      String withoutRights = dataStorage.createDocument(SECURITY_TEST_COLLECTION_DECISIONS, new DataDocument("a", 1));
+      String dropped = dataStorage.createDocument(SECURITY_TEST_COLLECTION_DECISIONS, new DataDocument("a", 2));
+      dataStorage.dropDocument(SECURITY_TEST_COLLECTION_DECISIONS, dataStorageDialect.documentIdFilter(dropped));
+
+      assertThat(securityFacade.filterReadable(SECURITY_TEST_COLLECTION_DECISIONS, Arrays.asList(writable, dropped, withoutRights, readable), TEST_USER1))
+            .containsExactly(withoutRights, readable);
+
+      // decisions are forgotten when the rights are changed
+      assertThat(securityFacade.checkForRead(SECURITY_TEST_COLLECTION_DECISIONS, writable, TEST_USER1)).isFalse();
+      assertThat(securityFacade.checkForWrite(SECURITY_TEST_COLLECTION_DECISIONS, writable, TEST_USER1)).isTrue();
+      assertThat(securityFacade.setRightsRead(SECURITY_TEST_COLLECTION_DECISIONS, writable, TEST_USER1)).isTrue();
+      assertThat(securityFacade.checkForRead(SECURITY_TEST_COLLECTION_DECISIONS, writable, TEST_USER1)).isTrue();
+      assertThat(securityFacade.removeRightsWrite(SECURITY_TEST_COLLECTION_DECISIONS, writable, TEST_USER1)).isTrue();
+      assertThat(securityFacade.checkForWrite(SECURITY_TEST_COLLECTION_DECISIONS, writable, TEST_USER1)).isFalse();
+   }
+
+   @Test
+   public void testAtomicRightsUpdates() throws Exception {
+      if (dataStorage.hasCollection(SECURITY_TEST_COLLECTION_ATOMIC)) {
+         dataStorage.dropCollection(SECURITY_TEST_COLLECTION_ATOMIC);
+      }
+      DataDocument dataDocument = new DataDocument(LumeerConst.Document.CREATE_BY_USER_KEY, userFacade.getUserEmail()).append("a", 1);
+      securityFacade.addMetaData(dataDocument);
+      securityFacade.indexRights(dataDocument);
+      String id = dataStorage.createDocument(SECURITY_TEST_COLLECTION_ATOMIC, dataDocument);
+      DataFilter filter = dataStorageDialect.documentIdFilter(id);
+
+      assertThat(securityFacade.setRightsRead(SECURITY_TEST_COLLECTION_ATOMIC, id, TEST_USER2)).isTrue();
+      assertThat(securityFacade.setRightsWrite(SECURITY_TEST_COLLECTION_ATOMIC, id, TEST_USER2)).isTrue();
+      assertThat(securityFacade.setRightsWrite(SECURITY_TEST_COLLECTION_ATOMIC, id, TEST_USER2)).isTrue();
+      DataDocument stored = dataStorage.readDocument(SECURITY_TEST_COLLECTION_ATOMIC, filter);
+      assertThat(securityFacade.readRightInteger(stored, TEST_USER2)).isEqualTo(6);
+      assertThat(stored.getArrayList(LumeerConst.Document.READERS_KEY, String.class)).containsOnly(TEST_USER2);
+      assertThat(stored.getArrayList(LumeerConst.Document.WRITERS_KEY, String.class)).containsOnly(TEST_USER2);
+      assertThat(stored.getInteger("a")).isEqualTo(1);
+
+      assertThat(securityFacade.removeRightsRead(SECURITY_TEST_COLLECTION_ATOMIC, id, TEST_USER2)).isTrue();
+      assertThat(securityFacade.removeRightsExecute(SECURITY_TEST_COLLECTION_ATOMIC, id, TEST_USER3)).isTrue();
+      stored = dataStorage.readDocument(SECURITY_TEST_COLLECTION_ATOMIC, filter);
+      assertThat(securityFacade.readRightInteger(stored, TEST_USER2)).isEqualTo(2);
+      assertThat(securityFacade.readRightInteger(stored, TEST_USER3)).isEqualTo(0);
+      assertThat(stored.getArrayList(LumeerConst.Document.READERS_KEY, String.class)).isEmpty();
+
+      assertThat(securityFacade.setDaoCheck(SECURITY_TEST_COLLECTION_ATOMIC, id, new AccessRightsDao(true, false, true, TEST_USER2))).isTrue();
+      assertThat(securityFacade.setDaoCheck(SECURITY_TEST_COLLECTION_ATOMIC, id, new AccessRightsDao(false, true, false, TEST_USER3))).isTrue();
+      stored = dataStorage.readDocument(SECURITY_TEST_COLLECTION_ATOMIC, filter);
+      assertThat(securityFacade.readRightInteger(stored, TEST_USER2)).isEqualTo(5);
+      assertThat(securityFacade.readRightInteger(stored, TEST_USER3)).isEqualTo(2);
+      assertThat(stored.getArrayList(LumeerConst.Document.READERS_KEY, String.class)).containsOnly(TEST_USER2);
+      assertThat(stored.getArrayList(LumeerConst.Document.WRITERS_KEY, String.class)).containsOnly(TEST_USER3);
+   }
+
+   @Test
+   public void testShareDocuments() throws Exception {
+      if (dataStorage.hasCollection(SECURITY_TEST_COLLECTION_SHARING)) {
+         dataStorage.dropCollection(SECURITY_TEST_COLLECTION_SHARING);
+      }
+      String created = createSharedDocument(userFacade.getUserEmail(), true);
+      String foreign = createSharedDocument(TEST_USER1, true);
+      String notMatching = createSharedDocument(userFacade.getUserEmail(), false);
+      DataDocument dataDocument = new DataDocument(LumeerConst.Document.CREATE_BY_USER_KEY, userFacade.getUserEmail()).append("shared", true);
+      securityFacade.addMetaData(dataDocument);
+      addRights(dataDocument, TEST_USER2, 2);
+      String withRights = dataStorage.createDocument(SECURITY_TEST_COLLECTION_SHARING, dataDocument);
+      // the current user shares by their execute rights, their entry precedes the entry being changed
+      dataDocument = new DataDocument(LumeerConst.Document.CREATE_BY_USER_KEY, TEST_USER1).append("shared", true);
+      securityFacade.addMetaData(dataDocument);
+      addRights(dataDocument, userFacade.getUserEmail(), 1);
+      addRights(dataDocument, TEST_USER2, 2);
+      String delegated = dataStorage.createDocument(SECURITY_TEST_COLLECTION_SHARING, dataDocument);
+
+      List<Long> progress = new ArrayList<>();
+      DataFilter filter = dataStorageDialect.fieldValueFilter("shared", true);
+      assertThat(securityFacade.shareDocuments(SECURITY_TEST_COLLECTION_SHARING, filter, new AccessRightsDao(true, false, false, TEST_USER2), progress::add)).isEqualTo(3);
+      assertThat(progress).isNotEmpty().endsWith(3L);
+      assertThat(securityFacade.shareDocuments(SECURITY_TEST_COLLECTION_SHARING, filter, new AccessRightsDao(true, false, false, TEST_USER2), progress::add)).isEqualTo(0);
+
+      assertThat(securityFacade.checkForRead(SECURITY_TEST_COLLECTION_SHARING, created, TEST_USER2)).isTrue();
+      assertThat(securityFacade.checkForRead(SECURITY_TEST_COLLECTION_SHARING, withRights, TEST_USER2)).isTrue();
+      assertThat(securityFacade.checkForWrite(SECURITY_TEST_COLLECTION_SHARING, withRights, TEST_USER2)).isFalse();
+      assertThat(securityFacade.checkForRead(SECURITY_TEST_COLLECTION_SHARING, foreign, TEST_USER2)).isFalse();
+      assertThat(securityFacade.checkForRead(SECURITY_TEST_COLLECTION_SHARING, notMatching, TEST_USER2)).isFalse();
+      assertThat(securityFacade.checkForRead(SECURITY_TEST_COLLECTION_SHARING, delegated, TEST_USER2)).isTrue();
+      assertThat(securityFacade.checkForWrite(SECURITY_TEST_COLLECTION_SHARING, delegated, TEST_USER2)).isFalse();
+      assertThat(securityFacade.checkForExecute(SECURITY_TEST_COLLECTION_SHARING, delegated, userFacade.getUserEmail())).isTrue();
+      assertThat(securityFacade.checkForRead(SECURITY_TEST_COLLECTION_SHARING, delegated, userFacade.getUserEmail())).isFalse();
+      assertThat(dataStorage.search(SECURITY_TEST_COLLECTION_SHARING, dataStorageDialect.fieldValueFilter(LumeerConst.Document.READERS_KEY, TEST_USER2), null, 0, 0)).hasSize(3);
+   }
+
+   private String createSharedDocument(String creator, boolean shared) {
+      DataDocument dataDocument = new DataDocument(LumeerConst.Document.CREATE_BY_USER_KEY, creator).append("shared", shared);
+      securityFacade.addMetaData(dataDocument);
+      securityFacade.indexRights(dataDocument);
+      return dataStorage.createDocument(SECURITY_TEST_COLLECTION_SHARING, dataDocument);
+   }
+
    private void addRights(DataDocument dataDocument, String email, Integer rights) {
       List<DataDocument> arrayList = readList(dataDocument);
       DataDocument newRule = new DataDocument();
@@ -20,6 +20,7 @@
 package io.lumeer.engine.controller;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import io.lumeer.engine.IntegrationTestBase;
 import io.lumeer.engine.annotation.UserDataStorage;
@@ -28,6 +29,7 @@ import io.lumeer.engine.api.data.DataDocument;
 import io.lumeer.engine.api.data.DataStorage;
 import io.lumeer.engine.api.data.DataStorageDialect;
 import io.lumeer.engine.api.exception.VersionUpdateConflictException;
+import io.lumeer.engine.provider.DataStorageProvider;
 
 import org.jboss.arquillian.junit.Arquillian;
 import org.junit.Test;
@@ -50,6 +52,10 @@ public class VersionFacadeIntegrationTest extends IntegrationTestBase {
    private final String TEST_GET_OLD_DOC = "versionTestGetOldDocuments";
    private final String TEST_REVERT = "versionTestRevert";
    private final String TEST_EXCEPTION = "versionTestException";
+   private final String TEST_DELTA = "versionTestDelta";
+   private final String TEST_COMPACTION = "versionTestCompaction";
+   private final String TEST_BACKUP_WRITER = "versionTestBackupWriter";
+   private final String TEST_STALE = "versionTestStale";
 
    @Inject
    private VersionFacade versionFacade;
@@ -64,6 +70,15 @@ public class VersionFacadeIntegrationTest extends IntegrationTestBase {
    @Inject
    private CollectionFacade collectionFacade;
 
+   @Inject
+   private VersionCompactor versionCompactor;
+
+   @Inject
+   private VersionBackupWriter versionBackupWriter;
+
+   @Inject
+   private DataStorageProvider dataStorageProvider;
+
    @Test
    public void testGetVersion() throws Exception {
       createCollection(TEST_READ_VERSION);
@@ -182,6 +197,108 @@ public class VersionFacadeIntegrationTest extends IntegrationTestBase {
       versionFacade.backUpDocument(TEST_EXCEPTION, dataDocument);
    }
 
+   @Test
+   public void testStaleVersion() throws Exception {
+      String shadow = createCollection(TEST_STALE);
+      String documentId = dataStorage.createDocument(TEST_STALE, createTestDocument());
+      DataDocument actual = dataStorage.readDocument(TEST_STALE, dataStorageDialect.documentIdFilter(documentId));
+      DataDocument first = new DataDocument(actual);
+      first.replace("dog", "pig");
+      versionFacade.newDocumentVersion(TEST_STALE, actual, first, false);
+
+      // the second writer read the document before the first one changed it
+      DataDocument second = new DataDocument(actual);
+      second.replace("dog", "cow");
+      assertThatThrownBy(() -> versionFacade.newDocumentVersion(TEST_STALE, actual, second, true)).isInstanceOf(VersionUpdateConflictException.class);
+      assertThatThrownBy(() -> versionFacade.dropDocumentAttribute(TEST_STALE, actual, "dog")).isInstanceOf(VersionUpdateConflictException.class);
+
+      DataDocument stored = dataStorage.readDocument(TEST_STALE, dataStorageDialect.documentIdFilter(documentId));
+      assertThat(stored.getString("dog")).isEqualTo("pig");
+      assertThat(versionFacade.getDocumentVersion(stored)).isEqualTo(2);
+      assertThat(dataStorage.documentCount(shadow)).isEqualTo(1);
+   }
+
+   @Test
+   public void testDeltaVersions() throws Exception {
+      String shadow = createCollection(TEST_DELTA);
+      DataDocument dataDocument = createTestDocument();
+      String documentId = dataStorage.createDocument(TEST_DELTA, dataDocument);
+      DataDocument actual = dataStorage.readDocument(TEST_DELTA, dataStorageDialect.documentIdFilter(documentId));
+      DataDocument next = new DataDocument(actual);
+      next.replace("dog", "pig");
+      next.put("cow", "horse");
+      versionFacade.newDocumentVersion(TEST_DELTA, actual, next, true);
+
+      // version 1 stored as a delta against version 2
+      next = dataStorage.readDocument(TEST_DELTA, dataStorageDialect.documentIdFilter(documentId));
+      dataStorage.dropDocument(shadow, dataStorageDialect.documentNestedIdFilterWithVersion(documentId, 1));
+      dataStorage.createOldDocument(shadow, DocumentDelta.diff(actual, next), documentId, 1);
+
+      DataDocument oldDoc = versionFacade.readOldDocumentVersion(TEST_DELTA, documentId, 1);
+      assertThat(oldDoc.getString("dog")).isEqualTo("cat");
+      assertThat(oldDoc).doesNotContainKey("cow");
+      assertThat(versionFacade.getDocumentVersion(oldDoc)).isEqualTo(1);
+      assertThat(versionFacade.getDocumentVersions(TEST_DELTA, documentId)).extracting(d -> d.getString("dog")).containsExactly("cat", "pig");
+
+      // full copies are configured by default
+      assertThat(versionFacade.migrateShadowCollection(TEST_DELTA)).isEqualTo(1);
+      DataDocument migrated = dataStorage.readDocument(shadow, dataStorageDialect.documentNestedIdFilterWithVersion(documentId, 1));
+      assertThat(DocumentDelta.isDelta(migrated)).isFalse();
+      assertThat(migrated.getString("dog")).isEqualTo("cat");
+   }
+
+   @Test
+   public void testCompaction() throws Exception {
+      String shadow = createCollection(TEST_COMPACTION);
+      DataDocument dataDocument = createTestDocument();
+      String documentId = dataStorage.createDocument(TEST_COMPACTION, dataDocument);
+      for (int i = 1; i < 6; i++) {
+         DataDocument actual = dataStorage.readDocument(TEST_COMPACTION, dataStorageDialect.documentIdFilter(documentId));
+         DataDocument next = new DataDocument(actual);
+         next.replace("dog", "dog" + i);
+         versionFacade.newDocumentVersion(TEST_COMPACTION, actual, next, true);
+      }
+
+      // the newest version stored as a delta against the document
+      DataDocument fifth = versionFacade.readOldDocumentVersion(TEST_COMPACTION, documentId, 5);
+      DataDocument actual = dataStorage.readDocument(TEST_COMPACTION, dataStorageDialect.documentIdFilter(documentId));
+      dataStorage.dropDocument(shadow, dataStorageDialect.documentNestedIdFilterWithVersion(documentId, 5));
+      dataStorage.createOldDocument(shadow, DocumentDelta.diff(fifth, actual), documentId, 5);
+
+      assertThat(versionCompactor.compact(dataStorage, TEST_COMPACTION, shadow, new VersionRetention(0, 0, VersionRetention.Thinning.NONE))).isEqualTo(0);
+      assertThat(dataStorage.documentCount(shadow)).isEqualTo(5);
+
+      assertThat(versionCompactor.compact(dataStorage, TEST_COMPACTION, shadow, new VersionRetention(1, 0, VersionRetention.Thinning.NONE))).isEqualTo(4);
+      assertThat(dataStorage.documentCount(shadow)).isEqualTo(1);
+      assertThat(versionFacade.getDocumentVersions(TEST_COMPACTION, documentId)).hasSize(2);
+      assertThat(versionFacade.readOldDocumentVersion(TEST_COMPACTION, documentId, 5).getString("dog")).isEqualTo("dog4");
+   }
+
+   @Test
+   public void testBackupWriter() throws Exception {
+      String shadow = createCollection(TEST_BACKUP_WRITER);
+      DataStorage userStorage = dataStorageProvider.getUserStorage();
+      DataDocument dataDocument = createTestDocument();
+      String documentId = dataStorage.createDocument(TEST_BACKUP_WRITER, dataDocument);
+      dataDocument.setId(documentId);
+
+      // the queue is written before each next backup, so it is never full
+      assertThat(versionBackupWriter.enqueue(userStorage, shadow, new DataDocument(dataDocument), 1)).isTrue();
+      versionBackupWriter.flush(userStorage);
+      // the same version again is rejected by the shadow collection without failing the writer
+      assertThat(versionBackupWriter.enqueue(userStorage, shadow, new DataDocument(dataDocument), 1)).isTrue();
+      versionBackupWriter.flush(userStorage);
+      DataDocument second = new DataDocument(dataDocument);
+      second.put(VERSION_STRING, 2);
+      second.put("dog", "dog");
+      assertThat(versionBackupWriter.enqueue(userStorage, shadow, second, 1)).isTrue();
+      versionBackupWriter.flush(userStorage);
+
+      assertThat(dataStorage.documentCount(shadow)).isEqualTo(2);
+      assertThat(dataStorage.readDocument(shadow, dataStorageDialect.documentNestedIdFilterWithVersion(documentId, 1)).getString("dog")).isEqualTo("cat");
+      assertThat(dataStorage.readDocument(shadow, dataStorageDialect.documentNestedIdFilterWithVersion(documentId, 2)).getString("dog")).isEqualTo("dog");
+   }
+
    /* @Test
     public void testDeleteShadow(){
        if (dataStorage.hasCollection(TEST_DELETE + SHADOW)) dataStorage.dropCollection(TEST_DELETE + SHADOW);
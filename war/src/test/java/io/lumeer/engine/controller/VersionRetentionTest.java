@@ -0,0 +1,67 @@
+/*
+ * -----------------------------------------------------------------------\
+ * Lumeer
+ *  
+ * Copyright (C) 2016 - 2017 the original author or authors.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -----------------------------------------------------------------------/
+ */
+package io.lumeer.engine.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lumeer.engine.api.LumeerConst;
+import io.lumeer.engine.api.data.DataDocument;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * @author <a href="mailto:marvenec@gmail.com">Martin Večeřa</a>
+ */
+public class VersionRetentionTest {
+
+   private static final LocalDateTime NOW = LocalDateTime.of(2017, 6, 15, 12, 0);
+
+   @Test
+   public void testCountAndAge() {
+      assertThat(new VersionRetention(0, 0, VersionRetention.Thinning.DAILY).retain(Arrays.asList(NOW, NOW.minusDays(10)), NOW)).containsExactly(true, true);
+      assertThat(new VersionRetention(2, 0, VersionRetention.Thinning.NONE).retain(Arrays.asList(NOW, NOW, NOW, null), NOW)).containsExactly(true, true, false, true);
+      assertThat(new VersionRetention(1, 3, VersionRetention.Thinning.NONE).retain(Arrays.asList(NOW, NOW.minusDays(1), NOW.minusDays(2), NOW.minusDays(4)), NOW))
+            .containsExactly(true, true, true, false);
+   }
+
+   @Test
+   public void testThinning() {
+      final LocalDateTime monday = LocalDateTime.of(2017, 6, 5, 12, 0);
+      assertThat(new VersionRetention(1, 0, VersionRetention.Thinning.DAILY).retain(Arrays.asList(NOW, NOW.minusHours(1), monday.plusHours(1), monday, monday.minusHours(13)), NOW))
+            .containsExactly(true, false, true, false, true);
+      assertThat(new VersionRetention(1, 0, VersionRetention.Thinning.WEEKLY).retain(Arrays.asList(NOW, monday.plusDays(6), monday, monday.minusDays(1)), NOW))
+            .containsExactly(true, true, false, true);
+   }
+
+   @Test
+   public void testParse() {
+      assertThat(VersionRetention.parseThinning("weekly")).isEqualTo(VersionRetention.Thinning.WEEKLY);
+      assertThat(VersionRetention.parseThinning("hourly")).isEqualTo(VersionRetention.Thinning.NONE);
+      assertThat(VersionRetention.parseThinning(null)).isEqualTo(VersionRetention.Thinning.NONE);
+
+      assertThat(VersionRetention.versionDate(new DataDocument(LumeerConst.Document.CREATE_DATE_KEY, "2017.06.15 12.00.00.000"))).isEqualTo(NOW);
+      assertThat(VersionRetention.versionDate(new DataDocument(LumeerConst.Document.UPDATE_DATE_KEY, "2017.06.15 12.00.00.000")
+            .append(LumeerConst.Document.CREATE_DATE_KEY, "2017.06.01 12.00.00.000"))).isEqualTo(NOW);
+      assertThat(VersionRetention.versionDate(new DataDocument(LumeerConst.Document.UPDATE_DATE_KEY, "yesterday"))).isNull();
+   }
+}